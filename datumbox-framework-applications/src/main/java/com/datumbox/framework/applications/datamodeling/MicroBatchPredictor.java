@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.applications.datamodeling;
+
+import com.datumbox.framework.core.common.dataobjects.Record;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * The MicroBatchPredictor serves predictions for single observations using a
+ * trained model which is kept warm between the requests. The requests of the
+ * concurrent callers are coalesced into micro-batches which are scored together,
+ * so the per-request overhead of the pipeline is shared by the batch. Only one
+ * batch is scored at a time, so the wrapped model is never accessed concurrently.
+ * The class also keeps the latencies of the most recent requests in order to
+ * report their percentiles.
+ *
+ * Example:
+ * <pre>
+ * MicroBatchPredictor&lt;String&gt; predictor = new MicroBatchPredictor&lt;&gt;(textClassifier::predictTexts, 64);
+ * Record r = predictor.predict("some text");
+ * </pre>
+ *
+ * @param <T>
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class MicroBatchPredictor<T> {
+
+    private static final int LATENCY_WINDOW = 10000;
+
+    private final Function<List<T>, List<Record>> batchPredictor;
+
+    private final int maxBatchSize;
+
+    private final ConcurrentLinkedQueue<Request<T>> queue = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock scoringLock = new ReentrantLock();
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+
+    private long requestCount = 0L;
+
+    private long batchCount = 0L;
+
+    /**
+     * A pending request of a caller.
+     *
+     * @param <T>
+     */
+    private static class Request<T> {
+        private final T input;
+        private final long startTime = System.nanoTime();
+        private final CompletableFuture<Record> result = new CompletableFuture<>();
+
+        private Request(T input) {
+            this.input = input;
+        }
+    }
+
+    /**
+     * Public constructor which receives the method which scores a batch of
+     * inputs, such as Modeler::predict or TextClassifier::predictTexts, and
+     * the maximum number of requests which are scored together.
+     *
+     * @param batchPredictor
+     * @param maxBatchSize
+     */
+    public MicroBatchPredictor(Function<List<T>, List<Record>> batchPredictor, int maxBatchSize) {
+        if(maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalid value for the maximum batch size.");
+        }
+        this.batchPredictor = batchPredictor;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns the prediction for the provided input. The method blocks until
+     * the batch which contains the request is scored. While a batch is scored,
+     * the requests of the other callers are queued and the first of them that
+     * acquires the model scores all the queued requests in the next batch.
+     *
+     * @param input
+     * @return
+     */
+    public Record predict(T input) {
+        Request<T> request = new Request<>(input);
+        queue.add(request);
+
+        while(!request.result.isDone()) {
+            scoringLock.lock();
+            try {
+                if(!request.result.isDone()) {
+                    scoreBatch();
+                }
+            }
+            finally {
+                scoringLock.unlock();
+            }
+        }
+
+        try {
+            return request.result.get();
+        }
+        catch (ExecutionException ex) {
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause(); //the batch failed
+            }
+            else if(ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+        catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns the percentile of the latencies of the most recent requests in
+     * milliseconds. The percentile should be between 0.0 and 1.0, for example
+     * 0.5 returns the median and 0.99 the 99th percentile.
+     *
+     * @param percentile
+     * @return
+     */
+    public double getLatencyPercentile(double percentile) {
+        if(percentile < 0.0 || percentile > 1.0) {
+            throw new IllegalArgumentException("The percentile should be between 0.0 and 1.0.");
+        }
+
+        long[] sorted;
+        synchronized(latencies) {
+            int n = (int) Math.min(requestCount, LATENCY_WINDOW);
+            if(n == 0) {
+                return 0.0;
+            }
+            sorted = Arrays.copyOf(latencies, n);
+        }
+        Arrays.sort(sorted);
+
+        int pos = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(pos, 0)] / 1000000.0;
+    }
+
+    /**
+     * Returns the number of requests which were served.
+     *
+     * @return
+     */
+    public long getRequestCount() {
+        synchronized(latencies) {
+            return requestCount;
+        }
+    }
+
+    /**
+     * Returns the average number of requests which were scored together.
+     *
+     * @return
+     */
+    public double getAverageBatchSize() {
+        synchronized(latencies) {
+            return batchCount>0?requestCount/(double)batchCount:0.0;
+        }
+    }
+
+    /**
+     * Scores the queued requests in a single batch. It must be called while
+     * holding the scoring lock.
+     */
+    private void scoreBatch() {
+        List<Request<T>> batch = new ArrayList<>(maxBatchSize);
+        Request<T> request;
+        while(batch.size() < maxBatchSize && (request = queue.poll()) != null) {
+            batch.add(request);
+        }
+        if(batch.isEmpty()) {
+            return;
+        }
+
+        List<T> inputs = new ArrayList<>(batch.size());
+        for(Request<T> r : batch) {
+            inputs.add(r.input);
+        }
+
+        try {
+            List<Record> predictions = batchPredictor.apply(inputs);
+
+            long endTime = System.nanoTime();
+            synchronized(latencies) {
+                for(Request<T> r : batch) {
+                    latencies[(int)(requestCount++ % LATENCY_WINDOW)] = endTime - r.startTime;
+                }
+                batchCount++;
+            }
+
+            int i = 0;
+            for(Request<T> r : batch) {
+                r.result.complete(predictions.get(i++));
+            }
+        }
+        catch (Throwable ex) {
+            //complete all the requests, otherwise their callers would wait forever
+            for(Request<T> r : batch) {
+                r.result.completeExceptionally(ex);
+            }
+        }
+    }
+
+}
@@ -16,7 +16,11 @@
 package com.datumbox.framework.applications.datamodeling;
 
 import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.concurrency.ForkJoinStream;
+import com.datumbox.framework.common.concurrency.StreamMethods;
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
+import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.core.machinelearning.MLBuilder;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
@@ -26,9 +30,12 @@ import com.datumbox.framework.core.machinelearning.common.abstracts.featureselec
 import com.datumbox.framework.core.machinelearning.common.abstracts.modelers.AbstractModeler;
 import com.datumbox.framework.core.machinelearning.common.dataobjects.TrainableBundle;
 import com.datumbox.framework.core.machinelearning.common.interfaces.Parallelizable;
+import com.datumbox.framework.core.machinelearning.common.interfaces.PredictParallelizable;
+import com.datumbox.framework.core.machinelearning.common.interfaces.RecordTransformable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Modeler is a convenience class which can be used to train Machine Learning
@@ -46,6 +53,8 @@ public class Modeler extends AbstractModeler<Modeler.ModelParameters, Modeler.Tr
 
     private final TrainableBundle bundle;
 
+    private final ForkJoinStream streamExecutor;
+
     /**
      * It contains all the Model Parameters which are learned during the training.
      */
@@ -157,6 +166,7 @@ public class Modeler extends AbstractModeler<Modeler.ModelParameters, Modeler.Tr
     protected Modeler(TrainingParameters trainingParameters, Configuration configuration) {
         super(trainingParameters, configuration);
         bundle  = new TrainableBundle(configuration.getStorageConfiguration().getStorageNameSeparator());
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
     }
 
     /**
@@ -167,6 +177,7 @@ public class Modeler extends AbstractModeler<Modeler.ModelParameters, Modeler.Tr
     protected Modeler(String storageName, Configuration configuration) {
         super(storageName, configuration);
         bundle  = new TrainableBundle(configuration.getStorageConfiguration().getStorageNameSeparator());
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
     }
 
 
@@ -184,6 +195,61 @@ public class Modeler extends AbstractModeler<Modeler.ModelParameters, Modeler.Tr
         this.parallelized = parallelized;
     }
 
+    private boolean pipelineFused = false;
+
+    /**
+     * Getter for the pipelineFused flag.
+     *
+     * @return
+     */
+    public boolean isPipelineFused() {
+        return pipelineFused;
+    }
+
+    /**
+     * Setter for the pipelineFused flag. If turned on, the consecutive steps of
+     * the pipeline which transform every record independently are applied during
+     * prediction in a single pass over the data, which also estimates the
+     * predictions of the modeler when it predicts records independently. Since
+     * the records are transformed outside of the Dataframe, the data types of the
+     * columns are inferred from the values of each record.
+     *
+     * @param pipelineFused
+     */
+    public void setPipelineFused(boolean pipelineFused) {
+        this.pipelineFused = pipelineFused;
+    }
+
+    /**
+     * Generates the predictions for a batch of records. The records are scored
+     * together in a single Dataframe, so the cost of creating it and running the
+     * pipeline is shared by the whole batch. It returns the records with their
+     * predictions in the order of the input.
+     *
+     * @param records
+     * @return
+     */
+    public List<Record> predict(List<Record> records) {
+        Dataframe newData = new Dataframe(knowledgeBase.getConfiguration());
+        try {
+            List<Integer> ids = new ArrayList<>(records.size());
+            for(Record r : records) {
+                ids.add(newData.addRecord(r));
+            }
+
+            predict(newData);
+
+            List<Record> predictions = new ArrayList<>(ids.size());
+            for(Integer id : ids) {
+                predictions.add(newData.get(id));
+            }
+            return predictions;
+        }
+        finally {
+            newData.close();
+        }
+    }
+
     /** {@inheritDoc} */
     public void _predict(Dataframe newData) {
         //load all trainables on the bundles
@@ -193,21 +259,90 @@ public class Modeler extends AbstractModeler<Modeler.ModelParameters, Modeler.Tr
         bundle.setParallelized(isParallelized());
 
         //run the pipeline
+        List<RecordTransformable> fusedSteps = new ArrayList<>();
         AbstractScaler numericalScaler = (AbstractScaler) bundle.get(NS_KEY);
         if(numericalScaler != null) {
-            numericalScaler.transform(newData);
+            transform(newData, numericalScaler, numericalScaler::transform, fusedSteps);
         }
         AbstractEncoder categoricalEncoder = (AbstractEncoder) bundle.get(CE_KEY);
         if(categoricalEncoder != null) {
-            categoricalEncoder.transform(newData);
+            transform(newData, categoricalEncoder, categoricalEncoder::transform, fusedSteps);
         }
         int numOfFS = getTrainingParameters().getFeatureSelectorTrainingParametersList().size();
         for(int i=0;i<numOfFS;i++) {
             AbstractFeatureSelector featureSelector = (AbstractFeatureSelector) bundle.get(FS_KEY+i);
-            featureSelector.transform(newData);
+            transform(newData, featureSelector, featureSelector::transform, fusedSteps);
         }
         AbstractModeler modeler = (AbstractModeler) bundle.get(ML_KEY);
-        modeler.predict(newData);
+        if(isPipelineFused() && modeler instanceof PredictParallelizable) {
+            applyFusedSteps(newData, fusedSteps, (PredictParallelizable) modeler);
+        }
+        else {
+            applyFusedSteps(newData, fusedSteps, null);
+            modeler.predict(newData);
+        }
+    }
+
+    /**
+     * Applies the transformation of a step of the pipeline. If the pipeline is
+     * fused and the step transforms every record independently, the step is
+     * appended on the list of the pending fused steps. Otherwise the pending
+     * steps are applied and then the step transforms the whole Dataframe.
+     *
+     * @param newData
+     * @param step
+     * @param transformation
+     * @param fusedSteps
+     */
+    private void transform(Dataframe newData, Object step, Consumer<Dataframe> transformation, List<RecordTransformable> fusedSteps) {
+        if(isPipelineFused() && step instanceof RecordTransformable) {
+            fusedSteps.add((RecordTransformable) step);
+        }
+        else {
+            applyFusedSteps(newData, fusedSteps, null);
+            transformation.accept(newData);
+        }
+    }
+
+    /**
+     * Applies the pending fused steps on every record of the Dataframe in a
+     * single pass and clears the list. If a predictor is provided, the
+     * predictions of the transformed records are estimated in the same pass.
+     *
+     * @param newData
+     * @param fusedSteps
+     * @param predictor
+     */
+    private void applyFusedSteps(Dataframe newData, List<RecordTransformable> fusedSteps, PredictParallelizable predictor) {
+        if(fusedSteps.isEmpty() && predictor == null) {
+            return;
+        }
+
+        streamExecutor.forEach(StreamMethods.stream(newData.entries(), isParallelized()), e -> {
+            Record r = e.getValue();
+            AssociativeArray xData = r.getX().copy();
+            Object yData = r.getY();
+            for(RecordTransformable step : fusedSteps) {
+                yData = step._transformRecord(xData, yData);
+            }
+
+            Record newR;
+            if(predictor != null) {
+                PredictParallelizable.Prediction p = predictor._predictRecord(new Record(xData, yData));
+                newR = new Record(xData, yData, p.getYPredicted(), p.getYPredictedProbabilities());
+            }
+            else {
+                newR = new Record(xData, yData, r.getYPredicted(), r.getYPredictedProbabilities());
+            }
+
+            //the columns are updated below, safe to do.
+            newData._unsafe_set(e.getKey(), newR);
+        });
+
+        if(!fusedSteps.isEmpty()) {
+            newData.recalculateMeta();
+            fusedSteps.clear();
+        }
     }
     
     /** {@inheritDoc} */
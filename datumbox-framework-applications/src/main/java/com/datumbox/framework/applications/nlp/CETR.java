@@ -28,10 +28,9 @@ import com.datumbox.framework.core.machinelearning.MLBuilder;
 import com.datumbox.framework.core.machinelearning.clustering.Kmeans;
 import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
 import com.datumbox.framework.core.common.text.parsers.HTMLParser;
+import com.datumbox.framework.core.common.text.parsers.HTMLTokenizer;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * The CETR class (Content Extraction with Tag Ratios) enables you to extract the
@@ -45,8 +44,6 @@ import java.util.regex.Pattern;
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
 public class CETR {
-    private static final Pattern NUMBER_OF_TAGS_PATTERN = Pattern.compile("<[^>]+?>", Pattern.DOTALL);
-    
     /**
      * The object with the Parameters of the Algorithm.
      */
@@ -118,6 +115,48 @@ public class CETR {
 
     private final Configuration configuration;
     
+    /**
+     * Extracts the text of a row and counts its tags in a single traversal.
+     */
+    private static class RowStatistics extends HTMLParser.TextHandler {
+        private int numberOfTags = 0;
+        private String text;
+        
+        private RowStatistics(String row) {
+            super(row);
+            HTMLTokenizer.tokenize(row, this);
+            text = StringCleaner.removeExtraSpaces(getText());
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void startTag(String name, Map<String, String> attributes, boolean selfClosing, int start, int end) {
+            numberOfTags++;
+            super.startTag(name, attributes, selfClosing, start, end);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void endTag(String name, int start, int end) {
+            numberOfTags++;
+            super.endTag(name, start, end);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void comment(int start, int end) {
+            numberOfTags++;
+            super.comment(start, end);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void declaration(int start, int end) {
+            numberOfTags++;
+            super.declaration(start, end);
+        }
+    }
+    
     /**
      * Constructor for the CETR class.
      *
@@ -138,14 +177,17 @@ public class CETR {
         html = clearText(html); //preprocess the Document by removing irrelevant HTML tags and empty lines and break the document to its lines
         List<String> rows = extractRows(html); //
         
-        List<Integer> selectedRowIds = selectRows(rows, parameters);
+        //extract the clear text and count the tags of every row
+        List<RowStatistics> rowStatistics = new ArrayList<>(rows.size());
+        for(String row : rows) {
+            rowStatistics.add(new RowStatistics(row));
+        }
+        
+        List<Integer> selectedRowIds = selectRows(rowStatistics, parameters);
         
         StringBuilder sb = new StringBuilder(html.length());
         for(Integer rowId : selectedRowIds) {
-            String row = rows.get(rowId);
-            
-            //extract the clear text from the selected row
-            row = StringCleaner.removeExtraSpaces(HTMLParser.extractText(row));
+            String row = rowStatistics.get(rowId).text;
             if(row.isEmpty()) {
                 continue;
             }
@@ -156,7 +198,7 @@ public class CETR {
     }
     
     
-    private List<Integer> selectRows(List<String> rows, Parameters parameters) {
+    private List<Integer> selectRows(List<RowStatistics> rows, Parameters parameters) {
         List<Double> TTRlist = calculateTTRlist(rows);
         gaussianSmoothing(TTRlist); //perform smoothing
         
@@ -251,12 +293,12 @@ public class CETR {
         instance.close();
     }
     
-    private List<Double> calculateTTRlist(List<String> rows) {
+    private List<Double> calculateTTRlist(List<RowStatistics> rows) {
         List<Double> TTRlist = new ArrayList<>();
         
-        for(String row : rows) {
-            int x = countContentChars(row); //calculate the total number of text in the row
-            int y = countNumberOfTags(row); //count the number of tags in row
+        for(RowStatistics row : rows) {
+            int x = row.text.length(); //calculate the total number of text in the row
+            int y = row.numberOfTags; //count the number of tags in row
             
             if(y==0) {
                 y=1;
@@ -366,21 +408,6 @@ public class CETR {
     }
 
     
-    private int countNumberOfTags(String text) {
-        Matcher m = NUMBER_OF_TAGS_PATTERN.matcher(text);
-        
-        int count = 0;
-        while(m.find()) {
-            ++count;
-        }
-        
-        return count;
-    }
-    
-    private int countContentChars(String text) {
-        return StringCleaner.removeExtraSpaces(HTMLParser.extractText(text)).length();
-    }
-    
     private List<String> extractRows(String text) {
         return Arrays.asList(text.split("\n"));
     }
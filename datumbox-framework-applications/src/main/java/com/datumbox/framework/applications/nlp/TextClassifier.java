@@ -27,8 +27,7 @@ import com.datumbox.framework.core.machinelearning.modelselection.metrics.Classi
 import com.datumbox.framework.core.common.text.extractors.AbstractTextExtractor;
 
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
  * TextClassifier is a convenience class which can be used to train Text ClassificationMetrics
@@ -163,25 +162,28 @@ public class TextClassifier extends Modeler {
      * @return 
      */
     public Record predict(String text) {
+        return predictTexts(Collections.singletonList(text)).get(0);
+    }
+
+    /**
+     * It generates the predictions for a batch of strings. It returns one Record
+     * for every string in the order of the input, which contains the observation
+     * data, the predicted class and probabilities. Scoring the strings in batches
+     * is significantly faster than calling predict() for each of them.
+     *
+     * @param texts
+     * @return
+     */
+    public List<Record> predictTexts(List<String> texts) {
         TrainingParameters trainingParameters = (TrainingParameters) knowledgeBase.getTrainingParameters();
-        
-        Dataframe testDataset = new Dataframe(knowledgeBase.getConfiguration());
-        testDataset.add(
-            new Record(
-                new AssociativeArray(
-                    AbstractTextExtractor.newInstance(trainingParameters.getTextExtractorParameters()).extract(StringCleaner.clear(text))
-                ),
-                null
-            )
-        );
-        
-        predict(testDataset);
-        
-        Record r = testDataset.iterator().next();
-        
-        testDataset.close();
-        
-        return r;
+        AbstractTextExtractor textExtractor = AbstractTextExtractor.newInstance(trainingParameters.getTextExtractorParameters());
+
+        List<Record> records = new ArrayList<>(texts.size());
+        for(String text : texts) {
+            records.add(new Record(new AssociativeArray(textExtractor.extract(StringCleaner.clear(text))), null));
+        }
+
+        return predict(records);
     }
 
     /**
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.applications.datamodeling;
+
+import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.core.Datasets;
+import com.datumbox.framework.core.common.dataobjects.Dataframe;
+import com.datumbox.framework.core.common.dataobjects.Record;
+import com.datumbox.framework.core.machinelearning.MLBuilder;
+import com.datumbox.framework.core.machinelearning.classification.SoftMaxRegression;
+import com.datumbox.framework.core.machinelearning.preprocessing.MinMaxScaler;
+import com.datumbox.framework.core.machinelearning.preprocessing.OneHotEncoder;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for MicroBatchPredictor.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class MicroBatchPredictorTest extends AbstractTest {
+
+    /**
+     * Test of predict method, of class MicroBatchPredictor.
+     */
+    @Test
+    public void testPredict() throws InterruptedException, ExecutionException {
+        logger.info("testPredict");
+
+        Configuration configuration = getConfiguration();
+
+        Dataframe[] data = Datasets.heartDiseaseClusters(configuration);
+
+        Dataframe trainingData = data[0];
+        Dataframe testData = data[1];
+
+        Modeler.TrainingParameters trainingParameters = new Modeler.TrainingParameters();
+        trainingParameters.setNumericalScalerTrainingParameters(new MinMaxScaler.TrainingParameters());
+        trainingParameters.setCategoricalEncoderTrainingParameters(new OneHotEncoder.TrainingParameters());
+        SoftMaxRegression.TrainingParameters modelTrainingParameters = new SoftMaxRegression.TrainingParameters();
+        modelTrainingParameters.setTotalIterations(100);
+        trainingParameters.setModelerTrainingParameters(modelTrainingParameters);
+
+        Modeler instance = MLBuilder.create(trainingParameters, configuration);
+        instance.fit(trainingData);
+        trainingData.close();
+
+        List<Record> records = new ArrayList<>(testData);
+        instance.predict(testData);
+        List<Object> expResult = new ArrayList<>();
+        for(Record r : testData.values()) {
+            expResult.add(r.getYPredicted());
+        }
+
+        MicroBatchPredictor<Record> predictor = new MicroBatchPredictor<>(instance::predict, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Record>> futures = new ArrayList<>();
+        for(Record r : records) {
+            futures.add(executor.submit(() -> predictor.predict(r)));
+        }
+        List<Object> result = new ArrayList<>();
+        for(Future<Record> f : futures) {
+            result.add(f.get().getYPredicted());
+        }
+        executor.shutdown();
+
+        assertEquals(expResult, result);
+        assertEquals(records.size(), predictor.getRequestCount());
+        assertTrue(predictor.getAverageBatchSize() >= 1.0);
+        assertTrue(predictor.getLatencyPercentile(0.5) <= predictor.getLatencyPercentile(0.99));
+
+        instance.close();
+        testData.close();
+    }
+
+    /**
+     * Test of predict method, of class MicroBatchPredictor, when the batch predictor throws an Error.
+     */
+    @Test
+    public void testPredictError() {
+        logger.info("testPredictError");
+
+        MicroBatchPredictor<Integer> predictor = new MicroBatchPredictor<>(batch -> {
+            throw new OutOfMemoryError("batch failed");
+        }, 4);
+
+        try {
+            predictor.predict(1);
+            fail("The Error of the batch predictor should be propagated to the caller.");
+        }
+        catch (OutOfMemoryError ex) {
+            assertEquals("batch failed", ex.getMessage());
+        }
+    }
+
+}
@@ -29,6 +29,8 @@ import com.datumbox.framework.core.machinelearning.featureselection.MutualInform
 import com.datumbox.framework.core.machinelearning.featureselection.TFIDF;
 import com.datumbox.framework.core.machinelearning.modelselection.metrics.ClassificationMetrics;
 import com.datumbox.framework.core.machinelearning.preprocessing.BinaryScaler;
+import com.datumbox.framework.core.common.text.extractors.AbstractTextExtractor;
+import com.datumbox.framework.core.common.text.extractors.HashingExtractor;
 import com.datumbox.framework.core.common.text.extractors.NgramsExtractor;
 import com.datumbox.framework.tests.Constants;
 import com.datumbox.framework.tests.abstracts.AbstractTest;
@@ -140,6 +142,36 @@ public class TextClassifierTest extends AbstractTest {
         );
     }
 
+    /**
+     * Test of train and validate method, of class TextClassifier using MultinomialNaiveBayes and HashingExtractor.
+     */ 
+    @Test
+    public void testTrainAndValidateHashingExtractor() {
+        logger.info("testTrainAndValidateHashingExtractor");
+        
+        MultinomialNaiveBayes.TrainingParameters mlParams = new MultinomialNaiveBayes.TrainingParameters();
+        
+        ChisquareSelect.TrainingParameters fsParams = new ChisquareSelect.TrainingParameters();
+        fsParams.setALevel(0.05);
+        fsParams.setMaxFeatures(1000);
+        fsParams.setRareFeatureThreshold(3);
+        
+        HashingExtractor.Parameters exParams = new HashingExtractor.Parameters();
+        exParams.setMaxDistanceBetweenKwds(2);
+        exParams.setExaminationWindowLength(6);
+        exParams.setNumberOfFeatures(262144);
+        exParams.setSigned(false);
+        
+        trainAndValidate(
+                mlParams,
+                fsParams,
+                null,
+                exParams,
+                0.8783396946564885,
+                10
+        );
+    }
+
     /**
      * Test of train and validate method, of class TextClassifier using OrdinalRegression.
      */ 
@@ -162,7 +194,7 @@ public class TextClassifierTest extends AbstractTest {
                 mlParams,
                 fsParams,
                 nsParams,
-                0.9272762308507563,
+                0.9292550977944236,
                 5
         );
     }
@@ -277,6 +309,40 @@ public class TextClassifierTest extends AbstractTest {
             NS.AbstractTrainingParameters numericalScalerTrainingParameters,
             double expectedF1score,
             int testId) {
+        NgramsExtractor.Parameters exParams = new NgramsExtractor.Parameters();
+        exParams.setMaxDistanceBetweenKwds(2);
+        exParams.setExaminationWindowLength(6);
+        
+        trainAndValidate(
+                modelerTrainingParameters,
+                featureSelectorTrainingParameters,
+                numericalScalerTrainingParameters,
+                exParams,
+                expectedF1score,
+                testId
+        );
+    }
+    
+    /**
+     * Trains and validates a model with the provided modeler, feature selector
+     * and text extractor.
+     * 
+     * @param <ML>
+     * @param <FS>
+     * @param <NS>
+     * @param modelerTrainingParameters
+     * @param featureSelectorTrainingParameters
+     * @param numericalScalerTrainingParameters
+     * @param textExtractorParameters
+     * @param testId
+     */
+    private <ML extends AbstractClassifier, FS extends AbstractFeatureSelector, NS extends AbstractScaler> void trainAndValidate(
+            ML.AbstractTrainingParameters modelerTrainingParameters,
+            FS.AbstractTrainingParameters featureSelectorTrainingParameters,
+            NS.AbstractTrainingParameters numericalScalerTrainingParameters,
+            AbstractTextExtractor.AbstractParameters textExtractorParameters,
+            double expectedF1score,
+            int testId) {
         Configuration configuration = getConfiguration();
         
         
@@ -299,10 +365,7 @@ public class TextClassifierTest extends AbstractTest {
         trainingParameters.setModelerTrainingParameters(modelerTrainingParameters);
         
         //text extraction configuration
-        NgramsExtractor.Parameters exParams = new NgramsExtractor.Parameters();
-        exParams.setMaxDistanceBetweenKwds(2);
-        exParams.setExaminationWindowLength(6);
-        trainingParameters.setTextExtractorParameters(exParams);
+        trainingParameters.setTextExtractorParameters(textExtractorParameters);
 
         TextClassifier instance = MLBuilder.create(trainingParameters, configuration);
         instance.fit(dataset);
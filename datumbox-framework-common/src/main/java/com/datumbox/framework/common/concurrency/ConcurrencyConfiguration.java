@@ -18,6 +18,9 @@ package com.datumbox.framework.common.concurrency;
 import com.datumbox.framework.common.interfaces.Configurable;
 
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The ConcurrencyConfiguration class is used to store the concurrency settings
@@ -36,6 +39,8 @@ public class ConcurrencyConfiguration implements Configurable {
     
     private Integer maxNumberOfThreadsPerTask = AVAILABLE_PROCESSORS;
     
+    private volatile ForkJoinPool forkJoinPool;
+    
     /**
      * Protected constructor.
      */
@@ -89,6 +94,62 @@ public class ConcurrencyConfiguration implements Configurable {
         else {
             this.maxNumberOfThreadsPerTask = Math.min(maxNumberOfThreadsPerTask, 4*AVAILABLE_PROCESSORS);
         }
+        shutdownForkJoinPool(); //the parallelism of the pool changed, a new one will be created on demand
+    }
+    
+    /**
+     * Returns the shared ForkJoinPool which is used by the framework to execute
+     * the parallel tasks of this configuration. The pool is created lazily, its
+     * parallelism is bounded by the maximum number of threads per task and it
+     * uses daemon threads so that it does not block the termination of the JVM.
+     * 
+     * @return 
+     */
+    public ForkJoinPool getForkJoinPool() {
+        ForkJoinPool pool = forkJoinPool;
+        if(pool == null || pool.isShutdown()) {
+            synchronized(this) {
+                pool = forkJoinPool;
+                if(pool == null || pool.isShutdown()) {
+                    pool = new ForkJoinPool(maxNumberOfThreadsPerTask, new DaemonWorkerThreadFactory(), null, false);
+                    forkJoinPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+    
+    /**
+     * Shuts down the shared ForkJoinPool of the configuration. Any previously 
+     * submitted tasks are executed but no new tasks will be accepted. Subsequent
+     * calls to getForkJoinPool() will create a new pool.
+     */
+    public synchronized void shutdownForkJoinPool() {
+        if(forkJoinPool != null) {
+            forkJoinPool.shutdown();
+            forkJoinPool = null;
+        }
+    }
+    
+    /**
+     * Thread factory which creates named daemon worker threads for the shared pool.
+     */
+    private static class DaemonWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        
+        private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+        
+        private final int poolId = POOL_COUNTER.incrementAndGet();
+        
+        private final AtomicInteger threadCounter = new AtomicInteger();
+        
+        /** {@inheritDoc} */
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("datumbox-pool-" + poolId + "-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
     
     /** {@inheritDoc} */
@@ -15,7 +15,11 @@
  */
 package com.datumbox.framework.common.concurrency;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -28,8 +32,9 @@ public class ThreadMethods {
     
     /**
      * Takes the items of the stream in a throttled way and provides them to the 
-     * consumer. It uses as many threads as the available processors and it does
-     * not start more tasks than 2 times the previous number.
+     * consumer. The items are processed in the shared pool of the concurrency
+     * configuration and no more than 2 times the maximum number of threads
+     * are submitted at any time.
      * 
      * @param <T>
      * @param stream
@@ -37,36 +42,90 @@ public class ThreadMethods {
      * @param concurrencyConfiguration
      */
     public static <T> void throttledExecution(Stream<T> stream, Consumer<T> consumer, ConcurrencyConfiguration concurrencyConfiguration) {
-        if(concurrencyConfiguration.isParallelized()) {
-            int maxThreads = concurrencyConfiguration.getMaxNumberOfThreadsPerTask();
-            int maxTasks = 2*maxThreads; 
-
-            ExecutorService executorService = Executors.newFixedThreadPool(maxThreads);
-            ThrottledExecutor executor = new ThrottledExecutor(executorService, maxTasks);
-
-            stream.sequential().forEach(i -> {
+        batchedExecution(stream, 1, batch -> batch.forEach(consumer), concurrencyConfiguration);
+    }
+    
+    /**
+     * Reads the items of the stream sequentially, groups them in batches of the
+     * provided size and passes every batch to the consumer. The batches are
+     * processed in the shared pool of the concurrency configuration and no more 
+     * than 2 times the maximum number of threads are submitted at any time. This
+     * keeps the memory bounded and amortizes the cost of scheduling the tasks
+     * when the work per item is small.
+     * 
+     * @param <T>
+     * @param stream
+     * @param batchSize
+     * @param consumer
+     * @param concurrencyConfiguration 
+     */
+    public static <T> void batchedExecution(Stream<T> stream, int batchSize, Consumer<List<T>> consumer, ConcurrencyConfiguration concurrencyConfiguration) {
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive.");
+        }
+        
+        Iterator<T> it = stream.sequential().iterator();
+        if(!concurrencyConfiguration.isParallelized() || ForkJoinTask.getPool() == concurrencyConfiguration.getForkJoinPool()) {
+            //process the batches in the current thread. This also avoids blocking a worker when called from within the shared pool
+            while(it.hasNext()) {
+                consumer.accept(nextBatch(it, batchSize));
+            }
+            return;
+        }
+        
+        int maxTasks = 2*concurrencyConfiguration.getMaxNumberOfThreadsPerTask();
+        ThrottledExecutor executor = new ThrottledExecutor(concurrencyConfiguration.getForkJoinPool(), maxTasks);
+        AtomicReference<Throwable> exception = new AtomicReference<>();
+        
+        try {
+            while(it.hasNext() && exception.get() == null) {
+                List<T> batch = nextBatch(it, batchSize);
                 executor.execute(() -> {
-                    consumer.accept(i);
+                    try {
+                        consumer.accept(batch);
+                    }
+                    catch (Throwable ex) {
+                        exception.compareAndSet(null, ex);
+                    }
                 });
-            });
-
-            executorService.shutdown();
-            try {
-                executorService.awaitTermination(Integer.MAX_VALUE, TimeUnit.SECONDS);
-            } 
-            catch (InterruptedException ex) {
-                throw new RuntimeException(ex);
             }
         }
-        else {
-            Runnable runnable = () -> stream.forEach(consumer);
-            runnable.run();
+        finally {
+            //wait for the submitted batches even if the submission failed, so that no permit is left behind
+            executor.awaitCompletion();
+        }
+        
+        Throwable ex = exception.get();
+        if(ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        }
+        else if(ex instanceof Error) {
+            throw (Error) ex;
+        }
+        else if(ex != null) {
+            throw new RuntimeException(ex);
         }
     }
     
     /**
-     * Alternative to parallelStreams() which executes a callable in a separate
-     * pool.
+     * Reads from the iterator the next batch of items.
+     * 
+     * @param <T>
+     * @param it
+     * @param batchSize
+     * @return 
+     */
+    private static <T> List<T> nextBatch(Iterator<T> it, int batchSize) {
+        List<T> batch = new ArrayList<>(batchSize);
+        while(batch.size() < batchSize && it.hasNext()) {
+            batch.add(it.next());
+        }
+        return batch;
+    }
+    
+    /**
+     * Alternative to parallelStreams() which executes a callable in the shared
+     * pool of the concurrency configuration.
      * 
      * @param <T>
      * @param callable 
@@ -76,12 +135,18 @@ public class ThreadMethods {
      */
     public static <T> T forkJoinExecution(Callable<T> callable, ConcurrencyConfiguration concurrencyConfiguration, boolean parallelStream) {
         if(parallelStream && concurrencyConfiguration.isParallelized()) {
+            ForkJoinPool pool = concurrencyConfiguration.getForkJoinPool();
+            if(ForkJoinTask.getPool() == pool) {
+                //we are already running within the shared pool, execute the callable directly to avoid blocking a worker
+                try {
+                    return callable.call();
+                } 
+                catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
             try {
-                ForkJoinPool pool = new ForkJoinPool(concurrencyConfiguration.getMaxNumberOfThreadsPerTask());
-                
-                T results = pool.submit(callable).get();
-                pool.shutdown();
-                return results;
+                return pool.submit(callable).get();
             } 
             catch (InterruptedException | ExecutionException ex) {
                 throw new RuntimeException(ex);
@@ -98,8 +163,8 @@ public class ThreadMethods {
     }
     
     /**
-     * Alternative to parallelStreams() which executes a runnable in a separate
-     * pool.
+     * Alternative to parallelStreams() which executes a runnable in the shared
+     * pool of the concurrency configuration.
      * 
      * @param runnable 
      * @param concurrencyConfiguration
@@ -107,10 +172,14 @@ public class ThreadMethods {
      */
     public static void forkJoinExecution(Runnable runnable, ConcurrencyConfiguration concurrencyConfiguration, boolean parallelStream) {
         if(parallelStream && concurrencyConfiguration.isParallelized()) {
+            ForkJoinPool pool = concurrencyConfiguration.getForkJoinPool();
+            if(ForkJoinTask.getPool() == pool) {
+                //we are already running within the shared pool, execute the runnable directly to avoid blocking a worker
+                runnable.run();
+                return;
+            }
             try {
-                ForkJoinPool pool = new ForkJoinPool(concurrencyConfiguration.getMaxNumberOfThreadsPerTask());
                 pool.submit(runnable).get();
-                pool.shutdown();
             } 
             catch (InterruptedException | ExecutionException ex) {
                 throw new RuntimeException(ex);
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.dataobjects;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+import com.datumbox.framework.common.storage.serializers.BinarySerializer;
+import com.datumbox.framework.common.storage.serializers.TypeCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Binary codec of the AssociativeArray. The type of the internal map is
+ * preserved for all the maps that are used by the framework.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class AssociativeArrayCodec implements TypeCodec<AssociativeArray> {
+
+    private static final byte LINKED_HASH_MAP = 0;
+    private static final byte HASH_MAP = 1;
+    private static final byte TREE_MAP = 2;
+    private static final byte CONCURRENT_HASH_MAP = 3;
+    private static final byte CONCURRENT_SKIP_LIST_MAP = 4;
+    private static final byte UNMODIFIABLE_MAP = 5;
+
+    private static final Class<?> UNMODIFIABLE_MAP_CLASS = Collections.unmodifiableMap(new HashMap<>()).getClass();
+
+    /** {@inheritDoc} */
+    @Override
+    public int getId() {
+        return 1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Class<AssociativeArray> getType() {
+        return AssociativeArray.class;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean canWrite(AssociativeArray obj) {
+        return mapKind(obj.internalData) >= 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(DataOutput out, AssociativeArray obj, ObjectSerializer serializer) throws IOException {
+        writeMap(out, obj.internalData, serializer);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AssociativeArray read(DataInput in, ObjectSerializer serializer) throws IOException {
+        return new AssociativeArray(readMap(in, serializer));
+    }
+
+    /**
+     * Writes the type, the size and the entries of the map.
+     *
+     * @param out
+     * @param map
+     * @param serializer
+     * @throws IOException
+     */
+    static void writeMap(DataOutput out, Map<?, ?> map, ObjectSerializer serializer) throws IOException {
+        out.writeByte(mapKind(map));
+        BinarySerializer.writeSize(out, map.size());
+        for(Map.Entry<?, ?> e : map.entrySet()) {
+            serializer.writeValue(out, e.getKey());
+            serializer.writeValue(out, e.getValue());
+        }
+    }
+
+    /**
+     * Reads a map which was written with writeMap().
+     *
+     * @param <V>
+     * @param in
+     * @param serializer
+     * @return
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    static <V> Map<Object, V> readMap(DataInput in, ObjectSerializer serializer) throws IOException {
+        byte kind = in.readByte();
+        int n = BinarySerializer.readSize(in);
+
+        Map<Object, V> map;
+        switch(kind) {
+            case LINKED_HASH_MAP:
+            case UNMODIFIABLE_MAP:
+                map = new LinkedHashMap<>(capacity(n));
+                break;
+            case HASH_MAP:
+                map = new HashMap<>(capacity(n));
+                break;
+            case TREE_MAP:
+                map = new TreeMap<>();
+                break;
+            case CONCURRENT_HASH_MAP:
+                map = new ConcurrentHashMap<>(capacity(n));
+                break;
+            case CONCURRENT_SKIP_LIST_MAP:
+                map = new ConcurrentSkipListMap<>();
+                break;
+            default:
+                throw new StreamCorruptedException("Unknown map type " + kind + ".");
+        }
+
+        for(int i=0;i<n;i++) {
+            Object key = serializer.readValue(in);
+            map.put(key, (V)serializer.readValue(in));
+        }
+
+        return (kind == UNMODIFIABLE_MAP)?Collections.unmodifiableMap(map):map;
+    }
+
+    /**
+     * Returns the type of the map or -1 if it is not supported.
+     *
+     * @param map
+     * @return
+     */
+    static byte mapKind(Map<?, ?> map) {
+        Class<?> klass = map.getClass();
+        if(klass == LinkedHashMap.class) {
+            return LINKED_HASH_MAP;
+        }
+        else if(klass == HashMap.class) {
+            return HASH_MAP;
+        }
+        else if(klass == TreeMap.class && ((TreeMap<?, ?>)map).comparator() == null) {
+            return TREE_MAP;
+        }
+        else if(klass == ConcurrentHashMap.class) {
+            return CONCURRENT_HASH_MAP;
+        }
+        else if(klass == ConcurrentSkipListMap.class && ((ConcurrentSkipListMap<?, ?>)map).comparator() == null) {
+            return CONCURRENT_SKIP_LIST_MAP;
+        }
+        else if(klass == UNMODIFIABLE_MAP_CLASS) {
+            return UNMODIFIABLE_MAP; //the iteration order is preserved by reading it in a LinkedHashMap
+        }
+        return -1;
+    }
+
+    private static int capacity(int n) {
+        return Math.max((int)(n/0.75f)+1, 16);
+    }
+
+}
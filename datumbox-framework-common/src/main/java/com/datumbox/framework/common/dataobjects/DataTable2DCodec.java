@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.dataobjects;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+import com.datumbox.framework.common.storage.serializers.TypeCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary codec of the DataTable2D. The rows are written with the codec of the
+ * AssociativeArray.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class DataTable2DCodec implements TypeCodec<DataTable2D> {
+
+    /** {@inheritDoc} */
+    @Override
+    public int getId() {
+        return 2;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Class<DataTable2D> getType() {
+        return DataTable2D.class;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean canWrite(DataTable2D obj) {
+        return AssociativeArrayCodec.mapKind(obj.internalData) >= 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(DataOutput out, DataTable2D obj, ObjectSerializer serializer) throws IOException {
+        AssociativeArrayCodec.writeMap(out, obj.internalData, serializer);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DataTable2D read(DataInput in, ObjectSerializer serializer) throws IOException {
+        return new DataTable2D(AssociativeArrayCodec.<AssociativeArray>readMap(in, serializer));
+    }
+
+}
@@ -15,7 +15,9 @@
  */
 package com.datumbox.framework.common.storage.abstracts;
 
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
 import com.datumbox.framework.common.storage.interfaces.StorageConfiguration;
+import com.datumbox.framework.common.storage.serializers.BinarySerializer;
 
 import java.io.File;
 
@@ -31,6 +33,11 @@ public abstract class AbstractFileStorageConfiguration implements StorageConfigu
      */
     protected String outputDirectory = null;
 
+    /**
+     * The serializer which is used to store the objects.
+     */
+    protected ObjectSerializer serializer = new BinarySerializer();
+
     /** {@inheritDoc} */
     @Override
     public String getStorageNameSeparator() {
@@ -55,4 +62,41 @@ public abstract class AbstractFileStorageConfiguration implements StorageConfigu
         this.outputDirectory = outputDirectory;
     }
 
+    /**
+     * Getter for the serializer which is used to store the objects.
+     *
+     * @return
+     */
+    public ObjectSerializer getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Setter for the serializer which is used to store the objects.
+     *
+     * @param serializer
+     */
+    public void setSerializer(ObjectSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * Initializes the serializer from its class name. If no class name is provided
+     * the BinarySerializer is used.
+     *
+     * @param serializerClassName
+     * @return
+     */
+    protected ObjectSerializer createSerializer(String serializerClassName) {
+        if(serializerClassName == null || serializerClassName.trim().isEmpty()) {
+            return new BinarySerializer();
+        }
+        try {
+            return (ObjectSerializer) Class.forName(serializerClassName.trim()).newInstance();
+        }
+        catch (ClassNotFoundException | InstantiationException | IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
 }
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.storage.interfaces;
+
+import java.io.*;
+
+/**
+ * The ObjectSerializer is used by the storage engines to convert the persisted
+ * objects to bytes and back. Implementations must be stateless and thread-safe
+ * because a single instance is shared by all the storage engines of a configuration.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public interface ObjectSerializer extends Serializable {
+
+    /**
+     * Writes the object graph in the output stream.
+     *
+     * @param obj
+     * @param out
+     * @throws IOException
+     */
+    public void serialize(Object obj, OutputStream out) throws IOException;
+
+    /**
+     * Reads an object graph from the input stream.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public Object deserialize(InputStream in) throws IOException;
+
+    /**
+     * Writes a single value in the output. It is used to encode the keys and
+     * values of the BigMaps.
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public void writeValue(DataOutput out, Object value) throws IOException;
+
+    /**
+     * Reads a single value which was written with writeValue().
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public Object readValue(DataInput in) throws IOException;
+
+    /**
+     * Returns whether the serializer has a compact encoding for the provided
+     * class. The storage engines use it to decide whether to use the serializer
+     * for the keys and values of the BigMaps or fall back to their native encoding.
+     *
+     * @param klass
+     * @return
+     */
+    public boolean isCompact(Class<?> klass);
+
+    /**
+     * Serializes the object to a byte array.
+     *
+     * @param obj
+     * @return
+     */
+    default public byte[] serialize(Object obj) {
+        try(ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+            serialize(obj, bos);
+            return bos.toByteArray();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Deserializes the byte array.
+     *
+     * @param arr
+     * @return
+     */
+    default public Object deserialize(byte[] arr) {
+        try(InputStream bis = new ByteArrayInputStream(arr)) {
+            return deserialize(bis);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,457 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.storage.serializers;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Serializer which stores the most common value types and all the classes with a
+ * registered TypeCodec in a compact binary format. The object graphs are written
+ * with the Java Serialization but every object that has a TypeCodec is replaced
+ * by its binary encoding, so the format remains compatible with the standard
+ * ObjectInputStream and the files written by the JavaSerializer can still be read.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class BinarySerializer implements ObjectSerializer {
+    private static final long serialVersionUID = 1L;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_SHORT = 3;
+    private static final byte TAG_INTEGER = 4;
+    private static final byte TAG_LONG = 5;
+    private static final byte TAG_FLOAT = 6;
+    private static final byte TAG_DOUBLE = 7;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_ARRAY_LIST = 9;
+    private static final byte TAG_FIXED_LIST = 10;
+    private static final byte TAG_DOUBLE_ARRAY = 11;
+    private static final byte TAG_INT_ARRAY = 12;
+    private static final byte TAG_CODEC = 13;
+    private static final byte TAG_OBJECT = 14;
+
+    private static final Class<?> FIXED_LIST_CLASS = Arrays.asList().getClass();
+
+    /**
+     * Lazily loads all the available TypeCodecs.
+     */
+    private static class Registry {
+        private static final Map<Class<?>, TypeCodec<?>> BY_TYPE = new HashMap<>();
+        private static final Map<Integer, TypeCodec<?>> BY_ID = new HashMap<>();
+
+        static {
+            for(TypeCodec<?> codec : ServiceLoader.load(TypeCodec.class)) {
+                TypeCodec<?> previous = BY_ID.put(codec.getId(), codec);
+                if(previous != null && previous.getClass() != codec.getClass()) {
+                    throw new IllegalStateException("The TypeCodecs " + previous.getClass().getName() + " and " + codec.getClass().getName() + " use the same id.");
+                }
+                BY_TYPE.put(codec.getType(), codec);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void serialize(Object obj, OutputStream out) throws IOException {
+        ObjectOutputStream oos = new CodecObjectOutputStream(out);
+        oos.writeObject(obj);
+        oos.flush();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object deserialize(InputStream in) throws IOException {
+        try {
+            return new ObjectInputStream(in).readObject();
+        }
+        catch (ClassNotFoundException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeValue(DataOutput out, Object value) throws IOException {
+        if(value == null) {
+            out.writeByte(TAG_NULL);
+            return;
+        }
+
+        Class<?> klass = value.getClass();
+        if(out instanceof ObjectOutput && !isImmutable(klass)) {
+            //within object streams the mutable objects are written in the stream to preserve shared references
+            out.writeByte(TAG_OBJECT);
+            writeObject(out, value);
+        }
+        else if(klass == Boolean.class) {
+            out.writeByte((Boolean)value?TAG_TRUE:TAG_FALSE);
+        }
+        else if(klass == Short.class) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short)value);
+        }
+        else if(klass == Integer.class) {
+            out.writeByte(TAG_INTEGER);
+            writeVarLong(out, zigZag((Integer)value));
+        }
+        else if(klass == Long.class) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, zigZag((Long)value));
+        }
+        else if(klass == Float.class) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float)value);
+        }
+        else if(klass == Double.class) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double)value);
+        }
+        else if(klass == String.class) {
+            out.writeByte(TAG_STRING);
+            byte[] bytes = ((String)value).getBytes(StandardCharsets.UTF_8);
+            writeSize(out, bytes.length);
+            out.write(bytes);
+        }
+        else if(klass == ArrayList.class || klass == FIXED_LIST_CLASS) {
+            out.writeByte((klass == ArrayList.class)?TAG_ARRAY_LIST:TAG_FIXED_LIST);
+            List<?> list = (List<?>)value;
+            writeSize(out, list.size());
+            for(Object o : list) {
+                writeValue(out, o);
+            }
+        }
+        else if(klass == double[].class) {
+            out.writeByte(TAG_DOUBLE_ARRAY);
+            double[] arr = (double[])value;
+            writeSize(out, arr.length);
+            for(double v : arr) {
+                out.writeDouble(v);
+            }
+        }
+        else if(klass == int[].class) {
+            out.writeByte(TAG_INT_ARRAY);
+            int[] arr = (int[])value;
+            writeSize(out, arr.length);
+            for(int v : arr) {
+                writeVarLong(out, zigZag(v));
+            }
+        }
+        else {
+            TypeCodec<Object> codec = getCodec(value);
+            if(codec != null) {
+                out.writeByte(TAG_CODEC);
+                writeCodecValue(out, codec, value);
+            }
+            else {
+                out.writeByte(TAG_OBJECT);
+                writeObject(out, value);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch(tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_INTEGER:
+                return (int)unZigZag(readVarLong(in));
+            case TAG_LONG:
+                return unZigZag(readVarLong(in));
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_STRING: {
+                byte[] bytes = new byte[readSize(in)];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            case TAG_ARRAY_LIST:
+            case TAG_FIXED_LIST: {
+                int n = readSize(in);
+                Object[] arr = new Object[n];
+                for(int i=0;i<n;i++) {
+                    arr[i] = readValue(in);
+                }
+                return (tag == TAG_ARRAY_LIST)?new ArrayList<>(Arrays.asList(arr)):Arrays.asList(arr);
+            }
+            case TAG_DOUBLE_ARRAY: {
+                double[] arr = new double[readSize(in)];
+                for(int i=0;i<arr.length;i++) {
+                    arr[i] = in.readDouble();
+                }
+                return arr;
+            }
+            case TAG_INT_ARRAY: {
+                int[] arr = new int[readSize(in)];
+                for(int i=0;i<arr.length;i++) {
+                    arr[i] = (int)unZigZag(readVarLong(in));
+                }
+                return arr;
+            }
+            case TAG_CODEC:
+                return readCodecValue(in);
+            case TAG_OBJECT:
+                return readObject(in);
+            default:
+                throw new StreamCorruptedException("Unknown value tag " + tag + ".");
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isCompact(Class<?> klass) {
+        return klass == Boolean.class || klass == Short.class || klass == Integer.class || klass == Long.class ||
+                klass == Float.class || klass == Double.class || klass == String.class || klass == List.class ||
+                klass == double[].class || klass == int[].class || Registry.BY_TYPE.containsKey(klass);
+    }
+
+    /**
+     * Checks whether the class is one of the immutable types which are encoded
+     * natively. Their shared references don't need to be preserved.
+     *
+     * @param klass
+     * @return
+     */
+    private static boolean isImmutable(Class<?> klass) {
+        return klass == Boolean.class || klass == Short.class || klass == Integer.class || klass == Long.class ||
+                klass == Float.class || klass == Double.class || klass == String.class;
+    }
+
+    /**
+     * Writes a non-negative size using a variable length encoding.
+     *
+     * @param out
+     * @param size
+     * @throws IOException
+     */
+    public static void writeSize(DataOutput out, int size) throws IOException {
+        if(size < 0) {
+            throw new IllegalArgumentException("The size can't be negative.");
+        }
+        writeVarLong(out, size);
+    }
+
+    /**
+     * Reads a size which was written with writeSize().
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static int readSize(DataInput in) throws IOException {
+        return (int)readVarLong(in);
+    }
+
+    /**
+     * Returns the codec of the object or null if the object is not supported
+     * by any codec.
+     *
+     * @param obj
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static TypeCodec<Object> getCodec(Object obj) {
+        TypeCodec<Object> codec = (TypeCodec<Object>)Registry.BY_TYPE.get(obj.getClass());
+        if(codec == null || !codec.canWrite(obj)) {
+            return null;
+        }
+        return codec;
+    }
+
+    /**
+     * Writes the id of the codec followed by the encoded object.
+     *
+     * @param out
+     * @param codec
+     * @param obj
+     * @throws IOException
+     */
+    private void writeCodecValue(DataOutput out, TypeCodec<Object> codec, Object obj) throws IOException {
+        writeSize(out, codec.getId());
+        codec.write(out, obj, this);
+    }
+
+    /**
+     * Reads an object which was written with writeCodecValue().
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    private Object readCodecValue(DataInput in) throws IOException {
+        int id = readSize(in);
+        TypeCodec<?> codec = Registry.BY_ID.get(id);
+        if(codec == null) {
+            throw new InvalidClassException("No TypeCodec is registered with id " + id + ".");
+        }
+        return codec.read(in, this);
+    }
+
+    /**
+     * Writes an object which is not supported natively. Within object streams the
+     * object is written in the same stream to preserve shared references.
+     *
+     * @param out
+     * @param obj
+     * @throws IOException
+     */
+    private void writeObject(DataOutput out, Object obj) throws IOException {
+        if(out instanceof ObjectOutput) {
+            ((ObjectOutput)out).writeObject(obj);
+        }
+        else {
+            byte[] arr = serialize(obj);
+            writeSize(out, arr.length);
+            out.write(arr);
+        }
+    }
+
+    /**
+     * Reads an object which was written with writeObject().
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    private Object readObject(DataInput in) throws IOException {
+        if(in instanceof ObjectInput) {
+            try {
+                return ((ObjectInput)in).readObject();
+            }
+            catch (ClassNotFoundException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        else {
+            byte[] arr = new byte[readSize(in)];
+            in.readFully(arr);
+            return deserialize(arr);
+        }
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarLong(DataOutput out, long v) throws IOException {
+        while((v & ~0x7FL) != 0) {
+            out.writeByte((int)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int)v);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            v |= (long)(b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length number.");
+    }
+
+    /**
+     * ObjectOutputStream which replaces all the objects that have a TypeCodec
+     * with an Envelope. Every object gets a single Envelope, so the objects
+     * which are referenced from several places are written only once and they
+     * are restored as a single object.
+     */
+    private static class CodecObjectOutputStream extends ObjectOutputStream {
+
+        private final Map<Object, Envelope> envelopes = new IdentityHashMap<>();
+
+        private CodecObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if(obj != null && !(obj instanceof Envelope) && getCodec(obj) != null) {
+                return envelopes.computeIfAbsent(obj, Envelope::new);
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Wrapper which stores the binary encoding of an object inside a Java
+     * Serialization stream and resolves back to the original object on read.
+     */
+    private static final class Envelope implements Externalizable {
+        private static final long serialVersionUID = 1L;
+
+        private static final BinarySerializer SERIALIZER = new BinarySerializer();
+
+        private Object value;
+
+        /**
+         * Public constructor required by the Externalizable interface.
+         */
+        public Envelope() {
+        }
+
+        private Envelope(Object value) {
+            this.value = value;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            SERIALIZER.writeCodecValue(out, getCodec(value), value);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            value = SERIALIZER.readCodecValue(in);
+        }
+
+        /**
+         * Replaces the Envelope with the decoded object.
+         *
+         * @return
+         */
+        private Object readResolve() {
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.storage.serializers;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+
+import java.io.*;
+
+/**
+ * Serializer which uses the standard Java Serialization.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class JavaSerializer implements ObjectSerializer {
+    private static final long serialVersionUID = 1L;
+
+    /** {@inheritDoc} */
+    @Override
+    public void serialize(Object obj, OutputStream out) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(obj);
+        oos.flush();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object deserialize(InputStream in) throws IOException {
+        try {
+            return new ObjectInputStream(in).readObject();
+        }
+        catch (ClassNotFoundException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeValue(DataOutput out, Object value) throws IOException {
+        byte[] arr = serialize(value);
+        out.writeInt(arr.length);
+        out.write(arr);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object readValue(DataInput in) throws IOException {
+        byte[] arr = new byte[in.readInt()];
+        in.readFully(arr);
+        return deserialize(arr);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isCompact(Class<?> klass) {
+        return false;
+    }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.storage.serializers;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A TypeCodec provides the compact binary encoding of a specific class for the
+ * BinarySerializer. The codecs are discovered with the ServiceLoader mechanism,
+ * so any module can register codecs for its own classes by listing them in the
+ * META-INF/services/com.datumbox.framework.common.storage.serializers.TypeCodec
+ * file. The ids of the codecs are written in the serialized data and thus they
+ * must be unique and must never change. The ids 1-15 are reserved for the common
+ * module.
+ *
+ * @param <T>
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public interface TypeCodec<T> {
+
+    /**
+     * Returns the unique id of the codec.
+     *
+     * @return
+     */
+    public int getId();
+
+    /**
+     * Returns the class which is encoded by the codec. Subclasses are not
+     * handled by the codec.
+     *
+     * @return
+     */
+    public Class<T> getType();
+
+    /**
+     * Checks whether the codec can encode the particular object without losing
+     * information. If not, the object is serialized with the default mechanism.
+     *
+     * @param obj
+     * @return
+     */
+    default public boolean canWrite(T obj) {
+        return true;
+    }
+
+    /**
+     * Writes the object in the output. Any nested value should be written with
+     * the writeValue() method of the provided serializer.
+     *
+     * @param out
+     * @param obj
+     * @param serializer
+     * @throws IOException
+     */
+    public void write(DataOutput out, T obj, ObjectSerializer serializer) throws IOException;
+
+    /**
+     * Reads an object from the input.
+     *
+     * @param in
+     * @param serializer
+     * @return
+     * @throws IOException
+     */
+    public T read(DataInput in, ObjectSerializer serializer) throws IOException;
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.concurrency;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for ThreadMethods.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class ThreadMethodsTest {
+
+    /**
+     * Test of batchedExecution method, of class ThreadMethods.
+     */
+    @Test
+    public void testBatchedExecution() {
+        ConcurrencyConfiguration concurrencyConfiguration = new ConcurrencyConfiguration();
+        AtomicInteger sum = new AtomicInteger();
+
+        ThreadMethods.batchedExecution(IntStream.range(0, 1000).boxed(), 7, batch -> batch.forEach(sum::addAndGet), concurrencyConfiguration);
+
+        assertEquals(999*1000/2, sum.get());
+    }
+
+    /**
+     * Test of batchedExecution method, of class ThreadMethods, when a batch throws an Error.
+     */
+    @Test
+    public void testBatchedExecutionPropagatesErrors() {
+        ConcurrencyConfiguration concurrencyConfiguration = new ConcurrencyConfiguration();
+
+        try {
+            ThreadMethods.batchedExecution(IntStream.range(0, 100).boxed(), 10, batch -> {
+                if(batch.contains(55)) {
+                    throw new AssertionError("failed batch");
+                }
+            }, concurrencyConfiguration);
+            fail("The Error of the batch should be thrown on the caller thread.");
+        }
+        catch (AssertionError ex) {
+            assertEquals("failed batch", ex.getMessage());
+        }
+
+        //the executor should still be usable after the failure
+        AtomicInteger count = new AtomicInteger();
+        ThreadMethods.throttledExecution(IntStream.range(0, 100).boxed(), i -> count.incrementAndGet(), concurrencyConfiguration);
+        assertEquals(100, count.get());
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.dataobjects;
+
+import com.datumbox.framework.common.storage.serializers.BinarySerializer;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for AssociativeArrayCodec.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class AssociativeArrayCodecTest {
+
+    /**
+     * Encodes the object with the BinarySerializer and decodes it back.
+     *
+     * @param obj
+     * @return
+     * @throws IOException
+     */
+    static Object roundTrip(Object obj) throws IOException {
+        BinarySerializer serializer = new BinarySerializer();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bos)) {
+            serializer.writeValue(out, obj);
+        }
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            return serializer.readValue(in);
+        }
+    }
+
+    /**
+     * Test of write and read methods, of class AssociativeArrayCodec.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        List<Map<Object, Object>> maps = Arrays.asList(
+            new LinkedHashMap<>(), new HashMap<>(), new TreeMap<>(),
+            new ConcurrentHashMap<>(), new ConcurrentSkipListMap<>()
+        );
+
+        for(Map<Object, Object> map : maps) {
+            map.put("c", 1.5);
+            map.put("a", Arrays.asList(1, "b"));
+            map.put("b", new AssociativeArray(new HashMap<>(Collections.singletonMap("d", 2L))));
+
+            AssociativeArray aa = new AssociativeArray(map);
+            AssociativeArray result = (AssociativeArray)roundTrip(aa);
+
+            assertEquals(aa, result);
+            assertEquals(map.getClass(), result.internalData.getClass());
+            if(map instanceof LinkedHashMap || map instanceof SortedMap) {
+                assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(result.internalData.keySet()));
+            }
+        }
+    }
+
+    /**
+     * Test of write and read methods with an unmodifiable map and null values,
+     * of class AssociativeArrayCodec.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteReadUnmodifiable() throws IOException {
+        AssociativeArray aa = new AssociativeArray();
+        aa.put(3, null);
+        aa.put(1, "x");
+        aa.put(2, 2.0);
+        AssociativeArray unmodifiable = AssociativeArray.copy2Unmodifiable(aa);
+
+        AssociativeArray result = (AssociativeArray)roundTrip(unmodifiable);
+        assertEquals(unmodifiable, result);
+        assertEquals(Arrays.asList(3, 1, 2), new ArrayList<>(result.keySet()));
+        try {
+            result.put(4, 4.0);
+            fail("The map should be unmodifiable.");
+        }
+        catch(UnsupportedOperationException ex) {
+            //expected
+        }
+    }
+
+    /**
+     * Test of write and read methods with a map which is not supported by the
+     * codec, of class AssociativeArrayCodec.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteReadUnsupportedMap() throws IOException {
+        Map<Object, Object> map = new TreeMap<>(Collections.reverseOrder());
+        map.put("a", 1);
+        map.put("b", 2);
+
+        AssociativeArray aa = new AssociativeArray(map);
+        AssociativeArray result = (AssociativeArray)roundTrip(aa);
+
+        assertEquals(aa, result);
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(result.keySet())); //written with the Java Serialization
+    }
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.dataobjects;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for DataTable2DCodec.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class DataTable2DCodecTest {
+
+    /**
+     * Test of write and read methods, of class DataTable2DCodec.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        DataTable2D table = new DataTable2D();
+        table.put2d("row1", "col1", 1.0);
+        table.put2d("row1", "col2", 2);
+        table.put2d(2, "col1", "text");
+        table.put2d(2, "col2", Arrays.asList(1, 2));
+
+        DataTable2D result = (DataTable2D)AssociativeArrayCodecTest.roundTrip(table);
+        assertEquals(table, result);
+        assertEquals(DataTable2D.class, result.getClass());
+        assertEquals(AssociativeArray.class, result.get("row1").getClass());
+        assertEquals(Arrays.asList("row1", 2), Arrays.asList(result.keySet().toArray()));
+
+        DataTable2D sorted = new DataTable2D(new TreeMap<>());
+        sorted.put2d("b", "x", 1.0);
+        sorted.put2d("a", "x", 2.0);
+        DataTable2D sortedResult = (DataTable2D)AssociativeArrayCodecTest.roundTrip(sorted);
+        assertEquals(sorted, sortedResult);
+        assertEquals(TreeMap.class, sortedResult.internalData.getClass());
+    }
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.common.storage.serializers;
+
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for BinarySerializer.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class BinarySerializerTest {
+
+    /**
+     * Writes the value with writeValue() and reads it back with readValue().
+     *
+     * @param serializer
+     * @param value
+     * @return
+     * @throws IOException
+     */
+    private static Object roundTrip(BinarySerializer serializer, Object value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bos)) {
+            serializer.writeValue(out, value);
+        }
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            Object result = serializer.readValue(in);
+            assertEquals(-1, in.read()); //the whole encoding is consumed
+            return result;
+        }
+    }
+
+    /**
+     * Test of writeValue and readValue methods with null, the primitive wrappers
+     * and the strings, of class BinarySerializer.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteReadPrimitives() throws IOException {
+        BinarySerializer serializer = new BinarySerializer();
+
+        List<Object> values = Arrays.asList(
+            null, true, false,
+            (short)0, Short.MIN_VALUE, Short.MAX_VALUE,
+            0, 1, -1, 300, Integer.MIN_VALUE, Integer.MAX_VALUE,
+            0L, -123456789012L, Long.MIN_VALUE, Long.MAX_VALUE,
+            0.0f, -1.5f, Float.MAX_VALUE, Float.NaN,
+            0.0, -0.0, Math.PI, Double.MIN_VALUE, Double.NEGATIVE_INFINITY, Double.NaN,
+            "", "text", "é中😀",
+            'c', (byte)7, new Date(0L)
+        );
+
+        for(Object value : values) {
+            Object result = roundTrip(serializer, value);
+            assertEquals(value, result);
+            if(value != null) {
+                assertEquals(value.getClass(), result.getClass());
+            }
+        }
+    }
+
+    /**
+     * Test of writeValue and readValue methods with arrays, lists and maps,
+     * of class BinarySerializer.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteReadCollections() throws IOException {
+        BinarySerializer serializer = new BinarySerializer();
+
+        double[] doubles = {1.0, -2.5, Double.MAX_VALUE};
+        assertArrayEquals(doubles, (double[])roundTrip(serializer, doubles), 0.0);
+        assertArrayEquals(new double[0], (double[])roundTrip(serializer, new double[0]), 0.0);
+
+        int[] ints = {0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        assertArrayEquals(ints, (int[])roundTrip(serializer, ints));
+
+        ArrayList<Object> list = new ArrayList<>(Arrays.asList(1, "a", null, Arrays.asList(2.0, "b")));
+        Object result = roundTrip(serializer, list);
+        assertEquals(list, result);
+        assertEquals(ArrayList.class, result.getClass());
+        assertEquals(Arrays.asList(2.0, "b").getClass(), ((List<?>)result).get(3).getClass());
+
+        Map<Object, Object> inner = new HashMap<>();
+        inner.put("x", 1.0);
+        inner.put(2, Arrays.asList(3, 4));
+        Map<Object, Object> map = new TreeMap<>();
+        map.put("inner", inner);
+        map.put("list", new ArrayList<>(Arrays.asList(inner, null)));
+        map.put("empty", new HashMap<>());
+        assertEquals(map, roundTrip(serializer, map));
+    }
+
+    /**
+     * Test of writeValue and readValue methods with values which have a TypeCodec,
+     * of class BinarySerializer.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteReadCodecs() throws IOException {
+        BinarySerializer serializer = new BinarySerializer();
+
+        AssociativeArray nested = new AssociativeArray();
+        nested.put("a", 1);
+        AssociativeArray aa = new AssociativeArray();
+        aa.put("nested", nested);
+        aa.put(1, 2.0);
+        aa.put("list", new ArrayList<>(Arrays.asList(nested, "b")));
+
+        Object result = roundTrip(serializer, aa);
+        assertEquals(aa, result);
+        assertEquals(AssociativeArray.class, ((AssociativeArray)result).get("nested").getClass());
+
+        assertTrue(serializer.isCompact(AssociativeArray.class));
+        assertFalse(serializer.isCompact(Object.class));
+    }
+
+    /**
+     * Test of serialize and deserialize methods, of class BinarySerializer.
+     */
+    @Test
+    public void testSerializeDeserialize() {
+        BinarySerializer serializer = new BinarySerializer();
+
+        AssociativeArray shared = new AssociativeArray();
+        shared.put("key", 1.0);
+        HashMap<String, Object> graph = new HashMap<>();
+        graph.put("first", shared);
+        graph.put("second", shared);
+        graph.put("values", new double[]{1.0, 2.0});
+        graph.put("null", null);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = (Map<String, Object>)serializer.deserialize(serializer.serialize(graph));
+        assertEquals(graph.keySet(), result.keySet());
+        assertEquals(shared, result.get("first"));
+        assertEquals(shared, result.get("second"));
+        assertArrayEquals(new double[]{1.0, 2.0}, (double[])result.get("values"), 0.0);
+        assertNull(result.get("null"));
+    }
+
+    /**
+     * Test of serialize and deserialize methods with objects which are referenced
+     * from several places of the graph, of class BinarySerializer.
+     */
+    @Test
+    public void testSerializeDeserializeSharedReferences() {
+        BinarySerializer serializer = new BinarySerializer();
+
+        AssociativeArray shared = new AssociativeArray();
+        shared.put("key", 1.0);
+        ArrayList<Object> sharedList = new ArrayList<>(Arrays.asList(1, 2));
+        AssociativeArray parent = new AssociativeArray();
+        parent.put("first", shared);
+        parent.put("second", shared);
+        parent.put("list1", sharedList);
+        parent.put("list2", sharedList);
+        HashMap<String, Object> graph = new HashMap<>();
+        graph.put("parent", parent);
+        graph.put("shared", shared);
+        graph.put("sharedList", sharedList);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = (Map<String, Object>)serializer.deserialize(serializer.serialize(graph));
+        AssociativeArray resultParent = (AssociativeArray)result.get("parent");
+        assertEquals(parent, resultParent);
+        assertSame(result.get("shared"), resultParent.get("first"));
+        assertSame(result.get("shared"), resultParent.get("second"));
+        assertSame(result.get("sharedList"), resultParent.get("list1"));
+        assertSame(result.get("sharedList"), resultParent.get("list2"));
+    }
+
+    /**
+     * Test of deserialize method with objects written by the JavaSerializer,
+     * of class BinarySerializer.
+     */
+    @Test
+    public void testDeserializeJavaSerialization() {
+        AssociativeArray aa = new AssociativeArray();
+        aa.put("key", Arrays.asList(1, 2));
+
+        assertEquals(aa, new BinarySerializer().deserialize(new JavaSerializer().serialize(aa)));
+    }
+
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.dataobjects;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.linear.*;
+
+import java.util.Arrays;
+
+/**
+ * The CSRRealMatrix class is a sparse RealMatrix implementation which stores the
+ * non-zero values in Compressed Sparse Row format: the values and the column
+ * indices of every row are kept in consecutive positions of primitive arrays
+ * sorted by column. Reading entries, multiplying and transposing only touch the
+ * non-zero values. Setting an entry which does not exist requires shifting the
+ * following values, so the matrix should be built with all its entries and it
+ * is best suited for read-mostly usage.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class CSRRealMatrix extends AbstractRealMatrix implements SparseRealMatrix {
+
+    /**
+     * The number of rows of the matrix.
+     */
+    private final int rowDimension;
+
+    /**
+     * The number of columns of the matrix.
+     */
+    private final int columnDimension;
+
+    /**
+     * The position of the first value of every row; the last element is the
+     * number of stored values.
+     */
+    private final int[] rowPointers;
+
+    /**
+     * The column indices of the stored values.
+     */
+    private int[] columnIndices;
+
+    /**
+     * The stored values.
+     */
+    private double[] values;
+
+    /**
+     * Public constructor which creates an empty matrix with the provided
+     * dimensions.
+     *
+     * @param rowDimension
+     * @param columnDimension
+     * @throws NotStrictlyPositiveException
+     */
+    public CSRRealMatrix(int rowDimension, int columnDimension) throws NotStrictlyPositiveException {
+        this(rowDimension, columnDimension, new int[rowDimension+1], new int[0], new double[0]);
+    }
+
+    /**
+     * Package-private constructor which receives the CSR arrays. The column
+     * indices of every row must be sorted in ascending order.
+     *
+     * @param rowDimension
+     * @param columnDimension
+     * @param rowPointers
+     * @param columnIndices
+     * @param values
+     * @throws NotStrictlyPositiveException
+     */
+    CSRRealMatrix(int rowDimension, int columnDimension, int[] rowPointers, int[] columnIndices, double[] values) throws NotStrictlyPositiveException {
+        super(rowDimension, columnDimension);
+        this.rowDimension = rowDimension;
+        this.columnDimension = columnDimension;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+
+    /**
+     * Builds a CSR matrix from the entries of a matrix in coordinate format.
+     * The coordinates don't need to be sorted but they must be unique.
+     *
+     * @param rowDimension
+     * @param columnDimension
+     * @param rows
+     * @param columns
+     * @param entries
+     * @param size
+     * @return
+     */
+    static CSRRealMatrix fromCoordinates(int rowDimension, int columnDimension, int[] rows, int[] columns, double[] entries, int size) {
+        int[] rowPointers = new int[rowDimension+1];
+        for(int i=0;i<size;i++) {
+            rowPointers[rows[i]+1]++;
+        }
+        for(int row=0;row<rowDimension;row++) {
+            rowPointers[row+1] += rowPointers[row];
+        }
+
+        int[] columnIndices = new int[size];
+        double[] values = new double[size];
+        int[] next = Arrays.copyOf(rowPointers, rowDimension);
+        for(int i=0;i<size;i++) {
+            int pos = next[rows[i]]++;
+            columnIndices[pos] = columns[i];
+            values[pos] = entries[i];
+        }
+
+        //sort the columns within every row with insertion sort; the rows are typically short and almost sorted
+        for(int row=0;row<rowDimension;row++) {
+            for(int i=rowPointers[row]+1;i<rowPointers[row+1];i++) {
+                int column = columnIndices[i];
+                double value = values[i];
+                int j = i-1;
+                while(j>=rowPointers[row] && columnIndices[j]>column) {
+                    columnIndices[j+1] = columnIndices[j];
+                    values[j+1] = values[j];
+                    j--;
+                }
+                columnIndices[j+1] = column;
+                values[j+1] = value;
+            }
+        }
+
+        return new CSRRealMatrix(rowDimension, columnDimension, rowPointers, columnIndices, values);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RealMatrix createMatrix(int rowDimension, int columnDimension) throws NotStrictlyPositiveException {
+        return new OpenMapRealMatrix(rowDimension, columnDimension);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getRowDimension() {
+        return rowDimension;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getColumnDimension() {
+        return columnDimension;
+    }
+
+    /**
+     * Returns the number of values which are stored in the matrix.
+     *
+     * @return
+     */
+    public int getNonZeroCount() {
+        return rowPointers[rowDimension];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getFrobeniusNorm() {
+        double sum = 0.0;
+        for(int i=0;i<getNonZeroCount();i++) {
+            sum += values[i]*values[i];
+        }
+        return Math.sqrt(sum);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RealMatrix copy() {
+        return new CSRRealMatrix(rowDimension, columnDimension, rowPointers.clone(), Arrays.copyOf(columnIndices, getNonZeroCount()), Arrays.copyOf(values, getNonZeroCount()));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getEntry(int row, int column) throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        int pos = search(row, column);
+        return pos>=0?values[pos]:0.0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setEntry(int row, int column, double value) throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        int pos = search(row, column);
+        if(pos >= 0) {
+            values[pos] = value; //an explicit 0.0 is kept to avoid shifting the arrays
+            return;
+        }
+        else if(value == 0.0) {
+            return;
+        }
+
+        //insert a new value at the insertion point
+        pos = -(pos + 1);
+        int size = getNonZeroCount();
+        if(size == values.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            columnIndices = Arrays.copyOf(columnIndices, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        System.arraycopy(columnIndices, pos, columnIndices, pos+1, size-pos);
+        System.arraycopy(values, pos, values, pos+1, size-pos);
+        columnIndices[pos] = column;
+        values[pos] = value;
+        for(int r=row+1;r<=rowDimension;r++) {
+            rowPointers[r]++;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RealMatrix transpose() {
+        int size = getNonZeroCount();
+        int[] tRowPointers = new int[columnDimension+1];
+        for(int i=0;i<size;i++) {
+            tRowPointers[columnIndices[i]+1]++;
+        }
+        for(int column=0;column<columnDimension;column++) {
+            tRowPointers[column+1] += tRowPointers[column];
+        }
+
+        //iterating the rows in order keeps the columns of the transposed matrix sorted
+        int[] tColumnIndices = new int[size];
+        double[] tValues = new double[size];
+        int[] next = Arrays.copyOf(tRowPointers, columnDimension);
+        for(int row=0;row<rowDimension;row++) {
+            for(int i=rowPointers[row];i<rowPointers[row+1];i++) {
+                int pos = next[columnIndices[i]]++;
+                tColumnIndices[pos] = row;
+                tValues[pos] = values[i];
+            }
+        }
+
+        return new CSRRealMatrix(columnDimension, rowDimension, tRowPointers, tColumnIndices, tValues);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] operate(double[] v) throws DimensionMismatchException {
+        if(v.length != columnDimension) {
+            throw new DimensionMismatchException(v.length, columnDimension);
+        }
+
+        double[] out = new double[rowDimension];
+        for(int row=0;row<rowDimension;row++) {
+            double sum = 0.0;
+            for(int i=rowPointers[row];i<rowPointers[row+1];i++) {
+                sum += values[i]*v[columnIndices[i]];
+            }
+            out[row] = sum;
+        }
+        return out;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RealVector operate(RealVector v) throws DimensionMismatchException {
+        return new ArrayRealVector(operate(v.toArray()), false);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] preMultiply(double[] v) throws DimensionMismatchException {
+        if(v.length != rowDimension) {
+            throw new DimensionMismatchException(v.length, rowDimension);
+        }
+
+        double[] out = new double[columnDimension];
+        for(int row=0;row<rowDimension;row++) {
+            double w = v[row];
+            if(w != 0.0) {
+                for(int i=rowPointers[row];i<rowPointers[row+1];i++) {
+                    out[columnIndices[i]] += values[i]*w;
+                }
+            }
+        }
+        return out;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RealVector preMultiply(RealVector v) throws DimensionMismatchException {
+        return new ArrayRealVector(preMultiply(v.toArray()), false);
+    }
+
+    /**
+     * Multiplies the matrix with the provided one. The product is stored in
+     * a dense BlockRealMatrix and it is calculated by accumulating, for every
+     * row, the rows of the other matrix which correspond to the non-zero
+     * values.
+     *
+     * @param m
+     * @return
+     * @throws DimensionMismatchException
+     */
+    @Override
+    public RealMatrix multiply(RealMatrix m) throws DimensionMismatchException {
+        MatrixUtils.checkMultiplicationCompatible(this, m);
+
+        int outColumns = m.getColumnDimension();
+        double[][] other = m.getData();
+        double[][] out = new double[rowDimension][outColumns];
+        for(int row=0;row<rowDimension;row++) {
+            double[] outRow = out[row];
+            for(int i=rowPointers[row];i<rowPointers[row+1];i++) {
+                double value = values[i];
+                double[] otherRow = other[columnIndices[i]];
+                for(int j=0;j<outColumns;j++) {
+                    outRow[j] += value*otherRow[j];
+                }
+            }
+        }
+        return new BlockRealMatrix(out);
+    }
+
+    /**
+     * Returns the position of the value in the arrays or (-(insertion point) - 1)
+     * if it is not stored.
+     *
+     * @param row
+     * @param column
+     * @return
+     */
+    private int search(int row, int column) {
+        return Arrays.binarySearch(columnIndices, rowPointers[row], rowPointers[row+1], column);
+    }
+}
@@ -0,0 +1,802 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.dataobjects;
+
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+import com.datumbox.framework.common.dataobjects.FlatDataList;
+import com.datumbox.framework.common.dataobjects.TypeInference;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Columnar backing for the Records of a Dataframe. Instead of keeping one
+ * AssociativeArray of boxed values per row, the values of every column are stored
+ * in typed vectors: Doubles in double arrays, Booleans in bitsets and all the
+ * categorical/ordinal values in int arrays which are encoded with a dictionary
+ * shared by all the columns. Other values fall back to plain Object arrays.
+ * The Records are materialized on the fly when they are requested, so the map
+ * can be used transparently behind the Collection API of the Dataframe.
+ *
+ * The layout is designed for dense tabular data (such as the ones parsed from
+ * CSV files) which have a relatively small number of columns and many rows. The
+ * row ids are used directly as positions in the column vectors, so they are
+ * expected to be dense. All the public methods are thread-safe.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+class ColumnarRecordMap extends AbstractMap<Integer, Record> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Consumer of the non-null numeric cells of a column.
+     */
+    interface DoubleCellConsumer {
+
+        /**
+         * Accepts the value of a cell along with the position of its row in
+         * ascending id order.
+         *
+         * @param position
+         * @param value
+         */
+        void accept(int position, double value);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ColumnDictionary dictionary = new ColumnDictionary();
+
+    private final Map<Object, Column> xColumns = new LinkedHashMap<>();
+
+    private Column yColumn;
+
+    private Column yPredictedColumn;
+
+    private AssociativeArray[] yPredictedProbabilities;
+
+    private final BitSet rows = new BitSet();
+
+    private int size = 0;
+
+    private int capacity = INITIAL_CAPACITY;
+
+    /**
+     * Package-private constructor.
+     */
+    ColumnarRecordMap() {
+        clear();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return key instanceof Integer && (Integer)key >= 0 && rows.get((Integer)key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized Record get(Object key) {
+        if(!containsKey(key)) {
+            return null;
+        }
+        return materialize((Integer)key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized Record put(Integer key, Record r) {
+        if(key < 0) {
+            throw new IllegalArgumentException("The record id can't be negative.");
+        }
+        Record previous = get(key);
+        ensureCapacity(key+1);
+
+        AssociativeArray x = r.getX();
+        Iterator<Map.Entry<Object, Column>> it = xColumns.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Object, Column> e = it.next();
+            if(!x.containsKey(e.getKey())) {
+                e.getValue().unset(key);
+                if(e.getValue().count == 0) {
+                    it.remove(); //drop the columns that no longer have values
+                }
+            }
+        }
+        for(Map.Entry<Object, Object> e : x.entrySet()) {
+            Object column = e.getKey();
+            xColumns.put(column, store(xColumns.get(column), key, e.getValue()));
+        }
+
+        yColumn = store(yColumn, key, r.getY());
+        yPredictedColumn = store(yPredictedColumn, key, r.getYPredicted());
+        if(r.getYPredictedProbabilities() != null) {
+            if(yPredictedProbabilities == null) {
+                yPredictedProbabilities = new AssociativeArray[capacity];
+            }
+            yPredictedProbabilities[key] = r.getYPredictedProbabilities();
+        }
+        else if(yPredictedProbabilities != null) {
+            yPredictedProbabilities[key] = null;
+        }
+
+        if(!rows.get(key)) {
+            rows.set(key);
+            ++size;
+        }
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized Record remove(Object key) {
+        if(!containsKey(key)) {
+            return null;
+        }
+        int row = (Integer)key;
+        Record previous = materialize(row);
+
+        Iterator<Column> it = xColumns.values().iterator();
+        while(it.hasNext()) {
+            Column c = it.next();
+            c.unset(row);
+            if(c.count == 0) {
+                it.remove();
+            }
+        }
+        if(yColumn != null) {
+            yColumn.unset(row);
+        }
+        if(yPredictedColumn != null) {
+            yPredictedColumn.unset(row);
+        }
+        if(yPredictedProbabilities != null) {
+            yPredictedProbabilities[row] = null;
+        }
+
+        rows.clear(row);
+        --size;
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void clear() {
+        dictionary.clear();
+        xColumns.clear();
+        capacity = INITIAL_CAPACITY;
+        yColumn = null;
+        yPredictedColumn = null;
+        yPredictedProbabilities = null;
+        rows.clear();
+        size = 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new RowIterator<Integer>() {
+                    @Override
+                    protected Integer read(int row) {
+                        return row;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return ColumnarRecordMap.this.size();
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Map.Entry<Integer, Record>> entrySet() {
+        return new AbstractSet<Map.Entry<Integer, Record>>() {
+            @Override
+            public Iterator<Map.Entry<Integer, Record>> iterator() {
+                return new RowIterator<Map.Entry<Integer, Record>>() {
+                    @Override
+                    protected Map.Entry<Integer, Record> read(int row) {
+                        return new AbstractMap.SimpleImmutableEntry<>(row, materialize(row));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ColumnarRecordMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the values of a particular column in ascending record id order.
+     * Rows which don't contain the column have null values.
+     *
+     * @param column
+     * @return
+     */
+    synchronized FlatDataList getXColumn(Object column) {
+        return toFlatDataList(xColumns.get(column));
+    }
+
+    /**
+     * Returns the values of the response variable in ascending record id order.
+     *
+     * @return
+     */
+    synchronized FlatDataList getYColumn() {
+        return toFlatDataList(yColumn);
+    }
+
+    /**
+     * Returns the names of the columns that are currently stored.
+     *
+     * @return
+     */
+    synchronized List<Object> getXColumnNames() {
+        return new ArrayList<>(xColumns.keySet());
+    }
+
+    /**
+     * Passes all the non-null values of the column, converted to double, to the
+     * provided consumer without materializing the Records.
+     *
+     * @param column
+     * @param consumer
+     */
+    synchronized void forEachDouble(Object column, DoubleCellConsumer consumer) {
+        Column c = xColumns.get(column);
+        if(c == null) {
+            return;
+        }
+        int position = 0;
+        for(int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row+1)) {
+            if(c.keys.get(row) && !c.isNull(row)) {
+                consumer.accept(position, c.getDouble(row));
+            }
+            ++position;
+        }
+    }
+
+    /**
+     * Builds the Record which is stored on the provided row.
+     *
+     * @param row
+     * @return
+     */
+    private Record materialize(int row) {
+        AssociativeArray x = new AssociativeArray();
+        for(Map.Entry<Object, Column> e : xColumns.entrySet()) {
+            Column c = e.getValue();
+            if(c.keys.get(row)) {
+                x.put(e.getKey(), c.get(row));
+            }
+        }
+        AssociativeArray probabilities = (yPredictedProbabilities != null)?yPredictedProbabilities[row]:null;
+        return new Record(x, valueOf(yColumn, row), valueOf(yPredictedColumn, row), probabilities);
+    }
+
+    /**
+     * Returns the value of the column on the provided row or null if the row
+     * does not contain the column.
+     *
+     * @param c
+     * @param row
+     * @return
+     */
+    private static Object valueOf(Column c, int row) {
+        return (c != null && c.keys.get(row))?c.get(row):null;
+    }
+
+    /**
+     * Copies the values of a column into a FlatDataList.
+     *
+     * @param c
+     * @return
+     */
+    private FlatDataList toFlatDataList(Column c) {
+        List<Object> values = new ArrayList<>(size);
+        for(int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row+1)) {
+            values.add(valueOf(c, row));
+        }
+        return new FlatDataList(values);
+    }
+
+    /**
+     * Grows all the column vectors so that they can hold the provided number of rows.
+     *
+     * @param minCapacity
+     */
+    private void ensureCapacity(int minCapacity) {
+        if(minCapacity <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(minCapacity, capacity + (capacity >> 1));
+        for(Column c : xColumns.values()) {
+            c.resize(newCapacity);
+        }
+        if(yColumn != null) {
+            yColumn.resize(newCapacity);
+        }
+        if(yPredictedColumn != null) {
+            yPredictedColumn.resize(newCapacity);
+        }
+        if(yPredictedProbabilities != null) {
+            yPredictedProbabilities = Arrays.copyOf(yPredictedProbabilities, newCapacity);
+        }
+        capacity = newCapacity;
+    }
+
+    /**
+     * Stores the value on the provided column and returns the column that holds it.
+     * If the value does not fit the type of the column, the column is converted to
+     * the type of the value when it contains only nulls or to a generic column
+     * otherwise.
+     *
+     * @param c
+     * @param row
+     * @param value
+     * @return
+     */
+    private Column store(Column c, int row, Object value) {
+        if(c == null) {
+            c = newColumn(value);
+        }
+        if(!c.set(row, value)) {
+            Column converted = c.hasValues()?new ObjectColumn(capacity):newColumn(value);
+            for(int r = c.keys.nextSetBit(0); r >= 0; r = c.keys.nextSetBit(r+1)) {
+                converted.set(r, c.get(r));
+            }
+            converted.set(row, value);
+            c = converted;
+        }
+        return c;
+    }
+
+    /**
+     * Selects the most compact column type for the provided value.
+     *
+     * @param value
+     * @return
+     */
+    private Column newColumn(Object value) {
+        if(value instanceof Double) {
+            return new DoubleColumn(capacity);
+        }
+        else if(value instanceof Boolean) {
+            return new BooleanColumn();
+        }
+        else if(value == null || TypeInference.getDataType(value) != TypeInference.DataType.NUMERICAL) {
+            return new DictionaryColumn(capacity, dictionary);
+        }
+        return new ObjectColumn(capacity);
+    }
+
+    /**
+     * Iterates through the rows in ascending id order. The iterator is weakly
+     * consistent and does not fail on concurrent modifications.
+     *
+     * @param <T>
+     */
+    private abstract class RowIterator<T> implements Iterator<T> {
+        private int next;
+        private int last = -1;
+
+        private RowIterator() {
+            synchronized(ColumnarRecordMap.this) {
+                next = rows.nextSetBit(0);
+            }
+        }
+
+        /**
+         * Reads the element of the provided row.
+         *
+         * @param row
+         * @return
+         */
+        protected abstract T read(int row);
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T next() {
+            synchronized(ColumnarRecordMap.this) {
+                if(next < 0) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = rows.nextSetBit(next+1);
+                return read(last);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            if(last < 0) {
+                throw new IllegalStateException();
+            }
+            ColumnarRecordMap.this.remove(last);
+            last = -1;
+        }
+    }
+
+    /**
+     * Dictionary which encodes the categorical values of all columns to ints.
+     */
+    private static class ColumnDictionary implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<Object, Integer> ids = new HashMap<>();
+
+        private final List<Object> values = new ArrayList<>();
+
+        /**
+         * Returns the code of the value, adding it to the dictionary if necessary.
+         *
+         * @param value
+         * @return
+         */
+        private int encode(Object value) {
+            Integer id = ids.get(value);
+            if(id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        /**
+         * Returns the value of the provided code.
+         *
+         * @param id
+         * @return
+         */
+        private Object decode(int id) {
+            return values.get(id);
+        }
+
+        /**
+         * Removes all the values of the dictionary.
+         */
+        private void clear() {
+            ids.clear();
+            values.clear();
+        }
+    }
+
+    /**
+     * Base class of all column vectors. It keeps track of which rows contain the
+     * column; the values are stored by the subclasses.
+     */
+    private static abstract class Column implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        protected final BitSet keys = new BitSet();
+
+        protected int count = 0;
+
+        /**
+         * Stores the value on the row. Returns false if the value is not supported
+         * by the column type.
+         *
+         * @param row
+         * @param value
+         * @return
+         */
+        protected boolean set(int row, Object value) {
+            if(!setValue(row, value)) {
+                return false;
+            }
+            if(!keys.get(row)) {
+                keys.set(row);
+                ++count;
+            }
+            return true;
+        }
+
+        /**
+         * Removes the value from the row.
+         *
+         * @param row
+         */
+        protected void unset(int row) {
+            if(keys.get(row)) {
+                keys.clear(row);
+                --count;
+                setValue(row, null);
+            }
+        }
+
+        /**
+         * Checks whether the column contains at least one non-null value.
+         *
+         * @return
+         */
+        protected boolean hasValues() {
+            for(int row = keys.nextSetBit(0); row >= 0; row = keys.nextSetBit(row+1)) {
+                if(!isNull(row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the value of the row converted to double.
+         *
+         * @param row
+         * @return
+         */
+        protected double getDouble(int row) {
+            return TypeInference.toDouble(get(row));
+        }
+
+        /**
+         * Stores the value on the row without updating the keys.
+         *
+         * @param row
+         * @param value
+         * @return
+         */
+        protected abstract boolean setValue(int row, Object value);
+
+        /**
+         * Returns the value of the row.
+         *
+         * @param row
+         * @return
+         */
+        protected abstract Object get(int row);
+
+        /**
+         * Checks whether the value of the row is null.
+         *
+         * @param row
+         * @return
+         */
+        protected abstract boolean isNull(int row);
+
+        /**
+         * Changes the capacity of the column.
+         *
+         * @param capacity
+         */
+        protected abstract void resize(int capacity);
+    }
+
+    /**
+     * Column which stores Double values in a primitive array.
+     */
+    private static class DoubleColumn extends Column {
+        private static final long serialVersionUID = 1L;
+
+        private double[] values;
+
+        private final BitSet nulls = new BitSet();
+
+        private DoubleColumn(int capacity) {
+            values = new double[capacity];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean setValue(int row, Object value) {
+            if(value == null) {
+                nulls.set(row);
+                values[row] = 0.0;
+                return true;
+            }
+            else if(value instanceof Double) {
+                nulls.clear(row);
+                values[row] = (Double)value;
+                return true;
+            }
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Object get(int row) {
+            return nulls.get(row)?null:values[row];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected double getDouble(int row) {
+            return values[row];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    /**
+     * Column which stores Boolean values in bitsets.
+     */
+    private static class BooleanColumn extends Column {
+        private static final long serialVersionUID = 1L;
+
+        private final BitSet values = new BitSet();
+
+        private final BitSet nulls = new BitSet();
+
+        private BooleanColumn() {
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean setValue(int row, Object value) {
+            if(value == null) {
+                nulls.set(row);
+                values.clear(row);
+                return true;
+            }
+            else if(value instanceof Boolean) {
+                nulls.clear(row);
+                values.set(row, (Boolean)value);
+                return true;
+            }
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Object get(int row) {
+            return nulls.get(row)?null:values.get(row);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected double getDouble(int row) {
+            return values.get(row)?1.0:0.0;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void resize(int capacity) {
+            //bitsets grow automatically
+        }
+    }
+
+    /**
+     * Column which stores categorical and ordinal values as dictionary codes.
+     */
+    private static class DictionaryColumn extends Column {
+        private static final long serialVersionUID = 1L;
+
+        private static final int NULL_CODE = -1;
+
+        private int[] codes;
+
+        private final ColumnDictionary dictionary;
+
+        private DictionaryColumn(int capacity, ColumnDictionary dictionary) {
+            codes = new int[capacity];
+            this.dictionary = dictionary;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean setValue(int row, Object value) {
+            if(value == null) {
+                codes[row] = NULL_CODE;
+                return true;
+            }
+            else if(value instanceof Double || value instanceof Boolean || TypeInference.getDataType(value) == TypeInference.DataType.NUMERICAL) {
+                return false;
+            }
+            codes[row] = dictionary.encode(value);
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Object get(int row) {
+            int code = codes[row];
+            return (code == NULL_CODE)?null:dictionary.decode(code);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean isNull(int row) {
+            return codes[row] == NULL_CODE;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void resize(int capacity) {
+            codes = Arrays.copyOf(codes, capacity);
+        }
+    }
+
+    /**
+     * Generic column which stores the values as Objects. Used when the values of
+     * a column have mixed types.
+     */
+    private static class ObjectColumn extends Column {
+        private static final long serialVersionUID = 1L;
+
+        private Object[] values;
+
+        private ObjectColumn(int capacity) {
+            values = new Object[capacity];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean setValue(int row, Object value) {
+            values[row] = value;
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Object get(int row) {
+            return values[row];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+}
@@ -69,6 +69,16 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
      */
     public static class Builder {
 
+        /**
+         * The number of rows which are converted to Records by every parsing task.
+         */
+        private static final int PARSING_BATCH_SIZE = 1000;
+
+        /**
+         * The size of the buffer used when reading CSV files.
+         */
+        private static final int READER_BUFFER_SIZE = 1 << 16;
+
         /**
          * It builds a Dataframe object from a provided list of text files. The data
          * map should have as index the names of each class and as values the URIs
@@ -98,17 +108,23 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
 
                 try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(new File(datasetURI)), "UTF8"))) {
                     final int baseCounter = dataset.size(); //because we read multiple files we need to keep track of all records added earlier
-                    ThreadMethods.throttledExecution(StreamMethods.enumerate(br.lines()), e -> {
-                        Integer rId = baseCounter + e.getKey();
-                        String line = e.getValue();
-
-                        AssociativeArray xData = new AssociativeArray(
-                                textExtractor.extract(StringCleaner.clear(line))
-                        );
-                        Record r = new Record(xData, theClass);
+                    ThreadMethods.batchedExecution(StreamMethods.enumerate(br.lines()), PARSING_BATCH_SIZE, batch -> {
+                        List<Record> records = new ArrayList<>(batch.size());
+                        for(Map.Entry<Integer, String> e : batch) {
+                            Integer rId = baseCounter + e.getKey();
+                            String line = e.getValue();
+
+                            AssociativeArray xData = new AssociativeArray(
+                                    textExtractor.extract(StringCleaner.clear(line))
+                            );
+                            Record r = new Record(xData, theClass);
+
+                            dataset._unsafe_set(rId, r);
+                            records.add(r);
+                        }
 
-                        //we call below the recalculateMeta()
-                        dataset.set(rId, r);
+                        //update the meta once for the whole batch
+                        dataset.updateMeta(records);
                     }, configuration.getConcurrencyConfiguration());
                 }
                 catch (IOException ex) {
@@ -143,6 +159,30 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
          */
         public static Dataframe parseCSVFile(Reader reader, String yVariable, LinkedHashMap<String, TypeInference.DataType> headerDataTypes,
                                              char delimiter, char quote, String recordSeparator, Long skip, Long limit, Configuration configuration) {
+            return parseCSVFile(reader, yVariable, headerDataTypes, delimiter, quote, recordSeparator, skip, limit, configuration, false);
+        }
+
+        /**
+         * It parses a CSV file and returns a Dataframe. When the columnar flag
+         * is set, the Records are stored in typed column vectors instead of
+         * row objects, which significantly reduces the memory footprint of large
+         * tabular files.
+         *
+         * @param reader
+         * @param yVariable
+         * @param headerDataTypes
+         * @param delimiter
+         * @param quote
+         * @param recordSeparator
+         * @param skip
+         * @param limit
+         * @param configuration
+         * @param columnar
+         * @return
+         * @see #parseCSVFile(Reader, String, LinkedHashMap, char, char, String, Long, Long, Configuration)
+         */
+        public static Dataframe parseCSVFile(Reader reader, String yVariable, LinkedHashMap<String, TypeInference.DataType> headerDataTypes,
+                                             char delimiter, char quote, String recordSeparator, Long skip, Long limit, Configuration configuration, boolean columnar) {
             Logger logger = LoggerFactory.getLogger(Dataframe.Builder.class);
 
             if(skip == null) {
@@ -162,7 +202,7 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
             TypeInference.DataType yDataType = headerDataTypes.get(yVariable);
             Map<String, TypeInference.DataType> xDataTypes = new HashMap<>(headerDataTypes); //copy header types
             xDataTypes.remove(yVariable); //remove the response variable from xDataTypes
-            Dataframe dataset = new Dataframe(configuration, yDataType, xDataTypes); //use the private constructor to pass DataTypes directly and avoid updating them on the fly
+            Dataframe dataset = new Dataframe(configuration, columnar, yDataType, xDataTypes); //use the private constructor to pass DataTypes directly and avoid updating them on the fly
 
 
             CSVFormat format = CSVFormat
@@ -172,35 +212,38 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
                     .withQuote(quote)
                     .withRecordSeparator(recordSeparator);
 
-            try (final CSVParser parser = new CSVParser(reader, format)) {
-                ThreadMethods.throttledExecution(StreamMethods.enumerate(StreamMethods.stream(parser.spliterator(), false)).skip(skip).limit(limit), e -> {
-                    Integer rId = e.getKey();
-                    CSVRecord row = e.getValue();
+            //the parser tokenizes the rows sequentially and the batches of rows are converted to Records in parallel
+            try (final CSVParser parser = new CSVParser(new BufferedReader(reader, READER_BUFFER_SIZE), format)) {
+                ThreadMethods.batchedExecution(StreamMethods.enumerate(StreamMethods.stream(parser.spliterator(), false)).skip(skip).limit(limit), PARSING_BATCH_SIZE, batch -> {
+                    for(Map.Entry<Integer, CSVRecord> e : batch) {
+                        Integer rId = e.getKey();
+                        CSVRecord row = e.getValue();
 
-                    if (!row.isConsistent()) {
-                        logger.warn("WARNING: Skipping row {} because its size does not match the header size.", row.getRecordNumber());
-                    }
-                    else {
-                        Object y = null;
-                        AssociativeArray xData = new AssociativeArray();
-                        for (Map.Entry<String, TypeInference.DataType> entry : headerDataTypes.entrySet()) {
-                            String column = entry.getKey();
-                            TypeInference.DataType dataType = entry.getValue();
-
-                            Object value = TypeInference.DataType.parse(row.get(column), dataType); //parse the string value according to the DataType
-                            if (yVariable != null && yVariable.equals(column)) {
-                                y = value;
-                            }
-                            else {
-                                xData.put(column, value);
-                            }
+                        if (!row.isConsistent()) {
+                            logger.warn("WARNING: Skipping row {} because its size does not match the header size.", row.getRecordNumber());
                         }
+                        else {
+                            Object y = null;
+                            AssociativeArray xData = new AssociativeArray();
+                            for (Map.Entry<String, TypeInference.DataType> entry : headerDataTypes.entrySet()) {
+                                String column = entry.getKey();
+                                TypeInference.DataType dataType = entry.getValue();
+
+                                Object value = TypeInference.DataType.parse(row.get(column), dataType); //parse the string value according to the DataType
+                                if (yVariable != null && yVariable.equals(column)) {
+                                    y = value;
+                                }
+                                else {
+                                    xData.put(column, value);
+                                }
+                            }
 
-                        Record r = new Record(xData, y);
+                            Record r = new Record(xData, y);
 
-                        //use the internal unsafe methods to avoid the update of the Metas.
-                        //The Metas are already set in the construction of the Dataframe.
-                        dataset._unsafe_set(rId, r);
+                            //use the internal unsafe methods to avoid the update of the Metas.
+                            //The Metas are already set in the construction of the Dataframe.
+                            dataset._unsafe_set(rId, r);
+                        }
                     }
                 }, configuration.getConcurrencyConfiguration());
             }
@@ -287,6 +330,24 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
         stored = false;
     }
 
+    /**
+     * Public constructor of Dataframe which allows selecting the storage layout
+     * of the Records. A columnar Dataframe keeps the values of every column in
+     * typed vectors and materializes the Records on demand. It is appropriate
+     * for dense tabular data with many rows and few columns and it is kept in
+     * memory regardless of the StorageHint of the records.
+     *
+     * @param configuration
+     * @param columnar
+     */
+    public Dataframe(Configuration configuration, boolean columnar) {
+        this(configuration);
+        if(columnar) {
+            storageEngine.dropBigMap("records", data.records);
+            data.records = new ColumnarRecordMap();
+        }
+    }
+
     /**
      * Private constructor used by the Builder inner static class.
      *
@@ -306,11 +367,12 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
      * Private constructor used by the Builder inner static class.
      *
      * @param configuration
+     * @param columnar
      * @param yDataType
      * @param xDataTypes
      */
-    private Dataframe(Configuration configuration, TypeInference.DataType yDataType, Map<String, TypeInference.DataType> xDataTypes) {
-        this(configuration);
+    private Dataframe(Configuration configuration, boolean columnar, TypeInference.DataType yDataType, Map<String, TypeInference.DataType> xDataTypes) {
+        this(configuration, columnar);
         this.data.yDataType = yDataType;
         this.data.xDataTypes.putAll(xDataTypes);
     }
@@ -324,6 +386,11 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
      * @param storageName
      */
     public void save(String storageName) {
+        //detach the views from their parent Dataframe
+        if(data.records instanceof SubsetRecordMap) {
+            data.records = ((SubsetRecordMap)data.records).materialize();
+        }
+
         //store the objects on storage
         storageEngine.saveObject("data", data);
 
@@ -632,6 +699,26 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
         return rId;
     }
 
+    /**
+     * Returns whether the Records of the Dataframe are stored in columnar layout.
+     *
+     * @return
+     */
+    public boolean isColumnar() {
+        return columnarRecords() != null;
+    }
+
+    /**
+     * Returns the columnar storage of the Records or null if the Dataframe uses
+     * the row layout. It is package-private to allow the DataframeMatrix to read
+     * the columns directly.
+     *
+     * @return
+     */
+    ColumnarRecordMap columnarRecords() {
+        return (data.records instanceof ColumnarRecordMap)?(ColumnarRecordMap)data.records:null;
+    }
+
     /**
      * Returns the total number of X columns in the Dataframe.
      *
@@ -667,6 +754,11 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
      * @return
      */
     public FlatDataList getXColumn(Object column) {
+        ColumnarRecordMap columnarRecords = columnarRecords();
+        if(columnarRecords != null) {
+            return columnarRecords.getXColumn(column);
+        }
+
         FlatDataList flatDataList = new FlatDataList();
 
         for(Record r : values()) {
@@ -683,6 +775,11 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
      * @return
      */
     public FlatDataList getYColumn() {
+        ColumnarRecordMap columnarRecords = columnarRecords();
+        if(columnarRecords != null) {
+            return columnarRecords.getYColumn();
+        }
+
         FlatDataList flatDataList = new FlatDataList();
 
         for(Record r : values()) {
@@ -727,18 +824,30 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
 
     /**
      * It generates and returns a new Dataframe which contains a subset of this Dataframe.
-     * All the Records of the returned Dataframe are copies of the original Records.
-     * The method is used for k-fold cross validation and sampling. Note that the
-     * Records in the new Dataframe have DIFFERENT ids from the original ones.
+     * The returned Dataframe is a view which stores only the ids of the selected
+     * Records and reads them from this Dataframe on demand. The Records which are
+     * modified in the view (for example by transformers or by predict) are copied
+     * on write to its own storage, so this Dataframe is never affected. This Dataframe
+     * must remain open and unmodified for as long as the view is used. The method is
+     * used for k-fold cross validation and sampling. Note that the Records in the new
+     * Dataframe have DIFFERENT ids from the original ones and that the view uses the
+     * row layout even if this Dataframe is columnar.
      *
      * @param idsCollection
      * @return
      */
     public Dataframe getSubset(FlatDataList idsCollection) {
-        Dataframe d = new Dataframe(configuration);
-
+        int[] parentIds = new int[idsCollection.size()];
+        int i = 0;
         for(Object id : idsCollection) {
-            d.add(get((Integer)id));
+            parentIds[i++] = (Integer)id;
+        }
+
+        Dataframe d = new Dataframe(configuration);
+        d.data.records = new SubsetRecordMap(data.records, parentIds, d.data.records);
+        d.data.atomicNextAvailableRecordId.set(parentIds.length);
+        for(Record r : d.values()) {
+            d.updateMeta(r);
         }
         return d;
     }
@@ -757,7 +866,7 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
     /** {@inheritDoc} */
     @Override
     public Dataframe copy() {
-        Dataframe d = new Dataframe(configuration);
+        Dataframe d = new Dataframe(configuration, isColumnar());
 
         for(Map.Entry<Integer, Record> e : entries()) {
             Integer rId = e.getKey();
@@ -888,6 +997,37 @@ public class Dataframe implements Collection<Record>, Copyable<Dataframe>, Savab
         return newId;
     }
 
+    /**
+     * Updates the meta data of the Dataframe using a batch of Records. The
+     * DataTypes of the batch are collected locally and the shared meta data are
+     * updated once per column.
+     *
+     * @param records
+     */
+    private void updateMeta(Collection<Record> records) {
+        Map<Object, TypeInference.DataType> batchXDataTypes = new HashMap<>();
+        Object y = null;
+        for(Record r : records) {
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Object value = entry.getValue();
+                if(value!=null) {
+                    batchXDataTypes.putIfAbsent(entry.getKey(), TypeInference.getDataType(value));
+                }
+            }
+            if(y == null) {
+                y = r.getY();
+            }
+        }
+
+        for(Map.Entry<Object, TypeInference.DataType> entry : batchXDataTypes.entrySet()) {
+            data.xDataTypes.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+
+        if(data.yDataType == null && y != null) {
+            data.yDataType = TypeInference.getDataType(y);
+        }
+    }
+
     /**
      * Updates the meta data of the Dataframe using the provided Record.
      * The Meta-data include the supported columns and their DataTypes.
@@ -16,36 +16,34 @@
 package com.datumbox.framework.core.common.dataobjects;
 
 import com.datumbox.framework.common.dataobjects.TypeInference;
-import com.datumbox.framework.common.storage.interfaces.StorageEngine;
-import com.datumbox.framework.common.utilities.RandomGenerator;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.BlockRealMatrix;
 import org.apache.commons.math3.linear.OpenMapRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 
+import java.util.Arrays;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The DataframeMatrix class is responsible for converting a Dataframe object to a
  Matrix representation. Some of the methods on framework require working with
  matrices and this class provides the tools to achieve the necessary conversions.
+ * The representation of the X matrix is selected automatically: dense data are
+ * stored in a cache-blocked BlockRealMatrix while sparse data are stored in a
+ * CSRRealMatrix.
  * 
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
 public class DataframeMatrix {
 
     /**
-     * We create a single storage engine for all DataframeMatrix and MapRealMatrix objects. It is necessary to define it static
-     * and package protected to make it accessible to other classes such as the MapRealMatrix. This is because
-     * some methods of the RealMatrix require generating new object without passing the configuration file. The engine
-     * is created only once to avoid hurting performance. Thus the storageEngine is initialized once in a thread-safe manner.
+     * The minimum ratio of non-zero values for which the X matrix is stored in
+     * dense format. The CSR format needs 12 bytes per non-zero value while the
+     * dense needs 8 bytes per cell, so below this ratio the sparse format uses
+     * less memory and its products skip enough zeros to be faster.
      */
-    static StorageEngine storageEngine;
-
-    /**
-     * Keeps record how many usages were made on the storageEngine to avoid conflicting names.
-     */
-    static final AtomicInteger storageId = new AtomicInteger();
+    public static final double DENSE_THRESHOLD = 0.3;
     
     private final RealMatrix X;
     private final RealVector Y;
@@ -85,19 +83,55 @@ public class DataframeMatrix {
     }
 
     /**
-     * Initializes the static storage engine if it's not already set.
-     *
-     * @param dataset
+     * Collects the non-zero entries of the matrix in coordinate format before
+     * the representation of the matrix is selected.
      */
-    private static void setStorageEngine(Dataframe dataset) {
-        //create a single storage engine for all the MapRealMatrixes
-        if (storageEngine == null) {
-            synchronized(DataframeMatrix.class) {
-                if (storageEngine == null) {
-                    String storageName = "mdf" + RandomGenerator.getThreadLocalRandomUnseeded().nextLong();
-                    storageEngine = dataset.configuration.getStorageConfiguration().createStorageEngine(storageName);
+    private static class CoordinateBuffer {
+        private int[] rows = new int[16];
+        private int[] columns = new int[16];
+        private double[] values = new double[16];
+        private int size = 0;
+
+        /**
+         * Adds a non-zero entry in the buffer.
+         *
+         * @param row
+         * @param column
+         * @param value
+         */
+        private void add(int row, int column, double value) {
+            if(value == 0.0) {
+                return;
+            }
+            if(size == values.length) {
+                int capacity = size << 1;
+                rows = Arrays.copyOf(rows, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            rows[size] = row;
+            columns[size] = column;
+            values[size] = value;
+            size++;
+        }
+
+        /**
+         * Builds a dense or a sparse matrix depending on the ratio of non-zero
+         * values.
+         *
+         * @param rowDimension
+         * @param columnDimension
+         * @return
+         */
+        private RealMatrix toMatrix(int rowDimension, int columnDimension) {
+            if(size >= DENSE_THRESHOLD*rowDimension*columnDimension) {
+                RealMatrix m = new BlockRealMatrix(rowDimension, columnDimension);
+                for(int i=0;i<size;i++) {
+                    m.setEntry(rows[i], columns[i], values[i]);
                 }
+                return m;
             }
+            return CSRRealMatrix.fromCoordinates(rowDimension, columnDimension, rows, columns, values, size);
         }
     }
     
@@ -117,9 +151,6 @@ public class DataframeMatrix {
         if(!featureIdsReference.isEmpty()) {
             throw new IllegalArgumentException("The featureIdsReference map should be empty.");
         }
-
-        setStorageEngine(dataset);
-        
         
         int n = dataset.size();
         int d = dataset.xColumnSize();
@@ -128,10 +159,11 @@ public class DataframeMatrix {
             ++d;
         }
 
-        DataframeMatrix m = new DataframeMatrix(new MapRealMatrix(n, d), new MapRealVector(n));
+        RealVector Y = new ArrayRealVector(n);
+        CoordinateBuffer buffer = new CoordinateBuffer();
         
         if(dataset.isEmpty()) {
-            return m;
+            return new DataframeMatrix(buffer.toMatrix(n, d), Y);
         }
         
         boolean extractY=(dataset.getYDataType()== TypeInference.DataType.NUMERICAL);
@@ -139,12 +171,39 @@ public class DataframeMatrix {
         int featureId=0; 
         if(addConstantColumn) {
             for(int row=0;row<n;++row) {
-                m.X.setEntry(row, featureId, 1.0); //put the constant in evey row
+                buffer.add(row, featureId, 1.0); //put the constant in evey row
             }
             featureIdsReference.put(Dataframe.COLUMN_NAME_CONSTANT, featureId);
             ++featureId; 
         }
         
+        ColumnarRecordMap columnarRecords = dataset.columnarRecords();
+        if(columnarRecords != null) {
+            //read the columns directly to avoid materializing the Records
+            int rowId = 0;
+            for(Integer rId : dataset.index()) {
+                if(recordIdsReference != null) {
+                    recordIdsReference.put(rId, rowId);
+                }
+                ++rowId;
+            }
+
+            if(extractY) {
+                rowId = 0;
+                for(Object y : dataset.getYColumn()) {
+                    Y.setEntry(rowId++, TypeInference.toDouble(y));
+                }
+            }
+
+            for(Object feature : columnarRecords.getXColumnNames()) {
+                final int columnId = featureId++;
+                featureIdsReference.put(feature, columnId);
+                columnarRecords.forEachDouble(feature, (position, value) -> buffer.add(position, columnId, value));
+            }
+
+            return new DataframeMatrix(buffer.toMatrix(n, d), Y);
+        }
+
         int rowId = 0;
         for(Map.Entry<Integer, Record> e : dataset.entries()) {
             Integer rId = e.getKey();
@@ -154,7 +213,7 @@ public class DataframeMatrix {
             }
             
             if(extractY) {
-                m.Y.setEntry(rowId, TypeInference.toDouble(r.getY()));
+                Y.setEntry(rowId, TypeInference.toDouble(r.getY()));
             }
             
             
@@ -170,13 +229,13 @@ public class DataframeMatrix {
                 
                 Double value = TypeInference.toDouble(entry.getValue());
                 if(value != null) {
-                    m.X.setEntry(rowId, knownFeatureId, value);
+                    buffer.add(rowId, knownFeatureId, value);
                 }//else the X matrix maintains the 0.0 default value
             }
             ++rowId;
         }
         
-        return m;
+        return new DataframeMatrix(buffer.toMatrix(n, d), Y);
     }
     
     /**
@@ -193,16 +252,15 @@ public class DataframeMatrix {
         if(featureIdsReference.isEmpty()) {
             throw new IllegalArgumentException("The featureIdsReference map should not be empty.");
         }
-
-        setStorageEngine(newData);
         
         int n = newData.size();
         int d = featureIdsReference.size();
 
-        DataframeMatrix m = new DataframeMatrix(new MapRealMatrix(n, d), new MapRealVector(n));
+        RealVector Y = new ArrayRealVector(n);
+        CoordinateBuffer buffer = new CoordinateBuffer();
         
         if(newData.isEmpty()) {
-            return m;
+            return new DataframeMatrix(buffer.toMatrix(n, d), Y);
         }
         
         boolean extractY=(newData.getYDataType()==TypeInference.DataType.NUMERICAL);
@@ -218,11 +276,11 @@ public class DataframeMatrix {
             }
             
             if(extractY) {
-                m.Y.setEntry(rowId, TypeInference.toDouble(r.getY()));
+                Y.setEntry(rowId, TypeInference.toDouble(r.getY()));
             }
             
             if(addConstantColumn) {
-                m.X.setEntry(rowId, 0, 1.0); //add the constant column
+                buffer.add(rowId, 0, 1.0); //add the constant column
             }
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
                 Object feature = entry.getKey();
@@ -230,14 +288,14 @@ public class DataframeMatrix {
                 if(value!=null) {
                     Integer featureId = featureIdsReference.get(feature);
                     if(featureId!=null) {//if the feature exists
-                        m.X.setEntry(rowId, featureId, value);
+                        buffer.add(rowId, featureId, value);
                     }
                 }//else the X matrix maintains the 0.0 default value
             }
             ++rowId;
         }
         
-        return m;
+        return new DataframeMatrix(buffer.toMatrix(n, d), Y);
     }
     
     /**
@@ -255,8 +313,7 @@ public class DataframeMatrix {
         
         int d = featureIdsReference.size();
 
-        //create an Map-backed vector only if we have available info about configuration.
-        RealVector v = (storageEngine != null)?new MapRealVector(d):new OpenMapRealVector(d);
+        RealVector v = new OpenMapRealVector(d);
         
         boolean addConstantColumn = featureIdsReference.containsKey(Dataframe.COLUMN_NAME_CONSTANT);
         
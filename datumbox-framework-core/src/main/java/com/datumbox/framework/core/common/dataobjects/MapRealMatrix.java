@@ -15,8 +15,11 @@
  */
 package com.datumbox.framework.core.common.dataobjects;
 
+import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine.MapType;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine.StorageHint;
+import com.datumbox.framework.common.utilities.RandomGenerator;
 import org.apache.commons.math3.exception.NotStrictlyPositiveException;
 import org.apache.commons.math3.exception.OutOfRangeException;
 import org.apache.commons.math3.linear.AbstractRealMatrix;
@@ -25,14 +28,30 @@ import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.SparseRealMatrix;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The MapRealMatrix class is a RealMatrix implementation which stores the data in a Map.
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ * @deprecated The DataframeMatrix no longer uses it; use the CSRRealMatrix or
+ * the matrices of commons-math. It will be removed in the next release.
  */
+@Deprecated
 public class MapRealMatrix extends AbstractRealMatrix implements SparseRealMatrix {
 
+    /**
+     * A single storage engine is shared by all the MapRealMatrix objects because
+     * some methods of the RealMatrix create new objects without a configuration.
+     * It is created from the default configuration the first time it is needed.
+     */
+    private static volatile StorageEngine storageEngine;
+
+    /**
+     * Keeps record how many usages were made on the storageEngine to avoid conflicting names.
+     */
+    private static final AtomicInteger storageId = new AtomicInteger();
+
     /**
      * The id of this Matrix.
      */
@@ -66,12 +85,8 @@ public class MapRealMatrix extends AbstractRealMatrix implements SparseRealMatri
         this.rowDimension = rowDimension;
         this.columnDimension = columnDimension;
 
-        if(DataframeMatrix.storageEngine == null) {
-            throw new NullPointerException("The DataframeMatrix storage engine is not initialized.");
-        }
-
-        id = DataframeMatrix.storageId.getAndIncrement();
-        entries = DataframeMatrix.storageEngine.getBigMap("tmp_mrmentries"+id, Long.class, Double.class, MapType.HASHMAP, StorageHint.IN_DISK, false, true);
+        id = storageId.getAndIncrement();
+        entries = getStorageEngine().getBigMap("tmp_mrmentries"+id, Long.class, Double.class, MapType.HASHMAP, StorageHint.IN_DISK, false, true);
     }
 
     /**
@@ -83,13 +98,30 @@ public class MapRealMatrix extends AbstractRealMatrix implements SparseRealMatri
     @Override
     protected void finalize() throws Throwable {
         try {
-            DataframeMatrix.storageEngine.dropBigMap("tmp_mrmentries"+id, entries);
+            storageEngine.dropBigMap("tmp_mrmentries"+id, entries);
         }
         finally {
             super.finalize();
         }
     }
 
+    /**
+     * Returns the shared storage engine, initializing it in a thread-safe manner.
+     *
+     * @return
+     */
+    private static StorageEngine getStorageEngine() {
+        if(storageEngine == null) {
+            synchronized(MapRealMatrix.class) {
+                if(storageEngine == null) {
+                    String storageName = "mrm" + RandomGenerator.getThreadLocalRandomUnseeded().nextLong();
+                    storageEngine = Configuration.getConfiguration().getStorageConfiguration().createStorageEngine(storageName);
+                }
+            }
+        }
+        return storageEngine;
+    }
+
     /** {@inheritDoc} */
     @Override
     public RealMatrix createMatrix(int rowDimension, int columnDimension) throws NotStrictlyPositiveException {
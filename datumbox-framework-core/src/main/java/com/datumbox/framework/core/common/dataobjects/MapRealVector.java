@@ -24,7 +24,10 @@ import org.apache.commons.math3.linear.RealVector;
  * The MapRealVector class is a RealVector implementation which stores the data in a Map.
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ * @deprecated The framework no longer uses it; use the OpenMapRealVector or the
+ * ArrayRealVector of commons-math. It will be removed in the next release.
  */
+@Deprecated
 public class MapRealVector extends OpenMapRealVector {
     private static final long serialVersionUID = 1L;
 
@@ -0,0 +1,395 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.dataobjects;
+
+import com.datumbox.framework.common.concurrency.ConcurrencyConfiguration;
+import com.datumbox.framework.common.concurrency.ThreadMethods;
+import com.datumbox.framework.common.dataobjects.TypeInference;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * The NormalEquations class accumulates in a single pass over a Dataframe the
+ * sufficient statistics of the linear least squares problems: the X'X and X'Y
+ * products, the Y'Y product and the sums of the columns of X. Unlike the
+ * DataframeMatrix, the n x d matrix of the data is never built; only the d x d
+ * and d sized results are kept in memory.
+ *
+ * The Records are read sequentially and encoded in batches of sparse rows which
+ * are accumulated in parallel on the shared pool of the framework. Every batch
+ * is added to one of the partial sums which are merged at the end; the number
+ * of the partial sums is limited so that they fit in a fixed memory budget
+ * regardless of the number of threads. The column ids are assigned exactly as
+ * in DataframeMatrix.newInstance() so the two classes can be used
+ * interchangeably.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class NormalEquations {
+
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * The maximum memory in bytes used by the partial X'X matrices of the workers.
+     */
+    private static final long MAX_ACCUMULATOR_MEMORY = 128L*1024L*1024L;
+
+    private final int n;
+
+    private final RealMatrix XtX;
+
+    private final RealVector XtY;
+
+    private final double YtY;
+
+    private final RealVector columnSums;
+
+    /**
+     * Sparse encoding of the non-zero values of a Record.
+     */
+    private static class Row {
+        private final int[] columns;
+        private final double[] values;
+        private final double y;
+
+        private Row(int[] columns, double[] values, double y) {
+            this.columns = columns;
+            this.values = values;
+            this.y = y;
+        }
+    }
+
+    /**
+     * Partial sums of a single worker. The X'X is stored in a d x d array in
+     * which every pair of columns is added only once, in the cell of the order
+     * that they appear in the row; the two triangles are summed in place when
+     * the symmetric matrix is built.
+     */
+    private static class Accumulator {
+        private final int d;
+        private final double[][] xtx;
+        private final double[] xty;
+        private final double[] sums;
+        private double yty = 0.0;
+        private int n = 0;
+
+        private Accumulator(int d) {
+            this.d = d;
+            xtx = new double[d][d];
+            xty = new double[d];
+            sums = new double[d];
+        }
+
+        /**
+         * Adds the rank-1 update of the row to the partial sums.
+         *
+         * @param row
+         */
+        private void add(Row row) {
+            int[] columns = row.columns;
+            double[] values = row.values;
+            int k = columns.length;
+            for(int a=0;a<k;a++) {
+                double[] xtxRow = xtx[columns[a]];
+                double va = values[a];
+                for(int b=a;b<k;b++) {
+                    xtxRow[columns[b]] += va*values[b];
+                }
+                xty[columns[a]] += va*row.y;
+                sums[columns[a]] += va;
+            }
+            yty += row.y*row.y;
+            n++;
+        }
+
+        /**
+         * Adds the partial sums of the other accumulator to this one.
+         *
+         * @param other
+         */
+        private void merge(Accumulator other) {
+            for(int i=0;i<d;i++) {
+                double[] xtxRow = xtx[i];
+                double[] otherXtxRow = other.xtx[i];
+                for(int j=0;j<d;j++) {
+                    xtxRow[j] += otherXtxRow[j];
+                }
+                xty[i] += other.xty[i];
+                sums[i] += other.sums[i];
+            }
+            yty += other.yty;
+            n += other.n;
+        }
+    }
+
+    /**
+     * Private constructor used by the static factory method. The X'X of the
+     * accumulator is made symmetric in place and it is used without a copy.
+     *
+     * @param accumulator
+     */
+    private NormalEquations(Accumulator accumulator) {
+        int d = accumulator.d;
+        double[][] xtx = accumulator.xtx;
+        for(int i=0;i<d;i++) {
+            for(int j=i+1;j<d;j++) {
+                double v = xtx[i][j] + xtx[j][i];
+                xtx[i][j] = v;
+                xtx[j][i] = v;
+            }
+        }
+
+        n = accumulator.n;
+        XtX = new Array2DRowRealMatrix(xtx, false);
+        XtY = new ArrayRealVector(accumulator.xty, false);
+        YtY = accumulator.yty;
+        columnSums = new ArrayRealVector(accumulator.sums, false);
+    }
+
+    /**
+     * Accumulates the products of the training Dataframe. It populates the
+     * featureIdsReference map with the mappings between the feature names and
+     * the column ids. If the response variable is not numerical, the products
+     * of Y are zero.
+     *
+     * @param dataset
+     * @param addConstantColumn
+     * @param featureIdsReference
+     * @return
+     */
+    public static NormalEquations newInstance(Dataframe dataset, boolean addConstantColumn, Map<Object, Integer> featureIdsReference) {
+        if(!featureIdsReference.isEmpty()) {
+            throw new IllegalArgumentException("The featureIdsReference map should be empty.");
+        }
+
+        int d = dataset.xColumnSize();
+        if(addConstantColumn) {
+            featureIdsReference.put(Dataframe.COLUMN_NAME_CONSTANT, 0);
+            ++d;
+        }
+
+        boolean extractY = (dataset.getYDataType()==TypeInference.DataType.NUMERICAL);
+
+        //the Records are encoded in the current thread, so the feature ids are assigned in the order of the records
+        Stream<Row> rows = dataset.stream().map(r -> encode(r, addConstantColumn, extractY, featureIdsReference));
+        return new NormalEquations(accumulate(rows, d, dataset.configuration.getConcurrencyConfiguration()));
+    }
+
+    /**
+     * Accumulates the products of the centered columns of the training
+     * Dataframe. The X'X is the matrix of the co-moments of the columns, which
+     * is equal to (n-1) times their covariance matrix, and the column sums are
+     * those of the original data. The mean of every column is subtracted before
+     * the products are computed, so the result does not lose precision when the
+     * means are large compared to the variances. The data are read twice and
+     * the products of Y are zero.
+     *
+     * @param dataset
+     * @param featureIdsReference
+     * @return
+     */
+    public static NormalEquations newCenteredInstance(Dataframe dataset, Map<Object, Integer> featureIdsReference) {
+        if(!featureIdsReference.isEmpty()) {
+            throw new IllegalArgumentException("The featureIdsReference map should be empty.");
+        }
+
+        int d = dataset.xColumnSize();
+
+        //estimate the means of the columns
+        double[] sums = new double[d];
+        for(Record r : dataset) {
+            Row row = encode(r, false, false, featureIdsReference);
+            for(int i=0;i<row.columns.length;i++) {
+                sums[row.columns[i]] += row.values[i];
+            }
+        }
+        int n = dataset.size();
+        double[] means = new double[d];
+        for(int i=0;i<d;i++) {
+            means[i] = sums[i]/n;
+        }
+
+        //accumulate the products of the dense centered rows
+        int[] allColumns = new int[d];
+        for(int i=0;i<d;i++) {
+            allColumns[i] = i;
+        }
+        Stream<Row> rows = dataset.stream().map(r -> {
+            double[] values = new double[d];
+            for(int i=0;i<d;i++) {
+                values[i] = -means[i];
+            }
+            Row row = encode(r, false, false, featureIdsReference);
+            for(int i=0;i<row.columns.length;i++) {
+                values[row.columns[i]] += row.values[i];
+            }
+            return new Row(allColumns, values, 0.0);
+        });
+        Accumulator total = accumulate(rows, d, dataset.configuration.getConcurrencyConfiguration());
+        System.arraycopy(sums, 0, total.sums, 0, d);
+        return new NormalEquations(total);
+    }
+
+    /**
+     * Adds the rows to partial sums in parallel and merges them. The number of
+     * the partial sums is at most the number of threads and it is reduced
+     * further when their X'X matrices do not fit in MAX_ACCUMULATOR_MEMORY; a
+     * worker which finds no free partial sum waits for one to be released.
+     *
+     * @param rows
+     * @param d
+     * @param concurrencyConfiguration
+     * @return
+     */
+    private static Accumulator accumulate(Stream<Row> rows, int d, ConcurrencyConfiguration concurrencyConfiguration) {
+        long memoryPerAccumulator = Math.max(1L, 8L*d*d);
+        int maxAccumulators = (int)Math.max(1L, Math.min(concurrencyConfiguration.getMaxNumberOfThreadsPerTask(), MAX_ACCUMULATOR_MEMORY/memoryPerAccumulator));
+
+        BlockingQueue<Accumulator> available = new ArrayBlockingQueue<>(maxAccumulators);
+        AtomicInteger created = new AtomicInteger(0);
+        ThreadMethods.batchedExecution(rows, BATCH_SIZE, batch -> {
+            Accumulator accumulator = available.poll();
+            if(accumulator == null) {
+                if(created.incrementAndGet() <= maxAccumulators) {
+                    accumulator = new Accumulator(d);
+                }
+                else {
+                    try {
+                        accumulator = available.take();
+                    }
+                    catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            }
+            try {
+                for(Row row : batch) {
+                    accumulator.add(row);
+                }
+            }
+            finally {
+                available.add(accumulator);
+            }
+        }, concurrencyConfiguration);
+
+        //merge the partial sums in place to avoid allocating another d x d matrix
+        Accumulator total = available.poll();
+        if(total == null) {
+            return new Accumulator(d);
+        }
+        Accumulator accumulator;
+        while((accumulator = available.poll()) != null) {
+            total.merge(accumulator);
+        }
+        return total;
+    }
+
+    /**
+     * Encodes the Record to a sparse row and assigns ids to its new features.
+     *
+     * @param r
+     * @param addConstantColumn
+     * @param extractY
+     * @param featureIdsReference
+     * @return
+     */
+    private static Row encode(Record r, boolean addConstantColumn, boolean extractY, Map<Object, Integer> featureIdsReference) {
+        int k = r.getX().size() + (addConstantColumn?1:0);
+        int[] columns = new int[k];
+        double[] values = new double[k];
+
+        int i = 0;
+        if(addConstantColumn) {
+            columns[i] = 0;
+            values[i++] = 1.0;
+        }
+        for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+            Object feature = entry.getKey();
+            Integer featureId = featureIdsReference.get(feature);
+            if(featureId == null) {
+                featureId = featureIdsReference.size();
+                featureIdsReference.put(feature, featureId);
+            }
+
+            Double value = TypeInference.toDouble(entry.getValue());
+            if(value != null && value != 0.0) {
+                columns[i] = featureId;
+                values[i++] = value;
+            }
+        }
+        if(i < k) {
+            columns = Arrays.copyOf(columns, i);
+            values = Arrays.copyOf(values, i);
+        }
+
+        double y = extractY?TypeInference.toDouble(r.getY()):0.0;
+        return new Row(columns, values, y);
+    }
+
+    /**
+     * Returns the number of Records which were accumulated.
+     *
+     * @return
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Returns the symmetric d x d X'X matrix.
+     *
+     * @return
+     */
+    public RealMatrix getXtX() {
+        return XtX;
+    }
+
+    /**
+     * Returns the X'Y vector.
+     *
+     * @return
+     */
+    public RealVector getXtY() {
+        return XtY;
+    }
+
+    /**
+     * Returns the Y'Y product.
+     *
+     * @return
+     */
+    public double getYtY() {
+        return YtY;
+    }
+
+    /**
+     * Returns the sums of the columns of X.
+     *
+     * @return
+     */
+    public RealVector getColumnSums() {
+        return columnSums;
+    }
+
+}
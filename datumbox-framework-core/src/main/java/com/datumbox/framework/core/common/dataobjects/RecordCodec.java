@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.dataobjects;
+
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+import com.datumbox.framework.common.storage.serializers.TypeCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary codec of the Record.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class RecordCodec implements TypeCodec<Record> {
+
+    /** {@inheritDoc} */
+    @Override
+    public int getId() {
+        return 16;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Class<Record> getType() {
+        return Record.class;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(DataOutput out, Record obj, ObjectSerializer serializer) throws IOException {
+        serializer.writeValue(out, obj.getX());
+        serializer.writeValue(out, obj.getY());
+        serializer.writeValue(out, obj.getYPredicted());
+        serializer.writeValue(out, obj.getYPredictedProbabilities());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Record read(DataInput in, ObjectSerializer serializer) throws IOException {
+        AssociativeArray x = (AssociativeArray)serializer.readValue(in);
+        Object y = serializer.readValue(in);
+        Object yPredicted = serializer.readValue(in);
+        AssociativeArray yPredictedProbabilities = (AssociativeArray)serializer.readValue(in);
+        return new Record(x, y, yPredicted, yPredictedProbabilities);
+    }
+
+}
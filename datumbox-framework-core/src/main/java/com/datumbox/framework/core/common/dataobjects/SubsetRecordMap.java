@@ -0,0 +1,319 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.dataobjects;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backing of the Records of a Dataframe which is a view over a subset of the
+ * Records of another Dataframe. The view stores only the ids of the parent
+ * Records in an int array and the Records are read from the parent when they
+ * are requested. The new ids of the view are the positions in the array, so
+ * the same parent Record can appear multiple times (for example in bootstrap
+ * samples).
+ *
+ * The parent is never modified. The Records which are replaced, for example by
+ * a transformer or by a predict() call, are written copy-on-write in a separate
+ * map which is owned by the view, and removed Records are only marked. Writes
+ * on different ids can be performed concurrently, but the parent must remain
+ * open and must not be modified while the view is in use.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+class SubsetRecordMap extends AbstractMap<Integer, Record> {
+
+    private static final byte PARENT = 0;
+    private static final byte OWN = 1;
+    private static final byte REMOVED = 2;
+
+    private final Map<Integer, Record> parentRecords;
+
+    private final int[] parentIds;
+
+    private final byte[] states;
+
+    private final Map<Integer, Record> ownRecords;
+
+    private final AtomicInteger removedCount = new AtomicInteger();
+
+    private final AtomicInteger extraCount = new AtomicInteger();
+
+    /**
+     * Package-private constructor which receives the Records of the parent, the
+     * ids of the parent Records which are included in the view and an empty map
+     * which will store the modified Records.
+     *
+     * @param parentRecords
+     * @param parentIds
+     * @param ownRecords
+     */
+    SubsetRecordMap(Map<Integer, Record> parentRecords, int[] parentIds, Map<Integer, Record> ownRecords) {
+        this.parentRecords = parentRecords;
+        this.parentIds = parentIds;
+        this.states = new byte[parentIds.length];
+        this.ownRecords = ownRecords;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return parentIds.length - removedCount.get() + extraCount.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsKey(Object key) {
+        if(!(key instanceof Integer)) {
+            return false;
+        }
+        int id = (Integer)key;
+        if(inRange(id)) {
+            return states[id] != REMOVED;
+        }
+        return ownRecords.containsKey(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Record get(Object key) {
+        if(!(key instanceof Integer)) {
+            return null;
+        }
+        int id = (Integer)key;
+        if(inRange(id)) {
+            return read(id);
+        }
+        return ownRecords.get(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Record put(Integer key, Record r) {
+        int id = key;
+        if(inRange(id)) {
+            byte state = states[id];
+            Record previous = read(id);
+            ownRecords.put(key, r);
+            states[id] = OWN;
+            if(state == REMOVED) {
+                removedCount.decrementAndGet();
+            }
+            return previous;
+        }
+
+        Record previous = ownRecords.put(key, r);
+        if(previous == null) {
+            extraCount.incrementAndGet();
+        }
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Record remove(Object key) {
+        if(!(key instanceof Integer)) {
+            return null;
+        }
+        int id = (Integer)key;
+        if(inRange(id)) {
+            byte state = states[id];
+            if(state == REMOVED) {
+                return null;
+            }
+            Record previous = (state == OWN)?ownRecords.remove(id):parentRecords.get(parentIds[id]);
+            states[id] = REMOVED;
+            removedCount.incrementAndGet();
+            return previous;
+        }
+
+        Record previous = ownRecords.remove(id);
+        if(previous != null) {
+            extraCount.decrementAndGet();
+        }
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        ownRecords.clear();
+        Arrays.fill(states, REMOVED);
+        removedCount.set(parentIds.length);
+        extraCount.set(0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new ViewIterator<Integer>() {
+                    @Override
+                    protected Integer read(int id) {
+                        return id;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return SubsetRecordMap.this.size();
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Map.Entry<Integer, Record>> entrySet() {
+        return new AbstractSet<Map.Entry<Integer, Record>>() {
+            @Override
+            public Iterator<Map.Entry<Integer, Record>> iterator() {
+                return new ViewIterator<Map.Entry<Integer, Record>>() {
+                    @Override
+                    protected Map.Entry<Integer, Record> read(int id) {
+                        return new AbstractMap.SimpleImmutableEntry<>(id, get(id));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SubsetRecordMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Copies in the owned map all the Records which are still read from the
+     * parent and returns it. It is used when the Dataframe needs to become
+     * independent from its parent, for example before it is saved. The view
+     * must not be used after calling this method.
+     *
+     * @return
+     */
+    Map<Integer, Record> materialize() {
+        for(int id=0;id<parentIds.length;id++) {
+            if(states[id] == PARENT) {
+                ownRecords.put(id, parentRecords.get(parentIds[id]));
+            }
+        }
+        return ownRecords;
+    }
+
+    private boolean inRange(int id) {
+        return id >= 0 && id < parentIds.length;
+    }
+
+    private Record read(int id) {
+        byte state = states[id];
+        if(state == PARENT) {
+            return parentRecords.get(parentIds[id]);
+        }
+        else if(state == OWN) {
+            return ownRecords.get(id);
+        }
+        return null;
+    }
+
+    /**
+     * Iterates first through the positions of the view in ascending order
+     * and then through the Records which were added after its creation.
+     *
+     * @param <T>
+     */
+    private abstract class ViewIterator<T> implements Iterator<T> {
+        private int next = -1;
+        private Iterator<Integer> extraIds = null;
+        private Integer nextExtra = null;
+        private int last = -1;
+        private boolean hasLast = false;
+
+        private ViewIterator() {
+            advance();
+        }
+
+        /**
+         * Reads the element of the provided id.
+         *
+         * @param id
+         * @return
+         */
+        protected abstract T read(int id);
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return next < parentIds.length || nextExtra != null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T next() {
+            if(next < parentIds.length) {
+                last = next;
+            }
+            else if(nextExtra != null) {
+                last = nextExtra;
+            }
+            else {
+                throw new NoSuchElementException();
+            }
+            hasLast = true;
+            T element = read(last);
+            advance();
+            return element;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            if(!hasLast) {
+                throw new IllegalStateException();
+            }
+            SubsetRecordMap.this.remove(last);
+            hasLast = false;
+        }
+
+        private void advance() {
+            if(next < parentIds.length) {
+                do {
+                    next++;
+                } while(next < parentIds.length && states[next] == REMOVED);
+                if(next < parentIds.length || extraCount.get() == 0) {
+                    return;
+                }
+                extraIds = new ArrayList<>(ownRecords.keySet()).iterator();
+            }
+
+            nextExtra = null;
+            while(extraIds != null && extraIds.hasNext()) {
+                Integer id = extraIds.next();
+                if(!inRange(id)) {
+                    nextExtra = id;
+                    break;
+                }
+            }
+        }
+    }
+
+}
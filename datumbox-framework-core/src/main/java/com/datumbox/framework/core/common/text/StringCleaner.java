@@ -21,6 +21,7 @@ import java.text.Normalizer;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -32,31 +33,95 @@ import java.util.regex.Pattern;
 public class StringCleaner {
     private static final Pattern URL_PATTERN = Pattern.compile("(https?|ftp|file)://[-a-zA-Z0-9+&@#/%?=~_|!:,.;]*[-a-zA-Z0-9+&@#/%=~_|]", Pattern.DOTALL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
     
+    private static final Pattern EXTRA_SPACES_PATTERN = Pattern.compile("\\s+");
+    
+    private static final Pattern SYMBOLS_PATTERN = Pattern.compile("[^\\p{L}\\p{Z}_]");
+    
+    private static final Pattern SPACE_TERMINATORS_PATTERN = Pattern.compile("[\",:;()\\-]+");
+    
+    private static final Pattern TERMINATORS_PATTERN = Pattern.compile("[\\.!?]");
+    
+    private static final Pattern DUPLICATED_TERMINATORS_PATTERN = Pattern.compile("\\.[\\. ]+");
+    
+    private static final Pattern PADDED_TERMINATORS_PATTERN = Pattern.compile("\\s*\\.\\s*");
+    
+    private static final Pattern DIACRITICAL_MARKS_PATTERN = Pattern.compile("[\\p{InCombiningDiacriticalMarks}]");
+    
     /**
      * All URLs are replaced within the text by using the TOKENIZED_URL constant.
      */
     private static final String TOKENIZED_URL = " PREPROCESSDOC_URL ";
     
+    private static final String FOLDED_TOKENIZED_URL = foldUncached(TOKENIZED_URL);
+    
     /**
      * Mapping between SMILEYS_MAPPING and their tokenized representation.
      */
     private static final Map<String, String> SMILEYS_MAPPING = new HashMap<>();
     
     static {
-        SMILEYS_MAPPING.put(":\\)", " PREPROCESSDOC_EM1 ");
-        SMILEYS_MAPPING.put(":-\\)", " PREPROCESSDOC_EM2 ");
-        SMILEYS_MAPPING.put(":\\(", " PREPROCESSDOC_EM3 ");
-        SMILEYS_MAPPING.put(":-\\(", " PREPROCESSDOC_EM4 ");
+        SMILEYS_MAPPING.put(":)", " PREPROCESSDOC_EM1 ");
+        SMILEYS_MAPPING.put(":-)", " PREPROCESSDOC_EM2 ");
+        SMILEYS_MAPPING.put(":(", " PREPROCESSDOC_EM3 ");
+        SMILEYS_MAPPING.put(":-(", " PREPROCESSDOC_EM4 ");
         SMILEYS_MAPPING.put(":d", " PREPROCESSDOC_EM5 ");
-        SMILEYS_MAPPING.put(";\\)", " PREPROCESSDOC_EM6 ");
-        SMILEYS_MAPPING.put(":o\\)", " PREPROCESSDOC_EM7 ");
-        SMILEYS_MAPPING.put(":\\]", " PREPROCESSDOC_EM8 ");
-        SMILEYS_MAPPING.put(":\\[", " PREPROCESSDOC_EM9 ");
+        SMILEYS_MAPPING.put(";)", " PREPROCESSDOC_EM6 ");
+        SMILEYS_MAPPING.put(":o)", " PREPROCESSDOC_EM7 ");
+        SMILEYS_MAPPING.put(":]", " PREPROCESSDOC_EM8 ");
+        SMILEYS_MAPPING.put(":[", " PREPROCESSDOC_EM9 ");
         SMILEYS_MAPPING.put(":p", " PREPROCESSDO,C_EM10 ");
         SMILEYS_MAPPING.put(":-p", " PREPROCESSDOC_EM11 ");
-        SMILEYS_MAPPING.put("8-\\)", " PREPROCESSDOC_EM12 ");
-        SMILEYS_MAPPING.put("=\\)", " PREPROCESSDOC_EM13 ");
-        SMILEYS_MAPPING.put("=\\(", " PREPROCESSDOC_EM14 ");
+        SMILEYS_MAPPING.put("8-)", " PREPROCESSDOC_EM12 ");
+        SMILEYS_MAPPING.put("=)", " PREPROCESSDOC_EM13 ");
+        SMILEYS_MAPPING.put("=(", " PREPROCESSDOC_EM14 ");
+    }
+    
+    /**
+     * Trie of the SMILEYS_MAPPING. None of the smileys is a prefix of another 
+     * and no smiley ends with a character that starts another, so their 
+     * occurrences never overlap and a single scan of the trie finds the same
+     * matches as replacing them one by one.
+     */
+    private static final SmileyNode SMILEYS_TRIE = new SmileyNode();
+    
+    static {
+        for(Map.Entry<String, String> smiley : SMILEYS_MAPPING.entrySet()) {
+            SmileyNode node = SMILEYS_TRIE;
+            for(char c : smiley.getKey().toCharArray()) {
+                node = node.children.computeIfAbsent(c, k -> new SmileyNode());
+            }
+            node.token = smiley.getValue();
+            node.foldedToken = foldUncached(smiley.getValue());
+            node.length = smiley.getKey().length();
+        }
+    }
+    
+    /**
+     * Caches for every BMP character the output of clear(): its canonical 
+     * decomposition without the characters which are removed as symbols. The
+     * entries are filled lazily; Strings are immutable so the unsynchronized
+     * access is safe.
+     */
+    private static final String[] FOLDING_TABLE = new String[Character.MAX_VALUE + 1];
+    
+    /**
+     * Reusable buffer of clear().
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    
+    /**
+     * Buffers which grow larger than this number of characters are not reused.
+     */
+    private static final int MAX_BUFFER_SIZE = 65536;
+    
+    /**
+     * Node of the smileys trie.
+     */
+    private static class SmileyNode {
+        private final Map<Character, SmileyNode> children = new HashMap<>();
+        private String token = null;
+        private String foldedToken = null;
+        private int length = 0;
     }
     
     /**
@@ -76,10 +141,20 @@ public class StringCleaner {
      * @return 
      */
     public static String tokenizeSmileys(String text) {
-        for(Map.Entry<String, String> smiley : SMILEYS_MAPPING.entrySet()) {
-            text = text.replaceAll(smiley.getKey(), smiley.getValue());
+        StringBuilder sb = new StringBuilder(text.length());
+        int length = text.length();
+        int i = 0;
+        while(i < length) {
+            SmileyNode smiley = matchSmiley(text, i, length);
+            if(smiley != null) {
+                sb.append(smiley.token);
+                i += smiley.length;
+            }
+            else {
+                sb.append(text.charAt(i++));
+            }
         }
-        return text;
+        return sb.toString();
     }
     
     /**
@@ -89,7 +164,7 @@ public class StringCleaner {
      * @return 
      */
     public static String removeExtraSpaces(String text) {
-        text = text.trim().replaceAll("\\s+", " ");
+        text = EXTRA_SPACES_PATTERN.matcher(text.trim()).replaceAll(" ");
         return text;
     }
     
@@ -101,7 +176,7 @@ public class StringCleaner {
      */
     public static String removeSymbols(String text) {
         //text = text.replaceAll("[^\\w\\s]","");
-        text = text.replaceAll("[^\\p{L}\\p{Z}_]","");
+        text = SYMBOLS_PATTERN.matcher(text).replaceAll("");
         return text;
     }
     
@@ -113,10 +188,10 @@ public class StringCleaner {
      * @return 
      */
     public static String unifyTerminators(String text) {
-        text = text.replaceAll("[\",:;()\\-]+", " "); // Replace commas, hyphens, quotes etc (count them as spaces)
-        text = text.replaceAll("[\\.!?]", "."); // Unify terminators
-        text = text.replaceAll("\\.[\\. ]+", "."); // Check for duplicated terminators
-        text = text.replaceAll("\\s*\\.\\s*", ". "); // Pad sentence terminators
+        text = SPACE_TERMINATORS_PATTERN.matcher(text).replaceAll(" "); // Replace commas, hyphens, quotes etc (count them as spaces)
+        text = TERMINATORS_PATTERN.matcher(text).replaceAll("."); // Unify terminators
+        text = DUPLICATED_TERMINATORS_PATTERN.matcher(text).replaceAll("."); // Check for duplicated terminators
+        text = PADDED_TERMINATORS_PATTERN.matcher(text).replaceAll(". "); // Pad sentence terminators
         return text.trim();
     }
     
@@ -128,7 +203,7 @@ public class StringCleaner {
      */
     public static String removeAccents(String text) {
         text = Normalizer.normalize(text, Normalizer.Form.NFD);
-        text = text.replaceAll("[\\p{InCombiningDiacriticalMarks}]", "");
+        text = DIACRITICAL_MARKS_PATTERN.matcher(text).replaceAll("");
         return text;
     }
     
@@ -140,12 +215,164 @@ public class StringCleaner {
      * @return 
      */
     public static String clear(String text) {
-        text = StringCleaner.tokenizeURLs(text);
-        text = StringCleaner.tokenizeSmileys(text);
-        text = StringCleaner.removeAccents(text);
-        text = StringCleaner.removeSymbols(text);
-        text = StringCleaner.removeExtraSpaces(text);
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        clear(text, sb);
+        String cleared = sb.toString();
+        if(sb.capacity() > MAX_BUFFER_SIZE) {
+            BUFFER.remove();
+        }
+        return cleared;
+    }
+    
+    /**
+     * Same as clear(String) but it appends the result to the provided buffer.
+     * The URLs, smileys, accents, symbols, extra spaces and upper case letters 
+     * are handled in a single scan of the text, which produces the same output
+     * as applying the individual methods one after the other. The only 
+     * exception are the letters outside the BMP which are kept intact.
+     * 
+     * @param text
+     * @param sb 
+     */
+    public static void clear(String text, StringBuilder sb) {
+        int start = sb.length();
+        boolean[] state = new boolean[2]; //pending space, contains upper case sigma
+        
+        int length = text.length();
+        Matcher urlMatcher = (text.indexOf("://") >= 0)?URL_PATTERN.matcher(text):null;
+        int nextUrlStart = (urlMatcher != null && urlMatcher.find())?urlMatcher.start():length;
         
-        return text.toLowerCase(Locale.ENGLISH);
+        int i = 0;
+        while(i < length) {
+            if(i == nextUrlStart) {
+                appendCleared(FOLDED_TOKENIZED_URL, sb, start, state);
+                i = urlMatcher.end();
+                nextUrlStart = urlMatcher.find()?urlMatcher.start():length;
+                continue;
+            }
+            
+            SmileyNode smiley = matchSmiley(text, i, nextUrlStart);
+            if(smiley != null) {
+                appendCleared(smiley.foldedToken, sb, start, state);
+                i += smiley.length;
+                continue;
+            }
+            
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            appendCleared(fold(codePoint), sb, start, state);
+        }
+        
+        if(state[1]) {
+            //the lower case of the sigma depends on its position in the word
+            String cleared = sb.substring(start).toLowerCase(Locale.ENGLISH);
+            sb.setLength(start);
+            sb.append(cleared);
+        }
+    }
+    
+    /**
+     * Returns the trie node of the smiley which starts at the position or null.
+     * 
+     * @param text
+     * @param position
+     * @param end
+     * @return 
+     */
+    private static SmileyNode matchSmiley(String text, int position, int end) {
+        SmileyNode node = SMILEYS_TRIE;
+        for(int i=position;i<end;i++) {
+            node = node.children.get(text.charAt(i));
+            if(node == null) {
+                return null;
+            }
+            else if(node.token != null) {
+                return node;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the canonical decomposition of the code point after removing
+     * all the characters which are not letters, separators or underscores.
+     * 
+     * @param codePoint
+     * @return 
+     */
+    private static String fold(int codePoint) {
+        if(codePoint < 0x80) {
+            if(Character.isLetter(codePoint) || codePoint == ' ' || codePoint == '_') {
+                return String.valueOf((char)codePoint);
+            }
+            return "";
+        }
+        else if(codePoint > Character.MAX_VALUE) {
+            return foldUncached(new String(Character.toChars(codePoint)));
+        }
+        
+        String folded = FOLDING_TABLE[codePoint];
+        if(folded == null) {
+            folded = foldUncached(String.valueOf((char)codePoint));
+            FOLDING_TABLE[codePoint] = folded;
+        }
+        return folded;
+    }
+    
+    /**
+     * Same as fold() for any text without using the cache.
+     * 
+     * @param text
+     * @return 
+     */
+    private static String foldUncached(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for(int i=0;i<decomposed.length();) {
+            int c = decomposed.codePointAt(i);
+            i += Character.charCount(c);
+            int type = Character.getType(c);
+            if(Character.isLetter(c) || c == '_' || type == Character.SPACE_SEPARATOR || type == Character.LINE_SEPARATOR || type == Character.PARAGRAPH_SEPARATOR) {
+                sb.appendCodePoint(c);
+            }
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Appends the lower case of the folded characters to the buffer, while 
+     * trimming and collapsing the spaces.
+     * 
+     * @param folded
+     * @param sb
+     * @param start
+     * @param state 
+     */
+    private static void appendCleared(String folded, StringBuilder sb, int start, boolean[] state) {
+        for(int i=0;i<folded.length();) {
+            int c = folded.codePointAt(i);
+            i += Character.charCount(c);
+            
+            if(c == ' ') {
+                state[0] = sb.length() > start;
+                continue;
+            }
+            if(state[0]) {
+                sb.append(' ');
+                state[0] = false;
+            }
+            
+            if(c < 0x80) {
+                sb.append((char)((c >= 'A' && c <= 'Z')?c + ('a' - 'A'):c));
+            }
+            else if(c == '\u03A3') {
+                state[1] = true;
+                sb.append((char)c);
+            }
+            else {
+                sb.appendCodePoint(Character.toLowerCase(c));
+            }
+        }
     }
 }
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.text.extractors;
+
+import org.apache.commons.math3.linear.OpenMapRealVector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The HashingExtractor applies the hashing trick on the keyword combinations
+ * which are extracted by the NgramsExtractor. Every combination is mapped with
+ * MurmurHash3 to one of a fixed number of buckets and its score is added to the
+ * bucket with a sign which is also determined by the hash, so that collisions
+ * tend to cancel out. Since the features are integers in a bounded space, no
+ * dictionary is kept and the size of the trained models does not depend on the
+ * size of the vocabulary.
+ * 
+ * References:
+ * http://alex.smola.org/papers/2009/Weinbergeretal09.pdf
+ * https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class HashingExtractor extends AbstractTextExtractor<HashingExtractor.Parameters, Integer, Double> {
+    
+    /**
+     * AbstractParameters of the HashingExtractor. The parameters of the keyword
+     * combinations are inherited from the NgramsExtractor.
+     */
+    public static class Parameters extends NgramsExtractor.Parameters {  
+        private static final long serialVersionUID = 1L;
+        
+        private int numberOfFeatures = 1048576;
+        
+        private boolean signed = true;
+        
+        private int seed = 0;
+        
+        /**
+         * Getter for the number of buckets in which the keyword combinations are
+         * hashed.
+         * 
+         * @return 
+         */
+        public int getNumberOfFeatures() {
+            return numberOfFeatures;
+        }
+        
+        /**
+         * Setter for the number of buckets in which the keyword combinations are
+         * hashed. Small values lead to more collisions.
+         * 
+         * @param numberOfFeatures 
+         */
+        public void setNumberOfFeatures(int numberOfFeatures) {
+            if(numberOfFeatures<=0) {
+                throw new IllegalArgumentException("The number of features should be positive.");
+            }
+            this.numberOfFeatures = numberOfFeatures;
+        }
+        
+        /**
+         * Getter for the signed option.
+         * 
+         * @return 
+         */
+        public boolean isSigned() {
+            return signed;
+        }
+        
+        /**
+         * Setter for the signed option. If turned on, the scores are added to
+         * the buckets with a sign determined by the hash, so the expected value
+         * of the collisions is zero. Turn it off when the features must not be
+         * negative, for example with the Multinomial Naive Bayes.
+         * 
+         * @param signed 
+         */
+        public void setSigned(boolean signed) {
+            this.signed = signed;
+        }
+        
+        /**
+         * Getter for the seed of the hash function.
+         * 
+         * @return 
+         */
+        public int getSeed() {
+            return seed;
+        }
+        
+        /**
+         * Setter for the seed of the hash function. The same seed must be used
+         * during training and prediction.
+         * 
+         * @param seed 
+         */
+        public void setSeed(int seed) {
+            this.seed = seed;
+        }
+        
+    }
+    
+    private final NgramsExtractor ngramsExtractor;
+    
+    /**
+     * Public constructor that accepts as arguments the AbstractParameters object.
+     * 
+     * @param parameters 
+     */
+    public HashingExtractor(Parameters parameters) {
+        super(parameters);
+        ngramsExtractor = new NgramsExtractor(parameters);
+    }
+    
+    /**
+     * This method gets as input a string and returns as output a map with the
+     * buckets of the extracted keyword combinations along with the sum of their
+     * signed scores. Buckets with zero score are not included.
+     * 
+     * @param text
+     * @return 
+     */
+    @Override
+    public Map<Integer, Double> extract(final String text) {
+        Map<String, Double> keywordsMap = ngramsExtractor.extract(text);
+        
+        Map<Integer, Double> hashedMap = new HashMap<>();
+        for(Map.Entry<String, Double> entry : keywordsMap.entrySet()) {
+            int hash = murmurHash3(entry.getKey(), parameters.getSeed());
+            Integer bucket = Math.floorMod(hash, parameters.getNumberOfFeatures());
+            double score = (parameters.isSigned() && hash<0)?-entry.getValue():entry.getValue();
+            
+            double value = hashedMap.getOrDefault(bucket, 0.0) + score;
+            if(value == 0.0) {
+                hashedMap.remove(bucket);
+            }
+            else {
+                hashedMap.put(bucket, value);
+            }
+        }
+        
+        return hashedMap;
+    }
+    
+    /**
+     * This method gets as input a string and returns a sparse vector with 
+     * dimension equal to the number of features, which contains the signed
+     * scores of the buckets.
+     * 
+     * @param text
+     * @return 
+     */
+    public OpenMapRealVector extractVector(final String text) {
+        OpenMapRealVector vector = new OpenMapRealVector(parameters.getNumberOfFeatures());
+        for(Map.Entry<Integer, Double> entry : extract(text).entrySet()) {
+            vector.setEntry(entry.getKey(), entry.getValue());
+        }
+        return vector;
+    }
+    
+    /**
+     * Estimates the 32-bit MurmurHash3 (x86 variant) of the UTF-8 bytes of the
+     * string.
+     * 
+     * @param key
+     * @param seed
+     * @return 
+     */
+    public static int murmurHash3(String key, int seed) {
+        byte[] data = key.getBytes(StandardCharsets.UTF_8);
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        
+        int h1 = seed;
+        int length = data.length;
+        int roundedEnd = length & 0xfffffffc; //round down to 4 byte block
+        
+        for(int i=0;i<roundedEnd;i+=4) {
+            int k1 = (data[i] & 0xff) | ((data[i+1] & 0xff) << 8) | ((data[i+2] & 0xff) << 16) | (data[i+3] << 24);
+            k1 *= c1;
+            k1 = Integer.rotateLeft(k1, 15);
+            k1 *= c2;
+            
+            h1 ^= k1;
+            h1 = Integer.rotateLeft(h1, 13);
+            h1 = h1*5 + 0xe6546b64;
+        }
+        
+        //tail
+        int k1 = 0;
+        switch(length & 0x03) {
+            case 3:
+                k1 = (data[roundedEnd+2] & 0xff) << 16;
+                //fall through
+            case 2:
+                k1 |= (data[roundedEnd+1] & 0xff) << 8;
+                //fall through
+            case 1:
+                k1 |= (data[roundedEnd] & 0xff);
+                k1 *= c1;
+                k1 = Integer.rotateLeft(k1, 15);
+                k1 *= c2;
+                h1 ^= k1;
+        }
+        
+        //finalization
+        h1 ^= length;
+        h1 ^= h1 >>> 16;
+        h1 *= 0x85ebca6b;
+        h1 ^= h1 >>> 13;
+        h1 *= 0xc2b2ae35;
+        h1 ^= h1 >>> 16;
+        
+        return h1;
+    }
+    
+}
@@ -163,164 +163,261 @@ public class NgramsExtractor extends AbstractTextExtractor<NgramsExtractor.Param
      */
     @Override
     public Map<String, Double> extract(final String text) {
-        Map<Integer, String> ID2word = new HashMap<>(); //ID=>Kwd
-        Map<Integer, Double> ID2occurrences = new HashMap<>(); //ID=>counts/scores
-        Map<Integer, Integer> position2ID = new LinkedHashMap<>(); //word position=>ID maintain the order of insertation
-        
-        int numberOfWordsInDoc = buildInternalArrays(text, ID2word, ID2occurrences, position2ID);
+        List<String> keywordList = generateTokenizer().tokenize(text);
+        int numberOfWordsInDoc = keywordList.size();
         
-        int maxCombinations = parameters.getMaxCombinations();
-        Map<String, Double> keywordsMap = new HashMap<>();
-        //move the "window" across the document by 1 word at each time
-        for(Map.Entry<Integer, Integer> entry : position2ID.entrySet()) {
-            Integer wordID = entry.getValue();
-            if(!useThisWord(wordID, ID2word, ID2occurrences)) {
-                continue;
-            }
-            
-            Integer position = entry.getKey();
-            //Build all the combinations of the current word with other words within the window and estimate the scores
-            Map<LinkedList<Integer>, Double> positionCombinationsWithScores = getPositionCombinationsWithinWindow(position, maxCombinations, ID2word, ID2occurrences, position2ID, numberOfWordsInDoc);
+        //encode the words of the document as ids
+        Map<String, Integer> word2ID = new HashMap<>();
+        List<String> ID2word = new ArrayList<>();
+        int[] tokenIds = new int[numberOfWordsInDoc];
+        int[] occurrences = new int[numberOfWordsInDoc];
+        for(int position=0;position<numberOfWordsInDoc;++position) {
+            String word = keywordList.get(position);
             
-            //Convert the positions into words and aggregate over their scores.
-            for(Map.Entry<LinkedList<Integer>, Double> entry2 : positionCombinationsWithScores.entrySet()) {
-                LinkedList<Integer> positionCombination = entry2.getKey();
-                
-                StringBuilder sb = new StringBuilder(positionCombination.size()*6);
-                for(Integer pos : positionCombination) {
-                    sb.append(ID2word.get(position2ID.get(pos))).append(" ");
-                }
-                
-                if(sb.length()>0) {
-                    String key = sb.toString().trim();
-                    double score = entry2.getValue();
-                    
-                    keywordsMap.put(key, keywordsMap.getOrDefault(key, 0.0)+score);
-                }
-                
+            Integer id = word2ID.get(word);
+            if(id==null) {
+                id=ID2word.size();
+                word2ID.put(word, id);
+                ID2word.add(word);
             }
+            
+            tokenIds[position] = id;
+            occurrences[id]++;
         }
         
-        //remove any word that has score less than the min occurrence
-        double minScore = parameters.getMinWordOccurrence();
-        Iterator<Map.Entry<String, Double>> it = keywordsMap.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<String, Double> entry = it.next();
-            if(entry.getValue()<minScore) {
-                it.remove();
+        int numberOfWords = ID2word.size();
+        boolean[] usable = new boolean[numberOfWords];
+        for(int id=0;id<numberOfWords;id++) {
+            usable[id] = ID2word.get(id).length() >= parameters.getMinWordLength() && occurrences[id] >= parameters.getMinWordOccurrence();
+        }
+        
+        CombinationsCounter counter = new CombinationsCounter(tokenIds, usable, numberOfWords);
+        
+        //move the "window" across the document by 1 word at each time
+        for(int position=0;position<numberOfWordsInDoc;++position) {
+            if(usable[tokenIds[position]]) {
+                counter.countWindow(position);
             }
         }
         
-        return keywordsMap;
+        //remove any word that has score less than the min occurrence and convert the rest to strings
+        return counter.getKeywords(ID2word, parameters.getMinWordOccurrence());
     }
-
-    private Map<LinkedList<Integer>, Double> getPositionCombinationsWithinWindow(Integer windowStart, int maxCombinations, 
-            Map<Integer, String> ID2word, Map<Integer, Double> ID2occurrences, Map<Integer, Integer> position2ID, 
-            int numberOfWordsInDoc) {
-        int maxDistanceBetweenKwds=parameters.getMaxDistanceBetweenKwds(); 
+    
+    /**
+     * Enumerates the combinations of the words within the windows and sums 
+     * their scores. The combinations are encoded as the sequences of their
+     * word ids; when the ids of the longest combination fit in 63 bits they 
+     * are packed in a long and the scores are stored in a primitive map. 
+     * Only the combinations which survive the minimum occurrence threshold are
+     * converted to strings.
+     */
+    private class CombinationsCounter {
+        private final int[] tokenIds;
+        private final boolean[] usable;
+        private final int numberOfWordsInDoc;
         
-        //make sure the window is atleast as the number of combinations but smaller than the total size of the document
-        int windowLength;
-        if(maxDistanceBetweenKwds == 0) {
-            windowLength = maxCombinations;
-        }
-        else {
-            windowLength = Math.max(parameters.getExaminationWindowLength(), maxCombinations);
-        }
-        int windowEnd=Math.min(windowStart+windowLength, numberOfWordsInDoc);
-
-        //stores POSITION1,...,POSITIONn-1,POSITIONn=>scores of combinations
-        Map<LinkedList<Integer>, Double> positionCombinationsWithScores = new HashMap<>();
+        private final int maxCombinations;
+        private final int maxDistanceBetweenKwds;
+        private final int windowLength;
         
-        LinkedList<Integer> seedList = new LinkedList<>();
-        seedList.add(windowStart);
-        positionCombinationsWithScores.put(seedList, 1.0); //score of 1 since we have once occurence
+        private final int bitsPerWord;
+        private final LongDoubleMap packedScores;
+        private final Map<List<Integer>, Double> scores;
         
-        //take the next word within the window
-        for(int i=windowStart+1;i<windowEnd;++i) {
-            //take a new word and ensure that we want to use it
-            Integer ID = position2ID.get(i);
-            if(ID==null || useThisWord(ID, ID2word, ID2occurrences)==false) {
-                continue;
-            }
+        private final int[] combination;
+        private int windowStart;
+        private int windowEnd;
+        
+        private CombinationsCounter(int[] tokenIds, boolean[] usable, int numberOfWords) {
+            this.tokenIds = tokenIds;
+            this.usable = usable;
+            this.numberOfWordsInDoc = tokenIds.length;
             
-            Map<LinkedList<Integer>, Double> newPositionCombinations = new HashMap<>();//here is where we store the new combinations that we produce
+            maxCombinations = parameters.getMaxCombinations();
+            maxDistanceBetweenKwds = parameters.getMaxDistanceBetweenKwds();
             
-            //it stores the number of words betwen the current position and the original word. It does not include the start/end words only everything between them.
-            int wordsBetweenStart=i-(windowStart+1); 
+            //make sure the window is atleast as the number of combinations
+            if(maxDistanceBetweenKwds == 0) {
+                windowLength = maxCombinations;
+            }
+            else {
+                windowLength = Math.max(parameters.getExaminationWindowLength(), maxCombinations);
+            }
             
-            //take any combination already created and try to combine it with the new word
-            for(LinkedList<Integer> previousPositionCombination : positionCombinationsWithScores.keySet()) {
-                int previousNumWords = previousPositionCombination.size();
-                if(previousNumWords>=maxCombinations) {
-                    continue; //respect the max combination size
-                }
-                int wordsBetweenLastCombo = i-(previousPositionCombination.getLast()+1); //this is the number of words between the last word of the previous combo and the new word that we have
-                if(wordsBetweenLastCombo>maxDistanceBetweenKwds) {
-                    continue; //this ensures that the words that are added in the combination will never be more than this threhold appart.
-                }
-                int currentNumWords = previousNumWords+1; //the number of words the next combination will include
-                
-                int extraWords = wordsBetweenStart - (currentNumWords-2); //we do -2 because again we did not include the start and end words
-                
-                double score = 1.0/(1.0+extraWords);
-                
-                LinkedList<Integer> currentPositionCombination = new LinkedList<>(previousPositionCombination);
-                currentPositionCombination.add(i); //add it at the end
-                newPositionCombinations.put(currentPositionCombination, score);
-                
+            //the ids are stored increased by one, so that the shorter combinations have leading zeros
+            bitsPerWord = 32 - Integer.numberOfLeadingZeros(numberOfWords);
+            if((long)bitsPerWord*maxCombinations <= 63) {
+                packedScores = new LongDoubleMap();
+                scores = null;
+            }
+            else {
+                packedScores = null;
+                scores = new HashMap<>();
             }
             
-            //add the new combinations in the list
-            positionCombinationsWithScores.putAll(newPositionCombinations);
+            combination = new int[Math.max(maxCombinations, 1)];
         }
         
+        /**
+         * Builds all the combinations of the word at the position with other 
+         * words within the window and adds their scores.
+         * 
+         * @param position 
+         */
+        private void countWindow(int position) {
+            windowStart = position;
+            windowEnd = Math.min(position+windowLength, numberOfWordsInDoc); //smaller than the total size of the document
+            combination[0] = tokenIds[position];
+            extend(position, 1, tokenIds[position] + 1L);
+        }
         
-        
-        return positionCombinationsWithScores;
-    }
-    
-    private boolean useThisWord(Integer wordID, Map<Integer, String> ID2word, Map<Integer, Double> ID2occurrences) {
-        String word = ID2word.get(wordID);
-        if(word==null) {
-            return false;
+        private void extend(int lastPosition, int numWords, long packedKey) {
+            //the number of words between the start and the end which are not part of the combination
+            int extraWords = (lastPosition - windowStart + 1) - numWords;
+            add(numWords, packedKey, 1.0/(1.0+extraWords));
+            
+            if(numWords>=maxCombinations) {
+                return; //respect the max combination size
+            }
+            
+            //the words that are added in the combination will never be more than maxDistanceBetweenKwds apart
+            int maxPosition = (int)Math.min(windowEnd, (long)lastPosition + maxDistanceBetweenKwds + 2);
+            for(int i=lastPosition+1;i<maxPosition;++i) {
+                int id = tokenIds[i];
+                if(!usable[id]) {
+                    continue;
+                }
+                combination[numWords] = id;
+                extend(i, numWords+1, (packedKey << bitsPerWord) | (id + 1L));
+            }
         }
-        else if(word.length() < parameters.getMinWordLength()) {
-            return false;
+        
+        private void add(int numWords, long packedKey, double score) {
+            if(packedScores != null) {
+                packedScores.add(packedKey, score);
+            }
+            else {
+                List<Integer> key = new ArrayList<>(numWords);
+                for(int j=0;j<numWords;j++) {
+                    key.add(combination[j]);
+                }
+                scores.put(key, scores.getOrDefault(key, 0.0)+score);
+            }
         }
-        else if(ID2occurrences.get(wordID)<parameters.getMinWordOccurrence()) {
-            return false;
+        
+        /**
+         * Returns the keywords with score at least equal to the minimum score.
+         * 
+         * @param ID2word
+         * @param minScore
+         * @return 
+         */
+        private Map<String, Double> getKeywords(List<String> ID2word, double minScore) {
+            Map<String, Double> keywordsMap = new HashMap<>();
+            
+            if(packedScores != null) {
+                long mask = (1L << bitsPerWord) - 1L;
+                int[] ids = new int[combination.length];
+                for(int entry=0;entry<packedScores.size;entry++) {
+                    double score = packedScores.values[entry];
+                    if(score < minScore) {
+                        continue;
+                    }
+                    
+                    long packedKey = packedScores.keys[entry];
+                    int numWords = 0;
+                    while(packedKey != 0L) {
+                        ids[numWords++] = (int)(packedKey & mask) - 1;
+                        packedKey >>>= bitsPerWord;
+                    }
+                    
+                    StringBuilder sb = new StringBuilder(numWords*6);
+                    for(int j=numWords-1;j>=0;j--) {
+                        sb.append(ID2word.get(ids[j]));
+                        if(j>0) {
+                            sb.append(' ');
+                        }
+                    }
+                    keywordsMap.put(sb.toString(), score);
+                }
+            }
+            else {
+                for(Map.Entry<List<Integer>, Double> entry : scores.entrySet()) {
+                    if(entry.getValue() < minScore) {
+                        continue;
+                    }
+                    StringBuilder sb = new StringBuilder(entry.getKey().size()*6);
+                    for(Integer id : entry.getKey()) {
+                        if(sb.length()>0) {
+                            sb.append(' ');
+                        }
+                        sb.append(ID2word.get(id));
+                    }
+                    keywordsMap.put(sb.toString(), entry.getValue());
+                }
+            }
+            return keywordsMap;
         }
-        return true;
     }
     
-    private int buildInternalArrays(final String text, Map<Integer, String> ID2word, Map<Integer, Double> ID2occurrences, Map<Integer, Integer> position2ID) {
-        
-        Map<String, Integer> word2ID = new HashMap<>();
-        
-        List<String> keywordList = generateTokenizer().tokenize(text);
+    /**
+     * Open addressing hash map with primitive long keys and double values, 
+     * which uses linear probing. The entries are stored in the order of their
+     * insertion and the hash table keeps only their positions.
+     */
+    private static class LongDoubleMap {
+        private int[] table = new int[64]; //position of the entry plus one, 0 for the empty slots
+        private long[] keys = new long[32];
+        private double[] values = new double[32];
+        private int size = 0;
         
-        int lastId=-1;
-        int numberOfWordsInDoc = keywordList.size();
-        for(int position=0;position<numberOfWordsInDoc;++position) {
-            String word = keywordList.get(position);
-            
-            Integer id = word2ID.get(word);
-            if(id==null) {
-                id=++lastId;
-                word2ID.put(word, id);
-                ID2word.put(id, word);
-                ID2occurrences.put(id, 0.0);
+        /**
+         * Adds the value to the value of the key.
+         * 
+         * @param key
+         * @param value 
+         */
+        private void add(long key, double value) {
+            int mask = table.length - 1;
+            int slot = hash(key) & mask;
+            int entry;
+            while((entry = table[slot]) != 0) {
+                if(keys[entry-1] == key) {
+                    values[entry-1] += value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
             }
             
-            ID2occurrences.put(id, ID2occurrences.get(id)+1);
-            position2ID.put(position, id);
+            if(size == keys.length) {
+                keys = Arrays.copyOf(keys, size*2);
+                values = Arrays.copyOf(values, size*2);
+            }
+            keys[size] = key;
+            values[size] = value;
+            table[slot] = ++size;
+            if(size*2 > table.length) {
+                rehash();
+            }
         }
         
-        //keywordList = null;
-
-        //word2ID = null;
-        return numberOfWordsInDoc;
+        private void rehash() {
+            table = new int[table.length*2];
+            int mask = table.length - 1;
+            for(int entry=0;entry<size;entry++) {
+                int slot = hash(keys[entry]) & mask;
+                while(table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = entry+1;
+            }
+        }
+        
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
     }
     
 }
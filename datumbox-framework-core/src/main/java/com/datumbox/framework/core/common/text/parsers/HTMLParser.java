@@ -18,24 +18,23 @@ package com.datumbox.framework.core.common.text.parsers;
 import com.datumbox.framework.core.common.text.StringCleaner;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * The HTMLParser class is a utility class that provides a list of helpful methods
- which can be used to sanitize, clean up and manipulate HTML documents.
+ which can be used to sanitize, clean up and manipulate HTML documents. All the
+ methods scan the document once with the HTMLTokenizer.
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
 public class HTMLParser {
-    private static final Pattern IMG_ALT_TITLE_PATTERN = Pattern.compile("<[\\s]*img[^>]*[alt|title]=[\\s]*[\\\"']?([^>\\\"']+)[\\\"']?[^>]*>", Pattern.DOTALL|Pattern.CASE_INSENSITIVE);
-    private static final Pattern NON_TEXT_TAGS_PATTERN = Pattern.compile("<[\\s]*(head|style|script|object|embed|applet|noframes|noscript|noembed|option)[^>]*?>.*?</\\1>", Pattern.DOTALL|Pattern.CASE_INSENSITIVE);
-    private static final Pattern REMOVE_ATTRIBUTES_PATTERN = Pattern.compile("<([a-z!][a-z0-9]*)[^>]*?(/?)>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);    
-    private static final Pattern TITLE_PATTERN = Pattern.compile("<title[^>]*>(.*?)</title>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);    
-    private static final Pattern HYPERLINK_PATTERN = Pattern.compile("<[\\s]*a[^>]*href[\\s]*=[\\s]*[\\\"']([^\\\"']*)[\\\"'][^>]*>(.*?)</a>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);    
-    private static final Pattern METATAG_PATTERN = Pattern.compile("<[\\s]*meta[^>]*name[\\s]*=[\\s]*[\\\"']([^\\\"']*)[\\\"'][^>]*content[\\s]*=[\\s]*[\\\"']([^\\\"']*)[\\\"'][^>]*>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);    
-    private static final Pattern HX_PATTERN = Pattern.compile("<[\\s]*(H[1-6])[^>]*?>(.*?)</\\1>", Pattern.DOTALL|Pattern.CASE_INSENSITIVE);
-
+    /**
+     * The tags which are removed along with their contents when the text is
+     * extracted.
+     */
+    private static final Set<String> NON_TEXT_TAGS = new HashSet<>(Arrays.asList("head", "style", "script", "object", "embed", "applet", "noframes", "noscript", "noembed", "option"));
+    
+    private static final Set<String> HX_TAGS = new HashSet<>(Arrays.asList("h1", "h2", "h3", "h4", "h5", "h6"));
+    
     private static final String[][] ESCAPES = {
             {"\"",     "quot"}, // " - double-quote
             {"&",      "amp"}, // & - ampersand
@@ -250,6 +249,177 @@ public class HTMLParser {
         return input;
     }
     
+    /**
+     * Handler of the HTMLTokenizer which rewrites the document by replacing
+     * or removing the tags, comments and non-text blocks. The public constructor
+     * extracts the text of the page in the same way as extractText(), so the
+     * handler can be extended to collect additional information during the same
+     * traversal.
+     */
+    public static class TextHandler implements HTMLTokenizer.Handler {
+        
+        /**
+         * The ways in which the tags are rewritten.
+         */
+        private enum TagMode {
+            KEEP,
+            SPACE,
+            REMOVE_ATTRIBUTES
+        }
+        
+        private final String html;
+        
+        private final StringBuilder sb;
+        
+        private final String commentReplacement;
+        
+        private final boolean removeNonTextTags;
+        
+        private final TagMode tagMode;
+        
+        private final boolean replaceImgWithAlt;
+        
+        private final boolean unescape;
+        
+        private final Map<String, Integer> lastClosingTags = new HashMap<>();
+        
+        private String skippedTag = null;
+        
+        /**
+         * Public constructor which receives the document which is tokenized.
+         * 
+         * @param html 
+         */
+        public TextHandler(String html) {
+            this(html, "", true, TagMode.SPACE, true, true);
+        }
+        
+        private TextHandler(String html, String commentReplacement, boolean removeNonTextTags, TagMode tagMode, boolean replaceImgWithAlt, boolean unescape) {
+            this.html = html;
+            this.sb = new StringBuilder(html.length());
+            this.commentReplacement = commentReplacement;
+            this.removeNonTextTags = removeNonTextTags;
+            this.tagMode = tagMode;
+            this.replaceImgWithAlt = replaceImgWithAlt;
+            this.unescape = unescape;
+        }
+        
+        /**
+         * Returns the rewritten document.
+         * 
+         * @return 
+         */
+        public String getText() {
+            String text = sb.toString();
+            return unescape?unescapeHtml(text):text;
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void text(int start, int end) {
+            if(skippedTag == null) {
+                sb.append(html, start, end);
+            }
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void startTag(String name, Map<String, String> attributes, boolean selfClosing, int start, int end) {
+            if(skippedTag != null) {
+                return;
+            }
+            
+            if(removeNonTextTags && !selfClosing && NON_TEXT_TAGS.contains(name) && hasClosingTag(name, end)) {
+                skippedTag = name;
+                return;
+            }
+            
+            if(replaceImgWithAlt && "img".equals(name)) {
+                String alt = attributes.get("alt");
+                if(alt == null || alt.isEmpty()) {
+                    alt = attributes.get("title");
+                }
+                if(alt != null && !alt.isEmpty()) {
+                    sb.append(' ').append(alt).append(' ');
+                    return;
+                }
+            }
+            
+            if(tagMode == TagMode.REMOVE_ATTRIBUTES) {
+                sb.append('<').append(name).append(selfClosing?"/>":">");
+            }
+            else {
+                appendTag(start, end);
+            }
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void endTag(String name, int start, int end) {
+            if(skippedTag != null) {
+                if(skippedTag.equals(name)) {
+                    skippedTag = null;
+                    sb.append(' ');
+                }
+                return;
+            }
+            appendTag(start, end);
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void comment(int start, int end) {
+            if(skippedTag != null) {
+                return;
+            }
+            if(commentReplacement == null) {
+                sb.append(html, start, end);
+            }
+            else {
+                sb.append(commentReplacement);
+            }
+        }
+        
+        /** {@inheritDoc} */
+        @Override
+        public void declaration(int start, int end) {
+            if(skippedTag == null) {
+                appendTag(start, end);
+            }
+        }
+        
+        private void appendTag(int start, int end) {
+            if(tagMode == TagMode.SPACE) {
+                sb.append(' ');
+            }
+            else {
+                sb.append(html, start, end);
+            }
+        }
+        
+        /**
+         * Checks whether the non-text tag is closed after the position. Tags 
+         * which are not closed are not removed along with the rest of the 
+         * document.
+         * 
+         * @param name
+         * @param position
+         * @return 
+         */
+        private boolean hasClosingTag(String name, int position) {
+            Integer lastClosingTag = lastClosingTags.get(name);
+            if(lastClosingTag == null) {
+                //the position of the last closing tag is searched once per tag name
+                lastClosingTag = html.lastIndexOf("</");
+                while(lastClosingTag >= 0 && !HTMLTokenizer.isClosingTag(html, lastClosingTag, name)) {
+                    lastClosingTag = html.lastIndexOf("</", lastClosingTag - 1);
+                }
+                lastClosingTags.put(name, lastClosingTag);
+            }
+            return lastClosingTag >= position;
+        }
+    }
+    
     /**
      * Replaces the img tags with their alt text.
      * 
@@ -257,11 +427,7 @@ public class HTMLParser {
      * @return 
      */
     public static String replaceImgWithAlt(String html) {
-        Matcher m = IMG_ALT_TITLE_PATTERN.matcher(html);
-        if (m.find()) {
-            return m.replaceAll(" $1 ");
-        }
-        return html;
+        return rewrite(new TextHandler(html, null, false, TextHandler.TagMode.KEEP, true, false));
     }
     
     /**
@@ -271,7 +437,7 @@ public class HTMLParser {
      * @return 
      */
     public static String removeComments(String html) {
-        return html.replaceAll("(?s)<!--.*?-->", "");
+        return rewrite(new TextHandler(html, "", false, TextHandler.TagMode.KEEP, false, false));
     }
     
     /**
@@ -283,7 +449,7 @@ public class HTMLParser {
      * @return 
      */
     public static String unsafeRemoveAllTags(String html) {
-        return html.replaceAll("\\<.*?>"," ");
+        return rewrite(new TextHandler(html, " ", false, TextHandler.TagMode.SPACE, false, false));
     }
     
     /**
@@ -294,19 +460,7 @@ public class HTMLParser {
      * @return 
      */
     public static String safeRemoveAllTags(String html) {
-        html = removeNonTextTags(html);
-        html = unsafeRemoveAllTags(html);
-        return html;
-    }
-    
-    private static String removeNonTextTags(String html) {
-        html = removeComments(html);
-        Matcher m = NON_TEXT_TAGS_PATTERN.matcher(html);
-        if(m.find()) {
-            html = m.replaceAll(" ");
-        }
-        
-        return html;
+        return rewrite(new TextHandler(html, "", true, TextHandler.TagMode.SPACE, false, false));
     }
     
     /**
@@ -317,16 +471,7 @@ public class HTMLParser {
      * @return 
      */
     public static String removeNonTextTagsAndAttributes(String html) {
-        html = removeNonTextTags(html);
-        
-        Matcher m = REMOVE_ATTRIBUTES_PATTERN.matcher(html);
-        if(m.find()) {
-            html = m.replaceAll("<$1$2>");
-        }
-        
-        html = unescapeHtml(html);
-        
-        return html;
+        return rewrite(new TextHandler(html, "", true, TextHandler.TagMode.REMOVE_ATTRIBUTES, false, true));
     }
     
     /**
@@ -337,16 +482,16 @@ public class HTMLParser {
      */
     public static String extractText(String html) {
         //return Jsoup.parse(text).text();
-        html = replaceImgWithAlt(html);
-        html = safeRemoveAllTags(html);
-        
-        html = unescapeHtml(html);
-        
-        return html;
+        return rewrite(new TextHandler(html));
+    }
+    
+    private static String rewrite(TextHandler handler) {
+        HTMLTokenizer.tokenize(handler.html, handler);
+        return handler.getText();
     }
     
     private static String clear(String html) {
-        return StringCleaner.removeExtraSpaces(unescapeHtml(unsafeRemoveAllTags(html)));
+        return StringCleaner.removeExtraSpaces(rewrite(new TextHandler(html, " ", false, TextHandler.TagMode.SPACE, false, true)));
     }
     
     /**
@@ -356,9 +501,25 @@ public class HTMLParser {
      * @return 
      */
     public static String extractTitle(String html) {
-        Matcher m = TITLE_PATTERN.matcher(html);
-        if (m.find()) {
-            return clear(m.group(0));
+        final int[] title = {-1, -1};
+        HTMLTokenizer.tokenize(html, new HTMLTokenizer.Handler() {
+            @Override
+            public void startTag(String name, Map<String, String> attributes, boolean selfClosing, int start, int end) {
+                if(title[0] < 0 && "title".equals(name)) {
+                    title[0] = start;
+                }
+            }
+            
+            @Override
+            public void endTag(String name, int start, int end) {
+                if(title[0] >= 0 && title[1] < 0 && "title".equals(name)) {
+                    title[1] = end;
+                }
+            }
+        });
+        
+        if(title[1] >= 0) {
+            return clear(html.substring(title[0], title[1]));
         }
         return null;
     }
@@ -395,18 +556,31 @@ public class HTMLParser {
         hyperlinksMap.put(HyperlinkPart.HTMLTAG, new ArrayList<>());
         hyperlinksMap.put(HyperlinkPart.URL, new ArrayList<>());
         hyperlinksMap.put(HyperlinkPart.ANCHORTEXT, new ArrayList<>());
-                
-        Matcher m = HYPERLINK_PATTERN.matcher(html);
-        while (m.find()) {
-            if(m.groupCount()==2) {
-                String tag = m.group(0);
-                String url = m.group(1);
-                String anchortext = m.group(2);
-                hyperlinksMap.get(HyperlinkPart.HTMLTAG).add(tag);
-                hyperlinksMap.get(HyperlinkPart.URL).add(url);
-                hyperlinksMap.get(HyperlinkPart.ANCHORTEXT).add(anchortext);
+        
+        HTMLTokenizer.tokenize(html, new HTMLTokenizer.Handler() {
+            private int tagStart = -1;
+            private int anchorStart;
+            private String url;
+            
+            @Override
+            public void startTag(String name, Map<String, String> attributes, boolean selfClosing, int start, int end) {
+                if(tagStart < 0 && "a".equals(name) && attributes.containsKey("href")) {
+                    tagStart = start;
+                    anchorStart = end;
+                    url = attributes.get("href");
+                }
             }
-        }
+            
+            @Override
+            public void endTag(String name, int start, int end) {
+                if(tagStart >= 0 && "a".equals(name)) {
+                    hyperlinksMap.get(HyperlinkPart.HTMLTAG).add(html.substring(tagStart, end));
+                    hyperlinksMap.get(HyperlinkPart.URL).add(url);
+                    hyperlinksMap.get(HyperlinkPart.ANCHORTEXT).add(html.substring(anchorStart, start));
+                    tagStart = -1;
+                }
+            }
+        });
         return hyperlinksMap;
     }
     
@@ -418,15 +592,19 @@ public class HTMLParser {
      */
     public static Map<String, String> extractMetatags(String html) {
         Map<String, String> metatagsMap = new HashMap<>();
-                
-        Matcher m = METATAG_PATTERN.matcher(html);
-        while (m.find()) {
-            if(m.groupCount()==2) {
-                String name = m.group(1);
-                String content = m.group(2);
-                metatagsMap.put(clear(name), clear(content));
+        
+        HTMLTokenizer.tokenize(html, new HTMLTokenizer.Handler() {
+            @Override
+            public void startTag(String name, Map<String, String> attributes, boolean selfClosing, int start, int end) {
+                if("meta".equals(name)) {
+                    String metaName = attributes.get("name");
+                    String content = attributes.get("content");
+                    if(metaName != null && content != null) {
+                        metatagsMap.put(clear(metaName), clear(content));
+                    }
+                }
             }
-        }
+        });
         return metatagsMap;
     }
     
@@ -441,15 +619,27 @@ public class HTMLParser {
         for(int i=1;i<=6;++i) {
             hxtagsMap.put("H"+i, new ArrayList<>());
         }
-                
-        Matcher m = HX_PATTERN.matcher(html);
-        while (m.find()) {
-            if(m.groupCount()==2) {
-                String tagType = m.group(1).toUpperCase(Locale.ENGLISH);
-                String content = m.group(2);
-                hxtagsMap.get(tagType).add(clear(content));
+        
+        HTMLTokenizer.tokenize(html, new HTMLTokenizer.Handler() {
+            private String openTag = null;
+            private int contentStart;
+            
+            @Override
+            public void startTag(String name, Map<String, String> attributes, boolean selfClosing, int start, int end) {
+                if(openTag == null && HX_TAGS.contains(name)) {
+                    openTag = name;
+                    contentStart = end;
+                }
             }
-        }
+            
+            @Override
+            public void endTag(String name, int start, int end) {
+                if(name.equals(openTag)) {
+                    hxtagsMap.get(name.toUpperCase(Locale.ENGLISH)).add(clear(html.substring(contentStart, start)));
+                    openTag = null;
+                }
+            }
+        });
         return hxtagsMap;
     }
 }
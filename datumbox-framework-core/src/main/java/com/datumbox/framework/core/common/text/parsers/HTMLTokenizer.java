@@ -0,0 +1,376 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.text.parsers;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The HTMLTokenizer scans an HTML document once and reports its text, tags,
+ * comments and declarations to a Handler, similarly to a SAX parser. It does 
+ * not use regular expressions and it does not build a tree, so its running time 
+ * is linear to the length of the document even when the tags are unbalanced.
+ * The contents of the script and style tags are reported as text without 
+ * looking for tags in them. A tag ends at the first '>' and it can not contain
+ * a '<'; otherwise its first character is considered text. Every character of
+ * the document belongs to exactly one event and the events are reported in the
+ * order of the document.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class HTMLTokenizer {
+    
+    /**
+     * Receives the events of the HTMLTokenizer. The positions of the events
+     * refer to the tokenized document; the end positions are exclusive.
+     */
+    public interface Handler {
+        
+        /**
+         * Called for a block of text.
+         * 
+         * @param start
+         * @param end 
+         */
+        default public void text(int start, int end) {
+        }
+        
+        /**
+         * Called for an opening tag. The name of the tag and the names of the
+         * attributes are in lower case while the values of the attributes are
+         * not unescaped. Attributes without value have an empty value.
+         * 
+         * @param name
+         * @param attributes
+         * @param selfClosing
+         * @param start
+         * @param end 
+         */
+        default public void startTag(String name, Map<String, String> attributes, boolean selfClosing, int start, int end) {
+        }
+        
+        /**
+         * Called for a closing tag. The name of the tag is in lower case.
+         * 
+         * @param name
+         * @param start
+         * @param end 
+         */
+        default public void endTag(String name, int start, int end) {
+        }
+        
+        /**
+         * Called for a comment. An unterminated comment extends to the end of
+         * the document.
+         * 
+         * @param start
+         * @param end 
+         */
+        default public void comment(int start, int end) {
+        }
+        
+        /**
+         * Called for a declaration or processing instruction, such as the
+         * DOCTYPE.
+         * 
+         * @param start
+         * @param end 
+         */
+        default public void declaration(int start, int end) {
+        }
+    }
+    
+    private final String html;
+    
+    private final int length;
+    
+    private final Handler handler;
+    
+    /**
+     * The position of the next '>' which was found by the last search.
+     */
+    private int nextGt = -2;
+    
+    private int nextGtFrom = 0;
+    
+    private HTMLTokenizer(String html, Handler handler) {
+        this.html = html;
+        this.length = html.length();
+        this.handler = handler;
+    }
+    
+    /**
+     * Tokenizes the HTML document and reports the events to the handler.
+     * 
+     * @param html
+     * @param handler 
+     */
+    public static void tokenize(String html, Handler handler) {
+        new HTMLTokenizer(html, handler).tokenize();
+    }
+    
+    private void tokenize() {
+        int textStart = 0;
+        int pos = 0;
+        while(pos < length) {
+            int lt = html.indexOf('<', pos);
+            if(lt < 0) {
+                break;
+            }
+            
+            int end = parseMarkup(lt, textStart);
+            if(end < 0) {
+                pos = lt + 1; //not markup, it is part of the text
+                continue;
+            }
+            pos = textStart = end;
+        }
+        
+        if(textStart < length) {
+            handler.text(textStart, length);
+        }
+    }
+    
+    /**
+     * Parses the markup which starts at the position and reports it along with
+     * any text before it. It returns the end of the markup or -1 if the 
+     * position does not start a markup.
+     * 
+     * @param lt
+     * @param textStart
+     * @return 
+     */
+    private int parseMarkup(int lt, int textStart) {
+        if(lt + 1 >= length) {
+            return -1;
+        }
+        char c = html.charAt(lt + 1);
+        
+        if(c == '!' && html.startsWith("<!--", lt)) {
+            int close = html.indexOf("-->", lt + 4);
+            int end = (close >= 0)?close + 3:length;
+            flushText(textStart, lt);
+            handler.comment(lt, end);
+            return end;
+        }
+        else if(c == '!' || c == '?') {
+            int gt = findGt(lt + 2);
+            if(gt < 0) {
+                return -1;
+            }
+            flushText(textStart, lt);
+            handler.declaration(lt, gt + 1);
+            return gt + 1;
+        }
+        else if(c == '/') {
+            int nameStart = lt + 2;
+            int nameEnd = readName(nameStart);
+            if(nameEnd == nameStart) {
+                return -1;
+            }
+            int gt = findGt(nameEnd);
+            if(gt < 0 || containsLt(nameEnd, gt)) {
+                return -1;
+            }
+            flushText(textStart, lt);
+            handler.endTag(html.substring(nameStart, nameEnd).toLowerCase(Locale.ENGLISH), lt, gt + 1);
+            return gt + 1;
+        }
+        
+        int nameStart = skipWhitespace(lt + 1, length);
+        int nameEnd = readName(nameStart);
+        if(nameEnd == nameStart) {
+            return -1;
+        }
+        int gt = findGt(nameEnd);
+        if(gt < 0 || containsLt(nameEnd, gt)) {
+            return -1;
+        }
+        
+        String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.ENGLISH);
+        Map<String, String> attributes = parseAttributes(nameEnd, gt);
+        
+        int last = gt - 1;
+        while(last >= nameEnd && Character.isWhitespace(html.charAt(last))) {
+            last--;
+        }
+        boolean selfClosing = last >= nameEnd && html.charAt(last) == '/';
+        
+        flushText(textStart, lt);
+        handler.startTag(name, attributes, selfClosing, lt, gt + 1);
+        int end = gt + 1;
+        
+        if(!selfClosing && ("script".equals(name) || "style".equals(name))) {
+            //the contents of script and style are raw text
+            int close = findClosingTag(name, end);
+            if(close > end) {
+                handler.text(end, close);
+            }
+            end = close;
+        }
+        return end;
+    }
+    
+    /**
+     * Checks whether there is a '<' between the positions, in which case the
+     * tag is not terminated.
+     * 
+     * @param from
+     * @param to
+     * @return 
+     */
+    private boolean containsLt(int from, int to) {
+        for(int i=from;i<to;i++) {
+            if(html.charAt(i) == '<') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void flushText(int start, int end) {
+        if(start < end) {
+            handler.text(start, end);
+        }
+    }
+    
+    /**
+     * Returns the position of the next '>' or -1. The result of the last search
+     * is reused, so the document is scanned only once even if it contains
+     * many unterminated tags.
+     * 
+     * @param from
+     * @return 
+     */
+    private int findGt(int from) {
+        if(nextGt == -2 || from < nextGtFrom || (nextGt >= 0 && nextGt < from)) {
+            nextGt = html.indexOf('>', from);
+            nextGtFrom = from;
+        }
+        return nextGt;
+    }
+    
+    private int findClosingTag(String name, int from) {
+        int pos = from;
+        while(true) {
+            pos = html.indexOf("</", pos);
+            if(pos < 0) {
+                return length;
+            }
+            if(isClosingTag(html, pos, name)) {
+                return pos;
+            }
+            pos += 2;
+        }
+    }
+    
+    /**
+     * Checks whether a closing tag with the provided name starts at the
+     * position. The name must be followed by '>', '/' or whitespace, so that 
+     * for example the closing tag of header does not close the head tag.
+     * 
+     * @param html
+     * @param pos
+     * @param name
+     * @return 
+     */
+    static boolean isClosingTag(String html, int pos, String name) {
+        int end = pos + 2 + name.length();
+        if(end >= html.length() || !html.regionMatches(true, pos + 2, name, 0, name.length())) {
+            return false;
+        }
+        char c = html.charAt(end);
+        return c == '>' || c == '/' || Character.isWhitespace(c);
+    }
+    
+    private int readName(int pos) {
+        if(pos >= length || !Character.isLetter(html.charAt(pos))) {
+            return pos;
+        }
+        while(pos < length) {
+            char c = html.charAt(pos);
+            if(!Character.isLetterOrDigit(c) && c != '-' && c != ':' && c != '_') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+    
+    private int skipWhitespace(int pos, int end) {
+        while(pos < end && Character.isWhitespace(html.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+    
+    private Map<String, String> parseAttributes(int pos, int end) {
+        Map<String, String> attributes = null;
+        while(true) {
+            while(pos < end && (Character.isWhitespace(html.charAt(pos)) || html.charAt(pos) == '/')) {
+                pos++;
+            }
+            if(pos >= end) {
+                break;
+            }
+            
+            int nameStart = pos;
+            while(pos < end) {
+                char c = html.charAt(pos);
+                if(Character.isWhitespace(c) || c == '=' || c == '/') {
+                    break;
+                }
+                pos++;
+            }
+            if(pos == nameStart) {
+                pos++; //stray character
+                continue;
+            }
+            String name = html.substring(nameStart, pos).toLowerCase(Locale.ENGLISH);
+            
+            String value = "";
+            pos = skipWhitespace(pos, end);
+            if(pos < end && html.charAt(pos) == '=') {
+                pos = skipWhitespace(pos + 1, end);
+                if(pos < end && (html.charAt(pos) == '"' || html.charAt(pos) == '\'')) {
+                    char quote = html.charAt(pos);
+                    int close = pos + 1;
+                    while(close < end && html.charAt(close) != quote) {
+                        close++;
+                    }
+                    value = html.substring(pos + 1, close);
+                    pos = close + 1;
+                }
+                else {
+                    int valueStart = pos;
+                    while(pos < end && !Character.isWhitespace(html.charAt(pos))) {
+                        pos++;
+                    }
+                    value = html.substring(valueStart, pos);
+                }
+            }
+            
+            if(attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            attributes.putIfAbsent(name, value);
+        }
+        return (attributes != null)?attributes:Collections.emptyMap();
+    }
+    
+}
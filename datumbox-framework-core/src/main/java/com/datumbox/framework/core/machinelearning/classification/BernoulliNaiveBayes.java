@@ -16,7 +16,6 @@
 package com.datumbox.framework.core.machinelearning.classification;
 
 import com.datumbox.framework.common.Configuration;
-import com.datumbox.framework.common.concurrency.StreamMethods;
 import com.datumbox.framework.common.dataobjects.AssociativeArray;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.Record;
@@ -107,61 +106,49 @@ public class BernoulliNaiveBayes extends AbstractNaiveBayes<BernoulliNaiveBayes.
     @Override
     public PredictParallelizable.Prediction _predictRecord(Record r) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
-        Map<List<Object>, Double> logLikelihoods = modelParameters.getLogLikelihoods();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
+        double[] likelihoods = modelParameters.getLogLikelihoods();
         Map<Object, Double> logPriors = modelParameters.getLogPriors();
         Set<Object> classesSet = modelParameters.getClasses();
         Map<Object, Double> sumOfLog1minusProb = modelParameters.getSumOfLog1minusProb();
+        int c = classesSet.size();
         
-        Object someClass = classesSet.iterator().next();
-        
-        
-        //Build new map here! clear the prediction scores with the scores of the classes
-        AssociativeArray predictionScores = new AssociativeArray(new HashMap<>(logPriors));
-
-        //in order to avoid looping throug all available features for each record, we have already calculated the Sum of log(1-prob). So we know the score of a record that has no feature activated. We add this score on the initial score below:
-        for(Map.Entry<Object, Double> entry : sumOfLog1minusProb.entrySet()) {
-            Object theClass = entry.getKey();
-            Double value = entry.getValue();
-            Double previousValue = predictionScores.getDouble(theClass);
-            predictionScores.put(theClass, previousValue+value);
+        //initialize the prediction scores with the scores of the classes. In order to avoid looping throug all available features for each record, we have already calculated the Sum of log(1-prob). So we know the score of a record that has no feature activated. We add this score on the initial score below:
+        double[] classScores = new double[c];
+        int classId = 0;
+        for(Object theClass : classesSet) {
+            classScores[classId++] = logPriors.get(theClass) + sumOfLog1minusProb.get(theClass);
         }
 
 
         //Then we loop through all the active features of the record, we add the log(prob) and we subtract the log(1-prob)
         for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-            Object feature = entry.getKey();
-
-
             //EVERY feature within our dictionary has a value for EVERY class
-            //So if the feature has no value for one random class (someClass has 
-            //no particular significance), then it will not have for any class
-            //and thus the feature is not in the dictionary and can be ignored.
-            if(!logLikelihoods.containsKey(Arrays.asList(feature, someClass))) {
+            //So if the feature is not in the dictionary it can be ignored.
+            Integer featureId = featureIds.get(entry.getKey());
+            if(featureId==null) {
                 continue;
             }
 
-            //extract the feature scores for each class for the particular feature
-            AssociativeArray classLogScoresForThisFeature = new AssociativeArray(); 
-            for(Object theClass : classesSet) {
-                Double logScore = logLikelihoods.get(Arrays.asList(feature, theClass));
-                classLogScoresForThisFeature.put(theClass, logScore);
-            }
-
-
             Double occurrences= TypeInference.toDouble(entry.getValue());
             if(occurrences==null || occurrences==0.0) { 
                 continue;
             }
             //no need to specifically binarize the occurrences. we will not multiply the score by it
 
-            for(Map.Entry<Object, Object> entry2 : classLogScoresForThisFeature.entrySet()) {
-                Object theClass = entry2.getKey();
-                Double probability = TypeInference.toDouble(entry2.getValue());
-                Double previousValue = predictionScores.getDouble(theClass);
-                predictionScores.put(theClass, previousValue + Math.log(probability)-Math.log(1.0-probability));
+            int offset = featureId*c;
+            for(classId=0;classId<c;classId++) {
+                double probability = likelihoods[offset+classId];
+                classScores[classId] += Math.log(probability)-Math.log(1.0-probability);
             }
         }
 
+        AssociativeArray predictionScores = new AssociativeArray();
+        classId = 0;
+        for(Object theClass : classesSet) {
+            predictionScores.put(theClass, classScores[classId++]);
+        }
+
         Object predictedClass=getSelectedClassFromClassScores(predictionScores);
 
         Descriptives.normalizeExp(predictionScores);
@@ -179,20 +166,17 @@ public class BernoulliNaiveBayes extends AbstractNaiveBayes<BernoulliNaiveBayes.
         knowledgeBase.getTrainingParameters().setMultiProbabilityWeighted(false);
         
         
-        Map<List<Object>, Double> likelihoods = modelParameters.getLogLikelihoods();
         Map<Object, Double> logPriors = modelParameters.getLogPriors();
         Set<Object> classesSet = modelParameters.getClasses();
         Map<Object, Double> sumOfLog1minusProb = modelParameters.getSumOfLog1minusProb();
         
         
         //calculate first statistics about the classes
-        Map<Object, Integer> totalFeatureOccurrencesForEachClass = new HashMap<>();
         for(Record r : trainingData) {
             Object theClass=r.getY();
             
             if(classesSet.add(theClass)) { //is it new class? add it
                 logPriors.put(theClass, 1.0);  
-                totalFeatureOccurrencesForEachClass.put(theClass, 0);
                 sumOfLog1minusProb.put(theClass, 0.0);
             }
             else { //already exists? increase counter
@@ -200,7 +184,7 @@ public class BernoulliNaiveBayes extends AbstractNaiveBayes<BernoulliNaiveBayes.
             }
         }
         
-        //Loop through all the classes to ensure that the feature-class combination is initialized for ALL the classes
+        //Build the dictionaries of classes and features and initialize the feature-class combinations for ALL the classes.
         //The math REQUIRE us to have scores for all classes to make the probabilities comparable.
         /*
             Implementation note:
@@ -210,38 +194,14 @@ public class BernoulliNaiveBayes extends AbstractNaiveBayes<BernoulliNaiveBayes.
             any effects on the results of the algorithm since the scores will be the same in all classes
             and it will be taken care by the normalization.
         */
-        streamExecutor.forEach(StreamMethods.stream(trainingData.getXDataTypes().keySet().stream(), isParallelized()), feature -> {
-            for(Object theClass : classesSet) {
-                List<Object> featureClassTuple = Arrays.asList(feature, theClass);
-                likelihoods.put(featureClassTuple, 0.0); //the key unique across threads and the map is concurrent
-            }
-        });
+        Map<Object, Integer> classIds = buildClassIds(classesSet);
+        int c = classIds.size();
+        double[] likelihoods = initializeLikelihoods(trainingData, c);
         
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
         
-        //now calculate the statistics of features
-        streamExecutor.forEach(StreamMethods.stream(trainingData.stream(), isParallelized()), r -> {
-            Object theClass = r.getY();
-            
-            //store the occurrances of the features
-            int sumOfOccurrences = 0;
-            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object feature = entry.getKey();
-                Double occurrences=TypeInference.toDouble(entry.getValue());
-                
-                if(occurrences!= null && occurrences>0.0) {
-                    //The below block of code clips occurrences to 1
-                    List<Object> featureClassTuple = Arrays.asList(feature, theClass);
-                    likelihoods.put(featureClassTuple, likelihoods.get(featureClassTuple)+1.0); //each thread updates a unique key and the map is cuncurrent
-                    
-                    sumOfOccurrences++;
-                }
-            }
-            
-            synchronized(totalFeatureOccurrencesForEachClass) {
-                totalFeatureOccurrencesForEachClass.put(theClass, totalFeatureOccurrencesForEachClass.get(theClass)+sumOfOccurrences);
-            }
-            
-        });
+        //now calculate the statistics of features, the occurrences are clipped to 1
+        double[] totalFeatureOccurrencesForEachClass = countOccurrences(trainingData, featureIds, classIds, likelihoods, true);
         
         //calculate prior log probabilities
         for(Map.Entry<Object, Double> entry : logPriors.entrySet()) {
@@ -253,24 +213,21 @@ public class BernoulliNaiveBayes extends AbstractNaiveBayes<BernoulliNaiveBayes.
         }
         
         //update log likelihood
-        for(Object theClass : classesSet) {
-            double sumLog1minusP = streamExecutor.sum(StreamMethods.stream(trainingData.getXDataTypes().keySet().stream(), isParallelized()).mapToDouble(feature -> {
-                List<Object> featureClassTuple = Arrays.asList(feature, theClass);
-                Double occurrences = likelihoods.get(featureClassTuple);
+        double[] sumLog1minusP = new double[c];
+        for(int i=0;i<likelihoods.length;i++) {
+            int classId = i%c;
+            double occurrences = likelihoods[i];
 
-                //We perform laplace smoothing (also known as add-1)
-                Double smoothedProbability = (occurrences+1.0)/(totalFeatureOccurrencesForEachClass.get(theClass)+d); // the d is also known in NLP problems as the Vocabulary size. 
+            //We perform laplace smoothing (also known as add-1)
+            double smoothedProbability = (occurrences+1.0)/(totalFeatureOccurrencesForEachClass[classId]+d); // the d is also known in NLP problems as the Vocabulary size. 
 
-                likelihoods.put(featureClassTuple, smoothedProbability);
+            likelihoods[i] = smoothedProbability;
 
-                double log1minusP = Math.log( 1.0-smoothedProbability );
-                
-                return log1minusP;
-            }));
-            
-            sumOfLog1minusProb.put(theClass, sumOfLog1minusProb.get(theClass) + sumLog1minusP); 
+            sumLog1minusP[classId] += Math.log( 1.0-smoothedProbability );
         }
         
-        //Drop the temporary Collection
+        for(Object theClass : classesSet) {
+            sumOfLog1minusProb.put(theClass, sumOfLog1minusProb.get(theClass) + sumLog1minusP[classIds.get(theClass)]); 
+        }
     }
 }
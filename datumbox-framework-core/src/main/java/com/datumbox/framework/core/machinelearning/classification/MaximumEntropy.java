@@ -33,10 +33,11 @@ import com.datumbox.framework.core.machinelearning.common.interfaces.TrainParall
 import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
 
 import java.util.Arrays;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 
 /**
@@ -56,8 +57,10 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
     public static class ModelParameters extends AbstractClassifier.AbstractModelParameters {
         private static final long serialVersionUID = 1L;
         
-        @BigMap(keyClass=List.class, valueClass=Double.class, mapType=MapType.HASHMAP, storageHint=StorageHint.IN_MEMORY, concurrent=true)
-        private Map<List<Object>, Double> lambdas; //the lambda parameters of the model
+        @BigMap(keyClass=Object.class, valueClass=Integer.class, mapType=MapType.HASHMAP, storageHint=StorageHint.IN_MEMORY, concurrent=true)
+        private Map<Object, Integer> featureIds; //the dictionary that maps each feature to its row in the lambdas matrix
+        
+        private double[] lambdas; //the lambda parameters of the model stored as a row-major featureId x classId matrix
         
         /** 
          * @param storageEngine
@@ -68,11 +71,34 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
         }
         
         /**
-         * Getter for the Lambda coefficients.
+         * Getter for the dictionary which maps every feature to its row in the
+         * lambdas matrix.
+         * 
+         * @return 
+         */
+        public Map<Object, Integer> getFeatureIds() {
+            return featureIds;
+        }
+        
+        /**
+         * Setter for the dictionary which maps every feature to its row in the
+         * lambdas matrix.
+         * 
+         * @param featureIds 
+         */
+        protected void setFeatureIds(Map<Object, Integer> featureIds) {
+            this.featureIds = featureIds;
+        }
+        
+        /**
+         * Getter for the Lambda coefficients. The coefficients are stored in a 
+         * row-major matrix; the lambda of a feature-class pair is located at 
+         * position featureId*C + classId, where the classId is the position of 
+         * the class in the set of classes.
          * 
          * @return 
          */
-        public Map<List<Object>, Double> getLambdas() {
+        public double[] getLambdas() {
             return lambdas;
         }
         
@@ -81,7 +107,7 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
          * 
          * @param lambdas 
          */
-        protected void setLambdas(Map<List<Object>, Double> lambdas) {
+        protected void setLambdas(double[] lambdas) {
             this.lambdas = lambdas;
         }
         
@@ -163,11 +189,15 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
     /** {@inheritDoc} */
     @Override
     public Prediction _predictRecord(Record r) {
-        Set<Object> classesSet = knowledgeBase.getModelParameters().getClasses();
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        
+        Set<Object> classesSet = modelParameters.getClasses();
+        double[] classScores = calculateClassScores(r.getX(), modelParameters.getFeatureIds(), modelParameters.getLambdas(), classesSet.size());
         
         AssociativeArray predictionScores = new AssociativeArray();
+        int classId = 0;
         for(Object theClass : classesSet) {
-            predictionScores.put(theClass, calculateClassScore(r.getX(), theClass));
+            predictionScores.put(theClass, classScores[classId++]);
         }
         
         Object predictedClass=getSelectedClassFromClassScores(predictionScores);
@@ -184,7 +214,7 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
         int n = trainingData.size();
         
         
-        Map<List<Object>, Double> lambdas = modelParameters.getLambdas();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
         Set<Object> classesSet = modelParameters.getClasses();
         double Cmax = 0.0; //max number of activated features in the dataset. Required from the IIS algorithm
         
@@ -205,36 +235,39 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
             
         }
         
-        //create a temporary map for the observed probabilities in training set
-        StorageEngine storageEngine = knowledgeBase.getStorageEngine();
-        Map<List<Object>, Double> tmp_EpFj_observed = storageEngine.getBigMap("tmp_EpFj_observed", (Class<List<Object>>)(Class<?>)List.class, Double.class, MapType.HASHMAP, StorageHint.IN_MEMORY, true, true);
-        
-        //Loop through all the classes to ensure that the feature-class combination is initialized for ALL the classes
-        //The math REQUIRE us to have scores for all classes to make the probabilities comparable.
-        streamExecutor.forEach(StreamMethods.stream(trainingData.getXDataTypes().keySet().stream(), isParallelized()), feature -> {
-            for(Object theClass : classesSet) {
-                List<Object> featureClassTuple = Arrays.asList(feature, theClass);
-                tmp_EpFj_observed.put(featureClassTuple, 0.0);
-                lambdas.put(featureClassTuple, 0.0);
-            }
-        });
+        //assign ids to all the classes based on their order in the set
+        Map<Object, Integer> classIds = new HashMap<>();
+        for(Object theClass : classesSet) {
+            classIds.put(theClass, classIds.size());
+        }
+        int c = classIds.size();
+        
+        //build the dictionary of features
+        int d = 0;
+        for(Object feature : trainingData.getXDataTypes().keySet()) {
+            featureIds.put(feature, d++);
+        }
         
+        //Initialize the feature-class combinations for ALL the classes. The math REQUIRE us to have scores for all classes to make the probabilities comparable.
+        modelParameters.setLambdas(new double[d*c]);
+        
+        //create a temporary matrix for the observed probabilities in training set
+        double[] EpFj_observed = new double[d*c];
     
         double increment = 1.0/n; //this is done for speed reasons. We don't want to repeat the same division over and over
         
         //then we calculate the observed probabilities in training set
         streamExecutor.forEach(StreamMethods.stream(trainingData.stream(), isParallelized()), r -> {
-            Object theClass = r.getY();
+            int classId = classIds.get(r.getY());
             //store the occurrances of the features
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
                 Double occurrences=TypeInference.toDouble(entry.getValue());
                 if (occurrences!=null && occurrences>0.0) {
-                    Object feature = entry.getKey();
-
+                    int featureId = featureIds.get(entry.getKey());
+                    
                     //find the class of this particular example
-                    List<Object> featureClassTuple = Arrays.asList(feature, theClass);
-                    synchronized(tmp_EpFj_observed) {
-                        tmp_EpFj_observed.put(featureClassTuple, tmp_EpFj_observed.get(featureClassTuple) + increment);
+                    synchronized(EpFj_observed) {
+                        EpFj_observed[featureId*c+classId] += increment;
                     }
                 }
             }
@@ -243,76 +276,59 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
         
         
         //IIS algorithm
-        IIS(trainingData, tmp_EpFj_observed, Cmax);
-        
-        
-        //Drop the temporary Collection
-        storageEngine.dropBigMap("tmp_EpFj_observed", tmp_EpFj_observed);
+        IIS(trainingData, EpFj_observed, Cmax);
     }
     
-    private void IIS(Dataframe trainingData, Map<List<Object>, Double> EpFj_observed, double Cmax) {
+    private void IIS(Dataframe trainingData, double[] EpFj_observed, double Cmax) {
         
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
 
         int totalIterations = knowledgeBase.getTrainingParameters().getTotalIterations();
-        Set<Object> classesSet = modelParameters.getClasses();
-        Map<List<Object>, Double> lambdas = modelParameters.getLambdas();
+        int c = modelParameters.getC();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
+        double[] lambdas = modelParameters.getLambdas();
         
         int n = trainingData.size();
         
-        StorageEngine storageEngine = knowledgeBase.getStorageEngine();
         for(int iteration=0;iteration<totalIterations;++iteration) {
             
             logger.debug("Iteration {}", iteration);
             
-            Map<List<Object>, Double> tmp_EpFj_model = storageEngine.getBigMap("tmp_EpFj_model", (Class<List<Object>>)(Class<?>)List.class, Double.class, MapType.HASHMAP, StorageHint.IN_MEMORY, false, true);
+            double[] EpFj_model = new double[lambdas.length];
             
             //calculate the model probabilities
             streamExecutor.forEach(StreamMethods.stream(trainingData.stream(), isParallelized()), r -> { //slow parallel loop
                 
-                //build a map with the scores of the record for each class
-                AssociativeArray classScores = new AssociativeArray();
+                //build an array with the scores of the record for each class
                 AssociativeArray xData = r.getX();
-                for(Object theClass : classesSet) {
-                    double score = calculateClassScore(xData, theClass);
-                    classScores.put(theClass, score);
-                }
+                double[] classScores = calculateClassScores(xData, featureIds, lambdas, c);
                 
-                Descriptives.normalizeExp(classScores);
+                normalizeExp(classScores);
                 
                 
                 //It is the average probability across all documents for a specific characteristic
-                for(Map.Entry<Object, Object> entry : classScores.entrySet()) {
-                    Object theClass = entry.getKey();
-                    Double score = TypeInference.toDouble(entry.getValue());
-
-                    double probabilityFraction = score/n;
-                    
-                    synchronized(tmp_EpFj_model) {
-                        for(Map.Entry<Object, Object> entry2 : r.getX().entrySet()) {
-                            Double occurrences=TypeInference.toDouble(entry2.getValue());
+                synchronized(EpFj_model) {
+                    for(Map.Entry<Object, Object> entry : xData.entrySet()) {
+                        Double occurrences=TypeInference.toDouble(entry.getValue());
 
-                            if(occurrences==null || occurrences==0.0) {
-                                continue;
-                            }
-                            Object feature = entry2.getKey();
-                            List<Object> featureClassTuple = Arrays.asList(feature, theClass);
-
-                            tmp_EpFj_model.put(featureClassTuple, tmp_EpFj_model.getOrDefault(featureClassTuple, 0.0) + probabilityFraction);           
+                        if(occurrences==null || occurrences==0.0) {
+                            continue;
+                        }
+                        int offset = featureIds.get(entry.getKey())*c;
+                        
+                        for(int classId=0;classId<c;classId++) {
+                            EpFj_model[offset+classId] += classScores[classId]/n;
                         }
                     }
                 }
-                //classScores=null;
                 
             });
             
             AtomicBoolean infiniteValuesDetected = new AtomicBoolean(false);
             //Now we have the model probabilities. We will use it to estimate the Deltas and finally update the lamdas
-            streamExecutor.forEach(StreamMethods.stream(tmp_EpFj_model.entrySet().stream(), isParallelized()), featureClassCounts -> {
-                List<Object> tp = featureClassCounts.getKey();
-                
-                Double EpFj_observed_value = EpFj_observed.get(tp);
-                Double EpFj_model_value = featureClassCounts.getValue();    
+            streamExecutor.forEach(StreamMethods.stream(IntStream.range(0, lambdas.length).boxed(), isParallelized()), tp -> {
+                double EpFj_observed_value = EpFj_observed[tp];
+                double EpFj_model_value = EpFj_model[tp];
                 
                 
                 if(Math.abs(EpFj_observed_value-EpFj_model_value)<=1e-8) {
@@ -344,7 +360,7 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
                     //non-negative infinite weight in the dataset. This is something
                     //similar to the plus1 smoothing.
                     
-                    lambdas.put(tp, Double.NEGATIVE_INFINITY);
+                    lambdas[tp] = Double.NEGATIVE_INFINITY;
                     infiniteValuesDetected.set(true);
                 }
                 else if(EpFj_model_value==0.0) {
@@ -365,14 +381,13 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
                     //weight.
                     
                     
-                    lambdas.put(tp, Double.POSITIVE_INFINITY);
+                    lambdas[tp] = Double.POSITIVE_INFINITY;
                     infiniteValuesDetected.set(true);
                 }
                 else {
                     //the formula below can't produce a +inf or -inf value
                     double deltaJ = Math.log(EpFj_observed_value/EpFj_model_value)/Cmax;
-                    double newValue = lambdas.get(tp) + deltaJ;
-                    lambdas.put(tp, newValue); //update lamdas by delta
+                    lambdas[tp] += deltaJ; //update lamdas by delta
                 }
             });
             
@@ -380,36 +395,28 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
             if(infiniteValuesDetected.get()) {
             
             
-                Double minimumNonInfiniteLambdaWeight = streamExecutor.min(StreamMethods.stream(lambdas.values().stream(), isParallelized()).filter(v -> Double.isFinite(v)), Double::compare).get();
-                Double maximumNonInfiniteLambdaWeight = streamExecutor.max(StreamMethods.stream(lambdas.values().stream(), isParallelized()).filter(v -> Double.isFinite(v)), Double::compare).get();
+                double minimumNonInfiniteLambdaWeight = Arrays.stream(lambdas).filter(v -> Double.isFinite(v)).min().getAsDouble();
+                double maximumNonInfiniteLambdaWeight = Arrays.stream(lambdas).filter(v -> Double.isFinite(v)).max().getAsDouble();
                 
-                streamExecutor.forEach(StreamMethods.stream(lambdas.entrySet().stream(), isParallelized()), e -> {
-                    List<Object> featureClass = e.getKey();
-                    Double value = e.getValue();
+                for(int i=0;i<lambdas.length;i++) {
+                    double value = lambdas[i];
                     
                     if(Double.isInfinite(value)) {
                         if(value<0.0) { //value==Double.NEGATIVE_INFINITY
-                            lambdas.put(featureClass, minimumNonInfiniteLambdaWeight);
+                            lambdas[i] = minimumNonInfiniteLambdaWeight;
                         }
                         else { //value==Double.POSITIVE_INFINITY
-                            lambdas.put(featureClass, maximumNonInfiniteLambdaWeight);
+                            lambdas[i] = maximumNonInfiniteLambdaWeight;
                         }
                     }
-                });
+                }
             }
-            
-            
-            
-            //Drop the temporary Collection
-            storageEngine.dropBigMap("tmp_EpFj_model", tmp_EpFj_model);
         }
         
     }
     
-    private Double calculateClassScore(AssociativeArray x, Object theClass) {
-        double score = 0;
-        
-        Map<List<Object>, Double> lambdas = knowledgeBase.getModelParameters().getLambdas();
+    private double[] calculateClassScores(AssociativeArray x, Map<Object, Integer> featureIds, double[] lambdas, int c) {
+        double[] scores = new double[c];
         
         for(Map.Entry<Object, Object> entry : x.entrySet()) {
             Double value = TypeInference.toDouble(entry.getValue());
@@ -418,16 +425,38 @@ public class MaximumEntropy extends AbstractClassifier<MaximumEntropy.ModelParam
             }
             //note that we will not use the value any more. MaxEntropy classifier is binarized.
             
-            Object feature = entry.getKey();
-            List<Object> featureClassTuple = Arrays.asList(feature, theClass);
+            Integer featureId = featureIds.get(entry.getKey());
+            if(featureId==null) {//ensure that the feature is in the dictionary
+                continue;
+            }
             
-            Double lambdaWeight = lambdas.get(featureClassTuple);
-            if(lambdaWeight!=null) {//ensure that the feature is in the dictionary
-                score+=lambdaWeight;
+            int offset = featureId*c;
+            for(int classId=0;classId<c;classId++) {
+                scores[classId] += lambdas[offset+classId];
             }
         }
         
-        return score;
+        return scores;
+    }
+    
+    private void normalizeExp(double[] scores) {
+        double max = Double.NEGATIVE_INFINITY;
+        for(double score : scores) {
+            max = Math.max(max, score);
+        }
+        
+        double sum = 0.0;
+        //Prevents numeric underflow by subtracting the max. References: http://www.youtube.com/watch?v=-RVM21Voo7Q
+        for(int i=0;i<scores.length;i++) {
+            scores[i] = Math.exp(scores[i]-max);
+            sum += scores[i];
+        }
+        
+        if(sum!=0.0) {
+            for(int i=0;i<scores.length;i++) {
+                scores[i] /= sum;
+            }
+        }
     }
 
 }
@@ -34,11 +34,13 @@ import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives
 import com.datumbox.framework.core.mathematics.regularization.ElasticNetRegularizer;
 import com.datumbox.framework.core.mathematics.regularization.L1Regularizer;
 import com.datumbox.framework.core.mathematics.regularization.L2Regularizer;
+import org.apache.commons.math3.util.OpenIntToDoubleHashMap;
 
 import java.util.Arrays;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collector;
 
 
 /**
@@ -59,8 +61,10 @@ public class SoftMaxRegression extends AbstractClassifier<SoftMaxRegression.Mode
     public static class ModelParameters extends AbstractClassifier.AbstractModelParameters {
         private static final long serialVersionUID = 1L;
 
-        @BigMap(keyClass=List.class, valueClass=Double.class, mapType=MapType.HASHMAP, storageHint=StorageHint.IN_MEMORY, concurrent=true)
-        private Map<List<Object>, Double> thitas; //the thita parameters of the model
+        @BigMap(keyClass=Object.class, valueClass=Integer.class, mapType=MapType.HASHMAP, storageHint=StorageHint.IN_MEMORY, concurrent=true)
+        private Map<Object, Integer> featureIds; //the dictionary that maps each feature to its row in the thitas matrix
+        
+        private double[] thitas; //the thita parameters of the model stored as a row-major featureId x classId matrix
         
         /** 
          * @param storageEngine
@@ -71,11 +75,34 @@ public class SoftMaxRegression extends AbstractClassifier<SoftMaxRegression.Mode
         }
         
         /**
-         * Getter for the Thita coefficients of the model.
+         * Getter for the dictionary which maps every feature to its row in the
+         * thitas matrix. The constant is always stored in row 0.
          * 
          * @return 
          */
-        public Map<List<Object>, Double> getThitas() {
+        public Map<Object, Integer> getFeatureIds() {
+            return featureIds;
+        }
+        
+        /**
+         * Setter for the dictionary which maps every feature to its row in the
+         * thitas matrix.
+         * 
+         * @param featureIds 
+         */
+        protected void setFeatureIds(Map<Object, Integer> featureIds) {
+            this.featureIds = featureIds;
+        }
+        
+        /**
+         * Getter for the Thita coefficients of the model. The coefficients are
+         * stored in a row-major matrix; the thita of a feature-class pair is
+         * located at position featureId*C + classId, where the classId is the
+         * position of the class in the set of classes.
+         * 
+         * @return 
+         */
+        public double[] getThitas() {
             return thitas;
         }
         
@@ -84,7 +111,7 @@ public class SoftMaxRegression extends AbstractClassifier<SoftMaxRegression.Mode
          * 
          * @param thitas 
          */
-        protected void setThitas(Map<List<Object>, Double> thitas) {
+        protected void setThitas(double[] thitas) {
             this.thitas = thitas;
         }
     } 
@@ -226,11 +253,12 @@ public class SoftMaxRegression extends AbstractClassifier<SoftMaxRegression.Mode
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
         Set<Object> classesSet = modelParameters.getClasses();
-        Map<List<Object>, Double> thitas = modelParameters.getThitas();
+        double[] classScores = calculateClassScores(r.getX(), modelParameters.getFeatureIds(), modelParameters.getThitas(), classesSet.size());
         
         AssociativeArray predictionScores = new AssociativeArray();
+        int classId = 0;
         for(Object theClass : classesSet) {
-            predictionScores.put(theClass, calculateClassScore(r.getX(), theClass, thitas));
+            predictionScores.put(theClass, classScores[classId++]);
         }
 
         Object predictedClass=getSelectedClassFromClassScores(predictionScores);
@@ -246,8 +274,7 @@ public class SoftMaxRegression extends AbstractClassifier<SoftMaxRegression.Mode
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         
-        
-        Map<List<Object>, Double> thitas = modelParameters.getThitas();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
         Set<Object> classesSet = modelParameters.getClasses();
         
         //first we need to find all the classes
@@ -257,33 +284,37 @@ public class SoftMaxRegression extends AbstractClassifier<SoftMaxRegression.Mode
             classesSet.add(theClass); 
         }
         
-        //we initialize the thitas to zero for all features and all classes compinations
+        //assign ids to all the classes based on their order in the set
+        Map<Object, Integer> classIds = new HashMap<>();
         for(Object theClass : classesSet) {
-            thitas.put(Arrays.asList(Dataframe.COLUMN_NAME_CONSTANT, theClass), 0.0);
+            classIds.put(theClass, classIds.size());
         }
         
-        streamExecutor.forEach(StreamMethods.stream(trainingData.getXDataTypes().keySet().stream(), isParallelized()), feature -> {
-            for(Object theClass : classesSet) {
-                thitas.putIfAbsent(Arrays.asList(feature, theClass), 0.0);
+        //build the dictionary of features. The constant always takes the first row.
+        int d = 0;
+        featureIds.put(Dataframe.COLUMN_NAME_CONSTANT, d++);
+        for(Object feature : trainingData.getXDataTypes().keySet()) {
+            if(featureIds.putIfAbsent(feature, d) == null) {
+                d++;
             }
-        });
+        }
         
+        //we initialize the thitas to zero for all features and all classes compinations
+        double[] thitas = new double[d*classesSet.size()];
+        modelParameters.setThitas(thitas);
         
         double minError = Double.POSITIVE_INFINITY;
         
         double learningRate = trainingParameters.getLearningRate();
         int totalIterations = trainingParameters.getTotalIterations();
-        StorageEngine storageEngine = knowledgeBase.getStorageEngine();
         for(int iteration=0;iteration<totalIterations;++iteration) {
             
             logger.debug("Iteration {}", iteration);
             
-            Map<List<Object>, Double> tmp_newThitas = storageEngine.getBigMap("tmp_newThitas", (Class<List<Object>>)(Class<?>)List.class, Double.class, MapType.HASHMAP, StorageHint.IN_MEMORY, true, true);
-            
-            tmp_newThitas.putAll(thitas);
-            batchGradientDescent(trainingData, tmp_newThitas, learningRate);
+            double[] newThitas = Arrays.copyOf(modelParameters.getThitas(), thitas.length);
+            batchGradientDescent(trainingData, classIds, newThitas, learningRate);
             
-            double newError = calculateError(trainingData,tmp_newThitas);
+            double newError = calculateError(trainingData, classIds, newThitas);
             
             //bold driver
             if(newError>minError) {
@@ -294,56 +325,67 @@ public class SoftMaxRegression extends AbstractClassifier<SoftMaxRegression.Mode
                 minError=newError;
                 
                 //keep the new thitas
-                thitas.clear();
-                thitas.putAll(tmp_newThitas);
+                modelParameters.setThitas(newThitas);
             }
-            
-            //Drop the temporary Collection
-            storageEngine.dropBigMap("tmp_newThitas", tmp_newThitas);
         }
     }
 
-    private void batchGradientDescent(Dataframe trainingData, Map<List<Object>, Double> newThitas, double learningRate) {
+    private void batchGradientDescent(Dataframe trainingData, Map<Object, Integer> classIds, double[] newThitas, double learningRate) {
         //NOTE! This is not the stochastic gradient descent. It is the batch gradient descent optimized for speed (despite it looks more than the stochastic). 
         //Despite the fact that the loops are inverse, the function still changes the values of Thitas at the end of the function. We use the previous thitas 
         //to estimate the costs and only at the end we update the new thitas.
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
 
         double multiplier = learningRate/trainingData.size();
-        Map<List<Object>, Double> thitas = modelParameters.getThitas();
-        Set<Object> classesSet = modelParameters.getClasses();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
+        double[] thitas = modelParameters.getThitas();
+        int c = classIds.size();
         
-        streamExecutor.forEach(StreamMethods.stream(trainingData.stream(), isParallelized()), r -> { //slow parallel loop
-            //mind the fact that we use the previous thitas to estimate the new ones! this is because the thitas must be updated simultaniously
-            AssociativeArray classProbabilities = hypothesisFunction(r.getX(), thitas);
-            for(Object theClass : classesSet) {
-                
-                double error;
-                double score = classProbabilities.getDouble(theClass);
-                if(r.getY().equals(theClass)) {
-                    error = 1 - score;
-                }
-                else {
-                    error = - score;
+        //every worker accumulates the updates of its records in a sparse partial gradient which is added to the new thitas once per batch
+        OpenIntToDoubleHashMap remainingGradient = streamExecutor.collect(StreamMethods.stream(trainingData.stream(), isParallelized()), Collector.of(
+            () -> new OpenIntToDoubleHashMap(0.0), 
+            (partialGradient, r) -> { //slow parallel loop
+                //mind the fact that we use the previous thitas to estimate the new ones! this is because the thitas must be updated simultaniously
+                double[] classProbabilities = hypothesisFunction(r.getX(), featureIds, thitas, c);
+                int trueClassId = classIds.get(r.getY());
+
+                double[] errorMultipliers = new double[c];
+                for(int classId=0;classId<c;classId++) {
+                    double error;
+                    double score = classProbabilities[classId];
+                    if(classId == trueClassId) {
+                        error = 1 - score;
+                    }
+                    else {
+                        error = - score;
+                    }
+
+                    errorMultipliers[classId] = multiplier*error;
                 }
-                
-                double errorMultiplier = multiplier*error;
-                
-                synchronized(newThitas) {
-                    //update the weights
-                    for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                        Double value = TypeInference.toDouble(entry.getValue());
 
-                        Object feature = entry.getKey();
-                        List<Object> featureClassTuple = Arrays.asList(feature, theClass);
-                        
-                        newThitas.put(featureClassTuple, newThitas.get(featureClassTuple)+errorMultiplier*value);   
+                //update the weights
+                for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                    Integer featureId = featureIds.get(entry.getKey());
+                    if(featureId==null) {
+                        continue;
+                    }
+                    double value = TypeInference.toDouble(entry.getValue());
+
+                    int offset = featureId*c;
+                    for(int classId=0;classId<c;classId++) {
+                        partialGradient.put(offset+classId, partialGradient.get(offset+classId) + errorMultipliers[classId]*value);
                     }
-                    List<Object> featureClassTuple = Arrays.asList(Dataframe.COLUMN_NAME_CONSTANT, theClass);
-                    newThitas.put(featureClassTuple, newThitas.get(featureClassTuple)+errorMultiplier); //update the weight of constant
                 }
+                for(int classId=0;classId<c;classId++) {
+                    partialGradient.put(classId, partialGradient.get(classId) + errorMultipliers[classId]); //update the weight of constant
+                }
+            }, 
+            (gradient1, gradient2) -> {
+                addGradient(gradient2, newThitas);
+                return gradient1;
             }
-        });
+        ));
+        addGradient(remainingGradient, newThitas);
 
         double l1 = knowledgeBase.getTrainingParameters().getL1();
         double l2 = knowledgeBase.getTrainingParameters().getL2();
@@ -360,32 +402,44 @@ public class SoftMaxRegression extends AbstractClassifier<SoftMaxRegression.Mode
         
     }
     
-    private Double calculateClassScore(AssociativeArray x, Object theClass, Map<List<Object>, Double> thitas) {
-        double score = thitas.get(Arrays.asList(Dataframe.COLUMN_NAME_CONSTANT, theClass));
+    private void addGradient(OpenIntToDoubleHashMap gradient, double[] newThitas) {
+        synchronized(newThitas) {
+            OpenIntToDoubleHashMap.Iterator it = gradient.iterator();
+            while(it.hasNext()) {
+                it.advance();
+                newThitas[it.key()] += it.value();
+            }
+        }
+    }
+    
+    private double[] calculateClassScores(AssociativeArray x, Map<Object, Integer> featureIds, double[] thitas, int c) {
+        double[] scores = Arrays.copyOf(thitas, c); //the constant is stored in the first row
         
         for(Map.Entry<Object, Object> entry : x.entrySet()) {
-            Double value = TypeInference.toDouble(entry.getValue());
-            
-            Object feature = entry.getKey();
-            List<Object> featureClassTuple = Arrays.asList(feature, theClass);
+            Integer featureId = featureIds.get(entry.getKey());
+            if(featureId==null) {//ensure that the feature is in the dictionary
+                continue;
+            }
+            double value = TypeInference.toDouble(entry.getValue());
             
-            Double thitaWeight = thitas.get(featureClassTuple);
-            if(thitaWeight!=null) {//ensure that the feature is in the dictionary
-                score+=thitaWeight*value;
+            int offset = featureId*c;
+            for(int classId=0;classId<c;classId++) {
+                scores[classId] += thitas[offset+classId]*value;
             }
         }
         
-        return score;
+        return scores;
     }
     
-    private double calculateError(Dataframe trainingData, Map<List<Object>, Double> thitas) {
+    private double calculateError(Dataframe trainingData, Map<Object, Integer> classIds, double[] thitas) {
         //The cost function as described on http://ufldl.stanford.edu/wiki/index.php/Softmax_Regression
         //It is optimized for speed to reduce the amount of loops
+        Map<Object, Integer> featureIds = knowledgeBase.getModelParameters().getFeatureIds();
+        int c = classIds.size();
         
         double error = streamExecutor.sum(StreamMethods.stream(trainingData.stream(), isParallelized()).mapToDouble(r -> { 
-            AssociativeArray classProbabilities = hypothesisFunction(r.getX(), thitas);
-            Double score = classProbabilities.getDouble(r.getY());
-            return Math.log(score); //no need to loop through the categories. Just grab the one that we are interested in
+            double[] classProbabilities = hypothesisFunction(r.getX(), featureIds, thitas, c);
+            return Math.log(classProbabilities[classIds.get(r.getY())]); //no need to loop through the categories. Just grab the one that we are interested in
         }));
 
         error = -error/trainingData.size();
@@ -406,19 +460,20 @@ public class SoftMaxRegression extends AbstractClassifier<SoftMaxRegression.Mode
         return error;
     }
     
-    private AssociativeArray hypothesisFunction(AssociativeArray x, Map<List<Object>, Double> thitas) {
-        Set<Object> classesSet = knowledgeBase.getModelParameters().getClasses();
-        AssociativeArray predictionProbabilities = new AssociativeArray(); 
+    private double[] hypothesisFunction(AssociativeArray x, Map<Object, Integer> featureIds, double[] thitas, int c) {
+        double[] predictionProbabilities = calculateClassScores(x, featureIds, thitas, c);
         
-        for(Object theClass : classesSet) {
-            double score=calculateClassScore(x, theClass, thitas);
-            if(score<=0) {
-                score=1e-8;
+        double sum = 0.0;
+        for(int classId=0;classId<c;classId++) {
+            if(predictionProbabilities[classId]<=0) {
+                predictionProbabilities[classId]=1e-8;
             }
-            predictionProbabilities.put(theClass, score);
+            sum += predictionProbabilities[classId];
         }
         
-        Descriptives.normalize(predictionProbabilities);
+        for(int classId=0;classId<c;classId++) {
+            predictionProbabilities[classId] /= sum;
+        }
         
         return predictionProbabilities;
     }
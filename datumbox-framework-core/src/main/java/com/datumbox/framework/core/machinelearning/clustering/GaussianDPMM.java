@@ -16,7 +16,7 @@
 package com.datumbox.framework.core.machinelearning.clustering;
 
 import com.datumbox.framework.common.Configuration;
-import com.datumbox.framework.core.common.dataobjects.DataframeMatrix;
+import com.datumbox.framework.common.dataobjects.TypeInference;
 import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
@@ -47,7 +47,7 @@ public class GaussianDPMM extends AbstractDPMM<GaussianDPMM.Cluster, GaussianDPM
      * The AbstractCluster class of the GaussianDPMM model.
      */
     public static class Cluster extends AbstractDPMM.AbstractCluster {
-        private static final long serialVersionUID = 2L;
+        private static final long serialVersionUID = 3L;
 
         //informational fields
         private final int dimensions;
@@ -55,8 +55,8 @@ public class GaussianDPMM extends AbstractDPMM<GaussianDPMM.Cluster, GaussianDPM
         //hyper parameters
         private final int kappa0;
         private final int nu0;
-        private final RealVector mu0;
-        private final RealMatrix psi0;
+        private final double[] mu0;
+        private final double[][] psi0;
 
         //cluster parameters
         private RealVector mean;
@@ -67,12 +67,13 @@ public class GaussianDPMM extends AbstractDPMM<GaussianDPMM.Cluster, GaussianDPM
         private int meanDf;
 
         //internal vars for calculation
-        private RealVector xi_sum;
-        private RealMatrix xi_square_sum;
+        private double[] xi_sum;
+        private double[][] xi_square_sum;
 
         //Cache
-        private volatile Double cache_covariance_determinant;
-        private volatile Array2DRowRealMatrix cache_covariance_inverse;
+        private volatile boolean parametersOutdated;
+        private volatile double[][] cache_covariance_inverse;
+        private volatile double cache_log_norm_const;
 
         /**
          * @param clusterId
@@ -90,11 +91,8 @@ public class GaussianDPMM extends AbstractDPMM<GaussianDPMM.Cluster, GaussianDPM
                 nu0 = dimensions;
             }
 
-            mean = new OpenMapRealVector(dimensions);
-            covariance = new OpenMapRealMatrix(dimensions, dimensions);
-            for(int i=0;i<dimensions;i++) {
-                covariance.setEntry(i, i, 1.0);
-            }
+            mean = new ArrayRealVector(dimensions);
+            covariance = MatrixUtils.createRealIdentityMatrix(dimensions);
 
             meanError = calculateMeanError(psi0, kappa0, nu0);
             meanDf = nu0-dimensions+1;
@@ -102,13 +100,13 @@ public class GaussianDPMM extends AbstractDPMM<GaussianDPMM.Cluster, GaussianDPM
 
             this.kappa0 = kappa0;
             this.nu0 = nu0;
-            this.mu0 = new OpenMapRealVector(mu0);
-            this.psi0 = new OpenMapRealMatrix(dimensions, dimensions).add(psi0);
+            this.mu0 = mu0.toArray();
+            this.psi0 = psi0.getData();
             this.dimensions = dimensions;
 
-            xi_sum = new OpenMapRealVector(dimensions);
-            xi_square_sum = new OpenMapRealMatrix(dimensions,dimensions);
-            cache_covariance_determinant = null;
+            xi_sum = new double[dimensions];
+            xi_square_sum = new double[dimensions][dimensions];
+            parametersOutdated = false;
             cache_covariance_inverse = null;
         }
 
@@ -139,6 +137,7 @@ public class GaussianDPMM extends AbstractDPMM<GaussianDPMM.Cluster, GaussianDPM
          * @return
          */
         protected RealMatrix getMeanError() {
+            ensureParametersUpdated();
             return meanError;
         }
 
@@ -148,66 +147,120 @@ public class GaussianDPMM extends AbstractDPMM<GaussianDPMM.Cluster, GaussianDPM
          * @return
          */
         protected int getMeanDf() {
+            ensureParametersUpdated();
             return meanDf;
         }
 
         /** {@inheritDoc} */
         @Override
         protected double posteriorLogPdf(Record r) {
-            RealVector x_mu = DataframeMatrix.parseRecord(r, featureIds);
-
-            x_mu = x_mu.subtract(mean);
-
-            if(cache_covariance_determinant==null || cache_covariance_inverse==null) {
+            double[][] covarianceInverse = cache_covariance_inverse;
+            if(parametersOutdated || covarianceInverse==null) {
                 synchronized(this) {
-                    if(cache_covariance_determinant==null || cache_covariance_inverse==null) {
+                    if(parametersOutdated) {
+                        updateClusterParameters();
+                    }
+                    if(cache_covariance_inverse==null) {
                         LUDecomposition lud = new LUDecomposition(covariance);
-                        cache_covariance_determinant = lud.getDeterminant();
-                        cache_covariance_inverse = (Array2DRowRealMatrix) lud.getSolver().getInverse();
+                        cache_log_norm_const = -(dimensions/2.0)*Math.log(2*Math.PI) - 0.5*Math.log(lud.getDeterminant());
+                        cache_covariance_inverse = lud.getSolver().getInverse().getData();
                     }
+                    covarianceInverse = cache_covariance_inverse;
+                }
+            }
+
+            double[] x_mu = parseRecord(r);
+            for(int i=0;i<dimensions;i++) {
+                x_mu[i] -= mean.getEntry(i);
+            }
+
+            double x_muInvSx_muT = 0.0;
+            for(int i=0;i<dimensions;i++) {
+                double rowSum = 0.0;
+                for(int j=0;j<dimensions;j++) {
+                    rowSum += x_mu[j]*covarianceInverse[j][i];
                 }
+                x_muInvSx_muT += rowSum*x_mu[i];
             }
 
-            double x_muInvSx_muT = (cache_covariance_inverse.preMultiply(x_mu)).dotProduct(x_mu);
-            double normConst = 1.0/( Math.pow(2*Math.PI, dimensions/2.0) * Math.pow(cache_covariance_determinant, 0.5) );
             //double pdf = Math.exp(-0.5 * x_muInvSx_muT)*normConst;
-            double logPdf = -0.5 * x_muInvSx_muT + Math.log(normConst);
+            double logPdf = -0.5 * x_muInvSx_muT + cache_log_norm_const;
             return logPdf;
         }
 
         /** {@inheritDoc} */
         @Override
         protected void add(Record r) {
-            assertModifiable();
-
-            RealVector rv = DataframeMatrix.parseRecord(r, featureIds);
-
-            //update cluster clusterParameters
-            xi_sum = xi_sum.add(rv);
-            xi_square_sum = xi_square_sum.add(rv.outerProduct(rv));
-
+            updateSums(r, 1.0);
             size++;
-
-            updateClusterParameters();
         }
 
         /** {@inheritDoc} */
         @Override
         protected void remove(Record r) {
-            assertModifiable();
             if(size == 0) {
                 throw new IllegalArgumentException("The cluster is empty.");
             }
-
             size--;
+            updateSums(r, -1.0);
+        }
+
+        /**
+         * Adds in place the point and its outer product multiplied by the sign
+         * in the sums, and marks the cluster parameters as outdated. They are
+         * estimated the next time they are needed.
+         *
+         * @param r
+         * @param sign
+         */
+        private void updateSums(Record r, double sign) {
+            assertModifiable();
 
-            RealVector rv = DataframeMatrix.parseRecord(r, featureIds);
+            double[] rv = parseRecord(r);
 
             //update cluster clusterParameters
-            xi_sum=xi_sum.subtract(rv);
-            xi_square_sum=xi_square_sum.subtract(rv.outerProduct(rv));
+            for(int i=0;i<dimensions;i++) {
+                if(rv[i]!=0.0) {
+                    double value = sign*rv[i];
+                    xi_sum[i] += value;
+                    for(int j=0;j<dimensions;j++) {
+                        xi_square_sum[i][j] += value*rv[j];
+                    }
+                }
+            }
 
-            updateClusterParameters();
+            synchronized(this) {
+                parametersOutdated = true;
+                cache_covariance_inverse = null;
+            }
+        }
+
+        /**
+         * Converts the Record to a dense array.
+         *
+         * @param r
+         * @return
+         */
+        private double[] parseRecord(Record r) {
+            double[] x = new double[dimensions];
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Integer featureId = featureIds.get(entry.getKey());
+                Double value = TypeInference.toDouble(entry.getValue());
+                if(featureId!=null && value!=null) {
+                    x[featureId] = value;
+                }
+            }
+            return x;
+        }
+
+        private void ensureParametersUpdated() {
+            if(parametersOutdated) {
+                synchronized(this) {
+                    if(parametersOutdated) {
+                        updateClusterParameters();
+                    }
+                }
+            }
         }
 
         private RealMatrix calculateMeanError(RealMatrix Psi, int kappa, int nu) {
@@ -218,9 +271,9 @@ public class GaussianDPMM extends AbstractDPMM<GaussianDPMM.Cluster, GaussianDPM
         /** {@inheritDoc} */
         @Override
         protected void clear() {
+            ensureParametersUpdated();
             xi_sum = null;
             xi_square_sum = null;
-            cache_covariance_determinant = null;
             cache_covariance_inverse = null;
         }
 
@@ -233,22 +286,34 @@ public class GaussianDPMM extends AbstractDPMM<GaussianDPMM.Cluster, GaussianDPM
             int kappa_n = kappa0 + size;
             int nu = nu0 + size;
 
-            RealVector mu = xi_sum.mapDivide(size);
-            RealVector mu_mu0 = mu.subtract(mu0);
-
-            RealMatrix C = xi_square_sum.subtract( ( mu.outerProduct(mu) ).scalarMultiply(size) );
+            double[] mu = new double[dimensions];
+            double[] mu_mu0 = new double[dimensions];
+            double[] meanValues = new double[dimensions];
+            for(int i=0;i<dimensions;i++) {
+                mu[i] = xi_sum[i]/size;
+                mu_mu0[i] = mu[i]-mu0[i];
+                meanValues[i] = (mu0[i]*kappa0 + mu[i]*size)/kappa_n;
+            }
 
-            RealMatrix psi = psi0.add( C.add( ( mu_mu0.outerProduct(mu_mu0) ).scalarMultiply(kappa0*size/(double)kappa_n) ));//
+            //psi = psi0 + C + (mu-mu0)(mu-mu0)'*kappa0*size/kappa_n where C = xi_square_sum - mu*mu'*size
+            double[][] psi = new double[dimensions][dimensions];
+            double priorWeight = kappa0*size/(double)kappa_n;
+            for(int i=0;i<dimensions;i++) {
+                for(int j=0;j<dimensions;j++) {
+                    psi[i][j] = psi0[i][j] + (xi_square_sum[i][j] - mu[i]*mu[j]*size) + mu_mu0[i]*mu_mu0[j]*priorWeight;
+                }
+            }
+            RealMatrix psiMatrix = new Array2DRowRealMatrix(psi, false);
 
-            mean = ( mu0.mapMultiply(kappa0) ).add( mu.mapMultiply(size) ).mapDivide(kappa_n);
+            mean = new ArrayRealVector(meanValues, false);
 
             synchronized(this) {
-                covariance = psi.scalarMultiply(  (kappa_n+1.0)/(kappa_n*(nu - dimensions + 1.0))  );
-                cache_covariance_determinant = null;
+                covariance = psiMatrix.scalarMultiply(  (kappa_n+1.0)/(kappa_n*(nu - dimensions + 1.0))  );
                 cache_covariance_inverse = null;
+                parametersOutdated = false;
             }
 
-            meanError = calculateMeanError(psi, kappa_n, nu);
+            meanError = calculateMeanError(psiMatrix, kappa_n, nu);
             meanDf = nu-dimensions+1;
         }
     }
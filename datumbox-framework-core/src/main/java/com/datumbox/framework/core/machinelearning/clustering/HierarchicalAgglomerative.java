@@ -22,8 +22,6 @@ import com.datumbox.framework.common.dataobjects.AssociativeArray;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
-import com.datumbox.framework.common.storage.interfaces.StorageEngine.MapType;
-import com.datumbox.framework.common.storage.interfaces.StorageEngine.StorageHint;
 import com.datumbox.framework.core.common.utilities.MapMethods;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.modelers.AbstractClusterer;
@@ -33,6 +31,7 @@ import com.datumbox.framework.core.mathematics.distances.Distance;
 import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * This class implements the Hierarchical Agglomerative clustering algorithm
@@ -406,190 +405,223 @@ public class HierarchicalAgglomerative extends AbstractClusterer<HierarchicalAgg
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         Map<Integer, Cluster> clusterMap = modelParameters.getClusterMap();
-        
-        StorageEngine storageEngine = knowledgeBase.getStorageEngine();
 
-        Map<List<Object>, Double> tmp_distanceArray = storageEngine.getBigMap("tmp_distanceArray", (Class<List<Object>>)(Class<?>)List.class, Double.class, MapType.HASHMAP, StorageHint.IN_CACHE, true, true); //it holds the distances between clusters
-        Map<Integer, Integer> tmp_minClusterDistanceId = storageEngine.getBigMap("tmp_minClusterDistanceId", Integer.class, Integer.class, MapType.HASHMAP, StorageHint.IN_CACHE, true, true); //it holds the ids of the min distances
-        
-        
         //initialize clusters, foreach point create a cluster
-        Integer clusterId = 0;
+        int n = trainingData.size();
+        Cluster[] clusters = new Cluster[n];
+        int clusterId = 0;
         for(Record r : trainingData.values()) {
             Cluster c = new Cluster(clusterId);
-            
+
             c.add(r);
             c.updateClusterParameters();
-            clusterMap.put(clusterId, c);
-            
+            clusters[clusterId] = c;
+
             ++clusterId;
         }
-        
-        //calculate distance table and minimum distances
-        streamExecutor.forEach(StreamMethods.stream(clusterMap.entrySet().stream(), isParallelized()), entry1 -> {
-            Integer clusterId1 = entry1.getKey();
-            Cluster c1 = entry1.getValue();
-            
-            for(Map.Entry<Integer, Cluster> entry2 : clusterMap.entrySet()) {
-                Integer clusterId2 = entry2.getKey();
-                Cluster c2 = entry2.getValue();
-                
-                double distance = Double.MAX_VALUE;
-                if(!Objects.equals(clusterId1, clusterId2)) {
-                    distance = calculateDistance(c1.getCentroid(), c2.getCentroid());
-                }
-                
-                tmp_distanceArray.put(Arrays.asList(clusterId1, clusterId2), distance);
-                tmp_distanceArray.put(Arrays.asList(clusterId2, clusterId1), distance);
-                
-                Integer minDistanceId = tmp_minClusterDistanceId.get(clusterId1);
-                if(minDistanceId==null || distance < tmp_distanceArray.get(Arrays.asList(clusterId1, minDistanceId))) {
-                    tmp_minClusterDistanceId.put(clusterId1, clusterId2);
-                }
+
+        //calculate the condensed distance table
+        CondensedDistanceMatrix distances = new CondensedDistanceMatrix(n);
+        streamExecutor.forEach(StreamMethods.stream(IntStream.range(0, n).boxed(), isParallelized()), i -> {
+            Record centroid1 = clusters[i].getCentroid();
+            for(int j=i+1;j<n;j++) {
+                distances.set(i, j, calculateDistance(centroid1, clusters[j].getCentroid()));
             }
         });
-        
-        //merging process
-        boolean continueMerging = true;
-        while(continueMerging) {
-            continueMerging = mergeClosest(tmp_minClusterDistanceId, tmp_distanceArray);
-            
-            //count all the active clusters
-            int activeClusters = 0;
-            for(Cluster c : clusterMap.values()) {
-                if(c.isActive()) {
-                    ++activeClusters;
-                }
+
+        //build the full dendrogram and merge the clusters in increasing distance until a threshold is reached
+        int[][] merges = nearestNeighbourChain(distances, clusters, trainingParameters.getLinkageMethod());
+
+        int[] parent = new int[n];
+        for(int i=0;i<n;i++) {
+            parent[i] = i;
+        }
+        int activeClusters = n;
+        for(int[] merge : merges) {
+            if(distances.getMergeDistance(merge[2])>=trainingParameters.getMaxDistanceThreshold()) {
+                break;
             }
-            
+
+            //the cluster with the smallest id absorbs the other one
+            int root1 = findRoot(parent, merge[0]);
+            int root2 = findRoot(parent, merge[1]);
+            int clusterThatMergesId = Math.min(root1, root2);
+            int clusterToBeMergedId = Math.max(root1, root2);
+            clusters[clusterThatMergesId].merge(clusters[clusterToBeMergedId]);
+            clusters[clusterToBeMergedId].setActive(false);
+            parent[clusterToBeMergedId] = clusterThatMergesId;
+
+            --activeClusters;
             if(activeClusters<=trainingParameters.getMinClustersThreshold()) {
-                continueMerging = false;
+                break;
             }
         }
-        
-        //update centroids. it does not update their IDs
-        Iterator<Map.Entry<Integer, Cluster>> it = clusterMap.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<Integer, Cluster> entry = it.next();
-            Integer cId = entry.getKey();
-            Cluster cluster = entry.getValue();
+
+        //update centroids and store the active clusters. it does not update their IDs
+        for(int i=0;i<n;i++) {
+            Cluster cluster = clusters[i];
             if(cluster.isActive()) {
                 cluster.updateClusterParameters();
-                clusterMap.put(cId, cluster);
-            }
-            else {
-                it.remove(); //remove inactive clusters
+                clusterMap.put(i, cluster);
             }
         }
-        
-        //Drop the temporary Collection
-        storageEngine.dropBigMap("tmp_distanceArray", tmp_distanceArray);
-        storageEngine.dropBigMap("tmp_minClusterDistanceId", tmp_minClusterDistanceId);
     }
-    
-    private boolean mergeClosest(Map<Integer, Integer> minClusterDistanceId, Map<List<Object>, Double> distanceArray) {
-        ModelParameters modelParameters = knowledgeBase.getModelParameters();
-        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
-        Map<Integer, Cluster> clusterMap = modelParameters.getClusterMap();
-        
-        //find the two closest clusters 
-        Integer minClusterId = null;
-        double minDistance = Double.MAX_VALUE;
-        
-        
-        for(Map.Entry<Integer, Cluster> entry : clusterMap.entrySet()) {
-            Integer clusterId = entry.getKey();
-            if(entry.getValue().isActive()==false) {
-                continue; //skip inactive clusters
-            }
-            
-            double distance = distanceArray.get(Arrays.asList(clusterId, minClusterDistanceId.get(clusterId)));
-            if(distance<minDistance) {
-                minClusterId = clusterId;
-                minDistance = distance;
-            }
-        }
-        
-        if(minDistance>=trainingParameters.getMaxDistanceThreshold()) {
-            return false;
+
+    /**
+     * Builds the dendrogram with the nearest-neighbour chain algorithm, which
+     * is valid for all the supported Linkage methods because they satisfy the
+     * reducibility property. The distances of the merged clusters are updated
+     * in place with the Lance-Williams formulas. It returns the merges sorted
+     * by their distance; each merge contains the ids of two clusters which were
+     * active at the time and the position of the merge distance.
+     *
+     * @param distances
+     * @param clusters
+     * @param linkageMethod
+     * @return
+     */
+    private int[][] nearestNeighbourChain(CondensedDistanceMatrix distances, Cluster[] clusters, TrainingParameters.Linkage linkageMethod) {
+        int n = clusters.length;
+        boolean[] active = new boolean[n];
+        int[] size = new int[n];
+        for(int i=0;i<n;i++) {
+            active[i] = true;
+            size[i] = clusters[i].size();
         }
-        
-        final Integer clusterThatMergesId = minClusterId;
-        final Integer clusterToBeMergedId = minClusterDistanceId.get(clusterThatMergesId);        
-        Cluster c1 = clusterMap.get(clusterThatMergesId);
-        Cluster c2 = clusterMap.get(clusterToBeMergedId);
-        
-        double c1Size = c1.size();
-        double c2Size = c2.size();
-        
-        //merge together the two closest clusters
-        c1.merge(c2);
-        clusterMap.put(clusterThatMergesId, c1);
-        c2.setActive(false); //set the cluster that we just merged inactive
-        clusterMap.put(clusterToBeMergedId, c2);
-        
-        //update the distances with the merged cluster
-        TrainingParameters.Linkage linkageMethod = trainingParameters.getLinkageMethod();
-        streamExecutor.forEach(StreamMethods.stream(clusterMap.entrySet().stream(), isParallelized()), entry -> {
-        
-            Integer clusterId = entry.getKey();
-            Cluster ci = entry.getValue();
-            if(ci.isActive()) { //skip inactive clusters
-            
-                double distance;
-                if(Objects.equals(clusterThatMergesId, clusterId)) {
-                    distance = Double.MAX_VALUE;
-                }
-                else if(linkageMethod==TrainingParameters.Linkage.SINGLE) {
-                    double c1ciDistance = distanceArray.get(Arrays.asList(clusterThatMergesId, clusterId));
-                    double c2ciDistance = distanceArray.get(Arrays.asList(clusterToBeMergedId, clusterId));
-                    distance = Math.min(c1ciDistance, c2ciDistance);
-                }
-                else if(linkageMethod==TrainingParameters.Linkage.COMPLETE) {
-                    double c1ciDistance = distanceArray.get(Arrays.asList(clusterThatMergesId, clusterId));
-                    double c2ciDistance = distanceArray.get(Arrays.asList(clusterToBeMergedId, clusterId));
-                    distance = Math.max(c1ciDistance, c2ciDistance);
+
+        List<int[]> merges = new ArrayList<>(Math.max(n-1, 0));
+        int[] chain = new int[n];
+        int chainSize = 0;
+        int nextStart = 0;
+        for(int remaining=n;remaining>1;remaining--) {
+            if(chainSize==0) {
+                while(!active[nextStart]) {
+                    ++nextStart;
                 }
-                else if(linkageMethod==TrainingParameters.Linkage.AVERAGE) {
-                    double c1ciDistance = distanceArray.get(Arrays.asList(clusterThatMergesId, clusterId));
-                    double c2ciDistance = distanceArray.get(Arrays.asList(clusterToBeMergedId, clusterId));
-                    distance = (c1ciDistance*c1Size + c2ciDistance*c2Size)/(c1Size+c2Size);
+                chain[chainSize++] = nextStart;
+            }
+
+            //grow the chain until two clusters are reciprocal nearest neighbours
+            int x;
+            int y;
+            double minDistance;
+            while(true) {
+                x = chain[chainSize-1];
+                if(chainSize>=2) {
+                    y = chain[chainSize-2]; //prefer the previous element on ties to avoid cycles
+                    minDistance = distances.get(x, y);
                 }
                 else {
-                    distance = calculateDistance(c1.getCentroid(), ci.getCentroid());
+                    y = -1;
+                    minDistance = Double.MAX_VALUE;
+                }
+                for(int i=0;i<n;i++) {
+                    if(active[i] && i!=x) {
+                        double distance = distances.get(x, i);
+                        if(distance<minDistance || y<0) {
+                            minDistance = distance;
+                            y = i;
+                        }
+                    }
                 }
 
-                distanceArray.put(Arrays.asList(clusterThatMergesId, clusterId), distance);
-                distanceArray.put(Arrays.asList(clusterId, clusterThatMergesId), distance);
+                if(chainSize>=2 && y==chain[chainSize-2]) {
+                    break;
+                }
+                chain[chainSize++] = y;
             }
-        });
-        
-        //update minimum distance ids
-        streamExecutor.forEach(StreamMethods.stream(clusterMap.entrySet().stream(), isParallelized()), entry1 -> {
-            
-            Integer id1 = entry1.getKey();
-            if (entry1.getValue().isActive()) { //skip inactive clusters
-                Integer minDistanceId = minClusterDistanceId.get(id1);
-                if (Objects.equals(minDistanceId, clusterThatMergesId) || Objects.equals(minDistanceId, clusterToBeMergedId)) {
-                    Integer newMinDistanceId = id1;
-                    
-                    for(Map.Entry<Integer, Cluster> entry2 : clusterMap.entrySet()) {
-                        Integer id2 = entry2.getKey();
-                        if(entry2.getValue().isActive()==false) {
-                            continue; //skip inactive clusters
-                        }
-                        
-                        if(distanceArray.get(Arrays.asList(id1, id2)) < distanceArray.get(Arrays.asList(id1, newMinDistanceId)) ){
-                            newMinDistanceId = id2;
-                        }
+            chainSize -= 2;
+
+            //merge y into x and update the distances of x with the rest of the clusters
+            for(int k=0;k<n;k++) {
+                if(active[k] && k!=x && k!=y) {
+                    double xkDistance = distances.get(x, k);
+                    double ykDistance = distances.get(y, k);
+                    double distance;
+                    if(linkageMethod==TrainingParameters.Linkage.SINGLE) {
+                        distance = Math.min(xkDistance, ykDistance);
+                    }
+                    else if(linkageMethod==TrainingParameters.Linkage.COMPLETE) {
+                        distance = Math.max(xkDistance, ykDistance);
                     }
-                    
-                    minClusterDistanceId.put(id1, newMinDistanceId);
+                    else if(linkageMethod==TrainingParameters.Linkage.AVERAGE) {
+                        distance = (xkDistance*size[x] + ykDistance*size[y])/(size[x]+size[y]);
+                    }
+                    else {
+                        throw new IllegalArgumentException("Unsupported Linkage method.");
+                    }
+                    distances.set(x, k, distance);
                 }
             }
-        });
-        
-        
-        return true;
+            merges.add(new int[]{x, y, distances.addMergeDistance(minDistance)});
+            active[y] = false;
+            size[x] += size[y];
+        }
+
+        //sort by distance, keeping the order of the merges on ties
+        merges.sort((m1, m2) -> Double.compare(distances.getMergeDistance(m1[2]), distances.getMergeDistance(m2[2])));
+        return merges.toArray(new int[merges.size()][]);
+    }
+
+    private static int findRoot(int[] parent, int i) {
+        while(parent[i]!=i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Symmetric distance table which stores only the upper triangle in primitive
+     * arrays. The table is split in chunks so that its size is not limited by the
+     * maximum length of an array. It also stores the distances of the merges.
+     */
+    private static class CondensedDistanceMatrix {
+        private static final int CHUNK_SHIFT = 24;
+        private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+        private final int n;
+        private final double[][] chunks;
+        private final double[] mergeDistances;
+        private int mergeCount = 0;
+
+        private CondensedDistanceMatrix(int n) {
+            this.n = n;
+            long length = (long) n * (n - 1) / 2;
+            int numOfChunks = (int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT);
+            chunks = new double[numOfChunks][];
+            for(int c=0;c<numOfChunks;c++) {
+                chunks[c] = new double[(int) Math.min(1L << CHUNK_SHIFT, length - ((long) c << CHUNK_SHIFT))];
+            }
+            mergeDistances = new double[Math.max(n - 1, 0)];
+        }
+
+        private long index(int i, int j) {
+            if(i>j) {
+                int tmp = i;
+                i = j;
+                j = tmp;
+            }
+            return (long) i * n - (long) i * (i + 1) / 2 + (j - i - 1);
+        }
+
+        private double get(int i, int j) {
+            long idx = index(i, j);
+            return chunks[(int) (idx >>> CHUNK_SHIFT)][(int) (idx & CHUNK_MASK)];
+        }
+
+        private void set(int i, int j, double distance) {
+            long idx = index(i, j);
+            chunks[(int) (idx >>> CHUNK_SHIFT)][(int) (idx & CHUNK_MASK)] = distance;
+        }
+
+        private int addMergeDistance(double distance) {
+            mergeDistances[mergeCount] = distance;
+            return mergeCount++;
+        }
+
+        private double getMergeDistance(int pos) {
+            return mergeDistances[pos];
+        }
     }
-}
\ No newline at end of file
+}
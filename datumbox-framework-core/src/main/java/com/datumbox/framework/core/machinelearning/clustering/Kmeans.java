@@ -26,6 +26,7 @@ import com.datumbox.framework.common.storage.interfaces.BigMap;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine.MapType;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine.StorageHint;
+import com.datumbox.framework.common.utilities.RandomGenerator;
 import com.datumbox.framework.core.common.utilities.MapMethods;
 import com.datumbox.framework.core.common.utilities.PHPMethods;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
@@ -36,9 +37,8 @@ import com.datumbox.framework.core.mathematics.distances.Distance;
 import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
 import com.datumbox.framework.core.statistics.sampling.SimpleRandomSampling;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.IntStream;
 
 
 /**
@@ -53,6 +53,8 @@ import java.util.Set;
  * http://www.ima.umn.edu/~iwen/REU/BATS-Means.pdf
  * http://web.cs.swarthmore.edu/~turnbull/Papers/Turnbull_GenreRBF_KDE05.pdf
  * http://thesis.neminis.org/wp-content/plugins/downloads-manager/upload/masterThesis-VR.pdf
+ * http://cs.baylor.edu/~hamerly/papers/sdm_2010.pdf
+ * https://www.eecs.tufts.edu/~dsculley/papers/fastkmeans.pdf
  * 
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
@@ -125,6 +127,19 @@ public class Kmeans extends AbstractClusterer<Kmeans.Cluster, Kmeans.ModelParame
             xi_sum.clear();
         }
         
+        /**
+         * Replaces the sum of the points and the size of the cluster. The
+         * centroid is not updated until updateClusterParameters() is called.
+         * 
+         * @param sums
+         * @param size 
+         */
+        protected void setSums(AssociativeArray sums, int size) {
+            xi_sum.clear();
+            xi_sum.addValues(sums);
+            this.size = size;
+        }
+        
         /**
          * Resets the cluster while keeping the centroid the same. This is a 
          * method required by the implementation of Kmeans and it should not 
@@ -268,6 +283,8 @@ public class Kmeans extends AbstractClusterer<Kmeans.Cluster, Kmeans.ModelParame
         
         private boolean weighted = false; //whether the weighted version of the algorithm will run. The weighted version estimates weights for every feature
         
+        private Integer batchSize = null; //the size of the mini-batches; null to use all the records in every iteration
+        
         //Getters Setters
         /**
          * Getter for the number of clusters k.
@@ -397,6 +414,29 @@ public class Kmeans extends AbstractClusterer<Kmeans.Cluster, Kmeans.ModelParame
             this.weighted = weighted;
         }
         
+        /**
+         * Getter for the size of the mini-batches.
+         * 
+         * @return 
+         */
+        public Integer getBatchSize() {
+            return batchSize;
+        }
+        
+        /**
+         * Setter for the size of the mini-batches. If set, the Mini-batch Kmeans
+         * is used which updates the centroids with random samples of records and
+         * the maxIterations is the number of mini-batches. It requires only one
+         * pass over the data at the end of the training and thus it is suitable
+         * for large datasets. Set it to null to use all the records in every
+         * iteration.
+         * 
+         * @param batchSize 
+         */
+        public void setBatchSize(Integer batchSize) {
+            this.batchSize = batchSize;
+        }
+        
     }
 
 
@@ -759,57 +799,189 @@ public class Kmeans extends AbstractClusterer<Kmeans.Cluster, Kmeans.ModelParame
         TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         Map<Integer, Cluster> clusterMap = modelParameters.getClusterMap();
         
-        int maxIterations = trainingParameters.getMaxIterations();
+        //encode the features and the centroids as primitive vectors
+        Map<Object, Double> featureWeights = modelParameters.getFeatureWeights();
+        Map<Object, Integer> featureIds = new HashMap<>();
+        double[] weights = new double[featureWeights.size()];
+        for(Map.Entry<Object, Double> e : featureWeights.entrySet()) {
+            int featureId = featureIds.size();
+            featureIds.put(e.getKey(), featureId);
+            weights[featureId] = e.getValue();
+        }
+        VectorDistance distance = new VectorDistance(featureIds, weights, trainingParameters.getDistanceMethod());
+        
+        Integer[] clusterIds = new TreeSet<>(clusterMap.keySet()).toArray(new Integer[0]);
+        double[][] centroids = new double[clusterIds.length][];
+        for(int j=0;j<clusterIds.length;j++) {
+            centroids[j] = distance.toVector(clusterMap.get(clusterIds[j]).getCentroid());
+        }
+        
+        double[][] sums = new double[clusterIds.length][weights.length];
+        int[] counts = new int[clusterIds.length];
+        
+        Integer batchSize = trainingParameters.getBatchSize();
+        if(batchSize == null) {
+            calculateClustersWithBounds(trainingData, distance, centroids, sums, counts);
+        }
+        else {
+            calculateClustersWithMiniBatches(trainingData, distance, centroids, batchSize, sums, counts);
+        }
+        
+        //store the sums and sizes in the clusters
+        for(int j=0;j<clusterIds.length;j++) {
+            AssociativeArray xi_sum = new AssociativeArray();
+            for(Map.Entry<Object, Integer> e : featureIds.entrySet()) {
+                xi_sum.put(e.getKey(), sums[j][e.getValue()]);
+            }
+            
+            Cluster c = clusterMap.get(clusterIds[j]);
+            c.setSums(xi_sum, counts[j]);
+            c.updateClusterParameters();
+            clusterMap.put(clusterIds[j], c);
+        }
+    }
+    
+    /**
+     * Runs the standard Kmeans iterations using Hamerly's bounds to skip the
+     * distance calculations of the records which can't change cluster. Every
+     * record keeps an upper bound of the distance to its centroid and a lower
+     * bound of the distance to the second closest centroid. The bounds are
+     * loosened by the movement of the centroids and the records are compared
+     * to all the centroids only when the bounds overlap. The sums of the
+     * clusters are updated only for the records that change cluster.
+     * 
+     * @param trainingData
+     * @param distance
+     * @param centroids
+     * @param sums
+     * @param counts 
+     */
+    private void calculateClustersWithBounds(Dataframe trainingData, VectorDistance distance, double[][] centroids, double[][] sums, int[] counts) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        int maxIterations = knowledgeBase.getTrainingParameters().getMaxIterations();
         modelParameters.setTotalIterations(maxIterations);
         
+        int k = centroids.length;
+        int n = trainingData.size();
+        Integer[] recordIds = new Integer[n];
+        int i = 0;
+        for(Integer rId : trainingData.index()) {
+            recordIds[i++] = rId;
+        }
+        
+        int[] assignments = new int[n];
+        int[] proposedAssignments = new int[n];
+        Arrays.fill(assignments, -1);
+        Arrays.fill(proposedAssignments, -1);
+        double[] upperBounds = new double[n];
+        double[] lowerBounds = new double[n];
+        double[] shifts = new double[k];
+        double[] halfMinDistances = new double[k];
+        
         for(int iteration=0;iteration<maxIterations;++iteration) {
             logger.debug("Iteration {}", iteration);
             
-            //reset cluster points
-            for(Map.Entry<Integer, Cluster> entry1 : clusterMap.entrySet()) {
-                Integer clusterId = entry1.getKey();
-                Cluster cluster = entry1.getValue();
-                cluster.reset();
-                clusterMap.put(clusterId, cluster);
+            //half of the distance of every centroid to its closest centroid
+            Arrays.fill(halfMinDistances, Double.MAX_VALUE);
+            for(int j1=0;j1<k;j1++) {
+                for(int j2=j1+1;j2<k;j2++) {
+                    double halfDistance = distance.calculate(centroids[j1], centroids[j2])/2.0;
+                    halfMinDistances[j1] = Math.min(halfMinDistances[j1], halfDistance);
+                    halfMinDistances[j2] = Math.min(halfMinDistances[j2], halfDistance);
+                }
+            }
+            
+            //the largest and the second largest movement of the centroids
+            int maxShiftId = -1;
+            double maxShift = 0.0;
+            double secondMaxShift = 0.0;
+            for(int j=0;j<k;j++) {
+                if(shifts[j]>maxShift) {
+                    secondMaxShift = maxShift;
+                    maxShift = shifts[j];
+                    maxShiftId = j;
+                }
+                else if(shifts[j]>secondMaxShift) {
+                    secondMaxShift = shifts[j];
+                }
             }
+            int finalMaxShiftId = maxShiftId;
+            double finalMaxShift = maxShift;
+            double finalSecondMaxShift = secondMaxShift;
             
             //assign records to clusters
-            Map<Integer, Integer> tmp_clusterAssignments = knowledgeBase.getStorageEngine().getBigMap("tmp_clusterAssignments", Integer.class, Integer.class, MapType.HASHMAP, StorageHint.IN_MEMORY, true, true);
-            streamExecutor.forEach(StreamMethods.stream(trainingData.entries(), isParallelized()), e -> {
-                Integer rId = e.getKey();
-                Record r = e.getValue();
-                //we are storing cluster references not clusterIds
-                AssociativeArray clusterDistances = new AssociativeArray();
-                for(Map.Entry<Integer, Cluster> entry : clusterMap.entrySet()) {
-                    Integer cId = entry.getKey();
-                    Cluster c = entry.getValue();
-                    clusterDistances.put(cId, calculateDistance(r, c.getCentroid()));
+            streamExecutor.forEach(StreamMethods.stream(IntStream.range(0, n).boxed(), isParallelized()), pos -> {
+                int a = proposedAssignments[pos];
+                double[] x = null;
+                if(a>=0) {
+                    upperBounds[pos] += shifts[a];
+                    lowerBounds[pos] -= (a==finalMaxShiftId)?finalSecondMaxShift:finalMaxShift;
+                    
+                    double bound = Math.max(halfMinDistances[a], lowerBounds[pos]);
+                    if(upperBounds[pos]<=bound) {
+                        return; //the record can't change cluster
+                    }
+                    
+                    x = distance.toVector(trainingData.get(recordIds[pos]));
+                    upperBounds[pos] = distance.calculate(x, centroids[a]);
+                    if(upperBounds[pos]<=bound) {
+                        return;
+                    }
+                }
+                else {
+                    x = distance.toVector(trainingData.get(recordIds[pos]));
                 }
                 
-                //find the closest cluster
-                Integer selectedClusterId = (Integer)getSelectedClusterFromDistances(clusterDistances);
-                tmp_clusterAssignments.put(rId, selectedClusterId);
+                //find the closest and the second closest cluster
+                int selected = -1;
+                double minDistance = Double.MAX_VALUE;
+                double secondMinDistance = Double.MAX_VALUE;
+                for(int j=0;j<k;j++) {
+                    double d = distance.calculate(x, centroids[j]);
+                    if(d<minDistance) {
+                        secondMinDistance = minDistance;
+                        minDistance = d;
+                        selected = j;
+                    }
+                    else if(d<secondMinDistance) {
+                        secondMinDistance = d;
+                    }
+                }
+                proposedAssignments[pos] = selected;
+                upperBounds[pos] = minDistance;
+                lowerBounds[pos] = secondMinDistance;
             });
             
-            for(Map.Entry<Integer, Record> e : trainingData.entries()) {
-                Integer rId = e.getKey();
-                Record r = e.getValue();
-                
-                //add the record in the cluster
-                Integer selectedClusterId = tmp_clusterAssignments.get(rId);
-                Cluster selectedCluster = clusterMap.get(selectedClusterId);
-                selectedCluster.add(r);
-                clusterMap.put(selectedClusterId, selectedCluster);
+            //move the records which changed cluster
+            for(int pos=0;pos<n;pos++) {
+                int newCluster = proposedAssignments[pos];
+                int oldCluster = assignments[pos];
+                if(newCluster!=oldCluster) {
+                    double[] x = distance.toVector(trainingData.get(recordIds[pos]));
+                    if(oldCluster>=0) {
+                        addVector(sums[oldCluster], x, -1.0);
+                        counts[oldCluster]--;
+                    }
+                    addVector(sums[newCluster], x, 1.0);
+                    counts[newCluster]++;
+                    assignments[pos] = newCluster;
+                }
             }
-            knowledgeBase.getStorageEngine().dropBigMap("tmp_clusterAssignments", tmp_clusterAssignments);
             
             //update clusters
             boolean changed=false;
-            for(Map.Entry<Integer, Cluster> e : clusterMap.entrySet()) {
-                Integer cId = e.getKey();
-                Cluster c = e.getValue();
-                changed|=c.updateClusterParameters();
-                clusterMap.put(cId, c);
+            for(int j=0;j<k;j++) {
+                double[] newCentroid = new double[sums[j].length];
+                if(counts[j]>0) {
+                    for(int f=0;f<newCentroid.length;f++) {
+                        newCentroid[f] = sums[j][f]/counts[j];
+                    }
+                }
+                shifts[j] = distance.calculate(centroids[j], newCentroid);
+                if(!Arrays.equals(centroids[j], newCentroid)) {
+                    changed = true;
+                    centroids[j] = newCentroid;
+                }
             }
             
             //if none of the clusters changed then exit
@@ -819,5 +991,139 @@ public class Kmeans extends AbstractClusterer<Kmeans.Cluster, Kmeans.ModelParame
             }
         }
     }
+    
+    /**
+     * Runs the Mini-batch Kmeans which moves the centroids towards the records
+     * of small random samples using per-cluster learning rates. The final sums
+     * and sizes of the clusters are estimated with a single pass over the data.
+     * 
+     * @param trainingData
+     * @param distance
+     * @param centroids
+     * @param batchSize
+     * @param sums
+     * @param counts 
+     */
+    private void calculateClustersWithMiniBatches(Dataframe trainingData, VectorDistance distance, double[][] centroids, int batchSize, double[][] sums, int[] counts) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        int maxIterations = knowledgeBase.getTrainingParameters().getMaxIterations();
+        modelParameters.setTotalIterations(maxIterations);
+        
+        int k = centroids.length;
+        int n = trainingData.size();
+        Integer[] recordIds = new Integer[n];
+        int i = 0;
+        for(Integer rId : trainingData.index()) {
+            recordIds[i++] = rId;
+        }
+        
+        Random rnd = RandomGenerator.getThreadLocalRandom();
+        long[] batchCounts = new long[k];
+        double[][] batch = new double[batchSize][];
+        int[] batchAssignments = new int[batchSize];
+        for(int iteration=0;iteration<maxIterations;++iteration) {
+            logger.debug("Iteration {}", iteration);
+            
+            //sample the batch and assign its records to the closest clusters
+            for(int b=0;b<batchSize;b++) {
+                batch[b] = distance.toVector(trainingData.get(recordIds[rnd.nextInt(n)]));
+            }
+            streamExecutor.forEach(StreamMethods.stream(IntStream.range(0, batchSize).boxed(), isParallelized()), b -> {
+                batchAssignments[b] = selectClosestCentroid(distance, batch[b], centroids);
+            });
+            
+            //move the centroids towards the records of the batch
+            for(int b=0;b<batchSize;b++) {
+                int j = batchAssignments[b];
+                double learningRate = 1.0/(++batchCounts[j]);
+                double[] centroid = centroids[j];
+                for(int f=0;f<centroid.length;f++) {
+                    centroid[f] += learningRate*(batch[b][f]-centroid[f]);
+                }
+            }
+        }
+        
+        //assign all the records to the closest clusters
+        for(Record r : trainingData.values()) {
+            double[] x = distance.toVector(r);
+            int j = selectClosestCentroid(distance, x, centroids);
+            addVector(sums[j], x, 1.0);
+            counts[j]++;
+        }
+    }
+    
+    private int selectClosestCentroid(VectorDistance distance, double[] x, double[][] centroids) {
+        int selected = -1;
+        double minDistance = Double.MAX_VALUE;
+        for(int j=0;j<centroids.length;j++) {
+            double d = distance.calculate(x, centroids[j]);
+            if(d<minDistance) {
+                minDistance = d;
+                selected = j;
+            }
+        }
+        return selected;
+    }
+    
+    private static void addVector(double[] sum, double[] x, double multiplier) {
+        for(int f=0;f<sum.length;f++) {
+            sum[f] += multiplier*x[f];
+        }
+    }
+    
+    /**
+     * Estimates the weighted distances between records and centroids which
+     * are encoded as primitive vectors. The missing values are treated as 0.
+     */
+    private static class VectorDistance {
+        private final Map<Object, Integer> featureIds;
+        private final double[] weights;
+        private final boolean euclidean;
+        
+        private VectorDistance(Map<Object, Integer> featureIds, double[] weights, TrainingParameters.Distance distanceMethod) {
+            this.featureIds = featureIds;
+            this.weights = weights;
+            if(distanceMethod==TrainingParameters.Distance.EUCLIDIAN) {
+                euclidean = true;
+            }
+            else if(distanceMethod==TrainingParameters.Distance.MANHATTAN) {
+                euclidean = false;
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported Distance method.");
+            }
+        }
+        
+        private double[] toVector(Record r) {
+            double[] x = new double[weights.length];
+            for(Map.Entry<Object, Object> e : r.getX().entrySet()) {
+                Integer featureId = featureIds.get(e.getKey());
+                if(featureId != null) {
+                    Double value = TypeInference.toDouble(e.getValue());
+                    if(value != null) {
+                        x[featureId] = value;
+                    }
+                }
+            }
+            return x;
+        }
+        
+        private double calculate(double[] x1, double[] x2) {
+            double distance = 0.0;
+            if(euclidean) {
+                for(int f=0;f<weights.length;f++) {
+                    double diff = x1[f]-x2[f];
+                    distance += diff*diff*weights[f];
+                }
+                distance = Math.sqrt(distance);
+            }
+            else {
+                for(int f=0;f<weights.length;f++) {
+                    distance += Math.abs(x1[f]-x2[f])*weights[f];
+                }
+            }
+            return distance;
+        }
+    }
 
-}
\ No newline at end of file
+}
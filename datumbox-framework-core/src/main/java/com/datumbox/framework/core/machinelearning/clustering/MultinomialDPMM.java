@@ -16,15 +16,14 @@
 package com.datumbox.framework.core.machinelearning.clustering;
 
 import com.datumbox.framework.common.Configuration;
-import com.datumbox.framework.core.common.dataobjects.DataframeMatrix;
+import com.datumbox.framework.common.dataobjects.TypeInference;
 import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.algorithms.AbstractDPMM;
 import com.datumbox.framework.core.machinelearning.common.abstracts.modelers.AbstractClusterer;
 import com.datumbox.framework.core.statistics.distributions.ContinuousDistributions;
-import org.apache.commons.math3.linear.OpenMapRealVector;
-import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.util.OpenIntToDoubleHashMap;
 
 import java.util.Map;
 
@@ -47,15 +46,17 @@ public class MultinomialDPMM extends AbstractDPMM<MultinomialDPMM.Cluster, Multi
      * The AbstractCluster class of the MultinomialDPMM model.
      */
     public static class Cluster extends AbstractDPMM.AbstractCluster {
-        private static final long serialVersionUID = 2L;
+        private static final long serialVersionUID = 3L;
         
         //hyper parameters
         private final double alphaWords; //effectively we set alphaWords = 50. The alphaWords controls the amount of words in each cluster. In most notes it is notated as alpha.
         
+        private final int dimensions;
+        
         //cluster parameters
-        private RealVector wordCounts;
+        private final OpenIntToDoubleHashMap wordCounts; //sparse counts, only the words of the cluster are stored
         
-        private Double wordcounts_plusalpha; //internal cached value of WordCountsPlusAlpha
+        private double wordCountsSum; //internal cached value of the sum of the word counts
         
         /** 
          * @param clusterId
@@ -68,18 +69,31 @@ public class MultinomialDPMM extends AbstractDPMM<MultinomialDPMM.Cluster, Multi
 
             this.alphaWords = alphaWords;
             
-            wordCounts = new OpenMapRealVector(dimensions);
-            wordcounts_plusalpha = estimateWordCountsPlusAlpha();
+            this.dimensions = dimensions;
+            
+            wordCounts = new OpenIntToDoubleHashMap(0.0);
+            wordCountsSum = 0.0;
         }
         
         /** {@inheritDoc} */
         @Override
         protected double posteriorLogPdf(Record r) {
-            RealVector x_mu = DataframeMatrix.parseRecord(r, featureIds);
-
-            RealVector wordCountsPlusAlpha = wordCounts.mapAdd(alphaWords);
-
-            double logPdf = C(wordCountsPlusAlpha.add(x_mu))-wordcounts_plusalpha;
+            //C(wordCounts+alpha+x)-C(wordCounts+alpha) where only the non-zero
+            //dimensions of x contribute to the difference of the sums of logGammas
+            double logPdf = 0.0;
+            double xSum = 0.0;
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Integer featureId = featureIds.get(entry.getKey());
+                Double value = TypeInference.toDouble(entry.getValue());
+                if(featureId!=null && value!=null && value!=0.0) {
+                    double a = wordCounts.get(featureId)+alphaWords;
+                    logPdf += ContinuousDistributions.logGamma(a+value)-ContinuousDistributions.logGamma(a);
+                    xSum += value;
+                }
+            }
+            
+            double aSum = wordCountsSum+alphaWords*dimensions;
+            logPdf -= ContinuousDistributions.logGamma(aSum+xSum)-ContinuousDistributions.logGamma(aSum);
             return logPdf;
         }
 
@@ -98,38 +112,27 @@ public class MultinomialDPMM extends AbstractDPMM<MultinomialDPMM.Cluster, Multi
         /** {@inheritDoc} */
         @Override
         protected void add(Record r) {
-            RealVector rv = DataframeMatrix.parseRecord(r, featureIds);
-
-            //update cluster clusterParameters
-            if(size==0) {
-                wordCounts=rv;
-            }
-            else {
-                wordCounts=wordCounts.add(rv);
-            }
-            
+            updateWordCounts(r, 1.0);
             size++;
-            
-            updateClusterParameters();
         }
         
         /** {@inheritDoc} */
         @Override
         protected void remove(Record r) {
             size--;
-            
-            RealVector rv = DataframeMatrix.parseRecord(r, featureIds);
-
-            //update cluster clusterParameters
-            wordCounts=wordCounts.subtract(rv);
-            
-            updateClusterParameters();
+            updateWordCounts(r, -1.0);
         }
         
         /** {@inheritDoc} */
         @Override
         protected void updateClusterParameters() {
-            wordcounts_plusalpha = estimateWordCountsPlusAlpha();
+            double sum = 0.0;
+            OpenIntToDoubleHashMap.Iterator it = wordCounts.iterator();
+            while(it.hasNext()) {
+                it.advance();
+                sum += it.value();
+            }
+            wordCountsSum = sum;
         }
 
         /** {@inheritDoc} */
@@ -139,38 +142,26 @@ public class MultinomialDPMM extends AbstractDPMM<MultinomialDPMM.Cluster, Multi
         }
         
         /**
-         * Estimates the WordCountsPlusAlpha which is stored internally in the
-         * cluster for performance reasons.
-         * 
-         * @return 
-         */
-        private double estimateWordCountsPlusAlpha() {
-            RealVector wordCountsPlusAlpha = wordCounts.mapAdd(alphaWords);
-            return C(wordCountsPlusAlpha);
-        }
-        
-        /**
-         * Internal method that estimates the value of C(a).
+         * Adds in place the word counts of the record multiplied by the sign.
          * 
-         * @param alphaVector   Vector with alpha values
-         * @return              Returns the value of C(a)
+         * @param r
+         * @param sign 
          */
-        private double C(RealVector alphaVector) {
-            double Cvalue;
-            double sumAi=0.0;
-            double sumLogGammaAi=0.0;
-
-            int aLength=alphaVector.getDimension();
-            double tmp;
-            for(int i=0;i<aLength;++i) {
-                tmp=alphaVector.getEntry(i);
-                sumAi+= tmp;
-                sumLogGammaAi+=ContinuousDistributions.logGamma(tmp);
+        private void updateWordCounts(Record r, double sign) {
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Integer featureId = featureIds.get(entry.getKey());
+                Double value = TypeInference.toDouble(entry.getValue());
+                if(featureId!=null && value!=null) {
+                    double count = wordCounts.get(featureId)+sign*value;
+                    if(count != 0.0) {
+                        wordCounts.put(featureId, count);
+                    }
+                    else {
+                        wordCounts.remove(featureId);
+                    }
+                    wordCountsSum += sign*value;
+                }
             }
-
-            Cvalue = sumLogGammaAi-ContinuousDistributions.logGamma(sumAi);
-
-            return Cvalue;
         }
     }
     
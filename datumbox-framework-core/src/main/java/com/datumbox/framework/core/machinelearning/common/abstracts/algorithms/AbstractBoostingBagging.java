@@ -16,10 +16,10 @@
 package com.datumbox.framework.core.machinelearning.common.abstracts.algorithms;
 
 import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.concurrency.ForkJoinStream;
+import com.datumbox.framework.common.concurrency.StreamMethods;
 import com.datumbox.framework.common.dataobjects.*;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
-import com.datumbox.framework.common.storage.interfaces.StorageEngine.MapType;
-import com.datumbox.framework.common.storage.interfaces.StorageEngine.StorageHint;
 import com.datumbox.framework.core.common.utilities.MapMethods;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.Record;
@@ -27,14 +27,14 @@ import com.datumbox.framework.core.machinelearning.MLBuilder;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.modelers.AbstractClassifier;
 import com.datumbox.framework.core.machinelearning.common.dataobjects.TrainableBundle;
+import com.datumbox.framework.core.machinelearning.common.interfaces.PredictParallelizable;
+import com.datumbox.framework.core.machinelearning.common.interfaces.TrainParallelizable;
 import com.datumbox.framework.core.machinelearning.ensemblelearning.FixedCombinationRules;
 import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
 import com.datumbox.framework.core.statistics.sampling.SimpleRandomSampling;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * Base class for Adaboost and BoostrapAgregating.
@@ -43,13 +43,21 @@ import java.util.Set;
  * @param <MP>
  * @param <TP>
  */
-public abstract class AbstractBoostingBagging<MP extends AbstractBoostingBagging.AbstractModelParameters, TP extends AbstractBoostingBagging.AbstractTrainingParameters> extends AbstractClassifier<MP, TP> {
+public abstract class AbstractBoostingBagging<MP extends AbstractBoostingBagging.AbstractModelParameters, TP extends AbstractBoostingBagging.AbstractTrainingParameters> extends AbstractClassifier<MP, TP> implements TrainParallelizable {
 
     private final TrainableBundle bundle;
 
     private static final String STORAGE_INDICATOR = "Cmp";
     private static final int MAX_NUM_OF_RETRIES = 2;
     
+    private boolean parallelized = true;
+    
+    /**
+     * This executor is used for the parallel processing of streams with custom 
+     * Thread pool.
+     */
+    protected final ForkJoinStream streamExecutor;
+    
     /** {@inheritDoc} */
     public static abstract class AbstractModelParameters extends AbstractClassifier.AbstractModelParameters {
         
@@ -138,6 +146,7 @@ public abstract class AbstractBoostingBagging<MP extends AbstractBoostingBagging
     protected AbstractBoostingBagging(TP trainingParameters, Configuration configuration) {
         super(trainingParameters, configuration);
         bundle  = new TrainableBundle(configuration.getStorageConfiguration().getStorageNameSeparator());
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
     }
 
     /**
@@ -148,6 +157,19 @@ public abstract class AbstractBoostingBagging<MP extends AbstractBoostingBagging
     protected AbstractBoostingBagging(String storageName, Configuration configuration) {
         super(storageName, configuration);
         bundle  = new TrainableBundle(configuration.getStorageConfiguration().getStorageNameSeparator());
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public boolean isParallelized() {
+        return parallelized;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setParallelized(boolean parallelized) {
+        this.parallelized = parallelized;
     }
     
     /** {@inheritDoc} */
@@ -157,51 +179,68 @@ public abstract class AbstractBoostingBagging<MP extends AbstractBoostingBagging
         initBundle();
 
         List<Double> weakClassifierWeights = knowledgeBase.getModelParameters().getWeakClassifierWeights();
-
-        //create a temporary map for the observed probabilities in training set
-        StorageEngine storageEngine = knowledgeBase.getStorageEngine();
-        Map<Object, DataTable2D> tmp_recordDecisions = storageEngine.getBigMap("tmp_recordDecisions", Object.class, DataTable2D.class, MapType.HASHMAP, StorageHint.IN_DISK, false, true);
-        
-        //initialize array of recordDecisions
-        for(Integer rId : newData.index()) {
-            tmp_recordDecisions.put(rId, new DataTable2D());
-        }
         
         //using the weak classifiers
         AssociativeArray classifierWeightsArray = new AssociativeArray();
         int totalWeakClassifiers = weakClassifierWeights.size();
+        List<AbstractClassifier> weakClassifiers = new ArrayList<>(totalWeakClassifiers);
+        boolean predictRecords = true;
         for(int i=0;i<totalWeakClassifiers;++i) {
-
             AbstractClassifier mlclassifier = (AbstractClassifier) bundle.get(STORAGE_INDICATOR + i);
-            mlclassifier.predict(newData);
-            
+            weakClassifiers.add(mlclassifier);
             classifierWeightsArray.put(i, weakClassifierWeights.get(i));
-            
-            for(Map.Entry<Integer, Record> e : newData.entries()) {
-                Integer rId = e.getKey();
+            predictRecords &= mlclassifier instanceof PredictParallelizable;
+        }
+        
+        if(predictRecords) {
+            //evaluate all the weak classifiers on each record and combine their decisions in a single pass
+            streamExecutor.forEach(StreamMethods.stream(newData.entries(), isParallelized()), e -> {
                 Record r = e.getValue();
-                AssociativeArray classProbabilities = r.getYPredictedProbabilities();
                 
-                DataTable2D rDecisions = tmp_recordDecisions.get(rId);
-                rDecisions.put(i, classProbabilities);
+                DataTable2D rDecisions = new DataTable2D();
+                for(int i=0;i<totalWeakClassifiers;++i) {
+                    rDecisions.put(i, ((PredictParallelizable)weakClassifiers.get(i))._predictRecord(r).getYPredictedProbabilities());
+                }
                 
-                tmp_recordDecisions.put(rId, rDecisions); //WARNING: Do not remove this! We must put it back to the Map to store it on Disk-backed maps
-            }
+                newData._unsafe_set(e.getKey(), combineDecisions(r, rDecisions, classifierWeightsArray));
+            });
         }
-        
-        //for each record find the combined classification by majority vote
-        for(Map.Entry<Integer, Record> e : newData.entries()) {
-            Integer rId = e.getKey();
-            Record r = e.getValue();
+        else {
+            //the weak classifiers can only predict whole datasets, so we keep their decisions in memory
+            Map<Integer, DataTable2D> recordDecisions = new HashMap<>();
+            for(Integer rId : newData.index()) {
+                recordDecisions.put(rId, new DataTable2D());
+            }
             
-            AssociativeArray combinedClassVotes = FixedCombinationRules.weightedAverage(tmp_recordDecisions.get(rId), classifierWeightsArray);
-            Descriptives.normalize(combinedClassVotes);
+            for(int i=0;i<totalWeakClassifiers;++i) {
+                weakClassifiers.get(i).predict(newData);
+                
+                for(Map.Entry<Integer, Record> e : newData.entries()) {
+                    recordDecisions.get(e.getKey()).put(i, e.getValue().getYPredictedProbabilities());
+                }
+            }
             
-            newData._unsafe_set(rId, new Record(r.getX(), r.getY(), MapMethods.selectMaxKeyValue(combinedClassVotes).getKey(), combinedClassVotes));
+            for(Map.Entry<Integer, Record> e : newData.entries()) {
+                Integer rId = e.getKey();
+                newData._unsafe_set(rId, combineDecisions(e.getValue(), recordDecisions.get(rId), classifierWeightsArray));
+            }
         }
+    }
+    
+    /**
+     * Combines the decisions of the weak classifiers on a record by their 
+     * weighted average and returns the updated record.
+     * 
+     * @param r
+     * @param rDecisions
+     * @param classifierWeightsArray
+     * @return 
+     */
+    private Record combineDecisions(Record r, DataTable2D rDecisions, AssociativeArray classifierWeightsArray) {
+        AssociativeArray combinedClassVotes = FixedCombinationRules.weightedAverage(rDecisions, classifierWeightsArray);
+        Descriptives.normalize(combinedClassVotes);
         
-        //Drop the temporary Collection
-        storageEngine.dropBigMap("tmp_recordDecisions", tmp_recordDecisions);
+        return new Record(r.getX(), r.getY(), MapMethods.selectMaxKeyValue(combinedClassVotes).getKey(), combinedClassVotes);
     }
     
     /** {@inheritDoc} */
@@ -236,6 +275,43 @@ public abstract class AbstractBoostingBagging<MP extends AbstractBoostingBagging
         AbstractClassifier.AbstractTrainingParameters weakClassifierTrainingParameters = trainingParameters.getWeakClassifierTrainingParameters();
         int totalWeakClassifiers = trainingParameters.getMaxWeakClassifiers();
         
+        if(hasIndependentWeakClassifiers()) {
+            //We sample the lists of Ids upfront, so that the samples do not depend on the scheduling of the threads
+            List<FlatDataList> sampledIDsList = new ArrayList<>(totalWeakClassifiers);
+            for(int i=0;i<totalWeakClassifiers;i++) {
+                sampledIDsList.add(SimpleRandomSampling.weightedSampling(observationWeights, n, true).toFlatDataList());
+            }
+            
+            //training the weak classifiers concurrently on views of the training data
+            AbstractClassifier[] weakClassifiers = new AbstractClassifier[totalWeakClassifiers];
+            streamExecutor.forEach(StreamMethods.stream(IntStream.range(0, totalWeakClassifiers).boxed(), isParallelized()), i -> {
+                logger.debug("Training Weak learner {}", i);
+                
+                Dataframe sampledTrainingDataset = trainingData.getSubset(sampledIDsList.get(i));
+                
+                AbstractClassifier mlclassifier = MLBuilder.create(weakClassifierTrainingParameters, configuration);
+                mlclassifier.fit(sampledTrainingDataset);
+                sampledTrainingDataset.close();
+                
+                weakClassifiers[i] = mlclassifier;
+            });
+            
+            int i = 0;
+            boolean stop = false;
+            for(AbstractClassifier mlclassifier : weakClassifiers) {
+                Status status = stop?Status.IGNORE:updateObservationAndClassifierWeights(trainingData, observationWeights);
+                if(status == Status.IGNORE) {
+                    mlclassifier.close();
+                }
+                else {
+                    bundle.put(STORAGE_INDICATOR + i, mlclassifier);
+                    i++;
+                }
+                stop |= status == Status.STOP;
+            }
+            return;
+        }
+        
         //training the weak classifiers
         int i=0;
         int retryCounter = 0;
@@ -307,6 +383,20 @@ public abstract class AbstractBoostingBagging<MP extends AbstractBoostingBagging
         IGNORE;
     }
     
+    /**
+     * Returns whether the weak classifiers are trained independently from each
+     * other. If true, the weak classifiers are trained concurrently on samples
+     * drawn with equal observation weights and the weights are updated after
+     * the training without predicting the training data. By default the weak
+     * classifiers are trained sequentially, because the weights of the
+     * observations depend on the errors of the previous weak classifiers.
+     * 
+     * @return 
+     */
+    protected boolean hasIndependentWeakClassifiers() {
+        return false;
+    }
+    
     /**
      * Updates the weights of observations and the weights of the classifiers.
      * 
@@ -16,6 +16,8 @@
 package com.datumbox.framework.core.machinelearning.common.abstracts.algorithms;
 
 import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.concurrency.ForkJoinStream;
+import com.datumbox.framework.common.concurrency.StreamMethods;
 import com.datumbox.framework.common.dataobjects.AssociativeArray;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.Record;
@@ -23,18 +25,17 @@ import com.datumbox.framework.common.storage.interfaces.BigMap;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine.MapType;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine.StorageHint;
+import com.datumbox.framework.common.utilities.RandomGenerator;
 import com.datumbox.framework.core.common.utilities.MapMethods;
 import com.datumbox.framework.core.common.utilities.PHPMethods;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.modelers.AbstractClusterer;
 import com.datumbox.framework.core.machinelearning.common.interfaces.PredictParallelizable;
+import com.datumbox.framework.core.machinelearning.common.interfaces.TrainParallelizable;
 import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
-import com.datumbox.framework.core.statistics.sampling.SimpleRandomSampling;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.IntStream;
 
 
 /**
@@ -45,7 +46,7 @@ import java.util.Set;
  * @param <MP>
  * @param <TP>
  */
-public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP extends AbstractDPMM.AbstractModelParameters, TP extends AbstractDPMM.AbstractTrainingParameters> extends AbstractClusterer<CL, MP, TP> implements PredictParallelizable {
+public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP extends AbstractDPMM.AbstractModelParameters, TP extends AbstractDPMM.AbstractTrainingParameters> extends AbstractClusterer<CL, MP, TP> implements PredictParallelizable, TrainParallelizable {
     
     /** {@inheritDoc} */
     public static abstract class AbstractCluster extends AbstractClusterer.AbstractCluster {
@@ -88,7 +89,8 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
         
         /**
          * Returns the log posterior PDF of a particular point xi, to belong to this
-         * cluster.
+         * cluster. The method can be called concurrently on the same cluster
+         * as long as the cluster is not modified.
          * 
          * @param r    The point for which we want to estimate the PDF.
          * @return      The log posterior PDF
@@ -276,6 +278,7 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
      */
     protected AbstractDPMM(TP trainingParameters, Configuration configuration) {
         super(trainingParameters, configuration);
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
     }
 
     /**
@@ -285,10 +288,23 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
      */
     protected AbstractDPMM(String storageName, Configuration configuration) {
         super(storageName, configuration);
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
     }
     
+    /**
+     * The minimum number of clusters per thread for which the posteriors of
+     * a point are estimated in parallel.
+     */
+    private static final int MIN_CLUSTERS_PER_THREAD = 16;
+    
     private boolean parallelized = true;
     
+    /**
+     * This executor is used for the parallel processing of streams with custom 
+     * Thread pool.
+     */
+    protected final ForkJoinStream streamExecutor;
+    
     /** {@inheritDoc} */
     @Override
     public boolean isParallelized() {
@@ -379,7 +395,11 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
     }
     
     /**
-     * Implementation of Collapsed Gibbs Sampling algorithm.
+     * Implementation of Collapsed Gibbs Sampling algorithm. The clusters are
+     * kept in memory during the sampling and they are stored in the clusterMap
+     * at the end. The posteriors of every point are estimated on primitive
+     * arrays and, when there are many clusters, in parallel since they are
+     * conditionally independent given the assignments of the other points.
      * 
      * @param dataset The list of points that we want to cluster
      */
@@ -391,8 +411,14 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
         
         double alpha = trainingParameters.getAlpha();
         
+        //load any existing clusters in memory
+        Map<Integer, CL> clusters = new LinkedHashMap<>();
+        for(Integer clusterId : clusterMap.keySet()) {
+            clusters.put(clusterId, getFromClusterMap(clusterId, clusterMap));
+        }
+        
         //Initialize clusters, create a cluster for every xi
-        Integer newClusterId = clusterMap.size(); //start counting the Ids based on clusters in the list
+        Integer newClusterId = clusters.size(); //start counting the Ids based on clusters in the list
 
         if(trainingParameters.getInitializationMethod()==AbstractTrainingParameters.Initialization.ONE_CLUSTER_PER_RECORD) {
             for(Map.Entry<Integer, Record> e : dataset.entries()) {
@@ -402,7 +428,7 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
                 //generate a new cluster
                 CL cluster = createNewCluster(newClusterId);
                 cluster.add(r);
-                clusterMap.put(newClusterId, cluster);
+                clusters.put(newClusterId, cluster);
 
                 //add the record in the new cluster
                 r = new Record(r.getX(), r.getY(), newClusterId, r.getYPredictedProbabilities());
@@ -421,7 +447,7 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
             for(int i=0;i<numberOfNewClusters;++i) {
                 //generate a new cluster
                 CL cluster = createNewCluster(newClusterId);
-                clusterMap.put(newClusterId, cluster);
+                clusters.put(newClusterId, cluster);
 
                 ++newClusterId;
             }
@@ -436,16 +462,20 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
                 r = new Record(r.getX(), r.getY(), assignedClusterId, r.getYPredictedProbabilities());
                 dataset._unsafe_set(rId, r);
                 
-                CL c = getFromClusterMap(assignedClusterId, clusterMap);
-                c.add(r);
-                clusterMap.put(assignedClusterId, c);
+                clusters.get(assignedClusterId).add(r);
             }
         }
 
                 
-        int n = clusterMap.size();
+        int n = clusters.size();
         
         int maxIterations = trainingParameters.getMaxIterations();
+        int minParallelClusters = MIN_CLUSTERS_PER_THREAD*knowledgeBase.getConfiguration().getConcurrencyConfiguration().getMaxNumberOfThreadsPerTask();
+        
+        Random rnd = RandomGenerator.getThreadLocalRandom();
+        List<Integer> candidateIds = new ArrayList<>();
+        List<CL> candidates = new ArrayList<>();
+        double[] logProbabilities = new double[0];
         
         boolean noChangeMade=false;
         int iteration=0;
@@ -459,48 +489,61 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
                 Record r = e.getValue();
                 
                 Integer pointClusterId = (Integer) r.getYPredicted();
-                CL ci = getFromClusterMap(pointClusterId, clusterMap);
+                CL ci = clusters.get(pointClusterId);
                 
                 //remove the point from the cluster
                 ci.remove(r);
                 
                 //if empty cluster remove it
                 if(ci.size()==0) {
-                    clusterMap.remove(pointClusterId);
-                }
-                else {
-                    clusterMap.put(pointClusterId, ci);
+                    clusters.remove(pointClusterId);
                 }
                 
-                AssociativeArray condProbCiGivenXiAndOtherCi = clusterProbabilities(r, n, clusterMap);
-                                
-                //Calculate the probabilities of assigning the point to a new cluster
-                //compute P*(X[i]) = P(X[i]|λ)
-                
+                //the last candidate is a new cluster
                 CL cNew = createNewCluster(newClusterId);
+                candidateIds.clear();
+                candidates.clear();
+                for(Map.Entry<Integer, CL> entry : clusters.entrySet()) {
+                    candidateIds.add(entry.getKey());
+                    candidates.add(entry.getValue());
+                }
+                candidateIds.add(newClusterId);
+                candidates.add(cNew);
                 
-                double priorLogPredictive = cNew.posteriorLogPdf(r);
-
-                //compute P(z[i] = * | z[-i], Data) = α/(α+N-1)
-                double probNewCluster = alpha/(alpha+n-1.0);
-
-                condProbCiGivenXiAndOtherCi.put(newClusterId, priorLogPredictive+Math.log(probNewCluster));
+                int m = candidates.size();
+                if(logProbabilities.length<m) {
+                    logProbabilities = new double[Math.max(m, 2*logProbabilities.length)];
+                }
                 
-                //normalize probabilities P(z[i])
-                Descriptives.normalizeExp(condProbCiGivenXiAndOtherCi);
+                //Probabilities that appear on https://www.cs.cmu.edu/~kbe/dp_tutorial.pdf
+                //compute P_k(X[i]) = P(X[i] | X[-i] = k) and P(z[i] = k | z[-i], Data) = N_{k,-i}/(a+N-1)
+                //for the new cluster P*(X[i]) = P(X[i]|λ) and P(z[i] = * | z[-i], Data) = α/(α+N-1)
+                double[] finalLogProbabilities = logProbabilities;
+                Record finalRecord = r;
+                if(isParallelized() && m>=minParallelClusters) {
+                    streamExecutor.forEach(StreamMethods.stream(IntStream.range(0, m).boxed(), true), j -> {
+                        finalLogProbabilities[j] = clusterLogProbability(candidates.get(j), j==m-1, finalRecord, alpha, n);
+                    });
+                }
+                else {
+                    for(int j=0;j<m;j++) {
+                        finalLogProbabilities[j] = clusterLogProbability(candidates.get(j), j==m-1, finalRecord, alpha, n);
+                    }
+                }
                 
-                Integer sampledClusterId = (Integer) SimpleRandomSampling.weightedSampling(condProbCiGivenXiAndOtherCi, 1, true).iterator().next();
-                //condProbCiGivenXiAndOtherCi=null;
+                int sampledPosition = sample(logProbabilities, m, rnd);
+                Integer sampledClusterId = candidateIds.get(sampledPosition);
+                CL sampledCluster = candidates.get(sampledPosition);
                 
                 //Add Xi back to the sampled AbstractCluster
-                if(Objects.equals(sampledClusterId, newClusterId)) { //if new cluster
+                if(sampledCluster == cNew) { //if new cluster
                     //add the record in the new cluster
                     r = new Record(r.getX(), r.getY(), newClusterId, r.getYPredictedProbabilities());
                     dataset._unsafe_set(rId, r);
                     
                     cNew.add(r);
                     
-                    clusterMap.put(newClusterId, cNew);
+                    clusters.put(newClusterId, cNew);
                     
                     noChangeMade=false;
                     
@@ -513,9 +556,7 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
                         noChangeMade=false;
                     }
                     
-                    CL c = getFromClusterMap(sampledClusterId, clusterMap);
-                    c.add(r); //add it to the cluster (or just add it back)
-                    clusterMap.put(sampledClusterId, c);
+                    sampledCluster.add(r); //add it to the cluster (or just add it back)
                 }
                 
             }
@@ -523,27 +564,52 @@ public abstract class AbstractDPMM<CL extends AbstractDPMM.AbstractCluster, MP e
             ++iteration;
         }
         
+        //store the clusters
+        clusterMap.clear();
+        for(Map.Entry<Integer, CL> e : clusters.entrySet()) {
+            clusterMap.put(e.getKey(), e.getValue());
+        }
+        
         return iteration;
     }
     
-    private AssociativeArray clusterProbabilities(Record r, int n, Map<Integer, CL> clusterMap) {
-        Map<Integer, Double> condProbCiGivenXiAndOtherCi = new HashMap<>();
-        double alpha = knowledgeBase.getTrainingParameters().getAlpha();
+    private double clusterLogProbability(CL ck, boolean isNew, Record r, double alpha, int n) {
+        double mixingXi = (isNew?alpha:ck.size())/(alpha+n-1.0);
+        return ck.posteriorLogPdf(r)+Math.log(mixingXi);
+    }
+    
+    /**
+     * Samples an index from the unnormalized log probabilities of the first m
+     * positions of the array.
+     * 
+     * @param logProbabilities
+     * @param m
+     * @param rnd
+     * @return 
+     */
+    private int sample(double[] logProbabilities, int m, Random rnd) {
+        double max = Double.NEGATIVE_INFINITY;
+        for(int j=0;j<m;j++) {
+            if(logProbabilities[j]>max) {
+                max = logProbabilities[j];
+            }
+        }
         
-        //Probabilities that appear on https://www.cs.cmu.edu/~kbe/dp_tutorial.pdf
-        //Calculate the probabilities of assigning the point for every cluster
-        for(Integer clusterId : clusterMap.keySet()) {
-            AbstractCluster ck = getFromClusterMap(clusterId, clusterMap);
-            //compute P_k(X[i]) = P(X[i] | X[-i] = k)
-            double marginalLogLikelihoodXi = ck.posteriorLogPdf(r);
-            //set N_{k,-i} = dim({X[-i] = k})
-            //compute P(z[i] = k | z[-i], Data) = N_{k,-i}/(a+N-1)
-            double mixingXi = ck.size()/(alpha+n-1.0);
-            
-            condProbCiGivenXiAndOtherCi.put(clusterId, marginalLogLikelihoodXi+Math.log(mixingXi)); //concurrent map and non-overlapping keys for each thread
+        double sum = 0.0;
+        for(int j=0;j<m;j++) {
+            double probability = Math.exp(logProbabilities[j]-max);
+            logProbabilities[j] = probability;
+            sum += probability;
         }
         
-        return new AssociativeArray((Map)condProbCiGivenXiAndOtherCi);
+        double u = rnd.nextDouble()*sum;
+        for(int j=0;j<m;j++) {
+            u -= logProbabilities[j];
+            if(u<=0.0) {
+                return j;
+            }
+        }
+        return m-1; //rounding errors
     }
     
     private Object getSelectedClusterFromScores(AssociativeArray clusterScores) {
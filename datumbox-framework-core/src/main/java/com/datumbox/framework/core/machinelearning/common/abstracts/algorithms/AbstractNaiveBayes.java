@@ -31,8 +31,11 @@ import com.datumbox.framework.core.machinelearning.common.abstracts.modelers.Abs
 import com.datumbox.framework.core.machinelearning.common.interfaces.PredictParallelizable;
 import com.datumbox.framework.core.machinelearning.common.interfaces.TrainParallelizable;
 import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
+import org.apache.commons.math3.util.OpenIntToDoubleHashMap;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
 
 
 /**
@@ -49,8 +52,10 @@ public abstract class AbstractNaiveBayes<MP extends AbstractNaiveBayes.AbstractM
 
         private Map<Object, Double> logPriors = new HashMap<>(); //prior log probabilities of the classes
 
-        @BigMap(keyClass=List.class, valueClass=Double.class, mapType=MapType.HASHMAP, storageHint=StorageHint.IN_MEMORY, concurrent=true)
-        private Map<List<Object>, Double> logLikelihoods; //posterior log probabilities of features-classes combination
+        @BigMap(keyClass=Object.class, valueClass=Integer.class, mapType=MapType.HASHMAP, storageHint=StorageHint.IN_MEMORY, concurrent=true)
+        private Map<Object, Integer> featureIds; //the dictionary that maps each feature to its row in the logLikelihoods matrix
+        
+        private double[] logLikelihoods; //posterior log probabilities of features-classes combination stored as a row-major featureId x classId matrix
         
         /** 
          * @param storageEngine
@@ -79,11 +84,34 @@ public abstract class AbstractNaiveBayes<MP extends AbstractNaiveBayes.AbstractM
         }
         
         /**
-         * Getter for the log likelihood of P(x|c).
+         * Getter for the dictionary which maps every feature to its row in the
+         * logLikelihoods matrix.
          * 
          * @return 
          */
-        public Map<List<Object>, Double> getLogLikelihoods() {
+        public Map<Object, Integer> getFeatureIds() {
+            return featureIds;
+        }
+        
+        /**
+         * Setter for the dictionary which maps every feature to its row in the
+         * logLikelihoods matrix.
+         * 
+         * @param featureIds 
+         */
+        protected void setFeatureIds(Map<Object, Integer> featureIds) {
+            this.featureIds = featureIds;
+        }
+        
+        /**
+         * Getter for the log likelihood of P(x|c). The values are stored in a 
+         * row-major matrix; the likelihood of a feature-class pair is located at 
+         * position featureId*C + classId, where the classId is the position of 
+         * the class in the set of classes.
+         * 
+         * @return 
+         */
+        public double[] getLogLikelihoods() {
             return logLikelihoods;
         }
         
@@ -92,7 +120,7 @@ public abstract class AbstractNaiveBayes<MP extends AbstractNaiveBayes.AbstractM
          * 
          * @param logLikelihoods 
          */
-        protected void setLogLikelihoods(Map<List<Object>, Double> logLikelihoods) {
+        protected void setLogLikelihoods(double[] logLikelihoods) {
             this.logLikelihoods = logLikelihoods;
         }
     } 
@@ -180,48 +208,45 @@ public abstract class AbstractNaiveBayes<MP extends AbstractNaiveBayes.AbstractM
     @Override
     public Prediction _predictRecord(Record r) {
         AbstractModelParameters modelParameters = knowledgeBase.getModelParameters();
-        Map<List<Object>, Double> logLikelihoods = modelParameters.getLogLikelihoods();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
+        double[] logLikelihoods = modelParameters.getLogLikelihoods();
         Map<Object, Double> logPriors = modelParameters.getLogPriors();
         Set<Object> classesSet = modelParameters.getClasses();
+        int c = classesSet.size();
         
-        Object someClass = classesSet.iterator().next();
         boolean isBinarized = isBinarized();
         
         //initialize scores with the scores of the priors
-        AssociativeArray predictionScores = new AssociativeArray(new HashMap<>(logPriors)); 
+        double[] classScores = new double[c];
+        int classId = 0;
+        for(Object theClass : classesSet) {
+            classScores[classId++] = logPriors.get(theClass);
+        }
 
         for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-            Object feature = entry.getKey();
-
             //EVERY feature within our dictionary has a value for EVERY class
-            //So if the feature has no value for one random class (someClass has 
-            //no particular significance), then it will not have for any class
-            //and thus the feature is not in the dictionary and can be ignored.
-            if(!logLikelihoods.containsKey(Arrays.asList(feature, someClass))) {
+            //So if the feature is not in the dictionary it can be ignored.
+            Integer featureId = featureIds.get(entry.getKey());
+            if(featureId==null) {
                 continue;
             }
 
-            //extract the feature scores for each class for the particular feature
-            AssociativeArray classLogScoresForThisFeature = new AssociativeArray();
-
-            for(Object theClass : classesSet) {
-                Double logScore = logLikelihoods.get(Arrays.asList(feature, theClass));
-                classLogScoresForThisFeature.put(theClass, logScore);
-            }
-
-
-            Double occurrences=TypeInference.toDouble(entry.getValue());
+            double occurrences=TypeInference.toDouble(entry.getValue());
             if((!knowledgeBase.getTrainingParameters().isMultiProbabilityWeighted() || isBinarized) && occurrences>0) {
                 occurrences=1.0;
             }
 
-            for(Map.Entry<Object, Object> entry2 : classLogScoresForThisFeature.entrySet()) {
-                Object theClass = entry2.getKey();
-                Double logScore = TypeInference.toDouble(entry2.getValue());
-                Double previousValue = predictionScores.getDouble(theClass);
-                predictionScores.put(theClass, previousValue+occurrences*logScore);
+            //add the feature scores for each class for the particular feature
+            int offset = featureId*c;
+            for(classId=0;classId<c;classId++) {
+                classScores[classId] += occurrences*logLikelihoods[offset+classId];
             }
-            //classLogScoresForThisFeature=null;
+        }
+
+        AssociativeArray predictionScores = new AssociativeArray();
+        classId = 0;
+        for(Object theClass : classesSet) {
+            predictionScores.put(theClass, classScores[classId++]);
         }
 
         Object predictedClass=getSelectedClassFromClassScores(predictionScores);
@@ -237,26 +262,23 @@ public abstract class AbstractNaiveBayes<MP extends AbstractNaiveBayes.AbstractM
         int n = trainingData.size();
         int d = trainingData.xColumnSize();
         
-        Map<List<Object>, Double> logLikelihoods = modelParameters.getLogLikelihoods();
         Map<Object, Double> logPriors = modelParameters.getLogPriors();
         Set<Object> classesSet = modelParameters.getClasses();
         boolean isBinarized = isBinarized();
         
         //calculate first statistics about the classes
-        Map<Object, Double> totalFeatureOccurrencesForEachClass = new HashMap<>();
         for(Record r : trainingData) { 
             Object theClass=r.getY();
             
             if(classesSet.add(theClass)) { //is it new class? add it
                 logPriors.put(theClass, 1.0);  
-                totalFeatureOccurrencesForEachClass.put(theClass, 0.0);
             }
             else { //already exists? increase counter
                 logPriors.put(theClass,logPriors.get(theClass)+1.0);  
             }
         }
         
-        //Loop through all the classes to ensure that the feature-class combination is initialized for ALL the classes
+        //Build the dictionaries of classes and features and initialize the feature-class combinations for ALL the classes.
         //The math REQUIRE us to have scores for all classes to make the probabilities comparable.
         /*
             Implementation note:
@@ -266,38 +288,14 @@ public abstract class AbstractNaiveBayes<MP extends AbstractNaiveBayes.AbstractM
             any effects on the results of the algorithm since the scores will be the same in all classes
             and it will be taken care by the normalization.
         */
-        streamExecutor.forEach(StreamMethods.stream(trainingData.getXDataTypes().keySet().stream(), isParallelized()), feature -> {
-            for(Object theClass : classesSet) {
-                List<Object> featureClassTuple = Arrays.asList(feature, theClass);
-                logLikelihoods.put(featureClassTuple, 0.0); //the key is unique across threads and the map is concurrent
-            }
-        });
+        Map<Object, Integer> classIds = buildClassIds(classesSet);
+        int c = classIds.size();
+        double[] logLikelihoods = initializeLikelihoods(trainingData, c);
         
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
         
         //now calculate the statistics of features
-        streamExecutor.forEach(StreamMethods.stream(trainingData.stream(), isParallelized()), r -> {
-            Object theClass = r.getY();
-            //store the occurrances of the features
-            double sumOfOccurrences = 0.0;
-            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object feature = entry.getKey();
-                Double occurrences=TypeInference.toDouble(entry.getValue());
-                
-                if(occurrences!= null && occurrences>0.0) {
-                    if(isBinarized) {
-                        occurrences=1.0;
-                    }
-                    
-                    List<Object> featureClassTuple = Arrays.asList(feature, theClass);
-                    logLikelihoods.put(featureClassTuple, logLikelihoods.get(featureClassTuple)+occurrences); //each thread updates a unique key and the map is cuncurrent
-                    
-                    sumOfOccurrences+=occurrences;
-                }
-            }
-            synchronized(totalFeatureOccurrencesForEachClass) {
-                totalFeatureOccurrencesForEachClass.put(theClass,totalFeatureOccurrencesForEachClass.get(theClass)+sumOfOccurrences);
-            }
-        });
+        double[] totalFeatureOccurrencesForEachClass = countOccurrences(trainingData, featureIds, classIds, logLikelihoods, isBinarized);
         
         //calculate prior log probabilities
         for(Map.Entry<Object, Double> entry : logPriors.entrySet()) {
@@ -310,19 +308,118 @@ public abstract class AbstractNaiveBayes<MP extends AbstractNaiveBayes.AbstractM
         
         
         //update log likelihood
-        streamExecutor.forEach(StreamMethods.stream(logLikelihoods.entrySet().stream(), isParallelized()), featureClassCounts -> {
-            List<Object> featureClassTuple = featureClassCounts.getKey();
-            Object theClass = featureClassTuple.get(1);
-            Double occurrences = featureClassCounts.getValue();
-            if(occurrences==null) {
-                occurrences=0.0;
-            }
+        for(int i=0;i<logLikelihoods.length;i++) {
+            double occurrences = logLikelihoods[i];
 
             //We perform laplace smoothing (also known as add-1)
-            Double smoothedProbability = (occurrences+1.0)/(totalFeatureOccurrencesForEachClass.get(theClass)+d); // the d is also known in NLP problems as the Vocabulary size. 
+            double smoothedProbability = (occurrences+1.0)/(totalFeatureOccurrencesForEachClass[i%c]+d); // the d is also known in NLP problems as the Vocabulary size. 
             
-            logLikelihoods.put(featureClassTuple, Math.log( smoothedProbability )); //calculate the logScore
-        }); 
+            logLikelihoods[i] = Math.log( smoothedProbability ); //calculate the logScore
+        }
+    }
+    
+    /**
+     * Counts the occurrences of every feature-class combination and adds them
+     * to the provided counts array. Each worker accumulates sparse partial counts
+     * which contain only the combinations it observed; the partial counts are
+     * added to the shared arrays when they are merged, so no dense copies are
+     * allocated and no locking is necessary per record. The method returns the
+     * total occurrences of every class.
+     * 
+     * @param trainingData
+     * @param featureIds
+     * @param classIds
+     * @param counts
+     * @param isBinarized
+     * @return 
+     */
+    protected double[] countOccurrences(Dataframe trainingData, Map<Object, Integer> featureIds, Map<Object, Integer> classIds, double[] counts, boolean isBinarized) {
+        int size = counts.length;
+        int c = classIds.size();
+        double[] totalFeatureOccurrencesForEachClass = new double[c];
+        
+        //the totals of the classes are stored after the feature-class combinations
+        Consumer<OpenIntToDoubleHashMap> addToCounts = partialCounts -> {
+            synchronized(counts) {
+                OpenIntToDoubleHashMap.Iterator it = partialCounts.iterator();
+                while(it.hasNext()) {
+                    it.advance();
+                    int key = it.key();
+                    if(key<size) {
+                        counts[key] += it.value();
+                    }
+                    else {
+                        totalFeatureOccurrencesForEachClass[key-size] += it.value();
+                    }
+                }
+            }
+        };
+        
+        OpenIntToDoubleHashMap remainingCounts = streamExecutor.collect(StreamMethods.stream(trainingData.stream(), isParallelized()), Collector.of(
+            () -> new OpenIntToDoubleHashMap(0.0), 
+            (partialCounts, r) -> {
+                int classId = classIds.get(r.getY());
+                
+                //store the occurrances of the features
+                for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                    Double occurrences=TypeInference.toDouble(entry.getValue());
+
+                    if(occurrences!= null && occurrences>0.0) {
+                        if(isBinarized) {
+                            occurrences=1.0;
+                        }
+
+                        int key = featureIds.get(entry.getKey())*c+classId;
+                        partialCounts.put(key, partialCounts.get(key) + occurrences);
+                        partialCounts.put(size+classId, partialCounts.get(size+classId) + occurrences);
+                    }
+                }
+            }, 
+            (counts1, counts2) -> {
+                addToCounts.accept(counts2);
+                return counts1;
+            }
+        ));
+        addToCounts.accept(remainingCounts);
+        
+        return totalFeatureOccurrencesForEachClass;
+    }
+    
+    /**
+     * Assigns ids to all the classes based on their order in the set of classes.
+     * 
+     * @param classesSet
+     * @return 
+     */
+    protected Map<Object, Integer> buildClassIds(Set<Object> classesSet) {
+        Map<Object, Integer> classIds = new HashMap<>();
+        for(Object theClass : classesSet) {
+            classIds.put(theClass, classIds.size());
+        }
+        return classIds;
+    }
+    
+    /**
+     * Populates the dictionary of features by assigning a unique row id to every
+     * feature of the Dataframe and initializes to zero the likelihood matrix of 
+     * all feature-class combinations.
+     * 
+     * @param trainingData
+     * @param c
+     * @return 
+     */
+    protected double[] initializeLikelihoods(Dataframe trainingData, int c) {
+        AbstractModelParameters modelParameters = knowledgeBase.getModelParameters();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
+        
+        int featureId = 0;
+        for(Object feature : trainingData.getXDataTypes().keySet()) {
+            featureIds.put(feature, featureId++);
+        }
+        
+        double[] likelihoods = new double[featureId*c];
+        modelParameters.setLogLikelihoods(likelihoods);
+        return likelihoods;
     }
     
 }
\ No newline at end of file
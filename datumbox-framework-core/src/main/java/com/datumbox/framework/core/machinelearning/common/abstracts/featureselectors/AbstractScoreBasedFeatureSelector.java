@@ -17,6 +17,7 @@ package com.datumbox.framework.core.machinelearning.common.abstracts.featuresele
 
 import com.datumbox.framework.common.Configuration;
 import com.datumbox.framework.common.concurrency.StreamMethods;
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.common.dataobjects.TypeInference;
 import com.datumbox.framework.common.storage.interfaces.BigMap;
@@ -25,6 +26,7 @@ import com.datumbox.framework.common.storage.interfaces.StorageEngine.MapType;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine.StorageHint;
 import com.datumbox.framework.core.common.utilities.SelectKth;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
+import com.datumbox.framework.core.machinelearning.common.interfaces.RecordTransformable;
 
 import java.util.*;
 import java.util.stream.Stream;
@@ -36,7 +38,7 @@ import java.util.stream.Stream;
  * @param <MP>
  * @param <TP>
  */
-public abstract class AbstractScoreBasedFeatureSelector<MP extends AbstractScoreBasedFeatureSelector.AbstractModelParameters, TP extends AbstractScoreBasedFeatureSelector.AbstractTrainingParameters> extends AbstractFeatureSelector<MP, TP> {
+public abstract class AbstractScoreBasedFeatureSelector<MP extends AbstractScoreBasedFeatureSelector.AbstractModelParameters, TP extends AbstractScoreBasedFeatureSelector.AbstractTrainingParameters> extends AbstractFeatureSelector<MP, TP> implements RecordTransformable {
 
     /** {@inheritDoc} */
     public static abstract class AbstractModelParameters extends AbstractFeatureSelector.AbstractModelParameters {
@@ -166,6 +168,24 @@ public abstract class AbstractScoreBasedFeatureSelector<MP extends AbstractScore
         storageEngine.dropBigMap("tmp_removedColumns", tmp_removedColumns);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Object _transformRecord(AssociativeArray xData, Object y) {
+        Set<Object> selectedFeatures = knowledgeBase.getModelParameters().getFeatureScores().keySet();
+        Set<TypeInference.DataType> supportedXDataTypes = getSupportedXDataTypes();
+
+        //remove the compatible columns which were not selected
+        Iterator<Map.Entry<Object, Object>> it = xData.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Object, Object> entry = it.next();
+            if(supportedXDataTypes.contains(TypeInference.getDataType(entry.getValue())) && !selectedFeatures.contains(entry.getKey())) {
+                it.remove();
+            }
+        }
+
+        return y;
+    }
+
     /**
      * This method keeps the highest scoring features of the provided feature map
      * and removes all the others.
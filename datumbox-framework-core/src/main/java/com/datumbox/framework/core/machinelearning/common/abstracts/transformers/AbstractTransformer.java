@@ -17,12 +17,17 @@ package com.datumbox.framework.core.machinelearning.common.abstracts.transformer
 
 import com.datumbox.framework.common.Configuration;
 import com.datumbox.framework.common.concurrency.ForkJoinStream;
+import com.datumbox.framework.common.concurrency.StreamMethods;
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.common.dataobjects.TypeInference;
+import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.interfaces.Parallelizable;
 
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
  * Base class for all the Data Transformers of the framework.
@@ -108,4 +113,29 @@ public abstract class AbstractTransformer<MP extends AbstractTransformer.Abstrac
      */
     protected abstract void _transform(Dataframe newData);
 
+    /**
+     * Applies the record transformation on a copy of the features of every
+     * record and writes back only the records which were changed. The
+     * transformation modifies the features in place and returns the response
+     * variable. The meta information of the Dataframe are not updated.
+     *
+     * @param newData
+     * @param recordTransformation
+     */
+    protected void transformRecords(Dataframe newData, BiFunction<AssociativeArray, Object, Object> recordTransformation) {
+        streamExecutor.forEach(StreamMethods.stream(newData.entries(), isParallelized()), e -> {
+            Record r = e.getValue();
+            AssociativeArray xData = r.getX().copy();
+            Object yData = recordTransformation.apply(xData, r.getY());
+
+            if(!Objects.equals(yData, r.getY()) || !xData.equals(r.getX())) {
+                Integer rId = e.getKey();
+                Record newR = new Record(xData, yData, r.getYPredicted(), r.getYPredictedProbabilities());
+
+                //the callers update the meta info if the columns change
+                newData._unsafe_set(rId, newR);
+            }
+        });
+    }
+
 }
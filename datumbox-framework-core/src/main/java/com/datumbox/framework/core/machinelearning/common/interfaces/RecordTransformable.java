@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.machinelearning.common.interfaces;
+
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+
+/**
+ * The transformers which process every record independently from the rest of 
+ * the data implement this interface. This allows to chain their transformations
+ * and apply them on each record in a single pass over the data.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public interface RecordTransformable {
+    
+    /**
+     * Transforms in place the features of a single record and returns the 
+     * transformed response variable. The xData is a private copy of the 
+     * features which can be modified freely. Since the record is processed
+     * outside of its Dataframe, the data types of the columns are inferred from
+     * their values. The method assumes that the KnowledgeBase is loaded and it
+     * can be called concurrently.
+     * 
+     * @param xData
+     * @param y
+     * @return 
+     */
+    public Object _transformRecord(AssociativeArray xData, Object y);
+    
+}
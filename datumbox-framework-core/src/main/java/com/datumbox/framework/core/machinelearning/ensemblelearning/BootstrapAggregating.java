@@ -76,6 +76,12 @@ public class BootstrapAggregating extends AbstractBoostingBagging<BootstrapAggre
         super(storageName, configuration);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean hasIndependentWeakClassifiers() {
+        return true; //all the observations have equal weights
+    }
+
     /** {@inheritDoc} */
     @Override
     protected Status updateObservationAndClassifierWeights(Dataframe validationDataset, AssociativeArray observationWeights) {
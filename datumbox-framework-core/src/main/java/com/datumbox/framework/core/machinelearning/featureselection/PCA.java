@@ -18,12 +18,14 @@ package com.datumbox.framework.core.machinelearning.featureselection;
 import com.datumbox.framework.common.Configuration;
 import com.datumbox.framework.common.concurrency.StreamMethods;
 import com.datumbox.framework.common.dataobjects.*;
+import com.datumbox.framework.common.utilities.RandomGenerator;
 import com.datumbox.framework.common.storage.interfaces.BigMap;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine.MapType;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine.StorageHint;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.DataframeMatrix;
+import com.datumbox.framework.core.common.dataobjects.NormalEquations;
 import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.featureselectors.AbstractFeatureSelector;
@@ -31,15 +33,21 @@ import org.apache.commons.math3.linear.*;
 import org.apache.commons.math3.util.FastMath;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 
 /**
  * Implementation of Principal Component Analysis. The method can be used to project
  * the Dataframe to the orthogonal space and to eliminate components with low variance.
+ * Apart from the exact eigendecomposition of the covariance matrix, the components
+ * can be estimated with randomized SVD or incremental PCA which are appropriate
+ * for datasets with many features.
  * 
  * References: 
  * Intelligent Data Analysis and Probabilistic Inference Slide 15
  * Advanced statistical machine learning and pattern recognition slides 2, tutorial 3, cw 1 matlab code
+ * https://arxiv.org/abs/0909.4061
+ * http://www.cs.toronto.edu/~dross/ivt/RossLimLinYang_ijcv.pdf
  * 
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
@@ -141,12 +149,38 @@ public class PCA extends AbstractFeatureSelector<PCA.ModelParameters, PCA.Traini
 
     /** {@inheritDoc} */  
     public static class TrainingParameters extends AbstractFeatureSelector.AbstractTrainingParameters {
-        private static final long serialVersionUID = 1L;
+        private static final long serialVersionUID = 2L;
+        
+        /**
+         * The method used to estimate the components.
+         */
+        public enum Solver {
+            /**
+             * Eigendecomposition of the full d x d covariance matrix.
+             */
+            EXACT,
+            
+            /**
+             * Randomized SVD which finds the range of the data with a random
+             * projection refined by power iterations.
+             */
+            RANDOMIZED,
+            
+            /**
+             * Incremental PCA which updates the SVD of the data batch by batch.
+             */
+            INCREMENTAL;
+        }
         
         private boolean whitened = false;
         private Integer maxDimensions = null;
         private Double variancePercentageThreshold = null;
         
+        private Solver solver = Solver.EXACT;
+        private int oversampling = 10;
+        private int powerIterations = 2;
+        private int batchSize = 1000;
+        
         /**
          * Getter for whether we should run whitened PCA.
          * 
@@ -206,6 +240,91 @@ public class PCA extends AbstractFeatureSelector<PCA.ModelParameters, PCA.Traini
         public void setVariancePercentageThreshold(Double variancePercentageThreshold) {
             this.variancePercentageThreshold = variancePercentageThreshold;
         }
+        
+        /**
+         * Getter for the solver which estimates the components.
+         * 
+         * @return 
+         */
+        public Solver getSolver() {
+            return solver;
+        }
+        
+        /**
+         * Setter for the solver which estimates the components. The EXACT solver
+         * needs O(d^2) memory and O(d^3) time. The RANDOMIZED and INCREMENTAL 
+         * solvers estimate only the first maxDimensions components and they 
+         * are appropriate for data with many features. When the variance
+         * percentage threshold is set, the approximate solvers select the
+         * components from the ones they estimated.
+         * 
+         * @param solver 
+         */
+        public void setSolver(Solver solver) {
+            this.solver = solver;
+        }
+        
+        /**
+         * Getter for the number of additional random vectors which are used by
+         * the RANDOMIZED solver.
+         * 
+         * @return 
+         */
+        public int getOversampling() {
+            return oversampling;
+        }
+        
+        /**
+         * Setter for the number of additional random vectors which are used by
+         * the RANDOMIZED solver. Larger values improve the accuracy of the last
+         * components.
+         * 
+         * @param oversampling 
+         */
+        public void setOversampling(int oversampling) {
+            this.oversampling = oversampling;
+        }
+        
+        /**
+         * Getter for the number of power iterations of the RANDOMIZED solver.
+         * 
+         * @return 
+         */
+        public int getPowerIterations() {
+            return powerIterations;
+        }
+        
+        /**
+         * Setter for the number of power iterations of the RANDOMIZED solver.
+         * Every iteration passes twice over the data and improves the accuracy
+         * when the eigenvalues decay slowly.
+         * 
+         * @param powerIterations 
+         */
+        public void setPowerIterations(int powerIterations) {
+            this.powerIterations = powerIterations;
+        }
+        
+        /**
+         * Getter for the number of Records in every batch of the INCREMENTAL 
+         * solver.
+         * 
+         * @return 
+         */
+        public int getBatchSize() {
+            return batchSize;
+        }
+        
+        /**
+         * Setter for the number of Records in every batch of the INCREMENTAL 
+         * solver. The batch size can't be smaller than the number of estimated
+         * components.
+         * 
+         * @param batchSize 
+         */
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
 
     }
 
@@ -243,45 +362,79 @@ public class PCA extends AbstractFeatureSelector<PCA.ModelParameters, PCA.Traini
     @Override
     protected void _fit(Dataframe trainingData) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         
         int n = trainingData.size();
         int d = trainingData.xColumnSize();
         
-        //convert data into matrix
         Map<Object, Integer> featureIds= modelParameters.getFeatureIds();
-        DataframeMatrix matrixDataset = DataframeMatrix.newInstance(trainingData, false, null, featureIds);
-        RealMatrix X = matrixDataset.getX();
         
-        //calculate means and subtract them from data
-        RealVector meanValues = new OpenMapRealVector(d);
-        for(Integer columnId : featureIds.values()) {
-            double mean = 0.0;
-            for(int row=0;row<n;row++) {
-                mean += X.getEntry(row, columnId);
-            }
-            mean /= n;
+        TrainingParameters.Solver solver = trainingParameters.getSolver();
+        Integer maxDimensions = trainingParameters.getMaxDimensions();
+        int k = (maxDimensions!=null)?Math.min(maxDimensions, d):d;
+        
+        RealVector meanValues;
+        RealVector eigenValues;
+        RealMatrix components;
+        double totalVariance;
+        if(solver == TrainingParameters.Solver.EXACT) {
+            //accumulate X'X of the centered data and the column sums without building the X matrix
+            NormalEquations normalEquations = NormalEquations.newCenteredInstance(trainingData, featureIds);
 
-            for(int row=0;row<n;row++) {
-                X.addToEntry(row, columnId, -mean);
-            }
+            //calculate the means of the columns
+            meanValues = normalEquations.getColumnSums().mapDivide(n);
 
-            meanValues.setEntry(columnId, mean);
+            //dxd matrix: X'X/(n-1) of the centered data is equal to the covariance
+            RealMatrix covarianceDD = normalEquations.getXtX().scalarMultiply(1.0/(n-1.0)); 
+
+            EigenDecomposition decomposition = new EigenDecomposition(covarianceDD);
+            eigenValues = new ArrayRealVector(decomposition.getRealEigenvalues(), false);
+            components = decomposition.getV();
+            
+            totalVariance = 0.0;
+            for(int i=0;i<d;i++) {
+                totalVariance += eigenValues.getEntry(i);
+            }
+        }
+        else {
+            double[] mean = new double[d];
+            double[] totalVarianceReference = new double[1];
+            SVD svd;
+            if(solver == TrainingParameters.Solver.RANDOMIZED) {
+                svd = randomizedSvd(trainingData, featureIds, k, mean, totalVarianceReference);
+            }
+            else if(solver == TrainingParameters.Solver.INCREMENTAL) {
+                svd = incrementalSvd(trainingData, featureIds, k, mean, totalVarianceReference);
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported solver.");
+            }
+            
+            //convert the singular values of the centered data to eigenvalues of the covariance matrix
+            int m = svd.singularValues.length;
+            double[] eigenValuesArray = new double[m];
+            double[][] componentsArray = new double[d][m];
+            for(int j=0;j<m;j++) {
+                eigenValuesArray[j] = svd.singularValues[j]*svd.singularValues[j]/(n-1.0);
+                for(int i=0;i<d;i++) {
+                    componentsArray[i][j] = svd.vectors[j][i];
+                }
+            }
+            
+            meanValues = new ArrayRealVector(mean, false);
+            eigenValues = new ArrayRealVector(eigenValuesArray, false);
+            components = new Array2DRowRealMatrix(componentsArray, false);
+            totalVariance = totalVarianceReference[0];
         }
         modelParameters.setMean(meanValues);
-
-        //dxd matrix
-        RealMatrix covarianceDD = (X.transpose().multiply(X)).scalarMultiply(1.0/(n-1.0)); 
-
-        EigenDecomposition decomposition = new EigenDecomposition(covarianceDD);
-        RealVector eigenValues = new ArrayRealVector(decomposition.getRealEigenvalues(), false);
-
-        RealMatrix components = decomposition.getV();
+        
+        int estimatedDimensions = eigenValues.getDimension();
         
         //Whiten Components W = U*L^0.5; To whiten them we multiply with L^0.5.
-        if(knowledgeBase.getTrainingParameters().isWhitened()) {
+        if(trainingParameters.isWhitened()) {
 
-            RealMatrix sqrtEigenValues = new DiagonalMatrix(d);
-            for(int i=0;i<d;i++) {
+            RealMatrix sqrtEigenValues = new DiagonalMatrix(estimatedDimensions);
+            for(int i=0;i<estimatedDimensions;i++) {
                 sqrtEigenValues.setEntry(i, i, FastMath.sqrt(eigenValues.getEntry(i)));
             }
 
@@ -289,17 +442,11 @@ public class PCA extends AbstractFeatureSelector<PCA.ModelParameters, PCA.Traini
         }
         
         //the eigenvalues and their components are sorted by descending order no need to resort them
-        Integer maxDimensions = knowledgeBase.getTrainingParameters().getMaxDimensions();
-        Double variancePercentageThreshold = knowledgeBase.getTrainingParameters().getVariancePercentageThreshold();
+        Double variancePercentageThreshold = trainingParameters.getVariancePercentageThreshold();
         if(variancePercentageThreshold!=null && variancePercentageThreshold<=1) {
-            double totalVariance = 0.0;
-            for(int i=0;i<d;i++) {
-                totalVariance += eigenValues.getEntry(i);
-            }
-
             double sum=0.0;
             int varCounter=0;
-            for(int i=0;i<d;i++) {
+            for(int i=0;i<estimatedDimensions;i++) {
                 sum+=eigenValues.getEntry(i)/totalVariance;
                 varCounter++;
                 if(sum>=variancePercentageThreshold) {
@@ -312,7 +459,7 @@ public class PCA extends AbstractFeatureSelector<PCA.ModelParameters, PCA.Traini
             }
         }
         
-        if(maxDimensions!=null && maxDimensions<d) {  
+        if(maxDimensions!=null && maxDimensions<estimatedDimensions) {  
             //keep only the maximum selected eigenvalues
             eigenValues=eigenValues.getSubVector(0, maxDimensions);
 
@@ -330,27 +477,36 @@ public class PCA extends AbstractFeatureSelector<PCA.ModelParameters, PCA.Traini
     protected void _transform(Dataframe newData) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
-        //convert data into matrix
         Map<Object, Integer> featureIds= modelParameters.getFeatureIds();
         
-        Map<Integer, Integer> recordIdsReference = new HashMap<>();
-        DataframeMatrix matrixDataset = DataframeMatrix.parseDataset(newData, recordIdsReference, featureIds);
-        
-        RealMatrix components = modelParameters.getComponents();
-        
-        
-        //multiplying the data with components
-        final RealMatrix X = matrixDataset.getX().multiply(components);
+        //the components are copied to primitive arrays which are shared by all threads
+        final double[][] components = modelParameters.getComponents().getData();
+        final int dimensions = components.length>0?components[0].length:0;
         
         streamExecutor.forEach(StreamMethods.stream(newData.entries(), isParallelized()), e -> {
             Integer rId = e.getKey();
             Record r = e.getValue();
-            int rowId = recordIdsReference.get(rId);
+            
+            //multiplying the record with components
+            double[] projection = new double[dimensions];
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Integer featureId = featureIds.get(entry.getKey());
+                if(featureId == null) {
+                    continue; //unknown feature
+                }
+                Double value = TypeInference.toDouble(entry.getValue());
+                if(value == null || value == 0.0) {
+                    continue;
+                }
+                double[] weights = components[featureId];
+                for(int j=0;j<dimensions;j++) {
+                    projection[j] += value*weights[j];
+                }
+            }
             
             AssociativeArray xData = new AssociativeArray();
-            int componentId=0;
-            for(double value : X.getRow(rowId)) {
-                xData.put(componentId++, value);
+            for(int componentId=0;componentId<dimensions;componentId++) {
+                xData.put(componentId, projection[componentId]);
             }
 
             Record newR = new Record(xData, r.getY(), r.getYPredicted(), r.getYPredictedProbabilities());
@@ -359,11 +515,339 @@ public class PCA extends AbstractFeatureSelector<PCA.ModelParameters, PCA.Traini
             newData._unsafe_set(rId, newR);
         });
         
-        //recordIdsReference = null;
-        //matrixDataset = null;
-        
         newData.recalculateMeta();
     }
+    
+    /**
+     * The truncated SVD of the centered data. The right singular vectors are
+     * stored in the rows of the vectors array.
+     */
+    private static class SVD {
+        private final double[] singularValues;
+        private final double[][] vectors;
+
+        private SVD(double[] singularValues, double[][] vectors) {
+            this.singularValues = singularValues;
+            this.vectors = vectors;
+        }
+    }
+    
+    /**
+     * Estimates the first k components with the randomized SVD of Halko et al.
+     * The data are centered implicitly, so the sparsity of the matrix is
+     * preserved. The means of the columns and the total variance are stored in
+     * the provided references.
+     * 
+     * @param trainingData
+     * @param featureIds
+     * @param k
+     * @param mean
+     * @param totalVarianceReference
+     * @return 
+     */
+    private SVD randomizedSvd(Dataframe trainingData, Map<Object, Integer> featureIds, int k, double[] mean, double[] totalVarianceReference) {
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        
+        DataframeMatrix matrixDataset = DataframeMatrix.newInstance(trainingData, false, null, featureIds);
+        RealMatrix X = matrixDataset.getX();
+        RealMatrix Xt = X.transpose();
+        int n = X.getRowDimension();
+        int d = X.getColumnDimension();
+        
+        double[] sums = X.preMultiply(new ArrayRealVector(n, 1.0)).toArray();
+        double meanSquaredNorm = 0.0;
+        for(int i=0;i<d;i++) {
+            mean[i] = sums[i]/n;
+            meanSquaredNorm += mean[i]*mean[i];
+        }
+        double frobeniusNorm = X.getFrobeniusNorm();
+        totalVarianceReference[0] = (frobeniusNorm*frobeniusNorm - n*meanSquaredNorm)/(n-1.0);
+        
+        //sample a random gaussian matrix
+        int l = Math.min(k + trainingParameters.getOversampling(), Math.min(n, d));
+        Random rnd = RandomGenerator.getThreadLocalRandom();
+        double[][] omega = new double[d][l];
+        for(int i=0;i<d;i++) {
+            for(int j=0;j<l;j++) {
+                omega[i][j] = rnd.nextGaussian();
+            }
+        }
+        
+        //find an orthonormal basis of the range of the centered data
+        double[][] Q = orthonormalizeColumns(multiplyCentered(X, mean, omega));
+        for(int i=0;i<trainingParameters.getPowerIterations();i++) {
+            double[][] Z = orthonormalizeColumns(transposeMultiplyCentered(Xt, mean, Q));
+            Q = orthonormalizeColumns(multiplyCentered(X, mean, Z));
+        }
+        
+        //project the data on the basis: B' = Xc'*Q and decompose the small B matrix
+        double[][] Bt = transposeMultiplyCentered(Xt, mean, Q);
+        double[][] B = new double[l][d];
+        for(int i=0;i<d;i++) {
+            for(int j=0;j<l;j++) {
+                B[j][i] = Bt[i][j];
+            }
+        }
+        
+        return truncatedSvd(B, k);
+    }
+    
+    /**
+     * Estimates the first k components with the incremental PCA of Ross et al.
+     * The Records are read in batches and the SVD of the data seen so far is
+     * updated with every batch, so only the components and a single batch are
+     * kept in memory. The means of the columns and the total variance are 
+     * stored in the provided references.
+     * 
+     * @param trainingData
+     * @param featureIds
+     * @param k
+     * @param mean
+     * @param totalVarianceReference
+     * @return 
+     */
+    private SVD incrementalSvd(Dataframe trainingData, Map<Object, Integer> featureIds, int k, double[] mean, double[] totalVarianceReference) {
+        int d = mean.length;
+        int batchSize = Math.max(knowledgeBase.getTrainingParameters().getBatchSize(), k);
+        
+        SVD svd = null;
+        int nSeen = 0;
+        double sumOfSquares = 0.0;
+        
+        List<double[]> batch = new ArrayList<>(batchSize);
+        Iterator<Record> it = trainingData.iterator();
+        while(it.hasNext()) {
+            Record r = it.next();
+            
+            double[] row = new double[d];
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Object feature = entry.getKey();
+                Integer featureId = featureIds.get(feature);
+                if(featureId == null) {
+                    featureId = featureIds.size();
+                    featureIds.put(feature, featureId);
+                }
+                Double value = TypeInference.toDouble(entry.getValue());
+                if(value != null) {
+                    row[featureId] = value;
+                    sumOfSquares += value*value;
+                }
+            }
+            batch.add(row);
+            
+            if(batch.size() == batchSize || !it.hasNext()) {
+                svd = updateSvd(svd, mean, nSeen, batch, k);
+                nSeen += batch.size();
+                batch.clear();
+            }
+        }
+        
+        double meanSquaredNorm = 0.0;
+        for(int i=0;i<d;i++) {
+            meanSquaredNorm += mean[i]*mean[i];
+        }
+        totalVarianceReference[0] = (sumOfSquares - nSeen*meanSquaredNorm)/(nSeen-1.0);
+        
+        return svd;
+    }
+    
+    /**
+     * Updates the SVD of the centered data seen so far with a new batch of rows.
+     * The decomposed matrix stacks the scaled components of the previous SVD,
+     * the batch centered by its own mean and a row which corrects the shift of
+     * the mean. The provided mean is updated in place.
+     * 
+     * @param svd
+     * @param mean
+     * @param nSeen
+     * @param batch
+     * @param k
+     * @return 
+     */
+    private SVD updateSvd(SVD svd, double[] mean, int nSeen, List<double[]> batch, int k) {
+        int d = mean.length;
+        int m = batch.size();
+        int nTotal = nSeen + m;
+        
+        double[] batchMean = new double[d];
+        for(double[] row : batch) {
+            for(int i=0;i<d;i++) {
+                batchMean[i] += row[i];
+            }
+        }
+        for(int i=0;i<d;i++) {
+            batchMean[i] /= m;
+        }
+        
+        List<double[]> A = new ArrayList<>();
+        if(svd != null) {
+            for(int j=0;j<svd.singularValues.length;j++) {
+                double[] scaled = new double[d];
+                for(int i=0;i<d;i++) {
+                    scaled[i] = svd.singularValues[j]*svd.vectors[j][i];
+                }
+                A.add(scaled);
+            }
+        }
+        for(double[] row : batch) {
+            for(int i=0;i<d;i++) {
+                row[i] -= batchMean[i];
+            }
+            A.add(row);
+        }
+        if(nSeen > 0) {
+            double scale = Math.sqrt(nSeen*(double)m/nTotal);
+            double[] correction = new double[d];
+            for(int i=0;i<d;i++) {
+                correction[i] = scale*(mean[i] - batchMean[i]);
+            }
+            A.add(correction);
+        }
+        
+        for(int i=0;i<d;i++) {
+            mean[i] = (nSeen*mean[i] + m*batchMean[i])/nTotal;
+        }
+        
+        return truncatedSvd(A.toArray(new double[A.size()][]), k);
+    }
+    
+    /**
+     * Estimates the first k singular values and right singular vectors of the
+     * r x d matrix A, where r is small. The eigendecomposition of the r x r 
+     * matrix AA' gives the left singular vectors U and the singular values S,
+     * and the right singular vectors are estimated as V = A'US^-1. The AA' 
+     * product is calculated in parallel.
+     * 
+     * @param A
+     * @param k
+     * @return 
+     */
+    private SVD truncatedSvd(double[][] A, int k) {
+        int r = A.length;
+        double[][] gram = new double[r][r];
+        streamExecutor.forEach(StreamMethods.stream(IntStream.range(0, r).boxed(), isParallelized()), i -> {
+            double[] ai = A[i];
+            for(int j=i;j<r;j++) {
+                double[] aj = A[j];
+                double dot = 0.0;
+                for(int c=0;c<ai.length;c++) {
+                    dot += ai[c]*aj[c];
+                }
+                gram[i][j] = dot;
+                gram[j][i] = dot;
+            }
+        });
+        
+        EigenDecomposition decomposition = new EigenDecomposition(new Array2DRowRealMatrix(gram, false));
+        double[] eigenValues = decomposition.getRealEigenvalues();
+        
+        int m = Math.min(k, r);
+        double[] singularValues = new double[m];
+        double[][] vectors = new double[m][A[0].length];
+        for(int j=0;j<m;j++) {
+            double sigma = Math.sqrt(Math.max(eigenValues[j], 0.0));
+            singularValues[j] = sigma;
+            if(sigma <= 0.0) {
+                continue; //the data have fewer dimensions than the requested components
+            }
+            double[] u = decomposition.getEigenvector(j).toArray();
+            double[] v = vectors[j];
+            for(int i=0;i<r;i++) {
+                double w = u[i]/sigma;
+                if(w != 0.0) {
+                    double[] ai = A[i];
+                    for(int c=0;c<v.length;c++) {
+                        v[c] += w*ai[c];
+                    }
+                }
+            }
+        }
+        return new SVD(singularValues, vectors);
+    }
+    
+    /**
+     * Returns the product (X - 1*mean')*M without centering X.
+     * 
+     * @param X
+     * @param mean
+     * @param M
+     * @return 
+     */
+    private static double[][] multiplyCentered(RealMatrix X, double[] mean, double[][] M) {
+        double[][] product = X.multiply(new Array2DRowRealMatrix(M, false)).getData();
+        int l = M[0].length;
+        double[] shift = new double[l];
+        for(int i=0;i<mean.length;i++) {
+            for(int j=0;j<l;j++) {
+                shift[j] += mean[i]*M[i][j];
+            }
+        }
+        for(double[] row : product) {
+            for(int j=0;j<l;j++) {
+                row[j] -= shift[j];
+            }
+        }
+        return product;
+    }
+    
+    /**
+     * Returns the product (X - 1*mean')'*M = X'*M - mean*(1'*M) using the 
+     * transposed matrix Xt.
+     * 
+     * @param Xt
+     * @param mean
+     * @param M
+     * @return 
+     */
+    private static double[][] transposeMultiplyCentered(RealMatrix Xt, double[] mean, double[][] M) {
+        double[][] product = Xt.multiply(new Array2DRowRealMatrix(M, false)).getData();
+        int l = M[0].length;
+        double[] columnSums = new double[l];
+        for(double[] row : M) {
+            for(int j=0;j<l;j++) {
+                columnSums[j] += row[j];
+            }
+        }
+        for(int i=0;i<product.length;i++) {
+            for(int j=0;j<l;j++) {
+                product[i][j] -= mean[i]*columnSums[j];
+            }
+        }
+        return product;
+    }
+    
+    /**
+     * Orthonormalizes in place the columns of the matrix with the modified 
+     * Gram-Schmidt process. Columns which are linearly dependent to the 
+     * previous ones are set to zero.
+     * 
+     * @param M
+     * @return 
+     */
+    private static double[][] orthonormalizeColumns(double[][] M) {
+        int l = M[0].length;
+        for(int j=0;j<l;j++) {
+            for(int p=0;p<j;p++) {
+                double dot = 0.0;
+                for(double[] row : M) {
+                    dot += row[p]*row[j];
+                }
+                for(double[] row : M) {
+                    row[j] -= dot*row[p];
+                }
+            }
+            
+            double norm = 0.0;
+            for(double[] row : M) {
+                norm += row[j]*row[j];
+            }
+            norm = Math.sqrt(norm);
+            for(double[] row : M) {
+                row[j] = (norm > 0.0)?row[j]/norm:0.0;
+            }
+        }
+        return M;
+    }
 
     /** {@inheritDoc} */
     @Override
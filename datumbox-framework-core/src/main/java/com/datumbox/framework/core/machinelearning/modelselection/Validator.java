@@ -16,6 +16,8 @@
 package com.datumbox.framework.core.machinelearning.modelselection;
 
 import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.concurrency.ConcurrencyConfiguration;
+import com.datumbox.framework.common.concurrency.ThrottledExecutor;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.machinelearning.MLBuilder;
 import com.datumbox.framework.core.machinelearning.common.abstracts.modelers.AbstractModeler;
@@ -23,12 +25,19 @@ import com.datumbox.framework.core.machinelearning.common.abstracts.modelselecti
 import com.datumbox.framework.core.machinelearning.common.interfaces.TrainingParameters;
 import com.datumbox.framework.core.machinelearning.common.interfaces.ValidationMetrics;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Estimates the validation metrics of a specific model.
+ * Estimates the validation metrics of a specific model. By default the splits
+ * are validated one after the other. Optionally multiple folds can be trained
+ * concurrently on the shared pool of the framework; every fold uses its own
+ * modeler and storage, so the folds are independent.
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  * @param <VM>
@@ -38,6 +47,8 @@ public class Validator<VM extends ValidationMetrics> {
     private final Class<VM> vmClass;
     private final Configuration configuration;
 
+    private int maxConcurrentFolds = 1;
+
     /**
      * The constructor of the K-Fold cross validator.
      *
@@ -48,6 +59,40 @@ public class Validator<VM extends ValidationMetrics> {
         this.configuration = configuration;
     }
 
+    /**
+     * Getter for the maximum number of folds which are validated concurrently.
+     *
+     * @return
+     */
+    public int getMaxConcurrentFolds() {
+        return maxConcurrentFolds;
+    }
+
+    /**
+     * Setter for the maximum number of folds which are validated concurrently.
+     * Every running fold keeps its train and test Dataframes and its model
+     * open, so this value bounds the memory used during the validation. While
+     * all the slots are busy, at most one additional split is kept in memory.
+     * By convention if the value is 0, it is set equal to the max number of
+     * threads per task. The folds are executed sequentially when the value is
+     * 1 or when the parallel execution is turned off in the configuration.
+     * Note that in concurrent mode the folds draw random numbers on the worker
+     * threads, so the results of randomized algorithms are not reproducible.
+     *
+     * @param maxConcurrentFolds
+     */
+    public void setMaxConcurrentFolds(int maxConcurrentFolds) {
+        if(maxConcurrentFolds<0) {
+            throw new IllegalArgumentException("The max number of concurrent folds can not be negative.");
+        }
+        else if(maxConcurrentFolds==0) {
+            this.maxConcurrentFolds = configuration.getConcurrencyConfiguration().getMaxNumberOfThreadsPerTask();
+        }
+        else {
+            this.maxConcurrentFolds = maxConcurrentFolds;
+        }
+    }
+
     /**
      * Estimates the average validation metrics on the provided data splits.
      *
@@ -56,27 +101,132 @@ public class Validator<VM extends ValidationMetrics> {
      * @return
      */
     public VM validate(Iterator<Split> dataSplits, TrainingParameters trainingParameters) {
+        ConcurrencyConfiguration concurrencyConfiguration = configuration.getConcurrencyConfiguration();
+        ForkJoinPool pool = concurrencyConfiguration.getForkJoinPool();
+
+        List<VM> validationMetricsList;
+        if(maxConcurrentFolds>1 && concurrencyConfiguration.isParallelized() && ForkJoinTask.getPool() != pool) {
+            validationMetricsList = validateConcurrently(dataSplits, trainingParameters, pool);
+        }
+        else {
+            validationMetricsList = validateSequentially(dataSplits, trainingParameters);
+        }
+
+        VM avgValidationMetrics = ValidationMetrics.newInstance(vmClass, validationMetricsList);
+
+        return avgValidationMetrics;
+    }
+
+    /**
+     * Validates the splits one after the other reusing the same modeler.
+     *
+     * @param dataSplits
+     * @param trainingParameters
+     * @return
+     */
+    private List<VM> validateSequentially(Iterator<Split> dataSplits, TrainingParameters trainingParameters) {
         AbstractModeler modeler = MLBuilder.create(trainingParameters, configuration);
 
         List<VM> validationMetricsList = new LinkedList<>();
-        while (dataSplits.hasNext()) {
-            Split s = dataSplits.next();
-            Dataframe trainData = s.getTrain();
-            Dataframe testData = s.getTest();
+        try {
+            while (dataSplits.hasNext()) {
+                validationMetricsList.add(validateSplit(modeler, dataSplits.next()));
+            }
+        }
+        finally {
+            modeler.close();
+        }
 
-            modeler.fit(trainData);
-            trainData.close();
+        return validationMetricsList;
+    }
 
-            modeler.predict(testData);
-            VM entrySample = ValidationMetrics.newInstance(vmClass, testData);
-            testData.close();
+    /**
+     * Validates up to maxConcurrentFolds splits at the same time. Every fold
+     * creates its own modeler and its metrics are stored in the position of the
+     * fold, so that they are averaged in the same order as in the sequential
+     * execution.
+     *
+     * @param dataSplits
+     * @param trainingParameters
+     * @param pool
+     * @return
+     */
+    private List<VM> validateConcurrently(Iterator<Split> dataSplits, TrainingParameters trainingParameters, ForkJoinPool pool) {
+        ThrottledExecutor executor = new ThrottledExecutor(pool, maxConcurrentFolds);
+        AtomicReference<Throwable> exception = new AtomicReference<>();
+
+        List<VM> validationMetricsList = new ArrayList<>();
+        try {
+            int fold = 0;
+            while (dataSplits.hasNext() && exception.get() == null) {
+                Split s = dataSplits.next();
+                synchronized(validationMetricsList) {
+                    validationMetricsList.add(null);
+                }
+                final int position = fold++;
 
-            validationMetricsList.add(entrySample);
+                executor.execute(() -> {
+                    try {
+                        AbstractModeler modeler = MLBuilder.create(trainingParameters, configuration);
+                        try {
+                            VM entrySample = validateSplit(modeler, s);
+                            synchronized(validationMetricsList) {
+                                validationMetricsList.set(position, entrySample);
+                            }
+                        }
+                        finally {
+                            modeler.close();
+                        }
+                    }
+                    catch (Throwable ex) {
+                        exception.compareAndSet(null, ex);
+                    }
+                });
+            }
+        }
+        finally {
+            executor.awaitCompletion();
         }
-        modeler.close();
 
-        VM avgValidationMetrics = ValidationMetrics.newInstance(vmClass, validationMetricsList);
+        //every fold either stored its metrics or recorded its failure, so no null metrics are returned
+        Throwable ex = exception.get();
+        if(ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        }
+        else if(ex instanceof Error) {
+            throw (Error) ex;
+        }
+        else if(ex != null) {
+            throw new RuntimeException(ex);
+        }
+        return validationMetricsList;
+    }
 
-        return avgValidationMetrics;
+    /**
+     * Trains the modeler on the train part of the split, estimates the metrics
+     * on the test part and closes both Dataframes, even if the fold fails.
+     *
+     * @param modeler
+     * @param s
+     * @return
+     */
+    private VM validateSplit(AbstractModeler modeler, Split s) {
+        Dataframe trainData = s.getTrain();
+        Dataframe testData = s.getTest();
+
+        try {
+            try {
+                modeler.fit(trainData);
+            }
+            finally {
+                trainData.close();
+            }
+
+            modeler.predict(testData);
+            return ValidationMetrics.newInstance(vmClass, testData);
+        }
+        finally {
+            testData.close();
+        }
     }
 }
@@ -16,23 +16,23 @@
 package com.datumbox.framework.core.machinelearning.preprocessing;
 
 import com.datumbox.framework.common.Configuration;
-import com.datumbox.framework.common.concurrency.StreamMethods;
 import com.datumbox.framework.common.dataobjects.*;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
-import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.transformers.AbstractScaler;
+import com.datumbox.framework.core.machinelearning.common.interfaces.RecordTransformable;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Rescales the numerical features of the dataset between -1 and 1.
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
-public class BinaryScaler extends AbstractScaler<BinaryScaler.ModelParameters, BinaryScaler.TrainingParameters> {
+public class BinaryScaler extends AbstractScaler<BinaryScaler.ModelParameters, BinaryScaler.TrainingParameters> implements RecordTransformable {
 
     /** {@inheritDoc} */
     public static class ModelParameters extends AbstractScaler.AbstractModelParameters {
@@ -101,48 +101,55 @@ public class BinaryScaler extends AbstractScaler<BinaryScaler.ModelParameters, B
     /** {@inheritDoc} */
     @Override
     protected void _transform(Dataframe newData) {
+        boolean scaleResponse = newData.getYDataType() == TypeInference.DataType.NUMERICAL;
+        Map<Object, TypeInference.DataType> xDataTypes = newData.getXDataTypes();
+
+        transformRecords(newData, (xData, y) -> binarize(xData, y, xDataTypes::get, scaleResponse));
+
+        //Reset Meta info
+        newData.recalculateMeta();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object _transformRecord(AssociativeArray xData, Object y) {
+        return binarize(xData, y, column -> TypeInference.getDataType(xData.get(column)), TypeInference.getDataType(y) == TypeInference.DataType.NUMERICAL);
+    }
+
+    /**
+     * Converts the supported columns of the record to booleans and returns the
+     * response variable.
+     *
+     * @param xData
+     * @param y
+     * @param columnTypes
+     * @param numericalResponse
+     * @return
+     */
+    private Object binarize(AssociativeArray xData, Object y, Function<Object, TypeInference.DataType> columnTypes, boolean numericalResponse) {
         TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
-        boolean scaleResponse = trainingParameters.getScaleResponse() && newData.getYDataType() == TypeInference.DataType.NUMERICAL;
+        boolean scaleResponse = trainingParameters.getScaleResponse() && numericalResponse;
         double threshold = trainingParameters.getThreshold();
 
         Set<TypeInference.DataType> supportedXDataTypes = getSupportedXDataTypes();
-        Map<Object, TypeInference.DataType> xDataTypes = newData.getXDataTypes();
 
-        streamExecutor.forEach(StreamMethods.stream(newData.entries(), isParallelized()), e -> {
-            Record r = e.getValue();
-            AssociativeArray xData = r.getX().copy();
-            Object yData = r.getY();
-
-            boolean modified = false;
-            for(Object column : r.getX().keySet()) {
-                if(!supportedXDataTypes.contains(xDataTypes.get(column))) {
-                    continue;
-                }
-                Object value = xData.remove(column);
-                if(value != null) {
-                    xData.put(column, scale(TypeInference.toDouble(value), threshold));
-                }
-                modified = true;
+        for(Object column : xData.keySet().toArray()) {
+            if(!supportedXDataTypes.contains(columnTypes.apply(column))) {
+                continue;
             }
-
-            if(scaleResponse && yData != null) {
-                Double value = TypeInference.toDouble(yData);
-
-                yData = scale(value, threshold);
-                modified = true;
+            Object value = xData.remove(column);
+            if(value != null) {
+                xData.put(column, scale(TypeInference.toDouble(value), threshold));
             }
+        }
 
-            if(modified) {
-                Integer rId = e.getKey();
-                Record newR = new Record(xData, yData, r.getYPredicted(), r.getYPredictedProbabilities());
+        if(scaleResponse && y != null) {
+            Double value = TypeInference.toDouble(y);
 
-                //we call below the recalculateMeta()
-                newData._unsafe_set(rId, newR);
-            }
-        });
+            y = scale(value, threshold);
+        }
 
-        //Reset Meta info
-        newData.recalculateMeta();
+        return y;
     }
 
     /**
@@ -16,7 +16,6 @@
 package com.datumbox.framework.core.machinelearning.preprocessing;
 
 import com.datumbox.framework.common.Configuration;
-import com.datumbox.framework.common.concurrency.StreamMethods;
 import com.datumbox.framework.common.dataobjects.*;
 import com.datumbox.framework.common.storage.interfaces.BigMap;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
@@ -24,6 +23,7 @@ import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.transformers.AbstractEncoder;
+import com.datumbox.framework.core.machinelearning.common.interfaces.RecordTransformable;
 
 import java.util.Arrays;
 import java.util.Map;
@@ -35,7 +35,7 @@ import java.util.Set;
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
-public class CornerConstraintsEncoder extends AbstractEncoder<CornerConstraintsEncoder.ModelParameters, CornerConstraintsEncoder.TrainingParameters> {
+public class CornerConstraintsEncoder extends AbstractEncoder<CornerConstraintsEncoder.ModelParameters, CornerConstraintsEncoder.TrainingParameters> implements RecordTransformable {
 
     /** {@inheritDoc} */
     public static class ModelParameters extends AbstractEncoder.AbstractModelParameters {
@@ -122,42 +122,31 @@ public class CornerConstraintsEncoder extends AbstractEncoder<CornerConstraintsE
     /** {@inheritDoc} */
     @Override
     protected void _transform(Dataframe newData) {
-        ModelParameters modelParameters = knowledgeBase.getModelParameters();
-        Map<Object, Object> referenceLevels = modelParameters.getReferenceLevels();
-
-        Map<Object, TypeInference.DataType> columnTypes = newData.getXDataTypes();
-
         //Replace variables with dummy versions
-        streamExecutor.forEach(StreamMethods.stream(newData.entries(), isParallelized()), e -> {
-            Integer rId = e.getKey();
-            Record r = e.getValue();
-
-            AssociativeArray xData = r.getX().copy();
+        transformRecords(newData, this::_transformRecord);
 
-            boolean modified = false;
-            for(Object column : r.getX().keySet()) {
-                Object referenceLevel = referenceLevels.get(column);
-                if(referenceLevel == null) {
-                    continue;
-                }
-                Object value = xData.remove(column);
-                if(value!= null && !referenceLevel.equals(value)) {
-                    //add a new dummy variable for this column-value combination
-                    xData.put(Arrays.asList(column,value), true);
-                }
-                modified = true;
-            }
+        //Reset Meta info
+        newData.recalculateMeta();
+    }
 
-            if(modified) {
-                Record newR = new Record(xData, r.getY(), r.getYPredicted(), r.getYPredictedProbabilities());
+    /** {@inheritDoc} */
+    @Override
+    public Object _transformRecord(AssociativeArray xData, Object y) {
+        Map<Object, Object> referenceLevels = knowledgeBase.getModelParameters().getReferenceLevels();
 
-                //we call below the recalculateMeta()
-                newData._unsafe_set(rId, newR);
+        for(Object column : xData.keySet().toArray()) {
+            Object referenceLevel = referenceLevels.get(column);
+            if(referenceLevel == null) {
+                continue;
             }
-        });
+            Object value = xData.remove(column);
+            if(value!= null && !referenceLevel.equals(value)) {
+                //add a new dummy variable for this column-value combination
+                xData.put(Arrays.asList(column,value), true);
+            }
+        }
 
-        //Reset Meta info
-        newData.recalculateMeta();
+        return y;
     }
 
 }
@@ -21,9 +21,9 @@ import com.datumbox.framework.common.dataobjects.*;
 import com.datumbox.framework.common.storage.interfaces.BigMap;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
-import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.transformers.AbstractScaler;
+import com.datumbox.framework.core.machinelearning.common.interfaces.RecordTransformable;
 import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
 
 import java.util.Map;
@@ -35,7 +35,7 @@ import java.util.stream.Stream;
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
-public class MinMaxScaler extends AbstractScaler<MinMaxScaler.ModelParameters, MinMaxScaler.TrainingParameters> {
+public class MinMaxScaler extends AbstractScaler<MinMaxScaler.ModelParameters, MinMaxScaler.TrainingParameters> implements RecordTransformable {
 
     /** {@inheritDoc} */
     public static class ModelParameters extends AbstractScaler.AbstractModelParameters {
@@ -154,47 +154,39 @@ public class MinMaxScaler extends AbstractScaler<MinMaxScaler.ModelParameters, M
     /** {@inheritDoc} */
     @Override
     protected void _transform(Dataframe newData) {
+        //no modification on the actual columns takes place, safe to do.
+        transformRecords(newData, this::_transformRecord);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object _transformRecord(AssociativeArray xData, Object y) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         Map<Object, Double> minColumnValues = modelParameters.getMinColumnValues();
         Map<Object, Double> maxColumnValues = modelParameters.getMaxColumnValues();
         boolean scaleResponse = knowledgeBase.getTrainingParameters().getScaleResponse() && minColumnValues.containsKey(Dataframe.COLUMN_NAME_Y);
 
-        streamExecutor.forEach(StreamMethods.stream(newData.entries(), isParallelized()), e -> {
-            Record r = e.getValue();
-            AssociativeArray xData = r.getX().copy();
-            Object yData = r.getY();
-
-            boolean modified = false;
-            for(Object column : r.getX().keySet()) {
-                Double min = minColumnValues.get(column);
-                if(min == null) {
-                    continue;
-                }
-                Object value = xData.remove(column);
-                if(value != null) {
-                    Double max = maxColumnValues.get(column);
-                    xData.put(column, scale(TypeInference.toDouble(value), min, max));
-                }
-                modified = true;
+        for(Object column : xData.keySet().toArray()) {
+            Double min = minColumnValues.get(column);
+            if(min == null) {
+                continue;
             }
-
-            if(scaleResponse && yData != null) {
-                Double value = TypeInference.toDouble(yData);
-                Double min = minColumnValues.get(Dataframe.COLUMN_NAME_Y);
-                Double max = maxColumnValues.get(Dataframe.COLUMN_NAME_Y);
-
-                yData = scale(value, min, max);
-                modified = true;
+            Object value = xData.remove(column);
+            if(value != null) {
+                Double max = maxColumnValues.get(column);
+                xData.put(column, scale(TypeInference.toDouble(value), min, max));
             }
+        }
 
-            if(modified) {
-                Integer rId = e.getKey();
-                Record newR = new Record(xData, yData, r.getYPredicted(), r.getYPredictedProbabilities());
+        if(scaleResponse && y != null) {
+            Double value = TypeInference.toDouble(y);
+            Double min = minColumnValues.get(Dataframe.COLUMN_NAME_Y);
+            Double max = maxColumnValues.get(Dataframe.COLUMN_NAME_Y);
 
-                //no modification on the actual columns takes place, safe to do.
-                newData._unsafe_set(rId, newR);
-            }
-        });
+            y = scale(value, min, max);
+        }
+
+        return y;
     }
 
     /**
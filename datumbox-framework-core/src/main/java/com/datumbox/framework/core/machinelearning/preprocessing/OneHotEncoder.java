@@ -16,24 +16,24 @@
 package com.datumbox.framework.core.machinelearning.preprocessing;
 
 import com.datumbox.framework.common.Configuration;
-import com.datumbox.framework.common.concurrency.StreamMethods;
 import com.datumbox.framework.common.dataobjects.*;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
-import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.transformers.AbstractEncoder;
+import com.datumbox.framework.core.machinelearning.common.interfaces.RecordTransformable;
 
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Encodes the categorical columns of the dataset into booleans using the One Hot Encoding method.
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
-public class OneHotEncoder extends AbstractEncoder<OneHotEncoder.ModelParameters, OneHotEncoder.TrainingParameters> {
+public class OneHotEncoder extends AbstractEncoder<OneHotEncoder.ModelParameters, OneHotEncoder.TrainingParameters> implements RecordTransformable {
 
     /** {@inheritDoc} */
     public static class ModelParameters extends AbstractEncoder.AbstractModelParameters {
@@ -82,39 +82,44 @@ public class OneHotEncoder extends AbstractEncoder<OneHotEncoder.ModelParameters
     /** {@inheritDoc} */
     @Override
     protected void _transform(Dataframe newData) {
-        Set<TypeInference.DataType> supportedXDataTypes = getSupportedXDataTypes();
         Map<Object, TypeInference.DataType> xDataTypes = newData.getXDataTypes();
 
         //Replace variables with dummy versions
-        streamExecutor.forEach(StreamMethods.stream(newData.entries(), isParallelized()), e -> {
-            Integer rId = e.getKey();
-            Record r = e.getValue();
-
-            AssociativeArray xData = r.getX().copy();
-
-            boolean modified = false;
-            for(Object column : r.getX().keySet()) {
-                if(!supportedXDataTypes.contains(xDataTypes.get(column))) {
-                    continue;
-                }
-                Object value = xData.remove(column);
-                if(value != null) {
-                    //add a new dummy variable for this column-value combination
-                    xData.put(Arrays.asList(column,value), true);
-                }
-                modified = true;
-            }
-
-            if(modified) {
-                Record newR = new Record(xData, r.getY(), r.getYPredicted(), r.getYPredictedProbabilities());
-
-                //we call below the recalculateMeta()
-                newData._unsafe_set(rId, newR);
-            }
+        transformRecords(newData, (xData, y) -> {
+            encode(xData, xDataTypes::get);
+            return y;
         });
 
         //Reset Meta info
         newData.recalculateMeta();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Object _transformRecord(AssociativeArray xData, Object y) {
+        encode(xData, column -> TypeInference.getDataType(xData.get(column)));
+        return y;
+    }
+
+    /**
+     * Replaces the supported columns of the record with dummy variables.
+     *
+     * @param xData
+     * @param columnTypes
+     */
+    private void encode(AssociativeArray xData, Function<Object, TypeInference.DataType> columnTypes) {
+        Set<TypeInference.DataType> supportedXDataTypes = getSupportedXDataTypes();
+
+        for(Object column : xData.keySet().toArray()) {
+            if(!supportedXDataTypes.contains(columnTypes.apply(column))) {
+                continue;
+            }
+            Object value = xData.remove(column);
+            if(value != null) {
+                //add a new dummy variable for this column-value combination
+                xData.put(Arrays.asList(column,value), true);
+            }
+        }
+    }
+
 }
@@ -21,9 +21,9 @@ import com.datumbox.framework.common.dataobjects.*;
 import com.datumbox.framework.common.storage.interfaces.BigMap;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
-import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.transformers.AbstractScaler;
+import com.datumbox.framework.core.machinelearning.common.interfaces.RecordTransformable;
 import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
 
 import java.util.Map;
@@ -35,7 +35,7 @@ import java.util.stream.Stream;
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
-public class StandardScaler extends AbstractScaler<StandardScaler.ModelParameters, StandardScaler.TrainingParameters> {
+public class StandardScaler extends AbstractScaler<StandardScaler.ModelParameters, StandardScaler.TrainingParameters> implements RecordTransformable {
 
     /** {@inheritDoc} */
     public static class ModelParameters extends AbstractScaler.AbstractModelParameters {
@@ -154,47 +154,39 @@ public class StandardScaler extends AbstractScaler<StandardScaler.ModelParameter
     /** {@inheritDoc} */
     @Override
     protected void _transform(Dataframe newData) {
+        //no modification on the actual columns takes place, safe to do.
+        transformRecords(newData, this::_transformRecord);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object _transformRecord(AssociativeArray xData, Object y) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         Map<Object, Double> meanColumnValues = modelParameters.getMeanColumnValues();
         Map<Object, Double> stdColumnValues = modelParameters.getStdColumnValues();
         boolean scaleResponse = knowledgeBase.getTrainingParameters().getScaleResponse() && meanColumnValues.containsKey(Dataframe.COLUMN_NAME_Y);
 
-        streamExecutor.forEach(StreamMethods.stream(newData.entries(), isParallelized()), e -> {
-            Record r = e.getValue();
-            AssociativeArray xData = r.getX().copy();
-            Object yData = r.getY();
-
-            boolean modified = false;
-            for(Object column : r.getX().keySet()) {
-                Double mean = meanColumnValues.get(column);
-                if(mean == null) {
-                    continue;
-                }
-                Object value = xData.remove(column);
-                if(value != null) {
-                    Double std = stdColumnValues.get(column);
-                    xData.put(column, scale(TypeInference.toDouble(value), mean, std));
-                }
-                modified = true;
+        for(Object column : xData.keySet().toArray()) {
+            Double mean = meanColumnValues.get(column);
+            if(mean == null) {
+                continue;
             }
-
-            if(scaleResponse && yData != null) {
-                Double value = TypeInference.toDouble(yData);
-                Double mean = meanColumnValues.get(Dataframe.COLUMN_NAME_Y);
-                Double std = stdColumnValues.get(Dataframe.COLUMN_NAME_Y);
-
-                yData = scale(value, mean, std);
-                modified = true;
+            Object value = xData.remove(column);
+            if(value != null) {
+                Double std = stdColumnValues.get(column);
+                xData.put(column, scale(TypeInference.toDouble(value), mean, std));
             }
+        }
 
-            if(modified) {
-                Integer rId = e.getKey();
-                Record newR = new Record(xData, yData, r.getYPredicted(), r.getYPredictedProbabilities());
+        if(scaleResponse && y != null) {
+            Double value = TypeInference.toDouble(y);
+            Double mean = meanColumnValues.get(Dataframe.COLUMN_NAME_Y);
+            Double std = stdColumnValues.get(Dataframe.COLUMN_NAME_Y);
 
-                //no modification on the actual columns takes place, safe to do.
-                newData._unsafe_set(rId, newR);
-            }
-        });
+            y = scale(value, mean, std);
+        }
+
+        return y;
     }
 
     /**
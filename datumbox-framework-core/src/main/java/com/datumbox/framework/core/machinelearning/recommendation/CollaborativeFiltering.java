@@ -16,6 +16,8 @@
 package com.datumbox.framework.core.machinelearning.recommendation;
 
 import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.concurrency.ForkJoinStream;
+import com.datumbox.framework.common.concurrency.StreamMethods;
 import com.datumbox.framework.common.dataobjects.*;
 import com.datumbox.framework.common.storage.interfaces.BigMap;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
@@ -26,25 +28,29 @@ import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.modelers.AbstractRecommender;
+import com.datumbox.framework.core.machinelearning.common.interfaces.TrainParallelizable;
 import com.datumbox.framework.core.mathematics.distances.Distance;
 import com.datumbox.framework.core.statistics.parametrics.relatedsamples.PearsonCorrelation;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 
 /**
- * Implementation of Collaborative Filtering algorithm.
+ * Implementation of Collaborative Filtering algorithm. The similarities are
+ * indexed by item, so the cost of a recommendation depends only on the number
+ * of rated items and the number of their neighbours.
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
-public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFiltering.ModelParameters, CollaborativeFiltering.TrainingParameters> {
+public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFiltering.ModelParameters, CollaborativeFiltering.TrainingParameters> implements TrainParallelizable {
 
     /** {@inheritDoc} */
     public static class ModelParameters extends AbstractRecommender.AbstractModelParameters {
         private static final long serialVersionUID = 1L;
         
-        @BigMap(keyClass=List.class, valueClass=Double.class, mapType=MapType.HASHMAP, storageHint=StorageHint.IN_CACHE, concurrent=false)
-        private Map<List<Object>, Double> similarities; //the similarity map among observations
+        @BigMap(keyClass=Object.class, valueClass=AssociativeArray.class, mapType=MapType.HASHMAP, storageHint=StorageHint.IN_CACHE, concurrent=true)
+        private Map<Object, AssociativeArray> similarities; //the similarities of every item with its neighbours
         
         /** 
          * @param storageEngine
@@ -57,11 +63,12 @@ public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFil
         //Getters / Setters
         
         /**
-         * Getter for the similarities map.
+         * Getter for the similarities map. The keys are the items and the
+         * values contain the similarities of each item with its neighbours.
          * 
          * @return 
          */
-        public Map<List<Object>, Double> getSimilarities() {
+        public Map<Object, AssociativeArray> getSimilarities() {
             return similarities;
         }
         
@@ -70,7 +77,7 @@ public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFil
          * 
          * @param similarities 
          */
-        protected void setSimilarities(Map<List<Object>, Double> similarities) {
+        protected void setSimilarities(Map<Object, AssociativeArray> similarities) {
             this.similarities = similarities;
         }
    
@@ -101,6 +108,8 @@ public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFil
         }
         
         private SimilarityMeasure similarityMethod = SimilarityMeasure.EUCLIDIAN;
+
+        private Integer maxNeighbours = null;
         
         /**
          * Getter for the similarity method.
@@ -120,6 +129,29 @@ public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFil
             this.similarityMethod = similarityMethod;
         }
 
+        /**
+         * Getter for the maximum number of neighbours which are kept for every
+         * item.
+         *
+         * @return
+         */
+        public Integer getMaxNeighbours() {
+            return maxNeighbours;
+        }
+
+        /**
+         * Setter for the maximum number of neighbours which are kept for every
+         * item. Only the most similar items are kept, which reduces the size of
+         * the model and the time of the recommendations. The item itself is
+         * not counted as a neighbour and it is always kept. Set to null for
+         * unlimited.
+         *
+         * @param maxNeighbours
+         */
+        public void setMaxNeighbours(Integer maxNeighbours) {
+            this.maxNeighbours = maxNeighbours;
+        }
+
     }
 
     /**
@@ -129,6 +161,7 @@ public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFil
      */
     protected CollaborativeFiltering(TrainingParameters trainingParameters, Configuration configuration) {
         super(trainingParameters, configuration);
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
     }
 
     /**
@@ -138,12 +171,33 @@ public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFil
      */
     protected CollaborativeFiltering(String storageName, Configuration configuration) {
         super(storageName, configuration);
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
+    }
+
+    private boolean parallelized = true;
+
+    /**
+     * This executor is used for the parallel processing of streams with custom
+     * Thread pool.
+     */
+    protected final ForkJoinStream streamExecutor;
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isParallelized() {
+        return parallelized;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setParallelized(boolean parallelized) {
+        this.parallelized = parallelized;
     }
 
     /** {@inheritDoc} */
     @Override
     protected void _predict(Dataframe newData) {
-        Map<List<Object>, Double> similarities = knowledgeBase.getModelParameters().getSimilarities();
+        Map<Object, AssociativeArray> similarities = knowledgeBase.getModelParameters().getSimilarities();
         
         //generate recommendation for each record in the list
         for(Map.Entry<Integer, Record> e : newData.entries()) {
@@ -156,18 +210,18 @@ public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFil
                 Object row = entry.getKey();
                 Double score = TypeInference.toDouble(entry.getValue());
                 
-                for(Map.Entry<List<Object>, Double> entry2 : similarities.entrySet()) {
-                    List<Object> tpk = entry2.getKey();
-                    if(!tpk.get(0).equals(row)) {
-                        continue; //filter the irrelevant two pair key combinations that do not include the row
-                    }
-                    
-                    Object column = tpk.get(1);
+                AssociativeArray neighbours = similarities.get(row);
+                if(neighbours == null) {
+                    continue; //the item was not rated in the training data
+                }
+                
+                for(Map.Entry<Object, Object> entry2 : neighbours.entrySet()) {
+                    Object column = entry2.getKey();
                     
                     Double previousRecValue = recommendations.getOrDefault(column, 0.0);
                     Double previousSimsumValue = simSums.getOrDefault(column, 0.0);
                     
-                    Double similarity = entry2.getValue();
+                    Double similarity = (Double) entry2.getValue();
 
                     recommendations.put(column, previousRecValue+similarity*score);
                     simSums.put(column, previousSimsumValue+similarity);
@@ -191,25 +245,47 @@ public class CollaborativeFiltering extends AbstractRecommender<CollaborativeFil
     @Override
     protected void _fit(Dataframe trainingData) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        Integer maxNeighbours = knowledgeBase.getTrainingParameters().getMaxNeighbours();
+        
+        //keep the first record of every item
+        Map<Object, Record> itemRecords = new LinkedHashMap<>();
+        for(Record r : trainingData) {
+            itemRecords.putIfAbsent(r.getY(), r);
+        }
+        List<Record> items = new ArrayList<>(itemRecords.values());
         
-        //calculate similarity matrix
-        Map<List<Object>, Double> similarities = modelParameters.getSimilarities();
-        for(Record r1 : trainingData) {
+        //calculate the similarities of every item in parallel and keep the most similar neighbours
+        Map<Object, AssociativeArray> similarities = modelParameters.getSimilarities();
+        streamExecutor.forEach(StreamMethods.stream(IntStream.range(0, items.size()).boxed(), isParallelized()), i -> {
+            Record r1 = items.get(i);
+            
             Object y1 = r1.getY();
-            for(Record r2: trainingData) {
+            
+            Map<Object, Double> neighbours = new HashMap<>();
+            for(Record r2 : items) {
                 Object y2 = r2.getY();
-                
-                List<Object> tkp = Arrays.asList(y1, y2);
-                if(similarities.containsKey(tkp)) {
-                    continue;
+                if(!y1.equals(y2)) {
+                    neighbours.put(y2, calculateSimilarity(r1, r2));
                 }
-                
-                double similarity = calculateSimilarity(r1, r2);
-                
-                similarities.put(tkp, similarity);
-                similarities.put(Arrays.asList(y2, y1), similarity); //add also for the reverse key because similarity is symmetric
             }
-        }
+            
+            if(maxNeighbours != null && neighbours.size() > maxNeighbours) {
+                Map<Object, Double> topNeighbours = new HashMap<>();
+                for(Map.Entry<Object, Double> entry : MapMethods.sortNumberMapByValueDescending(neighbours).entrySet()) {
+                    if(topNeighbours.size() >= maxNeighbours) {
+                        break;
+                    }
+                    topNeighbours.put(entry.getKey(), entry.getValue());
+                }
+                neighbours = topNeighbours;
+            }
+            
+            //the item itself is always kept because its own rating contributes to the recommendations
+            AssociativeArray itemSimilarities = new AssociativeArray();
+            itemSimilarities.put(y1, calculateSimilarity(r1, r1));
+            itemSimilarities.putAll(neighbours);
+            similarities.put(y1, itemSimilarities);
+        });
     }
     
     private double calculateSimilarity(Record r1, Record r2) {        
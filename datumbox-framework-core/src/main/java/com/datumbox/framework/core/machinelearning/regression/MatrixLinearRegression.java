@@ -16,8 +16,10 @@
 package com.datumbox.framework.core.machinelearning.regression;
 
 import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.dataobjects.TypeInference;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.DataframeMatrix;
+import com.datumbox.framework.core.common.dataobjects.NormalEquations;
 import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.common.storage.interfaces.BigMap;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
@@ -193,24 +195,15 @@ public class MatrixLinearRegression extends AbstractRegressor<MatrixLinearRegres
         
         Map<Object, Double> thitas = modelParameters.getThitas();
         Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
-        //Map<Integer, Integer> recordIdsReference = null;
-        DataframeMatrix matrixDataset = DataframeMatrix.newInstance(trainingData, true, null, featureIds);
         
-        RealVector Y = matrixDataset.getY();
-        RealMatrix X = matrixDataset.getX();
+        //accumulate X'X and X'Y without building the X matrix
+        NormalEquations normalEquations = NormalEquations.newInstance(trainingData, true, featureIds);
         
         //(X'X)^-1
-        RealMatrix Xt = X.transpose();
-        LUDecomposition lud = new LUDecomposition(Xt.multiply(X));
+        LUDecomposition lud = new LUDecomposition(normalEquations.getXtX());
         //W = (X'X)^-1 * X'Y
         RealMatrix XtXinv = lud.getSolver().getInverse();
-        RealVector coefficients = XtXinv.multiply(Xt).operate(Y);
-        // instead of matrix inversion calculate (X'X) * W = X'Y
-        //RealVector coefficients = lud.getSolver().solve(Xt.operate(Y));
-        //lud =null;
-        
-        
-        //Xt = null;
+        RealVector coefficients = XtXinv.operate(normalEquations.getXtY());
         
         //put the features coefficients in the thita map
         thitas.put(Dataframe.COLUMN_NAME_CONSTANT, coefficients.getEntry(0));
@@ -222,12 +215,19 @@ public class MatrixLinearRegression extends AbstractRegressor<MatrixLinearRegres
         }
         
         
-        //get the predictions and subtact the Y vector. Sum the squared differences to get the error
+        //get the predictions and subtact the Y values. Sum the squared differences to get the error
         double SSE = 0.0;
-        for(double v : X.operate(coefficients).subtract(Y).toArray()) {
-            SSE += v*v;
+        for(Record r : trainingData) {
+            double yPredicted = coefficients.getEntry(0);
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Double value = TypeInference.toDouble(entry.getValue());
+                if(value != null) {
+                    yPredicted += coefficients.getEntry(featureIds.get(entry.getKey()))*value;
+                }
+            }
+            double error = yPredicted - TypeInference.toDouble(r.getY());
+            SSE += error*error;
         }
-        //Y = null;
 
         //standard error matrix
         double MSE = SSE/(n-(d+1)); //mean square error = SSE / dfResidual
@@ -254,7 +254,6 @@ public class MatrixLinearRegression extends AbstractRegressor<MatrixLinearRegres
         //SE=null;
         //coefficients=null;
         //idsFeatures=null;
-        //matrixDataset = null;
 
         modelParameters.setFeaturePvalues(pvalues);
 
@@ -16,6 +16,8 @@
 package com.datumbox.framework.core.machinelearning.topicmodeling;
 
 import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.concurrency.ForkJoinStream;
+import com.datumbox.framework.common.concurrency.StreamMethods;
 import com.datumbox.framework.common.dataobjects.*;
 import com.datumbox.framework.common.storage.interfaces.BigMap;
 import com.datumbox.framework.common.storage.interfaces.StorageEngine;
@@ -27,12 +29,10 @@ import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.Record;
 import com.datumbox.framework.core.machinelearning.common.abstracts.AbstractTrainer;
 import com.datumbox.framework.core.machinelearning.common.abstracts.modelers.AbstractTopicModeler;
-import com.datumbox.framework.core.statistics.descriptivestatistics.Descriptives;
-import com.datumbox.framework.core.statistics.sampling.SimpleRandomSampling;
+import com.datumbox.framework.common.utilities.RandomGenerator;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.IntStream;
 
 
 /**
@@ -53,6 +53,8 @@ import java.util.Map;
  * http://www.cs.cmu.edu/~akyrola/10702project/kyrola10702FINAL.pdf 
  * http://stats.stackexchange.com/questions/18167/how-to-calculate-perplexity-of-a-holdout-with-latent-dirichlet-allocation
  * http://www.slideserve.com/adamdaniel/an-introduction-to-latent-dirichlet-allocation-lda
+ * http://people.cs.umass.edu/~mimno/papers/fast-topic-model.pdf (SparseLDA)
+ * http://www.jmlr.org/papers/volume10/newman09a/newman09a.pdf (AD-LDA)
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
@@ -254,6 +256,9 @@ public class LatentDirichletAllocation extends AbstractTopicModeler<LatentDirich
         //a good value for alpha and beta is to set them equal to 1.0/k
         private double alpha = 1.0; //the hyperparameter of dirichlet prior for document topic distribution
         private double beta = 1.0; //the hyperparameter of dirichlet prior for word topic distribution
+
+        private boolean approximateDistributed = false;
+        private int numberOfShards = 4;
         
         /**
          * Getter for the total number of topics k.
@@ -326,6 +331,49 @@ public class LatentDirichletAllocation extends AbstractTopicModeler<LatentDirich
         public void setBeta(double beta) {
             this.beta = beta;
         }
+
+        /**
+         * Getter for the Approximate Distributed sampling option.
+         *
+         * @return
+         */
+        public boolean isApproximateDistributed() {
+            return approximateDistributed;
+        }
+
+        /**
+         * Setter for the Approximate Distributed sampling option. If turned on,
+         * the documents are split in shards which are sampled in parallel on
+         * local copies of the topic-word counts, and the counts are merged at
+         * the end of every iteration (AD-LDA). This is much faster on multiple
+         * cores but it only approximates the sequential sampler.
+         *
+         * @param approximateDistributed
+         */
+        public void setApproximateDistributed(boolean approximateDistributed) {
+            this.approximateDistributed = approximateDistributed;
+        }
+
+        /**
+         * Getter for the number of shards of the Approximate Distributed sampling.
+         *
+         * @return
+         */
+        public int getNumberOfShards() {
+            return numberOfShards;
+        }
+
+        /**
+         * Setter for the number of shards of the Approximate Distributed sampling.
+         * The shards are sampled in parallel using the available threads. The
+         * results depend on the number of shards but not on the number of
+         * threads, so they are reproducible on any machine.
+         *
+         * @param numberOfShards
+         */
+        public void setNumberOfShards(int numberOfShards) {
+            this.numberOfShards = numberOfShards;
+        }
         
     }
 
@@ -336,6 +384,7 @@ public class LatentDirichletAllocation extends AbstractTopicModeler<LatentDirich
      */
     protected LatentDirichletAllocation(TrainingParameters trainingParameters, Configuration configuration) {
         super(trainingParameters, configuration);
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
     }
 
     /**
@@ -345,7 +394,14 @@ public class LatentDirichletAllocation extends AbstractTopicModeler<LatentDirich
      */
     protected LatentDirichletAllocation(String storageName, Configuration configuration) {
         super(storageName, configuration);
+        streamExecutor = new ForkJoinStream(knowledgeBase.getConfiguration().getConcurrencyConfiguration());
     }
+
+    /**
+     * This executor is used for the parallel processing of streams with custom
+     * Thread pool.
+     */
+    protected final ForkJoinStream streamExecutor;
     
     /**
      * Returns the distribution of the words in each topic.
@@ -402,37 +458,22 @@ public class LatentDirichletAllocation extends AbstractTopicModeler<LatentDirich
         
         //get model parameters
         int k = trainingParameters.getK(); //number of topics
-        Map<List<Object>, Integer> topicAssignmentOfDocumentWord = modelParameters.getTopicAssignmentOfDocumentWord();
-        Map<List<Integer>, Integer> documentTopicCounts = modelParameters.getDocumentTopicCounts();
-        Map<List<Object>, Integer> topicWordCounts = modelParameters.getTopicWordCounts();
-        Map<Integer, Integer> documentWordCounts = modelParameters.getDocumentWordCounts();
-        Map<Integer, Integer> topicCounts = modelParameters.getTopicCounts();
+        double alpha = trainingParameters.getAlpha();
+        double beta = trainingParameters.getBeta();
         
-        //initialize topic assignments of each word randomly and update the counters
+        //encode the words of every document with integer ids
+        Map<Object, Integer> wordIds = new HashMap<>();
+        List<Object> words = new ArrayList<>();
+        List<Document> documents = new ArrayList<>(trainingData.size());
         for(Map.Entry<Integer, Record> e : trainingData.entries()) {
-            Integer rId = e.getKey();
-            Record r = e.getValue();
-            Integer documentId = rId;
-            
-            documentWordCounts.put(documentId, r.getX().size());
-            
-            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object wordPosition = entry.getKey();
-                Object word = entry.getValue();
-                
-                //sample a topic
-                Integer topic = PHPMethods.mt_rand(0,k-1);
-                
-                increase(topicCounts, topic);
-                topicAssignmentOfDocumentWord.put(Arrays.asList(documentId, wordPosition), topic);
-                increase(documentTopicCounts, Arrays.asList(documentId, topic));
-                increase(topicWordCounts, Arrays.asList(topic, word));
-            }
+            documents.add(new Document(e.getKey(), e.getValue(), wordIds, words, k));
         }
         
-        
-        double alpha = trainingParameters.getAlpha();
-        double beta = trainingParameters.getBeta();
+        //initialize topic assignments of each word randomly and update the counters
+        TopicWordTable table = new TopicWordTable(words.size(), k);
+        for(Document document : documents) {
+            document.assignRandomTopics(table);
+        }
         
         int maxIterations = trainingParameters.getMaxIterations();
         
@@ -441,84 +482,10 @@ public class LatentDirichletAllocation extends AbstractTopicModeler<LatentDirich
             
             logger.debug("Iteration {}", iteration);
             
-            int changedCounter = 0;
             //collapsed gibbs sampler
-            for(Map.Entry<Integer, Record> e : trainingData.entries()) {
-                Integer rId = e.getKey();
-                Record r = e.getValue();
-                Integer documentId = rId;
-                
-                AssociativeArray topicAssignments = new AssociativeArray();
-                for(int j=0;j<k;++j) {
-                    topicAssignments.put(j, 0.0);
-                }
-                
-                int totalWords = r.getX().size();
-                
-                for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                    Object wordPosition = entry.getKey();
-                    Object word = entry.getValue();
+            table = sweep(documents, table, new double[]{alpha, beta, beta*d}, trainingParameters.isApproximateDistributed()?trainingParameters.getNumberOfShards():1);
             
-                    
-                    //remove the word from the dataset
-                    Integer topic = topicAssignmentOfDocumentWord.get(Arrays.asList(documentId, wordPosition));
-                    //decrease(documentWordCounts, documentId); //slow
-                    decrease(topicCounts, topic);
-                    decrease(documentTopicCounts, Arrays.asList(documentId, topic));
-                    decrease(topicWordCounts, Arrays.asList(topic, word));
-                    
-                    //int numberOfDocumentWords = r.getX().size()-1; //fast - decreased by 1
-                    
-                    //compute the posteriors of the topics and sample from it
-                    AssociativeArray topicProbabilities = new AssociativeArray();
-                    for(int j=0;j<k;++j) {
-                        Integer njw = topicWordCounts.get(Arrays.asList(j,word));
-                        double enumerator;
-                        if(njw !=null) {
-                            enumerator = njw + beta;
-                        }
-                        else {
-                            enumerator = beta;
-                        }
-                        
-                        Integer njd = documentTopicCounts.get(Arrays.asList(documentId, j));
-                        if(njd != null) {
-                            enumerator *= (njd + alpha);
-                        }
-                        else {
-                            enumerator *= alpha;
-                        }
-                        
-                        double denominator = topicCounts.get((Integer)j)+beta*d;
-                        //denominator *= numberOfDocumentWords+alpha*k; //this is not necessary because it is the same for all categories, so it can be omited
-                        
-                        topicProbabilities.put(j, enumerator/denominator);
-                    }
-
-                    //normalize probabilities
-                    //Descriptives.normalize(topicProbabilities);
-                    
-                    //sample from these probabilieis
-                    Integer newTopic = (Integer) SimpleRandomSampling.weightedSampling(topicProbabilities, 1, true).iterator().next();
-                    topic = newTopic; //new topic assigment
-                    
-                    //add back the word in the dataset
-                    topicAssignmentOfDocumentWord.put(Arrays.asList(documentId, wordPosition), topic);
-                    //increase(documentWordCounts, documentId); //slow
-                    increase(topicCounts, topic);
-                    increase(documentTopicCounts, Arrays.asList(documentId, topic));
-                    increase(topicWordCounts, Arrays.asList(topic, word));
-                    
-                    topicAssignments.put(topic, TypeInference.toDouble(topicAssignments.get(topic))+1.0/totalWords);
-                }
-                
-                Object mainTopic=MapMethods.selectMaxKeyValue(topicAssignments).getKey();
-                
-                if(!mainTopic.equals(r.getYPredicted())) {
-                    ++changedCounter;
-                }
-                trainingData._unsafe_set(rId, new Record(r.getX(), r.getY(), mainTopic, topicAssignments));
-            }
+            int changedCounter = updatePredictions(trainingData, documents);
             ++iteration;
             
             logger.debug("Reassigned Records {}", changedCounter);
@@ -530,27 +497,33 @@ public class LatentDirichletAllocation extends AbstractTopicModeler<LatentDirich
         
         modelParameters.setTotalIterations(iteration);
         
-    }
-    
-    /**
-     * Utility method that increases the map value by 1.
-     * 
-     * @param <K>
-     * @param map
-     * @param key 
-     */
-    private <K> void increase(Map<K, Integer> map, K key) {
-        map.put(key, map.getOrDefault(key, 0)+1);
-    }
-
-    /**
-     * Utility method that decreases the map value by 1.
-     * @param <K>
-     * @param map
-     * @param key 
-     */
-    private <K> void decrease(Map<K, Integer> map, K key) {
-        map.put(key, map.getOrDefault(key, 0)-1);
+        //store the counts in the model parameters
+        Map<List<Object>, Integer> topicAssignmentOfDocumentWord = modelParameters.getTopicAssignmentOfDocumentWord();
+        Map<List<Integer>, Integer> documentTopicCounts = modelParameters.getDocumentTopicCounts();
+        Map<List<Object>, Integer> topicWordCounts = modelParameters.getTopicWordCounts();
+        Map<Integer, Integer> documentWordCounts = modelParameters.getDocumentWordCounts();
+        Map<Integer, Integer> topicCounts = modelParameters.getTopicCounts();
+        
+        for(int topic=0;topic<k;topic++) {
+            topicCounts.put(topic, table.topicCounts[topic]);
+        }
+        for(int wordId=0;wordId<words.size();wordId++) {
+            for(int j=0;j<table.nonZeroSizes[wordId];j++) {
+                int topic = table.nonZeroTopics[wordId][j];
+                topicWordCounts.put(Arrays.asList(topic, words.get(wordId)), table.counts[wordId][topic]);
+            }
+        }
+        for(Document document : documents) {
+            Integer documentId = document.documentId;
+            documentWordCounts.put(documentId, document.wordIds.length);
+            for(int j=0;j<document.nonZeroSize;j++) {
+                int topic = document.nonZeroTopics[j];
+                documentTopicCounts.put(Arrays.asList(documentId, topic), document.topicCounts[topic]);
+            }
+            for(int i=0;i<document.wordIds.length;i++) {
+                topicAssignmentOfDocumentWord.put(Arrays.asList(documentId, document.wordPositions[i]), document.topics[i]);
+            }
+        }
     }
 
     /** {@inheritDoc} */
@@ -558,168 +531,467 @@ public class LatentDirichletAllocation extends AbstractTopicModeler<LatentDirich
     protected void _predict(Dataframe newData) {
         //This method uses similar approach to the training but the most important
         //difference is that we do not wish to modify the original training params.
-        //as a result we need to modify the code to use additional temporary
-        //counts for the testing data and merge them with the parameters from the
-        //training data in order to make a decision
+        //as a result the sampler works on a copy of the counts of the training
+        //data to which the counts of the testing data are added
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
 
         //get model parameters
         int d = modelParameters.getD();
         int k = trainingParameters.getK(); //number of topics
-        
+        double alpha = trainingParameters.getAlpha();
+        double beta = trainingParameters.getBeta();
         
         Map<List<Object>, Integer> topicWordCounts = modelParameters.getTopicWordCounts();
         Map<Integer, Integer> topicCounts = modelParameters.getTopicCounts();
         
+        //encode the words of the training data and of every document with integer ids;
+        //the words of the training data are sorted because the iteration order of
+        //the counts depends on the storage engine and it affects the sampling
+        Set<Object> trainingWords = new HashSet<>();
+        for(List<Object> tpk : topicWordCounts.keySet()) {
+            trainingWords.add(tpk.get(1));
+        }
+        List<Object> words = new ArrayList<>(trainingWords);
+        words.sort(Comparator.comparing((Object w) -> w.getClass().getName()).thenComparing(Object::toString));
+        Map<Object, Integer> wordIds = new HashMap<>();
+        for(int wordId=0;wordId<words.size();wordId++) {
+            wordIds.put(words.get(wordId), wordId);
+        }
+        int numberOfTrainingWords = words.size();
+        List<Document> documents = new ArrayList<>(newData.size());
+        for(Map.Entry<Integer, Record> e : newData.entries()) {
+            documents.add(new Document(e.getKey(), e.getValue(), wordIds, words, k));
+        }
         
-        StorageEngine storageEngine = knowledgeBase.getStorageEngine();
-        
-        //we create temporary maps for the prediction sets to avoid modifing the maps that we already learned
-        Map<List<Object>, Integer> tmp_topicAssignmentOfDocumentWord = storageEngine.getBigMap("tmp_topicAssignmentOfDocumentWord", (Class<List<Object>>)(Class<?>)List.class, Integer.class, MapType.HASHMAP, StorageHint.IN_CACHE, false, true);
-        Map<List<Integer>, Integer> tmp_documentTopicCounts = storageEngine.getBigMap("tmp_documentTopicCounts", (Class<List<Integer>>)(Class<?>)List.class, Integer.class, MapType.HASHMAP, StorageHint.IN_MEMORY, false, true);
-        Map<List<Object>, Integer> tmp_topicWordCounts = storageEngine.getBigMap("tmp_topicWordCounts", (Class<List<Object>>)(Class<?>)List.class, Integer.class, MapType.HASHMAP, StorageHint.IN_CACHE, false, true);
-        Map<Integer, Integer> tmp_topicCounts = storageEngine.getBigMap("tmp_topicCounts", Integer.class, Integer.class, MapType.HASHMAP, StorageHint.IN_MEMORY, false, true);
+        //load the counts of the training data in the order of the word ids and the topics
+        int[][] trainingCounts = new int[numberOfTrainingWords][k];
+        for(Map.Entry<List<Object>, Integer> entry : topicWordCounts.entrySet()) {
+            List<Object> tpk = entry.getKey();
+            trainingCounts[wordIds.get(tpk.get(1))][(Integer)tpk.get(0)] = entry.getValue();
+        }
+        TopicWordTable table = new TopicWordTable(words.size(), k);
+        for(int wordId=0;wordId<numberOfTrainingWords;wordId++) {
+            for(int topic=0;topic<k;topic++) {
+                table.add(wordId, topic, trainingCounts[wordId][topic]);
+            }
+        }
+        for(int topic=0;topic<k;topic++) {
+            table.topicCounts[topic] = topicCounts.getOrDefault(topic, 0);
+        }
         
         //initialize topic assignments of each word randomly and update the counters
-        for(Map.Entry<Integer, Record> e : newData.entries()) {
+        for(Document document : documents) {
+            document.assignRandomTopics(table);
+        }
+        
+        int maxIterations = trainingParameters.getMaxIterations();
+
+        for(int iteration=0;iteration<maxIterations;++iteration) {
+            
+            logger.debug("Iteration {}", iteration);
+            
+            //collapsed gibbs sampler
+            table = sweep(documents, table, new double[]{alpha, beta, beta*d}, trainingParameters.isApproximateDistributed()?trainingParameters.getNumberOfShards():1);
+            
+            double perplexity = 0.0;
+            double totalDatasetWords = 0.0;
+            for(Document document : documents) {
+                perplexity += document.logLikelihood - document.wordIds.length*Math.log(document.wordIds.length-1+alpha*k);
+                totalDatasetWords += document.wordIds.length;
+            }
+            perplexity=Math.exp(-perplexity/totalDatasetWords);
+            
+            int changedCounter = updatePredictions(newData, documents);
+            
+            logger.debug("Reassigned Records {} - Perplexity: {}", changedCounter, perplexity);
+            
+            if(changedCounter==0) {
+                break;
+            }            
+        }
+    }
+    
+    /**
+     * Performs one Gibbs sampling iteration over all the documents and returns
+     * the updated topic-word counts. The hyperparameters contain the alpha, the
+     * beta and the beta multiplied by the dimension of the data.
+     * 
+     * @param documents
+     * @param table
+     * @param hyperparameters
+     * @param shards
+     * @return 
+     */
+    private TopicWordTable sweep(List<Document> documents, TopicWordTable table, double[] hyperparameters, int shards) {
+        int numberOfShards = Math.min(shards, documents.size());
+        if(numberOfShards <= 1) {
+            SparseGibbsSampler sampler = new SparseGibbsSampler(table.topicCounts.length, hyperparameters);
+            Random rnd = RandomGenerator.getThreadLocalRandom();
+            for(Document document : documents) {
+                sampler.sample(document, table, rnd);
+            }
+            return table;
+        }
+        
+        //the seeds of the shards are drawn in advance to keep the results reproducible
+        Random rnd = RandomGenerator.getThreadLocalRandom();
+        long[] seeds = new long[numberOfShards];
+        for(int shard=0;shard<numberOfShards;shard++) {
+            seeds[shard] = rnd.nextLong();
+        }
+        
+        //sample every shard on a local copy of the counts and merge the changes
+        TopicWordTable[] localTables = new TopicWordTable[numberOfShards];
+        streamExecutor.forEach(StreamMethods.stream(IntStream.range(0, numberOfShards).boxed(), true), shard -> {
+            TopicWordTable localTable = table.copy();
+            SparseGibbsSampler sampler = new SparseGibbsSampler(table.topicCounts.length, hyperparameters);
+            Random localRnd = new Random(seeds[shard]);
+            for(int i=shard;i<documents.size();i+=numberOfShards) {
+                sampler.sample(documents.get(i), localTable, localRnd);
+            }
+            localTables[shard] = localTable;
+        });
+        return TopicWordTable.merge(table, localTables);
+    }
+    
+    /**
+     * Stores the topic assignments of the documents as predictions and returns
+     * the number of records which changed main topic.
+     * 
+     * @param data
+     * @param documents
+     * @return 
+     */
+    private int updatePredictions(Dataframe data, List<Document> documents) {
+        int k = knowledgeBase.getTrainingParameters().getK();
+        
+        int changedCounter = 0;
+        Iterator<Document> it = documents.iterator();
+        for(Map.Entry<Integer, Record> e : data.entries()) {
             Integer rId = e.getKey();
             Record r = e.getValue();
-            Integer documentId = rId;
+            Document document = it.next();
             
+            int totalWords = document.wordIds.length;
+            AssociativeArray topicAssignments = new AssociativeArray();
+            for(int j=0;j<k;++j) {
+                topicAssignments.put(j, totalWords>0?document.topicCounts[j]/(double)totalWords:0.0);
+            }
+            
+            Object mainTopic=MapMethods.selectMaxKeyValue(topicAssignments).getKey();
+            
+            if(!mainTopic.equals(r.getYPredicted())) {
+                ++changedCounter;
+            }
+            data._unsafe_set(rId, new Record(r.getX(), r.getY(), mainTopic, topicAssignments));
+        }
+        return changedCounter;
+    }
+    
+    /**
+     * The words of a document encoded as integer ids, their topic assignments
+     * (the Z in the graphical model) and the topic counts of the document
+     * (the nj(d) in the papers) along with the topics which have non-zero counts.
+     */
+    private static class Document {
+        private final Integer documentId;
+        private final Object[] wordPositions;
+        private final int[] wordIds;
+        private final int[] topics;
+        private final int[] topicCounts;
+        private final int[] nonZeroTopics;
+        private int nonZeroSize = 0;
+        private double logLikelihood = 0.0;
+        
+        private Document(Integer documentId, Record r, Map<Object, Integer> wordIds, List<Object> words, int k) {
+            this.documentId = documentId;
+            int n = r.getX().size();
+            this.wordPositions = new Object[n];
+            this.wordIds = new int[n];
+            this.topics = new int[n];
+            this.topicCounts = new int[k];
+            this.nonZeroTopics = new int[k];
+            
+            int i = 0;
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object wordPosition = entry.getKey();
                 Object word = entry.getValue();
-
+                Integer wordId = wordIds.get(word);
+                if(wordId == null) {
+                    wordId = words.size();
+                    wordIds.put(word, wordId);
+                    words.add(word);
+                }
+                this.wordPositions[i] = entry.getKey();
+                this.wordIds[i] = wordId;
+                ++i;
+            }
+        }
+        
+        private void assignRandomTopics(TopicWordTable table) {
+            int k = topicCounts.length;
+            for(int i=0;i<wordIds.length;i++) {
                 //sample a topic
-                Integer topic = PHPMethods.mt_rand(0,k-1);
-                
-                increase(tmp_topicCounts, topic);
-                tmp_topicAssignmentOfDocumentWord.put(Arrays.asList(documentId, wordPosition), topic);
-                increase(tmp_documentTopicCounts, Arrays.asList(documentId, topic));
-                increase(tmp_topicWordCounts, Arrays.asList(topic, word));
+                int topic = PHPMethods.mt_rand(0,k-1);
+                topics[i] = topic;
+                increase(topic);
+                table.add(wordIds[i], topic, 1);
             }
         }
         
+        private void increase(int topic) {
+            if(topicCounts[topic]++ == 0) {
+                nonZeroTopics[nonZeroSize++] = topic;
+            }
+        }
         
-        double alpha = trainingParameters.getAlpha();
-        double beta = trainingParameters.getBeta();
+        private void decrease(int topic) {
+            if(--topicCounts[topic] == 0) {
+                for(int j=0;j<nonZeroSize;j++) {
+                    if(nonZeroTopics[j] == topic) {
+                        nonZeroTopics[j] = nonZeroTopics[--nonZeroSize];
+                        break;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * The number of times each word is assigned to each topic (the nj(w) in the
+     * papers) along with the topics which have non-zero counts for every word,
+     * and the total number of words assigned to each topic (the nj(.) in the
+     * papers).
+     */
+    private static class TopicWordTable {
+        private final int[][] counts;
+        private final int[][] nonZeroTopics;
+        private final int[] nonZeroSizes;
+        private final int[] topicCounts;
+        
+        private TopicWordTable(int numberOfWords, int k) {
+            counts = new int[numberOfWords][k];
+            nonZeroTopics = new int[numberOfWords][k];
+            nonZeroSizes = new int[numberOfWords];
+            topicCounts = new int[k];
+        }
         
-        int maxIterations = trainingParameters.getMaxIterations();
-
-        for(int iteration=0;iteration<maxIterations;++iteration) {
-            
-            logger.debug("Iteration {}", iteration);
+        private TopicWordTable(TopicWordTable table) {
+            int numberOfWords = table.counts.length;
+            counts = new int[numberOfWords][];
+            nonZeroTopics = new int[numberOfWords][];
+            for(int wordId=0;wordId<numberOfWords;wordId++) {
+                counts[wordId] = table.counts[wordId].clone();
+                nonZeroTopics[wordId] = table.nonZeroTopics[wordId].clone();
+            }
+            nonZeroSizes = table.nonZeroSizes.clone();
+            topicCounts = table.topicCounts.clone();
+        }
+        
+        private TopicWordTable copy() {
+            return new TopicWordTable(this);
+        }
+        
+        /**
+         * Returns the counts of the base plus the changes of every local copy.
+         * 
+         * @param base
+         * @param localTables
+         * @return 
+         */
+        private static TopicWordTable merge(TopicWordTable base, TopicWordTable[] localTables) {
+            int numberOfWords = base.counts.length;
+            int k = base.topicCounts.length;
+            TopicWordTable merged = new TopicWordTable(numberOfWords, k);
+            for(int wordId=0;wordId<numberOfWords;wordId++) {
+                for(int topic=0;topic<k;topic++) {
+                    int count = base.counts[wordId][topic];
+                    for(TopicWordTable localTable : localTables) {
+                        count += localTable.counts[wordId][topic] - base.counts[wordId][topic];
+                    }
+                    merged.add(wordId, topic, count);
+                }
+            }
+            for(int topic=0;topic<k;topic++) {
+                int count = base.topicCounts[topic];
+                for(TopicWordTable localTable : localTables) {
+                    count += localTable.topicCounts[topic] - base.topicCounts[topic];
+                }
+                merged.topicCounts[topic] = count;
+            }
+            return merged;
+        }
+        
+        /**
+         * Adds the count to the word-topic pair and to the topic.
+         * 
+         * @param wordId
+         * @param topic
+         * @param count 
+         */
+        private void add(int wordId, int topic, int count) {
+            if(count == 0) {
+                return;
+            }
+            if(counts[wordId][topic] == 0) {
+                nonZeroTopics[wordId][nonZeroSizes[wordId]++] = topic;
+            }
+            counts[wordId][topic] += count;
+            topicCounts[topic] += count;
+        }
+        
+        private void decrease(int wordId, int topic) {
+            --topicCounts[topic];
+            if(--counts[wordId][topic] == 0) {
+                int[] topics = nonZeroTopics[wordId];
+                int size = nonZeroSizes[wordId];
+                for(int j=0;j<size;j++) {
+                    if(topics[j] == topic) {
+                        topics[j] = topics[--size];
+                        break;
+                    }
+                }
+                nonZeroSizes[wordId] = size;
+            }
+        }
+    }
+    
+    /**
+     * Collapsed Gibbs sampler which splits the unnormalized posterior of the
+     * topics (alpha + nj(d))(beta + nj(w))/(beta*d + nj(.)) in three buckets:
+     * the smoothing bucket which is summed over all the topics, the document
+     * bucket which is summed over the topics of the document and the word bucket
+     * which is summed over the topics of the word. The first two are updated
+     * incrementally, so the cost of each word depends only on the number of
+     * its active topics.
+     */
+    private static class SparseGibbsSampler {
+        private final double alpha;
+        private final double beta;
+        private final double betaD;
+        private final double[] coefficients;
+        private final double[] wordWeights;
+        private double smoothingMass;
+        private double documentMass;
+        
+        private SparseGibbsSampler(int k, double[] hyperparameters) {
+            alpha = hyperparameters[0];
+            beta = hyperparameters[1];
+            betaD = hyperparameters[2];
+            coefficients = new double[k];
+            wordWeights = new double[k];
+        }
+        
+        /**
+         * Resamples the topics of all the words of the document and stores the
+         * log-likelihood of its words in the document.
+         * 
+         * @param document
+         * @param table
+         * @param rnd 
+         */
+        private void sample(Document document, TopicWordTable table, Random rnd) {
+            int k = coefficients.length;
+            int[] topicCounts = table.topicCounts;
             
+            smoothingMass = 0.0;
+            documentMass = 0.0;
+            for(int topic=0;topic<k;topic++) {
+                double denominator = betaD + topicCounts[topic];
+                smoothingMass += alpha*beta/denominator;
+                documentMass += document.topicCounts[topic]*beta/denominator;
+                coefficients[topic] = (alpha + document.topicCounts[topic])/denominator;
+            }
             
-            //collapsed gibbs sampler
-            int changedCounter = 0;
-            double perplexity = 0.0;
-            double totalDatasetWords = 0.0;
-            for(Map.Entry<Integer, Record> e : newData.entries()) {
-                Integer rId = e.getKey();
-                Record r = e.getValue();
-                Integer documentId = rId;
+            double logLikelihood = 0.0;
+            for(int i=0;i<document.wordIds.length;i++) {
+                int wordId = document.wordIds[i];
+                int topic = document.topics[i];
                 
+                //remove the word from the dataset
+                removeFromBuckets(document, topicCounts, topic);
+                document.decrease(topic);
+                table.decrease(wordId, topic);
+                addToBuckets(document, topicCounts, topic);
                 
-                AssociativeArray topicAssignments = new AssociativeArray();
-                for(int j=0;j<k;++j) {
-                    topicAssignments.put(j, 0.0);
+                //compute the word bucket
+                int[] wordTopics = table.nonZeroTopics[wordId];
+                int[] wordCounts = table.counts[wordId];
+                int wordTopicsSize = table.nonZeroSizes[wordId];
+                double wordMass = 0.0;
+                for(int j=0;j<wordTopicsSize;j++) {
+                    double weight = coefficients[wordTopics[j]]*wordCounts[wordTopics[j]];
+                    wordWeights[j] = weight;
+                    wordMass += weight;
                 }
                 
-                int totalDocumentWords = r.getX().size();
-                totalDatasetWords+=totalDocumentWords;
-                for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                    Object wordPosition = entry.getKey();
-                    Object word = entry.getValue();
-            
-                    
-                    //remove the word from the dataset
-                    Integer topic = tmp_topicAssignmentOfDocumentWord.get(Arrays.asList(documentId, wordPosition));
-                    decrease(tmp_topicCounts, topic);
-                    decrease(tmp_documentTopicCounts, Arrays.asList(documentId, topic));
-                    decrease(tmp_topicWordCounts, Arrays.asList(topic, word));
-                        
-                    int numberOfDocumentWords = r.getX().size()-1;
-                    
-                    //compute the posteriors of the topics and sample from it
-                    AssociativeArray topicProbabilities = new AssociativeArray();
-                    for(int j=0;j<k;++j) {
-                        //get the counts from the current testing data
-                        List<Object> topicWordKey = Arrays.asList(j,word);
-                        Integer njw = tmp_topicWordCounts.get(topicWordKey);
-                        
-                        double enumerator;
-                        if(njw !=null) {
-                            enumerator = njw + beta;
-                        }
-                        else {
-                            enumerator = beta;
-                        }
-                        
-                        //get also the counts from the training data
-                        Integer njw_original = topicWordCounts.get(topicWordKey);
-                        if(njw_original!=null) {
-                            enumerator+=njw_original;
+                double totalMass = smoothingMass + documentMass + wordMass;
+                logLikelihood += Math.log(totalMass);
+                
+                //sample from the buckets
+                double u = rnd.nextDouble()*totalMass;
+                int newTopic = -1;
+                if(u < wordMass) {
+                    for(int j=0;j<wordTopicsSize;j++) {
+                        u -= wordWeights[j];
+                        if(u <= 0.0) {
+                            newTopic = wordTopics[j];
+                            break;
                         }
-                        
-                        Integer njd = tmp_documentTopicCounts.get(Arrays.asList(documentId, j));
-                        if(njd != null) {
-                            enumerator *= (njd + alpha);
+                    }
+                    if(newTopic < 0) {
+                        newTopic = wordTopics[wordTopicsSize-1]; //rounding errors
+                    }
+                }
+                else if((u -= wordMass) < documentMass) {
+                    for(int j=0;j<document.nonZeroSize;j++) {
+                        int t = document.nonZeroTopics[j];
+                        u -= document.topicCounts[t]*beta/(betaD + topicCounts[t]);
+                        if(u <= 0.0) {
+                            newTopic = t;
+                            break;
                         }
-                        else {
-                            enumerator *= alpha;
+                    }
+                    if(newTopic < 0) {
+                        newTopic = document.nonZeroTopics[document.nonZeroSize-1]; //rounding errors
+                    }
+                }
+                else {
+                    u -= documentMass;
+                    for(int t=0;t<k;t++) {
+                        u -= alpha*beta/(betaD + topicCounts[t]);
+                        if(u <= 0.0) {
+                            newTopic = t;
+                            break;
                         }
-                        
-                        //add the counts from testing data
-                        double denominator = tmp_topicCounts.get((Integer)j)+beta*d -1;
-                        //and the ones from training data
-                        denominator+=topicCounts.get((Integer)j);
-                        denominator *= numberOfDocumentWords+alpha*k;
-                        
-                        topicProbabilities.put(j, enumerator/denominator);
                     }
-                    
-                    perplexity += Math.log(Descriptives.sum(topicProbabilities.toFlatDataCollection()));
-                    
-                    //normalize probabilities
-                    //Descriptives.normalize(topicProbabilities);
-                    
-                    //sample from these probabilieis
-                    Integer newTopic = (Integer)SimpleRandomSampling.weightedSampling(topicProbabilities, 1, true).iterator().next();
-                    topic = newTopic; //new topic assignment
-                    
-                    
-                    //add back the word in the dataset
-                    tmp_topicAssignmentOfDocumentWord.put(Arrays.asList(documentId, wordPosition), topic);
-                    increase(tmp_topicCounts, topic);
-                    increase(tmp_documentTopicCounts, Arrays.asList(documentId, topic));
-                    increase(tmp_topicWordCounts, Arrays.asList(topic, word));
-                    
-                    topicAssignments.put(topic, TypeInference.toDouble(topicAssignments.get(topic))+1.0/totalDocumentWords);
+                    if(newTopic < 0) {
+                        newTopic = k-1; //rounding errors
+                    }
                 }
                 
-                Object mainTopic=MapMethods.selectMaxKeyValue(topicAssignments).getKey();
+                //add back the word in the dataset
+                removeFromBuckets(document, topicCounts, newTopic);
+                document.increase(newTopic);
+                table.add(wordId, newTopic, 1);
+                addToBuckets(document, topicCounts, newTopic);
                 
-                if(!mainTopic.equals(r.getYPredicted())) {
-                    ++changedCounter;
-                }                
-                newData._unsafe_set(rId, new Record(r.getX(), r.getY(), mainTopic, topicAssignments));
+                document.topics[i] = newTopic;
             }
-
-            perplexity=Math.exp(-perplexity/totalDatasetWords);
-            
-            logger.debug("Reassigned Records {} - Perplexity: {}", changedCounter, perplexity);
-            
-            if(changedCounter==0) {
-                break;
-            }            
+            document.logLikelihood = logLikelihood;
         }
         
-        //Drop the temporary Collection
-        storageEngine.dropBigMap("tmp_topicAssignmentOfDocumentWord", tmp_topicAssignmentOfDocumentWord);
-        storageEngine.dropBigMap("tmp_documentTopicCounts", tmp_documentTopicCounts);
-        storageEngine.dropBigMap("tmp_topicWordCounts", tmp_topicWordCounts);
-        storageEngine.dropBigMap("tmp_topicCounts", tmp_topicCounts);
+        private void removeFromBuckets(Document document, int[] topicCounts, int topic) {
+            double denominator = betaD + topicCounts[topic];
+            smoothingMass -= alpha*beta/denominator;
+            documentMass -= document.topicCounts[topic]*beta/denominator;
+        }
+        
+        private void addToBuckets(Document document, int[] topicCounts, int topic) {
+            double denominator = betaD + topicCounts[topic];
+            smoothingMass += alpha*beta/denominator;
+            documentMass += document.topicCounts[topic]*beta/denominator;
+            coefficients[topic] = (alpha + document.topicCounts[topic])/denominator;
+        }
     }
 }
@@ -58,4 +58,35 @@ public class ElasticNetRegularizer {
         return penalty;
     }
 
+    /**
+     * Updates the weights by applying the ElasticNet regularization. The weights 
+     * are provided as primitive arrays of equal length.
+     *
+     * @param l1
+     * @param l2
+     * @param learningRate
+     * @param weights
+     * @param newWeights
+     */
+    public static void updateWeights(double l1, double l2, double learningRate, double[] weights, double[] newWeights) {
+        L2Regularizer.updateWeights(l2, learningRate, weights, newWeights);
+        L1Regularizer.updateWeights(l1, learningRate, weights, newWeights);
+    }
+
+    /**
+     * Estimates the penalty by adding the ElasticNet regularization. The weights 
+     * are provided as a primitive array.
+     *
+     * @param l1
+     * @param l2
+     * @param weights
+     * @return
+     */
+    public static double estimatePenalty(double l1, double l2, double[] weights) {
+        double penalty = 0.0;
+        penalty += L2Regularizer.estimatePenalty(l2, weights);
+        penalty += L1Regularizer.estimatePenalty(l1, weights);
+        return penalty;
+    }
+
 }
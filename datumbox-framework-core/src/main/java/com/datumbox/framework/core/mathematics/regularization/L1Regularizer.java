@@ -80,4 +80,48 @@ public class L1Regularizer {
         return penalty;
     }
 
+    /**
+     * Updates the weights by applying the L1 regularization. The weights are
+     * provided as primitive arrays of equal length.
+     *
+     * @param l1
+     * @param learningRate
+     * @param weights
+     * @param newWeights
+     */
+    public static void updateWeights(double l1, double learningRate, double[] weights, double[] newWeights) {
+        if(l1 > 0.0) {
+            //SGDL1 (Clipping)
+            for(int i=0;i<newWeights.length;i++) {
+                double wi_k_intermediate = newWeights[i]; //the weight wi_k+1/2 as seen on the paper
+                if(wi_k_intermediate > 0.0) {
+                    newWeights[i] = Math.max(0.0, wi_k_intermediate - l1*wi_k_intermediate);
+                }
+                else if(wi_k_intermediate < 0.0) {
+                    newWeights[i] = Math.min(0.0, wi_k_intermediate + l1*wi_k_intermediate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates the penalty by adding the L1 regularization. The weights are
+     * provided as a primitive array.
+     *
+     * @param l1
+     * @param weights
+     * @return
+     */
+    public static double estimatePenalty(double l1, double[] weights) {
+        double penalty = 0.0;
+        if(l1 > 0.0) {
+            double sumAbsWeights = 0.0;
+            for(double w : weights) {
+                sumAbsWeights += Math.abs(w);
+            }
+            penalty = l1*sumAbsWeights;
+        }
+        return penalty;
+    }
+
 }
@@ -0,0 +1,310 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.statistics.descriptivestatistics;
+
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Mergeable sketch which estimates the quantiles of a stream of values in
+ * constant memory. It implements the merging variant of the t-digest: the
+ * values are collected in a buffer which is periodically merged with the sorted
+ * centroids, and the size of the centroids is bounded by an arcsine scale
+ * function so that the tails are estimated with higher accuracy than the
+ * center of the distribution.
+ * 
+ * References:
+ * https://github.com/tdunning/t-digest/blob/master/docs/t-digest-paper/histo.pdf
+ * 
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class QuantileDigest implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final double compression;
+    
+    private double[] means = new double[0];
+    
+    private double[] weights = new double[0];
+    
+    private int centroidCount = 0;
+    
+    private final double[] bufferMeans;
+    
+    private final double[] bufferWeights;
+    
+    private int bufferCount = 0;
+    
+    private double totalWeight = 0.0;
+    
+    private double min = Double.POSITIVE_INFINITY;
+    
+    private double max = Double.NEGATIVE_INFINITY;
+    
+    /**
+     * Default constructor which uses compression 100.
+     */
+    public QuantileDigest() {
+        this(100.0);
+    }
+    
+    /**
+     * Public constructor which receives the compression of the digest. Higher
+     * values lead to more accurate estimates and more centroids; the number of
+     * centroids is at most proportional to the compression.
+     * 
+     * @param compression 
+     */
+    public QuantileDigest(double compression) {
+        if(compression<=0.0) {
+            throw new IllegalArgumentException("The compression must be positive.");
+        }
+        this.compression = compression;
+        int bufferSize = 5*(int)Math.ceil(compression)+10;
+        bufferMeans = new double[bufferSize];
+        bufferWeights = new double[bufferSize];
+    }
+    
+    /**
+     * Adds a value in the digest.
+     * 
+     * @param value 
+     */
+    public void add(double value) {
+        add(value, 1.0);
+    }
+    
+    /**
+     * Adds a value with the provided weight in the digest.
+     * 
+     * @param value
+     * @param weight 
+     */
+    public void add(double value, double weight) {
+        if(Double.isNaN(value)) {
+            throw new IllegalArgumentException("The value can't be NaN.");
+        }
+        if(weight<=0.0) {
+            throw new IllegalArgumentException("The weight must be positive.");
+        }
+        
+        if(bufferCount==bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferCount] = value;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+    
+    /**
+     * Adds all the centroids of the other digest in this digest and returns it.
+     * The other digest is not modified.
+     * 
+     * @param other
+     * @return 
+     */
+    public QuantileDigest merge(QuantileDigest other) {
+        for(int i=0;i<other.centroidCount;i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        for(int i=0;i<other.bufferCount;i++) {
+            add(other.bufferMeans[i], other.bufferWeights[i]);
+        }
+        if(other.totalWeight>0.0) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        return this;
+    }
+    
+    /**
+     * Returns the total weight of the values of the digest.
+     * 
+     * @return 
+     */
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+    
+    /**
+     * Returns the number of centroids of the digest.
+     * 
+     * @return 
+     */
+    public int getCentroidCount() {
+        compress();
+        return centroidCount;
+    }
+    
+    /**
+     * Estimates the quantile of the values. The q must be between 0.0 and 1.0.
+     * 
+     * @param q
+     * @return 
+     */
+    public double quantile(double q) {
+        if(totalWeight==0.0) {
+            throw new IllegalArgumentException("The digest can't be empty.");
+        }
+        if(q<0.0 || q>1.0) {
+            throw new IllegalArgumentException("The quantile must be between 0.0 and 1.0.");
+        }
+        compress();
+        
+        if(centroidCount==1) {
+            return means[0];
+        }
+        
+        double target = q*totalWeight;
+        
+        //between the min and the center of the first centroid
+        double cumulative = weights[0]/2.0;
+        if(target<cumulative) {
+            return min + (means[0]-min)*target/cumulative;
+        }
+        
+        //between the centers of two consecutive centroids
+        for(int i=0;i<centroidCount-1;i++) {
+            double step = (weights[i]+weights[i+1])/2.0;
+            if(target<cumulative+step) {
+                return means[i] + (means[i+1]-means[i])*(target-cumulative)/step;
+            }
+            cumulative += step;
+        }
+        
+        //between the center of the last centroid and the max
+        double lastHalf = weights[centroidCount-1]/2.0;
+        double value = means[centroidCount-1] + (max-means[centroidCount-1])*(target-cumulative)/lastHalf;
+        return Math.min(value, max);
+    }
+    
+    /**
+     * Estimates the percentiles given a number of cutPoints. The keys of the
+     * result are the percentages of the percentiles, similarly to 
+     * Descriptives.percentiles().
+     * 
+     * @param cutPoints
+     * @return 
+     */
+    public AssociativeArray percentiles(int cutPoints) {
+        if(cutPoints<=0) {
+            throw new IllegalArgumentException("The cutPoints must be positive.");
+        }
+        
+        AssociativeArray percentiles = new AssociativeArray();
+        for(int i=1;i<cutPoints;i++) {
+            double perc = i/(double)cutPoints;
+            percentiles.put(100*perc, quantile(perc));
+        }
+        return percentiles;
+    }
+    
+    /**
+     * Returns the minimum value of the digest.
+     * 
+     * @return 
+     */
+    public double getMin() {
+        return min;
+    }
+    
+    /**
+     * Returns the maximum value of the digest.
+     * 
+     * @return 
+     */
+    public double getMax() {
+        return max;
+    }
+    
+    /**
+     * Merges the buffered values with the centroids.
+     */
+    private void compress() {
+        if(bufferCount==0) {
+            return;
+        }
+        
+        //sort the centroids and the buffered values together
+        int n = centroidCount+bufferCount;
+        double[] allMeans = new double[n];
+        double[] allWeights = new double[n];
+        System.arraycopy(means, 0, allMeans, 0, centroidCount);
+        System.arraycopy(weights, 0, allWeights, 0, centroidCount);
+        System.arraycopy(bufferMeans, 0, allMeans, centroidCount, bufferCount);
+        System.arraycopy(bufferWeights, 0, allWeights, centroidCount, bufferCount);
+        
+        Integer[] order = new Integer[n];
+        for(int i=0;i<n;i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i1, i2) -> Double.compare(allMeans[i1], allMeans[i2]));
+        
+        //merge the neighbouring centroids as long as the size limit is respected
+        double[] newMeans = new double[n];
+        double[] newWeights = new double[n];
+        int count = 0;
+        
+        double currentMean = allMeans[order[0]];
+        double currentWeight = allWeights[order[0]];
+        double weightSoFar = 0.0;
+        double kLeft = scale(0.0);
+        for(int j=1;j<n;j++) {
+            int i = order[j];
+            double qRight = (weightSoFar+currentWeight+allWeights[i])/totalWeight;
+            if(scale(qRight)-kLeft<=1.0) {
+                currentWeight += allWeights[i];
+                currentMean += (allMeans[i]-currentMean)*allWeights[i]/currentWeight;
+            }
+            else {
+                newMeans[count] = currentMean;
+                newWeights[count] = currentWeight;
+                count++;
+                
+                weightSoFar += currentWeight;
+                kLeft = scale(weightSoFar/totalWeight);
+                currentMean = allMeans[i];
+                currentWeight = allWeights[i];
+            }
+        }
+        newMeans[count] = currentMean;
+        newWeights[count] = currentWeight;
+        count++;
+        
+        means = Arrays.copyOf(newMeans, count);
+        weights = Arrays.copyOf(newWeights, count);
+        centroidCount = count;
+        bufferCount = 0;
+    }
+    
+    /**
+     * The arcsine scale function which maps the quantiles to the indexes of
+     * the centroids.
+     * 
+     * @param q
+     * @return 
+     */
+    private double scale(double q) {
+        return compression/(2.0*Math.PI)*Math.asin(2.0*Math.min(q, 1.0)-1.0);
+    }
+    
+}
@@ -0,0 +1,443 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.statistics.descriptivestatistics;
+
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+import com.datumbox.framework.common.dataobjects.TypeInference;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.stream.Collector;
+
+/**
+ * Accumulator which estimates the Descriptive Statistics of a stream of values
+ * in a single pass and constant memory. The moments are updated with the
+ * numerically stable formulas of Welford and Terriberry, the quantiles are
+ * estimated with a QuantileDigest and the most frequent values are tracked with
+ * TopKFrequencies. Accumulators of different partitions or threads can be
+ * combined with merge(), and the collector() can be used directly on parallel
+ * streams. The numeric statistics use the same formulas as Descriptives while
+ * the nulls are ignored.
+ * 
+ * Example:
+ * <pre>
+ * StreamingDescriptives sd = new StreamingDescriptives();
+ * sd.addAll(dataframe.getXColumn("column"));
+ * double kurtosis = sd.getKurtosis();
+ * </pre>
+ * 
+ * References:
+ * https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
+ * http://people.xiph.org/~tterribe/notes/homs.html
+ * 
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class StreamingDescriptives implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private long n = 0L;
+    
+    private double sum = 0.0;
+    
+    private double mean = 0.0;
+    
+    //sums of the powers of the differences from the mean
+    private double m2 = 0.0;
+    private double m3 = 0.0;
+    private double m4 = 0.0;
+    
+    private double min = Double.POSITIVE_INFINITY;
+    
+    private double max = Double.NEGATIVE_INFINITY;
+    
+    private double minAbsolute = Double.POSITIVE_INFINITY;
+    
+    private double maxAbsolute = 0.0;
+    
+    private final QuantileDigest quantileDigest;
+    
+    private final TopKFrequencies topKFrequencies;
+    
+    /**
+     * Default constructor which uses a QuantileDigest with compression 100
+     * and tracks the frequencies of the 100 most frequent values.
+     */
+    public StreamingDescriptives() {
+        this(100.0, 100);
+    }
+    
+    /**
+     * Public constructor which receives the compression of the QuantileDigest
+     * and the number of the most frequent values which are tracked.
+     * 
+     * @param compression
+     * @param topK 
+     */
+    public StreamingDescriptives(double compression, int topK) {
+        quantileDigest = new QuantileDigest(compression);
+        topKFrequencies = new TopKFrequencies(topK);
+    }
+    
+    /**
+     * Returns a Collector which accumulates the values of a stream, including
+     * parallel streams.
+     * 
+     * @return 
+     */
+    public static Collector<Object, ?, StreamingDescriptives> collector() {
+        return Collector.of(StreamingDescriptives::new, StreamingDescriptives::add, StreamingDescriptives::merge);
+    }
+    
+    /**
+     * Adds a value. Nulls are ignored, all values are counted in the frequencies
+     * and the numeric and boolean values are also used in the numeric statistics.
+     * 
+     * @param value 
+     */
+    public void add(Object value) {
+        if(value==null) {
+            return;
+        }
+        topKFrequencies.add(value);
+        if(value instanceof Number || value instanceof Boolean) {
+            addNumeric(TypeInference.toDouble(value));
+        }
+    }
+    
+    /**
+     * Adds all the values of the provided Iterable, such as the FlatDataList 
+     * returned by Dataframe.getXColumn().
+     * 
+     * @param values 
+     */
+    public void addAll(Iterable<?> values) {
+        for(Object value : values) {
+            add(value);
+        }
+    }
+    
+    /**
+     * Combines the statistics of the other accumulator with the ones of this
+     * accumulator and returns it. The other accumulator is not modified.
+     * 
+     * @param other
+     * @return 
+     */
+    public StreamingDescriptives merge(StreamingDescriptives other) {
+        topKFrequencies.merge(other.topKFrequencies);
+        if(other.n==0L) {
+            return this;
+        }
+        quantileDigest.merge(other.quantileDigest);
+        if(n==0L) {
+            n = other.n;
+            sum = other.sum;
+            mean = other.mean;
+            m2 = other.m2;
+            m3 = other.m3;
+            m4 = other.m4;
+        }
+        else {
+            double n1 = n;
+            double n2 = other.n;
+            double total = n1+n2;
+            double delta = other.mean-mean;
+            double delta2 = delta*delta;
+            
+            double newM4 = m4 + other.m4 
+                    + delta2*delta2*n1*n2*(n1*n1-n1*n2+n2*n2)/(total*total*total)
+                    + 6.0*delta2*(n1*n1*other.m2+n2*n2*m2)/(total*total)
+                    + 4.0*delta*(n1*other.m3-n2*m3)/total;
+            double newM3 = m3 + other.m3
+                    + delta2*delta*n1*n2*(n1-n2)/(total*total)
+                    + 3.0*delta*(n1*other.m2-n2*m2)/total;
+            double newM2 = m2 + other.m2 + delta2*n1*n2/total;
+            
+            n += other.n;
+            sum += other.sum;
+            mean += delta*n2/total;
+            m2 = newM2;
+            m3 = newM3;
+            m4 = newM4;
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        minAbsolute = Math.min(minAbsolute, other.minAbsolute);
+        maxAbsolute = Math.max(maxAbsolute, other.maxAbsolute);
+        return this;
+    }
+    
+    /**
+     * Returns the number of numeric values.
+     * 
+     * @return 
+     */
+    public long getCount() {
+        return n;
+    }
+    
+    /**
+     * Returns the sum of the numeric values.
+     * 
+     * @return 
+     */
+    public double getSum() {
+        assertMoreThan(0);
+        return sum;
+    }
+    
+    /**
+     * Returns the simple mean.
+     * 
+     * @return 
+     */
+    public double getMean() {
+        assertMoreThan(0);
+        return mean;
+    }
+    
+    /**
+     * Returns the Standard Error of Mean under SRS.
+     * 
+     * @return 
+     */
+    public double getMeanSE() {
+        return getStd(true)/Math.sqrt(n);
+    }
+    
+    /**
+     * Returns the minimum.
+     * 
+     * @return 
+     */
+    public double getMin() {
+        assertMoreThan(0);
+        return min;
+    }
+    
+    /**
+     * Returns the maximum.
+     * 
+     * @return 
+     */
+    public double getMax() {
+        assertMoreThan(0);
+        return max;
+    }
+    
+    /**
+     * Returns the minimum absolute value.
+     * 
+     * @return 
+     */
+    public double getMinAbsolute() {
+        assertMoreThan(0);
+        return minAbsolute;
+    }
+    
+    /**
+     * Returns the maximum absolute value.
+     * 
+     * @return 
+     */
+    public double getMaxAbsolute() {
+        assertMoreThan(0);
+        return maxAbsolute;
+    }
+    
+    /**
+     * Returns the range.
+     * 
+     * @return 
+     */
+    public double getRange() {
+        return getMax()-getMin();
+    }
+    
+    /**
+     * Returns the Variance.
+     * 
+     * @param isSample
+     * @return 
+     */
+    public double getVariance(boolean isSample) {
+        assertMoreThan(1);
+        return m2/(isSample?n-1.0:n);
+    }
+    
+    /**
+     * Returns the Standard Deviation.
+     * 
+     * @param isSample
+     * @return 
+     */
+    public double getStd(boolean isSample) {
+        return Math.sqrt(getVariance(isSample));
+    }
+    
+    /**
+     * Returns the central Moment R. Only the moments 2, 3 and 4 are supported.
+     * 
+     * @param r
+     * @return 
+     */
+    public double getMoment(int r) {
+        assertMoreThan(1);
+        if(r==2) {
+            return m2/n;
+        }
+        else if(r==3) {
+            return m3/n;
+        }
+        else if(r==4) {
+            return m4/n;
+        }
+        throw new IllegalArgumentException("Only the moments 2, 3 and 4 are supported.");
+    }
+    
+    /**
+     * Returns the Kurtosis using the formula of Descriptives.kurtosis().
+     * 
+     * @return 
+     */
+    public double getKurtosis() {
+        assertMoreThan(3);
+        
+        double s = m2/(n-1.0);
+        double kurtosis=(n*(n+1.0)*m4-3*m2*m2*(n-1.0))/((n-1.0)*(n-2.0)*(n-3.0)*s*s);
+        
+        return kurtosis;
+    }
+    
+    /**
+     * Returns the Skewness using the formula of Descriptives.skewness().
+     * 
+     * @return 
+     */
+    public double getSkewness() {
+        assertMoreThan(1);
+        
+        double variance = m2/n;
+        double skewness=(m3/n)/Math.pow(variance, 3.0/2.0);
+        
+        return skewness;
+    }
+    
+    /**
+     * Returns the estimated median.
+     * 
+     * @return 
+     */
+    public double getMedian() {
+        return getQuantile(0.5);
+    }
+    
+    /**
+     * Returns the estimated quantile. The q must be between 0.0 and 1.0.
+     * 
+     * @param q
+     * @return 
+     */
+    public double getQuantile(double q) {
+        assertMoreThan(0);
+        return quantileDigest.quantile(q);
+    }
+    
+    /**
+     * Returns the estimated percentiles given a number of cutPoints.
+     * 
+     * @param cutPoints
+     * @return 
+     */
+    public AssociativeArray getPercentiles(int cutPoints) {
+        assertMoreThan(0);
+        return quantileDigest.percentiles(cutPoints);
+    }
+    
+    /**
+     * Returns the estimated quartiles.
+     * 
+     * @return 
+     */
+    public AssociativeArray getQuartiles() {
+        return getPercentiles(4);
+    }
+    
+    /**
+     * Returns the most frequent values and their estimated frequencies in 
+     * descending order.
+     * 
+     * @return 
+     */
+    public Map<Object, Long> getTopFrequencies() {
+        return topKFrequencies.getTopFrequencies();
+    }
+    
+    /**
+     * Getter for the QuantileDigest of the values.
+     * 
+     * @return 
+     */
+    public QuantileDigest getQuantileDigest() {
+        return quantileDigest;
+    }
+    
+    /**
+     * Getter for the TopKFrequencies of the values.
+     * 
+     * @return 
+     */
+    public TopKFrequencies getTopKFrequencies() {
+        return topKFrequencies;
+    }
+    
+    /**
+     * Updates the statistics with a numeric value.
+     * 
+     * @param value 
+     */
+    private void addNumeric(double value) {
+        long n1 = n;
+        n++;
+        double delta = value-mean;
+        double deltaN = delta/n;
+        double deltaN2 = deltaN*deltaN;
+        double term1 = delta*deltaN*n1;
+        mean += deltaN;
+        m4 += term1*deltaN2*(n*n-3.0*n+3.0) + 6.0*deltaN2*m2 - 4.0*deltaN*m3;
+        m3 += term1*deltaN*(n-2.0) - 3.0*deltaN*m2;
+        m2 += term1;
+        
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        double absolute = Math.abs(value);
+        minAbsolute = Math.min(minAbsolute, absolute);
+        maxAbsolute = Math.max(maxAbsolute, absolute);
+        
+        quantileDigest.add(value);
+    }
+    
+    private void assertMoreThan(int elements) {
+        if(n<=elements) {
+            if(elements==0) {
+                throw new IllegalArgumentException("The provided collection can't be empty.");
+            }
+            throw new IllegalArgumentException("The provided collection must have more than "+elements+" elements.");
+        }
+    }
+    
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.statistics.descriptivestatistics;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Mergeable sketch which tracks the most frequent items of a stream in constant
+ * memory using the Space-Saving algorithm. It keeps at most capacity counters
+ * and, when a new item arrives while all the counters are used, it replaces
+ * the item with the minimum count. The reported counts overestimate the real
+ * ones by at most the error of each item, and every item with frequency larger
+ * than totalCount/capacity is guaranteed to be tracked.
+ * 
+ * References:
+ * http://www.cs.ucsb.edu/research/tech-reports/2005-23
+ * http://www.cs.utah.edu/~jeffp/papers/merge-summ.pdf
+ * 
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class TopKFrequencies implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final int capacity;
+    
+    /**
+     * The count and the maximum overestimation of every tracked item.
+     */
+    private final Map<Object, long[]> counters = new HashMap<>();
+    
+    /**
+     * The tracked items grouped by their counts.
+     */
+    private final TreeMap<Long, Set<Object>> buckets = new TreeMap<>();
+    
+    private long totalCount = 0L;
+    
+    /**
+     * Default constructor which tracks up to 100 items.
+     */
+    public TopKFrequencies() {
+        this(100);
+    }
+    
+    /**
+     * Public constructor which receives the maximum number of tracked items.
+     * 
+     * @param capacity 
+     */
+    public TopKFrequencies(int capacity) {
+        if(capacity<=0) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Adds an item in the sketch.
+     * 
+     * @param item 
+     */
+    public void add(Object item) {
+        add(item, 1L);
+    }
+    
+    /**
+     * Adds an item with the provided count in the sketch.
+     * 
+     * @param item
+     * @param count 
+     */
+    public void add(Object item, long count) {
+        if(count<=0L) {
+            throw new IllegalArgumentException("The count must be positive.");
+        }
+        totalCount += count;
+        
+        long[] counter = counters.get(item);
+        if(counter!=null) {
+            removeFromBucket(item, counter[0]);
+            counter[0] += count;
+            addToBucket(item, counter[0]);
+        }
+        else if(counters.size()<capacity) {
+            counters.put(item, new long[]{count, 0L});
+            addToBucket(item, count);
+        }
+        else {
+            //replace the item with the minimum count
+            Map.Entry<Long, Set<Object>> minBucket = buckets.firstEntry();
+            long minCount = minBucket.getKey();
+            Object evictedItem = minBucket.getValue().iterator().next();
+            removeFromBucket(evictedItem, minCount);
+            counters.remove(evictedItem);
+            
+            counters.put(item, new long[]{minCount+count, minCount});
+            addToBucket(item, minCount+count);
+        }
+    }
+    
+    /**
+     * Adds the counts of the other sketch in this sketch and returns it. The
+     * items which are missing from a full sketch are assumed to have its
+     * minimum count. The other sketch is not modified.
+     * 
+     * @param other
+     * @return 
+     */
+    public TopKFrequencies merge(TopKFrequencies other) {
+        long thisMissing = getMissingCount();
+        long otherMissing = other.getMissingCount();
+        
+        Map<Object, long[]> combined = new HashMap<>();
+        for(Map.Entry<Object, long[]> e : counters.entrySet()) {
+            long[] otherCounter = other.counters.get(e.getKey());
+            long[] counter = e.getValue();
+            if(otherCounter!=null) {
+                combined.put(e.getKey(), new long[]{counter[0]+otherCounter[0], counter[1]+otherCounter[1]});
+            }
+            else {
+                combined.put(e.getKey(), new long[]{counter[0]+otherMissing, counter[1]+otherMissing});
+            }
+        }
+        for(Map.Entry<Object, long[]> e : other.counters.entrySet()) {
+            if(!counters.containsKey(e.getKey())) {
+                long[] counter = e.getValue();
+                combined.put(e.getKey(), new long[]{counter[0]+thisMissing, counter[1]+thisMissing});
+            }
+        }
+        
+        //keep the items with the largest counts
+        List<Map.Entry<Object, long[]>> entries = new ArrayList<>(combined.entrySet());
+        entries.sort((e1, e2) -> Long.compare(e2.getValue()[0], e1.getValue()[0]));
+        
+        counters.clear();
+        buckets.clear();
+        for(Map.Entry<Object, long[]> e : entries.subList(0, Math.min(capacity, entries.size()))) {
+            counters.put(e.getKey(), e.getValue());
+            addToBucket(e.getKey(), e.getValue()[0]);
+        }
+        totalCount += other.totalCount;
+        
+        return this;
+    }
+    
+    /**
+     * Returns the tracked items and their estimated counts in descending order.
+     * 
+     * @return 
+     */
+    public Map<Object, Long> getTopFrequencies() {
+        Map<Object, Long> topFrequencies = new LinkedHashMap<>();
+        for(Map.Entry<Long, Set<Object>> bucket : buckets.descendingMap().entrySet()) {
+            for(Object item : bucket.getValue()) {
+                topFrequencies.put(item, bucket.getKey());
+            }
+        }
+        return topFrequencies;
+    }
+    
+    /**
+     * Returns the estimated count of the item. For items which are not tracked
+     * it returns the maximum count that they could have.
+     * 
+     * @param item
+     * @return 
+     */
+    public long getCount(Object item) {
+        long[] counter = counters.get(item);
+        return counter!=null?counter[0]:getMissingCount();
+    }
+    
+    /**
+     * Returns the maximum overestimation of the count of the item.
+     * 
+     * @param item
+     * @return 
+     */
+    public long getError(Object item) {
+        long[] counter = counters.get(item);
+        return counter!=null?counter[1]:getMissingCount();
+    }
+    
+    /**
+     * Returns the total count of the items added in the sketch.
+     * 
+     * @return 
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+    
+    /**
+     * Returns the maximum count of the items that are not tracked.
+     * 
+     * @return 
+     */
+    private long getMissingCount() {
+        return counters.size()<capacity?0L:buckets.firstKey();
+    }
+    
+    private void addToBucket(Object item, long count) {
+        buckets.computeIfAbsent(count, k -> new LinkedHashSet<>()).add(item);
+    }
+    
+    private void removeFromBucket(Object item, long count) {
+        Set<Object> bucket = buckets.get(count);
+        bucket.remove(item);
+        if(bucket.isEmpty()) {
+            buckets.remove(count);
+        }
+    }
+    
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.dataobjects;
+
+import com.datumbox.framework.tests.Constants;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for CSRRealMatrix.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class CSRRealMatrixTest extends AbstractTest {
+    
+    private double[][] generateData() {
+        return new double[][] {
+            {0.0, 2.0, 0.0, 1.0},
+            {0.0, 0.0, 0.0, 0.0},
+            {3.0, 0.0, 0.0, -1.0}
+        };
+    }
+    
+    private CSRRealMatrix generateMatrix() {
+        //coordinates provided in arbitrary order
+        int[] rows = {2, 0, 2, 0};
+        int[] columns = {3, 3, 0, 1};
+        double[] values = {-1.0, 1.0, 3.0, 2.0};
+        return CSRRealMatrix.fromCoordinates(3, 4, rows, columns, values, values.length);
+    }
+    
+    /**
+     * Test of getEntry method, of class CSRRealMatrix.
+     */
+    @Test
+    public void testGetEntry() {
+        logger.info("getEntry");
+        CSRRealMatrix instance = generateMatrix();
+        
+        assertEquals(4, instance.getNonZeroCount());
+        assertEquals(new Array2DRowRealMatrix(generateData()), instance);
+    }
+    
+    /**
+     * Test of setEntry method, of class CSRRealMatrix.
+     */
+    @Test
+    public void testSetEntry() {
+        logger.info("setEntry");
+        CSRRealMatrix instance = generateMatrix();
+        RealMatrix expResult = new Array2DRowRealMatrix(generateData());
+        
+        instance.setEntry(1, 2, 5.0);
+        expResult.setEntry(1, 2, 5.0);
+        instance.setEntry(0, 0, 4.0);
+        expResult.setEntry(0, 0, 4.0);
+        instance.addToEntry(2, 3, 1.0);
+        expResult.addToEntry(2, 3, 1.0);
+        instance.setEntry(1, 1, 0.0);
+        
+        assertEquals(expResult, instance);
+        assertEquals(6, instance.getNonZeroCount());
+    }
+    
+    /**
+     * Test of multiplication methods, of class CSRRealMatrix.
+     */
+    @Test
+    public void testMultiply() {
+        logger.info("multiply");
+        CSRRealMatrix instance = generateMatrix();
+        RealMatrix dense = new Array2DRowRealMatrix(generateData());
+        
+        assertEquals(dense.transpose(), instance.transpose());
+        assertEquals(dense.transpose().multiply(dense), instance.transpose().multiply(instance));
+        
+        double[] v = {1.0, -2.0, 0.5, 3.0};
+        assertArrayEquals(dense.operate(v), instance.operate(v), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(dense.operate(new ArrayRealVector(v)), instance.operate(new ArrayRealVector(v)));
+        
+        double[] u = {2.0, 1.0, -1.0};
+        assertArrayEquals(dense.preMultiply(u), instance.preMultiply(u), Constants.DOUBLE_ACCURACY_HIGH);
+    }
+    
+}
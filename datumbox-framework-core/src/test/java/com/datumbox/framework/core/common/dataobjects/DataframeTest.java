@@ -20,6 +20,8 @@ import com.datumbox.framework.common.dataobjects.AssociativeArray;
 import com.datumbox.framework.common.dataobjects.FlatDataCollection;
 import com.datumbox.framework.common.dataobjects.FlatDataList;
 import com.datumbox.framework.common.dataobjects.TypeInference;
+import com.datumbox.framework.storage.inmemory.InMemoryConfiguration;
+import com.datumbox.framework.tests.Constants;
 import com.datumbox.framework.tests.abstracts.AbstractTest;
 import org.junit.Test;
 
@@ -27,9 +29,13 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertArrayEquals;
@@ -124,6 +130,81 @@ public class DataframeTest extends AbstractTest {
         dataset.close();
     }
     
+    /**
+     * Test of parseCSVFile method with columnar layout, of class Dataframe.Builder.
+     */
+    @Test
+    public void testParseCSVFileColumnar() {
+        logger.info("parseCSVFileColumnar");
+        
+        Configuration configuration = getConfiguration();
+        
+        LinkedHashMap<String, TypeInference.DataType> headerDataTypes = new LinkedHashMap<>();
+        headerDataTypes.put("city", TypeInference.DataType.CATEGORICAL);
+        headerDataTypes.put("temperature", TypeInference.DataType.NUMERICAL);
+        headerDataTypes.put("is_sunny", TypeInference.DataType.BOOLEAN);
+        headerDataTypes.put("traffic_rank", TypeInference.DataType.ORDINAL);
+        headerDataTypes.put("is_capital", TypeInference.DataType.BOOLEAN);
+        headerDataTypes.put("name_of_port", TypeInference.DataType.CATEGORICAL);
+        headerDataTypes.put("metro_population", TypeInference.DataType.NUMERICAL);
+        
+        Dataframe expResult;
+        Dataframe dataset;
+        try (Reader fileReader1 = new InputStreamReader(this.getClass().getClassLoader().getResourceAsStream("datasets/cities.csv"), "UTF-8");
+             Reader fileReader2 = new InputStreamReader(this.getClass().getClassLoader().getResourceAsStream("datasets/cities.csv"), "UTF-8")) {
+            expResult = Dataframe.Builder.parseCSVFile(fileReader1, "metro_population", headerDataTypes, ',', '"', "\r\n", null, null, configuration);
+            dataset = Dataframe.Builder.parseCSVFile(fileReader2, "metro_population", headerDataTypes, ',', '"', "\r\n", null, null, configuration, true);
+        }
+        catch(UncheckedIOException | IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        
+        assertEquals(false, expResult.isColumnar());
+        assertEquals(true, dataset.isColumnar());
+        assertEquals(expResult.size(), dataset.size());
+        for(Integer rId : expResult.index()) {
+            assertEquals(expResult.get(rId), dataset.get(rId));
+        }
+        
+        assertEquals(expResult.getXColumn("temperature"), dataset.getXColumn("temperature"));
+        assertEquals(expResult.getXColumn("city"), dataset.getXColumn("city"));
+        assertEquals(expResult.getYColumn(), dataset.getYColumn());
+        
+        AssociativeArray xData = new AssociativeArray();
+        xData.put("city", "Paris");
+        xData.put("temperature", 1);
+        Record r = new Record(xData, 2.0, "Paris", null);
+        dataset.set(1, r);
+        dataset.remove(0);
+        
+        assertEquals(3, dataset.size());
+        assertEquals(r, dataset.get(1));
+        assertEquals("Paris", dataset.get(1).getYPredicted());
+        assertEquals(null, dataset.get(0));
+        assertEquals(new FlatDataList(Arrays.asList(1, -12.0, null)), dataset.getXColumn("temperature"));
+        
+        Dataframe copy = dataset.copy();
+        assertEquals(true, copy.isColumnar());
+        assertEquals(dataset.get(3), copy.get(3));
+        
+        copy.dropXColumns(new HashSet<>(Arrays.asList("city", "name_of_port")));
+        copy.set(2, new Record(copy.get(2).getX(), 5.0));
+        copy.remove(3);
+        Map<Object, Integer> featureIdsReference = new HashMap<>();
+        DataframeMatrix matrix = DataframeMatrix.newInstance(copy, true, null, featureIdsReference);
+        int temperatureId = featureIdsReference.get("temperature");
+        int rankId = featureIdsReference.get("traffic_rank");
+        assertEquals(1.0, matrix.getX().getEntry(0, temperatureId), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(-12.0, matrix.getX().getEntry(1, temperatureId), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(1.0, matrix.getX().getEntry(1, rankId), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(2.0, matrix.getY().getEntry(0), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(5.0, matrix.getY().getEntry(1), Constants.DOUBLE_ACCURACY_HIGH);
+        
+        copy.close();
+        expResult.close();
+        dataset.close();
+    }
+    
     /**
      * Test of copyCollection2Array method, of class Dataframe.
      */
@@ -275,4 +356,105 @@ public class DataframeTest extends AbstractTest {
         dataset.close();
     }
 
+    
+    /**
+     * Test of getSubset method, of class Dataframe.
+     */
+    @Test
+    public void testGetSubset() {
+        logger.info("getSubset");
+        
+        Configuration configuration = getConfiguration();
+        
+        Dataframe dataset = new Dataframe(configuration);
+        for(int i=0;i<5;i++) {
+            AssociativeArray xData = new AssociativeArray();
+            xData.put("x", (double)i);
+            if(i==3) {
+                xData.put("rare", true);
+            }
+            dataset.add(new Record(xData, i%2==0));
+        }
+        
+        Dataframe subset = dataset.getSubset(new FlatDataList(Arrays.asList(4, 1, 1)));
+        
+        assertEquals(3, subset.size());
+        List<Integer> ids = new ArrayList<>();
+        for(Integer rId : subset.index()) {
+            ids.add(rId);
+        }
+        assertEquals(Arrays.asList(0, 1, 2), ids);
+        assertEquals(4.0, subset.get(0).getX().get("x"));
+        assertEquals(1.0, subset.get(2).getX().get("x"));
+        assertEquals(new HashSet<>(Arrays.asList("x")), subset.getXDataTypes().keySet());
+        assertEquals(TypeInference.DataType.BOOLEAN, subset.getYDataType());
+        
+        //modifications on the view do not affect the parent
+        subset.set(1, new Record(subset.get(1).getX(), true, false, null));
+        subset.remove(0);
+        Integer newId = subset.addRecord(new Record(new AssociativeArray(), false));
+        
+        assertEquals(Integer.valueOf(3), newId);
+        assertEquals(3, subset.size());
+        assertEquals(false, subset.get(1).getYPredicted());
+        assertEquals(null, subset.get(0));
+        FlatDataList column = subset.getXColumn("x");
+        assertEquals(Arrays.asList(1.0, 1.0, null), Arrays.asList(column.get(0), column.get(1), column.get(2)));
+        assertEquals(null, dataset.get(1).getYPredicted());
+        assertEquals(5, dataset.size());
+        
+        //the view can be saved independently of the parent
+        String storageName = this.getClass().getSimpleName();
+        subset.save(storageName);
+        subset.close();
+        dataset.close();
+        
+        subset = Dataframe.Builder.load(storageName, configuration);
+        assertEquals(3, subset.size());
+        assertEquals(false, subset.get(1).getYPredicted());
+        subset.delete();
+    }
+
+
+    /**
+     * Test of modifying a Dataframe which is loaded from memory mapped BigMaps.
+     */
+    @Test
+    public void testModifyMemoryMapped() {
+        logger.info("testModifyMemoryMapped");
+        
+        Configuration configuration = getConfiguration();
+        InMemoryConfiguration storageConfiguration = new InMemoryConfiguration();
+        storageConfiguration.setMemoryMapped(true);
+        configuration.setStorageConfiguration(storageConfiguration);
+        
+        Dataframe dataset = new Dataframe(configuration);
+        for(int i=0;i<3;i++) {
+            AssociativeArray xData = new AssociativeArray();
+            xData.put("x", (double)i);
+            dataset.add(new Record(xData, i%2==0));
+        }
+        
+        String storageName = this.getClass().getSimpleName() + "MemoryMapped";
+        dataset.save(storageName);
+        dataset.close();
+        
+        dataset = Dataframe.Builder.load(storageName, configuration);
+        assertEquals(3, dataset.size());
+        assertEquals(1.0, dataset.get(1).getX().get("x"));
+        
+        dataset.set(1, new Record(dataset.get(1).getX(), false, true, null));
+        dataset.remove(0);
+        AssociativeArray xData = new AssociativeArray();
+        xData.put("x", 3.0);
+        Integer newId = dataset.addRecord(new Record(xData, true));
+        
+        assertEquals(Integer.valueOf(3), newId);
+        assertEquals(3, dataset.size());
+        assertEquals(null, dataset.get(0));
+        assertEquals(true, dataset.get(1).getYPredicted());
+        assertEquals(3.0, dataset.get(3).getX().get("x"));
+        dataset.delete();
+    }
+
 }
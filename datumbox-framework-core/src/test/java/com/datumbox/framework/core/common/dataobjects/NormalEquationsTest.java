@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.dataobjects;
+
+import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+import com.datumbox.framework.tests.Constants;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.stat.correlation.Covariance;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for NormalEquations.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class NormalEquationsTest extends AbstractTest {
+    
+    /**
+     * Test of newInstance method, of class NormalEquations.
+     */
+    @Test
+    public void testNewInstance() {
+        logger.info("newInstance");
+        
+        Configuration configuration = getConfiguration();
+        configuration.getConcurrencyConfiguration().setParallelized(true);
+        configuration.getConcurrencyConfiguration().setMaxNumberOfThreadsPerTask(2);
+        
+        Random rnd = new Random(42);
+        Dataframe dataset = new Dataframe(configuration);
+        for(int i=0;i<1000;i++) {
+            AssociativeArray xData = new AssociativeArray();
+            xData.put("a", rnd.nextGaussian());
+            if(i%3==0) {
+                xData.put("b", rnd.nextGaussian()); //sparse column
+            }
+            xData.put("c", (i%2==0));
+            dataset.add(new Record(xData, rnd.nextDouble()));
+        }
+        
+        Map<Object, Integer> expFeatureIds = new HashMap<>();
+        DataframeMatrix matrix = DataframeMatrix.newInstance(dataset, true, null, expFeatureIds);
+        RealMatrix X = matrix.getX();
+        RealVector Y = matrix.getY();
+        
+        Map<Object, Integer> featureIds = new HashMap<>();
+        NormalEquations instance = NormalEquations.newInstance(dataset, true, featureIds);
+        
+        assertEquals(expFeatureIds, featureIds);
+        assertEquals(1000, instance.getN());
+        RealMatrix expXtX = X.transpose().multiply(X);
+        for(int i=0;i<expXtX.getRowDimension();i++) {
+            assertArrayEquals(expXtX.getRow(i), instance.getXtX().getRow(i), Constants.DOUBLE_ACCURACY_HIGH);
+        }
+        assertArrayEquals(X.preMultiply(Y).toArray(), instance.getXtY().toArray(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Y.dotProduct(Y), instance.getYtY(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(1000.0, instance.getColumnSums().getEntry(0), Constants.DOUBLE_ACCURACY_HIGH);
+        
+        dataset.close();
+    }
+    
+    /**
+     * Test of newCenteredInstance method, of class NormalEquations.
+     */
+    @Test
+    public void testNewCenteredInstance() {
+        logger.info("newCenteredInstance");
+        
+        Configuration configuration = getConfiguration();
+        configuration.getConcurrencyConfiguration().setParallelized(true);
+        configuration.getConcurrencyConfiguration().setMaxNumberOfThreadsPerTask(2);
+        
+        //the large offsets make the uncentered X'X lose all the precision of the covariance
+        Random rnd = new Random(42);
+        Dataframe dataset = new Dataframe(configuration);
+        for(int i=0;i<1000;i++) {
+            AssociativeArray xData = new AssociativeArray();
+            xData.put("a", 1e9 + rnd.nextGaussian());
+            xData.put("b", -1e8 + 2.0*rnd.nextGaussian());
+            if(i%3==0) {
+                xData.put("c", rnd.nextGaussian()); //sparse column
+            }
+            dataset.add(new Record(xData, null));
+        }
+        
+        Map<Object, Integer> expFeatureIds = new HashMap<>();
+        DataframeMatrix matrix = DataframeMatrix.newInstance(dataset, false, null, expFeatureIds);
+        RealMatrix expCovariance = new Covariance(matrix.getX()).getCovarianceMatrix();
+        
+        Map<Object, Integer> featureIds = new HashMap<>();
+        NormalEquations instance = NormalEquations.newCenteredInstance(dataset, featureIds);
+        
+        assertEquals(expFeatureIds, featureIds);
+        assertEquals(1000, instance.getN());
+        RealMatrix covariance = instance.getXtX().scalarMultiply(1.0/(instance.getN()-1.0));
+        for(int i=0;i<expCovariance.getRowDimension();i++) {
+            assertArrayEquals(expCovariance.getRow(i), covariance.getRow(i), Constants.DOUBLE_ACCURACY_MEDIUM);
+        }
+        assertEquals(1e12, instance.getColumnSums().getEntry(featureIds.get("a")), 1e3);
+        
+        dataset.close();
+    }
+    
+}
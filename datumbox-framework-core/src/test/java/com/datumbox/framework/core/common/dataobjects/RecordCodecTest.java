@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.dataobjects;
+
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+import com.datumbox.framework.common.storage.serializers.BinarySerializer;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test cases for RecordCodec.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class RecordCodecTest extends AbstractTest {
+
+    /**
+     * Encodes the object with the BinarySerializer and decodes it back.
+     *
+     * @param obj
+     * @return
+     * @throws IOException
+     */
+    private Object roundTrip(Object obj) throws IOException {
+        BinarySerializer serializer = new BinarySerializer();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bos)) {
+            serializer.writeValue(out, obj);
+        }
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            return serializer.readValue(in);
+        }
+    }
+
+    /**
+     * Test of write and read methods, of class RecordCodec.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        logger.info("testWriteRead");
+
+        AssociativeArray xData = new AssociativeArray();
+        xData.put("a", 1.0);
+        xData.put(2, "b");
+        xData.put("c", null);
+        AssociativeArray yPredictedProbabilities = new AssociativeArray();
+        yPredictedProbabilities.put("yes", 0.75);
+        yPredictedProbabilities.put("no", 0.25);
+
+        Record r = new Record(xData, "yes", "no", yPredictedProbabilities);
+        Record result = (Record)roundTrip(r);
+        assertEquals(r, result);
+        assertEquals("no", result.getYPredicted());
+        assertEquals(yPredictedProbabilities, result.getYPredictedProbabilities());
+
+        Record empty = new Record(new AssociativeArray(), null);
+        Record emptyResult = (Record)roundTrip(empty);
+        assertEquals(empty, emptyResult);
+        assertNull(emptyResult.getYPredicted());
+        assertNull(emptyResult.getYPredictedProbabilities());
+    }
+
+}
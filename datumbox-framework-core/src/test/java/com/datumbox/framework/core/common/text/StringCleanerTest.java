@@ -15,9 +15,13 @@
  */
 package com.datumbox.framework.core.common.text;
 
+import com.datumbox.framework.common.utilities.RandomGenerator;
 import com.datumbox.framework.tests.abstracts.AbstractTest;
 import org.junit.Test;
 
+import java.util.Locale;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -99,4 +103,62 @@ public class StringCleanerTest extends AbstractTest {
         assertEquals(expResult, result);
     }
     
+    /**
+     * Test of clear method, of class StringCleaner.
+     */
+    @Test
+    public void testClear() {
+        logger.info("clear");
+        String text = " Test, TEST δοκιμή :) :-p http://wWw.Google.com/page?query=1#hash ΟΔΟΣ 123\tÀÉ_Î\n ";
+        String expResult = "test test δοκιμη preprocessdoc_em preprocessdoc_em preprocessdoc_url οδος ae_i";
+        String result = StringCleaner.clear(text);
+        assertEquals(expResult, result);
+        
+        String[] texts = {
+            "",
+            "   ",
+            ":):(:]:[:d:p:-p:-):-(:o);)8-)=)=(",
+            "http://a.com:) ftp://b.org/x:d file://c/:-( hhttps://d.net/?a=b,",
+            "ΣΑΣ Σ ΑΣ. σοφοσ ΌΣΟΣ-ΣΟΦΟΣ",
+            "a\u00A0\u00A0b\u2028c\u3000 d __ 한국어 ｆｕｌｌ ﬁ İstanbul \uD800 x",
+            "Ça va? Très bien, merci! Ünïcödé ẞ ǅ"
+        };
+        for(String t : texts) {
+            assertEquals(clearMultiPass(t), StringCleaner.clear(t));
+        }
+        
+        //the letters outside the BMP are kept intact
+        assertEquals("a \uD835\uDC00 b", StringCleaner.clear("A \uD835\uDC00 B"));
+        
+        Random rnd = RandomGenerator.getThreadLocalRandom();
+        String alphabet = " :;-=()[]8odpDPhtfps/.,AaΣσéÉ\t\n\u00A0_1";
+        for(int n=0;n<1000;n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = rnd.nextInt(30);
+            for(int i=0;i<length;i++) {
+                sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+            }
+            if(rnd.nextBoolean()) {
+                sb.insert(rnd.nextInt(sb.length()+1), "http://x.com/a:b");
+            }
+            String t = sb.toString();
+            assertEquals(clearMultiPass(t), StringCleaner.clear(t));
+        }
+    }
+    
+    /**
+     * Applies the individual cleaning methods one after the other.
+     * 
+     * @param text
+     * @return 
+     */
+    private String clearMultiPass(String text) {
+        text = StringCleaner.tokenizeURLs(text);
+        text = StringCleaner.tokenizeSmileys(text);
+        text = StringCleaner.removeAccents(text);
+        text = StringCleaner.removeSymbols(text);
+        text = StringCleaner.removeExtraSpaces(text);
+        return text.toLowerCase(Locale.ENGLISH);
+    }
+    
 }
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.text.extractors;
+
+import com.datumbox.framework.tests.Constants;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.apache.commons.math3.linear.OpenMapRealVector;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for HashingExtractor.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class HashingExtractorTest extends AbstractTest {
+
+    /**
+     * Test of extract method, of class HashingExtractor.
+     */
+    @Test
+    public void testExtract() {
+        logger.info("extract");
+        String text = "this is a text sequence that is amazing text sequence";
+        
+        HashingExtractor.Parameters parameters = new HashingExtractor.Parameters();
+        parameters.setMaxDistanceBetweenKwds(2);
+        parameters.setExaminationWindowLength(6);
+        parameters.setNumberOfFeatures(1024);
+        HashingExtractor instance = AbstractTextExtractor.newInstance(parameters);
+        
+        Map<String, Double> keywords = new NgramsExtractor(parameters).extract(text);
+        Map<Integer, Double> result = instance.extract(text);
+        
+        //the buckets are bounded and the absolute scores are preserved up to collisions
+        double expSum = 0.0;
+        for(Map.Entry<String, Double> entry : keywords.entrySet()) {
+            int hash = HashingExtractor.murmurHash3(entry.getKey(), 0);
+            double score = hash<0?-entry.getValue():entry.getValue();
+            expSum += score;
+        }
+        double sum = 0.0;
+        for(Map.Entry<Integer, Double> entry : result.entrySet()) {
+            assertTrue(entry.getKey()>=0 && entry.getKey()<1024);
+            sum += entry.getValue();
+        }
+        assertEquals(expSum, sum, Constants.DOUBLE_ACCURACY_HIGH);
+        
+        Integer bucket = Math.floorMod(HashingExtractor.murmurHash3("text sequence", 0), 1024);
+        assertEquals(Math.abs(keywords.get("text sequence")), Math.abs(result.get(bucket)), Constants.DOUBLE_ACCURACY_HIGH);
+        
+        OpenMapRealVector vector = instance.extractVector(text);
+        assertEquals(1024, vector.getDimension());
+        for(Map.Entry<Integer, Double> entry : result.entrySet()) {
+            assertEquals(entry.getValue(), vector.getEntry(entry.getKey()), Constants.DOUBLE_ACCURACY_HIGH);
+        }
+    }
+    
+    /**
+     * Test of murmurHash3 method, of class HashingExtractor.
+     */
+    @Test
+    public void testMurmurHash3() {
+        logger.info("murmurHash3");
+        
+        assertEquals(0, HashingExtractor.murmurHash3("", 0));
+        assertEquals(0x248bfa47, HashingExtractor.murmurHash3("hello", 0));
+        assertEquals(0x2e4ff723, HashingExtractor.murmurHash3("The quick brown fox jumps over the lazy dog", 0));
+    }
+    
+}
@@ -237,4 +237,55 @@ public class NgramsExtractorTest extends AbstractTest {
         assertEquals(expResult, result);
     }
     
+    /**
+     * Test of extract method, of class NgramsExtractor, with distance between
+     * the keywords.
+     */
+    @Test
+    public void testExtractWithDistance() {
+        logger.info("extractWithDistance");
+        NgramsExtractor.Parameters p = new NgramsExtractor.Parameters();
+        p.setMaxDistanceBetweenKwds(1);
+        NgramsExtractor instance = new NgramsExtractor(p);
+        
+        Map<String, Double> expResult = new HashMap<>();
+        expResult.put("a", 2.0);
+        expResult.put("b", 1.0);
+        expResult.put("c", 1.0);
+        expResult.put("a b", 1.0);
+        expResult.put("b a", 1.0);
+        expResult.put("a c", 1.0);
+        expResult.put("a b a", 1.0);
+        expResult.put("b a c", 1.0);
+        
+        Map<String, Double> result = instance.extract("a b a c");
+        assertEquals(expResult, result);
+    }
+    
+    /**
+     * Test of extract method, of class NgramsExtractor, with combinations 
+     * which are too long to be packed.
+     */
+    @Test
+    public void testExtractLongCombinations() {
+        logger.info("extractLongCombinations");
+        NgramsExtractor.Parameters p = new NgramsExtractor.Parameters();
+        p.setMaxCombinations(64);
+        NgramsExtractor instance = new NgramsExtractor(p);
+        
+        Map<String, Double> expResult = new HashMap<>();
+        expResult.put("a", 2.0);
+        expResult.put("b", 1.0);
+        expResult.put("c", 1.0);
+        expResult.put("a b", 1.0);
+        expResult.put("b a", 1.0);
+        expResult.put("a c", 1.0);
+        expResult.put("a b a", 1.0);
+        expResult.put("b a c", 1.0);
+        expResult.put("a b a c", 1.0);
+        
+        Map<String, Double> result = instance.extract("a b a c");
+        assertEquals(expResult, result);
+    }
+    
 }
@@ -110,6 +110,19 @@ public class HTMLParserTest extends AbstractTest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * Test of extractText method, of class HTMLParser, with a tag whose name 
+     * starts with the name of a removed tag.
+     */
+    @Test
+    public void testExtractTextSimilarTagNames() {
+        logger.info("extractTextSimilarTagNames");
+        String text = "<html><head><title>T</title><body><header>Menu</header><p>Main article text</p></body></html>";
+        String expResult = "T Menu Main article text";
+        String result = StringCleaner.removeExtraSpaces(HTMLParser.extractText(text));
+        assertEquals(expResult, result);
+    }
+
     /**
      * Test of removeNonTextTagsAndAttributes method, of class HTMLParser.
      */
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.common.text.parsers;
+
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for HTMLTokenizer.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class HTMLTokenizerTest extends AbstractTest {
+    
+    /**
+     * Records the events as strings.
+     */
+    private static class RecordingHandler implements HTMLTokenizer.Handler {
+        private final String html;
+        private final List<String> events = new ArrayList<>();
+        private final StringBuilder covered = new StringBuilder();
+        
+        private RecordingHandler(String html) {
+            this.html = html;
+        }
+        
+        @Override
+        public void text(int start, int end) {
+            events.add("TEXT:" + html.substring(start, end));
+            covered.append(html, start, end);
+        }
+        
+        @Override
+        public void startTag(String name, Map<String, String> attributes, boolean selfClosing, int start, int end) {
+            events.add("START:" + name + attributes + (selfClosing?"/":""));
+            covered.append(html, start, end);
+        }
+        
+        @Override
+        public void endTag(String name, int start, int end) {
+            events.add("END:" + name);
+            covered.append(html, start, end);
+        }
+        
+        @Override
+        public void comment(int start, int end) {
+            events.add("COMMENT:" + html.substring(start, end));
+            covered.append(html, start, end);
+        }
+        
+        @Override
+        public void declaration(int start, int end) {
+            events.add("DECLARATION:" + html.substring(start, end));
+            covered.append(html, start, end);
+        }
+    }
+
+    /**
+     * Test of tokenize method, of class HTMLTokenizer.
+     */
+    @Test
+    public void testTokenize() {
+        logger.info("tokenize");
+        String html = "<!DOCTYPE html><HTML><!-- a <b> comment -->"
+                + "<script type=text/javascript>if(a<b && c>d) {}</script>"
+                + "<div class=\"x y\" data-id='1' hidden>a < b</div>"
+                + "<   img src=\"s.jpg\" alt=\"it's\" /><br>text<span";
+        
+        RecordingHandler handler = new RecordingHandler(html);
+        HTMLTokenizer.tokenize(html, handler);
+        
+        List<String> expResult = Arrays.asList(
+                "DECLARATION:<!DOCTYPE html>",
+                "START:html{}",
+                "COMMENT:<!-- a <b> comment -->",
+                "START:script{type=text/javascript}",
+                "TEXT:if(a<b && c>d) {}",
+                "END:script",
+                "START:div{class=x y, data-id=1, hidden=}",
+                "TEXT:a < b",
+                "END:div",
+                "START:img{src=s.jpg, alt=it's}/",
+                "START:br{}",
+                "TEXT:text<span"
+        );
+        assertEquals(expResult, handler.events);
+        assertEquals(html, handler.covered.toString());
+    }
+    
+    /**
+     * Test of tokenize method, of class HTMLTokenizer, with unterminated tags.
+     */
+    @Test
+    public void testTokenizeUnterminated() {
+        logger.info("tokenizeUnterminated");
+        StringBuilder sb = new StringBuilder();
+        for(int i=0;i<100000;i++) {
+            sb.append("<a href='");
+        }
+        sb.append("<!-- unterminated");
+        String html = sb.toString();
+        
+        RecordingHandler handler = new RecordingHandler(html);
+        HTMLTokenizer.tokenize(html, handler);
+        
+        assertEquals(2, handler.events.size());
+        assertEquals(html, handler.covered.toString());
+    }
+    
+}
@@ -145,4 +145,36 @@ public class MultinomialNaiveBayesTest extends AbstractTest {
         trainingData.close();
     }
     
+    /**
+     * Test of validate method with concurrent folds, of class MultinomialNaiveBayes.
+     */
+    @Test
+    public void testShuffleValidationConcurrent() {
+        logger.info("testShuffleValidationConcurrent");
+        
+        Configuration configuration = getConfiguration();
+        configuration.getConcurrencyConfiguration().setParallelized(true);
+        configuration.getConcurrencyConfiguration().setMaxNumberOfThreadsPerTask(2);
+
+        double proportion = 0.8;
+        int splits = 5;
+        
+        Dataframe[] data = Datasets.carsNumeric(configuration);
+        Dataframe trainingData = data[0];
+        data[1].close();
+        
+        MultinomialNaiveBayes.TrainingParameters param = new MultinomialNaiveBayes.TrainingParameters();
+        param.setMultiProbabilityWeighted(true);
+
+        Validator<ClassificationMetrics> validator = new Validator<>(ClassificationMetrics.class, configuration);
+        validator.setMaxConcurrentFolds(2);
+        ClassificationMetrics vm = validator.validate(new ShuffleSplitter(proportion, splits).split(trainingData), param);
+        
+        double expResult = 0.5983838383838384;
+        double result = vm.getMacroF1();
+        assertEquals(expResult, result, Constants.DOUBLE_ACCURACY_HIGH);
+        
+        trainingData.close();
+    }
+    
 }
@@ -165,4 +165,60 @@ public class KmeansTest extends AbstractTest {
     }
 
     
+    /**
+     * Test of validate method with mini-batches, of class Kmeans.
+     */
+    @Test
+    public void testKFoldCrossValidationMiniBatch() {
+        logger.info("testKFoldCrossValidationMiniBatch");
+        
+        Configuration configuration = getConfiguration();
+        
+        int k = 5;
+        
+        Dataframe[] data = Datasets.heartDiseaseClusters(configuration);
+        Dataframe trainingData = data[0];
+        data[1].close();
+
+
+
+        MinMaxScaler.TrainingParameters nsParams = new MinMaxScaler.TrainingParameters();
+        MinMaxScaler numericalScaler = MLBuilder.create(nsParams, configuration);
+
+        numericalScaler.fit_transform(trainingData);
+
+        CornerConstraintsEncoder.TrainingParameters ceParams = new CornerConstraintsEncoder.TrainingParameters();
+        CornerConstraintsEncoder categoricalEncoder = MLBuilder.create(ceParams, configuration);
+
+        categoricalEncoder.fit_transform(trainingData);
+        
+
+        
+        
+
+        
+        Kmeans.TrainingParameters param = new Kmeans.TrainingParameters();
+        param.setK(2);
+        param.setMaxIterations(50);
+        param.setInitializationMethod(Kmeans.TrainingParameters.Initialization.FORGY);
+        param.setDistanceMethod(Kmeans.TrainingParameters.Distance.EUCLIDIAN); 
+        param.setWeighted(false);
+        param.setCategoricalGamaMultiplier(1.0);
+        param.setSubsetFurthestFirstcValue(2.0);
+        param.setBatchSize(20);
+
+        ClusteringMetrics vm = new Validator<>(ClusteringMetrics.class, configuration)
+                .validate(new KFoldSplitter(k).split(trainingData), param);
+
+
+        double expResult = 0.7555555555555556;
+        double result = vm.getPurity();
+        assertEquals(expResult, result, Constants.DOUBLE_ACCURACY_HIGH);
+
+        numericalScaler.close();
+        categoricalEncoder.close();
+        
+        trainingData.close();
+    }
+    
 }
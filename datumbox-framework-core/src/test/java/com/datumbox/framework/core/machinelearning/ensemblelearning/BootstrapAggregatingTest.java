@@ -142,6 +142,44 @@ public class BootstrapAggregatingTest extends AbstractTest {
         
 
         
+        BootstrapAggregating.TrainingParameters param = new BootstrapAggregating.TrainingParameters();
+        param.setMaxWeakClassifiers(5);
+        
+        
+        MultinomialNaiveBayes.TrainingParameters trainingParameters = new MultinomialNaiveBayes.TrainingParameters();
+        trainingParameters.setMultiProbabilityWeighted(true);
+        
+        param.setWeakClassifierTrainingParameters(trainingParameters);
+
+        
+        ClassificationMetrics vm = new Validator<>(ClassificationMetrics.class, configuration)
+                .validate(new KFoldSplitter(k).split(trainingData), param);
+        
+        double expResult = 0.6609432234432234;
+        double result = vm.getMacroF1();
+        assertEquals(expResult, result, Constants.DOUBLE_ACCURACY_HIGH);
+        
+        trainingData.close();
+    }
+    
+    /**
+     * Test of validate method with concurrent training and scoring, of class BootstrapAggregating.
+     */
+    @Test
+    public void testKFoldCrossValidationConcurrent() {
+        logger.info("testKFoldCrossValidationConcurrent");
+        
+        Configuration configuration = getConfiguration();
+        configuration.getConcurrencyConfiguration().setParallelized(true);
+        configuration.getConcurrencyConfiguration().setMaxNumberOfThreadsPerTask(2);
+        
+        int k = 5;
+        
+        Dataframe[] data = Datasets.carsNumeric(configuration);
+        Dataframe trainingData = data[0];
+        data[1].close();
+        
+        
         BootstrapAggregating.TrainingParameters param = new BootstrapAggregating.TrainingParameters();
         param.setMaxWeakClassifiers(5);
         
@@ -93,4 +93,70 @@ public class PCATest extends AbstractTest {
         expResult.close();
     }
     
+    /**
+     * Test of selectFeatures method, of class PCA, with the RANDOMIZED solver.
+     */
+    @Test
+    public void testSelectFeaturesRandomized() {
+        logger.info("selectFeaturesRandomized");
+        
+        PCA.TrainingParameters param = new PCA.TrainingParameters();
+        param.setSolver(PCA.TrainingParameters.Solver.RANDOMIZED);
+        param.setPowerIterations(3);
+        
+        assertApproximateSolver(param);
+    }
+    
+    /**
+     * Test of selectFeatures method, of class PCA, with the INCREMENTAL solver.
+     */
+    @Test
+    public void testSelectFeaturesIncremental() {
+        logger.info("selectFeaturesIncremental");
+        
+        PCA.TrainingParameters param = new PCA.TrainingParameters();
+        param.setSolver(PCA.TrainingParameters.Solver.INCREMENTAL);
+        param.setBatchSize(2);
+        
+        assertApproximateSolver(param);
+    }
+    
+    /**
+     * The components of the approximate solvers are unique up to their sign,
+     * so the absolute values of the projections are compared.
+     * 
+     * @param param 
+     */
+    private void assertApproximateSolver(PCA.TrainingParameters param) {
+        Configuration configuration = getConfiguration();
+        
+        Dataframe[] data = Datasets.featureTransformationPCA(configuration);
+        
+        Dataframe originalData = data[0];
+        Dataframe expResult = data[1];
+        
+        PCA instance = MLBuilder.create(param, configuration);
+        instance.fit_transform(originalData);
+        
+        assertEquals(originalData.size(), expResult.size());
+        
+        Iterator<Record> itResult = originalData.iterator();
+        Iterator<Record> itExpectedResult = expResult.iterator();
+        while(itResult.hasNext()) {
+            Record r1 = itResult.next();
+            Record r2 = itExpectedResult.next();
+            
+            for(Map.Entry<Object, Object> entry : r2.getX().entrySet()) {
+                Object feature = entry.getKey();
+                Double value = TypeInference.toDouble(r1.getX().get(feature));
+                
+                assertEquals(Math.abs(TypeInference.toDouble(entry.getValue())), Math.abs(value), Constants.DOUBLE_ACCURACY_MEDIUM);
+            }
+        }
+        
+        instance.close();
+        originalData.close();
+        expResult.close();
+    }
+    
 }
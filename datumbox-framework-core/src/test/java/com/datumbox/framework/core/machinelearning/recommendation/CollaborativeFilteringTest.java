@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test cases for CollaborativeFiltering.
@@ -96,5 +97,43 @@ public class CollaborativeFilteringTest extends AbstractTest {
         validationData.close();
     }
 
-    
+    /**
+     * Test of fit method, of class CollaborativeFiltering, with a limit on the
+     * number of neighbours.
+     */
+    @Test
+    public void testFitWithMaxNeighbours() {
+        logger.info("testFitWithMaxNeighbours");
+        
+        Configuration configuration = getConfiguration();
+        
+        Dataframe[] data = Datasets.recommenderSystemFood(configuration);
+        
+        Dataframe trainingData = data[0];
+        Dataframe validationData = data[1];
+        
+        CollaborativeFiltering.TrainingParameters param = new CollaborativeFiltering.TrainingParameters();
+        param.setSimilarityMethod(CollaborativeFiltering.TrainingParameters.SimilarityMeasure.PEARSONS_CORRELATION);
+        param.setMaxNeighbours(3);
+
+        CollaborativeFiltering instance = MLBuilder.create(param, configuration);
+        instance.fit(trainingData);
+        
+        Map<Object, AssociativeArray> similarities = instance.getModelParameters().getSimilarities();
+        assertEquals(trainingData.size(), similarities.size());
+        for(Map.Entry<Object, AssociativeArray> entry : similarities.entrySet()) {
+            AssociativeArray neighbours = entry.getValue();
+            assertTrue(neighbours.containsKey(entry.getKey()));
+            assertEquals(3, neighbours.size()-1); //the item itself is not counted
+        }
+
+        instance.predict(validationData);
+        assertTrue(validationData.iterator().next().getYPredictedProbabilities().size() > 0);
+        
+        instance.close();
+        
+        trainingData.close();
+        validationData.close();
+    }
+
 }
@@ -16,6 +16,7 @@
 package com.datumbox.framework.core.machinelearning.topicmodeling;
 
 import com.datumbox.framework.common.Configuration;
+import com.datumbox.framework.common.dataobjects.TypeInference;
 import com.datumbox.framework.core.Datasets;
 import com.datumbox.framework.core.common.dataobjects.Dataframe;
 import com.datumbox.framework.core.common.dataobjects.Record;
@@ -90,7 +91,7 @@ public class LatentDirichletAllocationTest extends AbstractTest {
         ClassificationMetrics vm = new Validator<>(ClassificationMetrics.class, configuration)
                 .validate(new KFoldSplitter(1).split(reducedTrainingData), tp);
         
-        double expResult = 0.6843125117743629;
+        double expResult = 0.6686261769556976;
         double result = vm.getMacroF1();
         assertEquals(expResult, result, Constants.DOUBLE_ACCURACY_HIGH);
 
@@ -100,5 +101,56 @@ public class LatentDirichletAllocationTest extends AbstractTest {
         trainingData.close();
     }
 
+    /**
+     * Test of fit method with approximate distributed sampling, of class LatentDirichletAllocation.
+     */
+    @Test
+    public void testFitApproximateDistributed() {
+        logger.info("testFitApproximateDistributed");
+        
+        Configuration configuration = getConfiguration();
+
+
+        Map<Object, URI> dataset = Datasets.sentimentAnalysis();
+        
+        UniqueWordSequenceExtractor wsExtractor = new UniqueWordSequenceExtractor(new UniqueWordSequenceExtractor.Parameters());
+        
+        Dataframe trainingData = Dataframe.Builder.parseTextFiles(dataset, wsExtractor, configuration);
+
+
+        LatentDirichletAllocation.TrainingParameters trainingParameters = new LatentDirichletAllocation.TrainingParameters();
+        trainingParameters.setMaxIterations(5);
+        trainingParameters.setAlpha(0.01);
+        trainingParameters.setBeta(0.01);
+        trainingParameters.setK(25);
+        trainingParameters.setApproximateDistributed(true);
+        trainingParameters.setNumberOfShards(3);
+
+        LatentDirichletAllocation lda = MLBuilder.create(trainingParameters, configuration);
+        
+        lda.fit(trainingData);
+        
+        int totalWords = 0;
+        for(Record r : trainingData) {
+            totalWords += r.getX().size();
+            
+            double sum = 0.0;
+            for(Object p : r.getYPredictedProbabilities().values()) {
+                sum += TypeInference.toDouble(p);
+            }
+            assertEquals(1.0, sum, Constants.DOUBLE_ACCURACY_HIGH);
+        }
+        
+        //the merged counts must account for every word of the dataset
+        int totalTopicCounts = 0;
+        for(Integer count : lda.getModelParameters().getTopicCounts().values()) {
+            totalTopicCounts += count;
+        }
+        assertEquals(totalWords, totalTopicCounts);
+
+        lda.delete();
+        
+        trainingData.close();
+    }
     
 }
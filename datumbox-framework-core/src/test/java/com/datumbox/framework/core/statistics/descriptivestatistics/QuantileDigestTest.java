@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.statistics.descriptivestatistics;
+
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for QuantileDigest.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class QuantileDigestTest extends AbstractTest {
+    
+    /**
+     * Test of quantile method, of class QuantileDigest.
+     */
+    @Test
+    public void testQuantile() {
+        logger.info("testQuantile");
+        Random rnd = new Random(42);
+        QuantileDigest instance = new QuantileDigest(100.0);
+        for(int i=0;i<100000;i++) {
+            instance.add(rnd.nextDouble());
+        }
+        
+        assertEquals(0.5, instance.quantile(0.5), 0.01);
+        assertEquals(0.01, instance.quantile(0.01), 0.001);
+        assertEquals(0.99, instance.quantile(0.99), 0.001);
+        assertEquals(instance.getMin(), instance.quantile(0.0), 0.0);
+        assertEquals(instance.getMax(), instance.quantile(1.0), 0.0);
+        assertTrue(instance.getCentroidCount()<=100);
+    }
+    
+    /**
+     * Test of merge method, of class QuantileDigest.
+     */
+    @Test
+    public void testMerge() {
+        logger.info("testMerge");
+        Random rnd = new Random(42);
+        QuantileDigest instance = new QuantileDigest(100.0);
+        QuantileDigest other = new QuantileDigest(100.0);
+        for(int i=0;i<50000;i++) {
+            instance.add(rnd.nextGaussian());
+            other.add(rnd.nextGaussian()+10.0);
+        }
+        instance.merge(other);
+        
+        assertEquals(100000.0, instance.getTotalWeight(), 0.0);
+        assertEquals(0.0, instance.quantile(0.25), 0.05);
+        assertEquals(10.0, instance.quantile(0.75), 0.05);
+    }
+    
+}
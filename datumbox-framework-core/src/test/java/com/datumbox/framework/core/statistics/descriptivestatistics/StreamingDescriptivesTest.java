@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.statistics.descriptivestatistics;
+
+import com.datumbox.framework.common.dataobjects.FlatDataCollection;
+import com.datumbox.framework.tests.Constants;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for StreamingDescriptives.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class StreamingDescriptivesTest extends AbstractTest {
+
+    private List<Object> generateValues() {
+        Object[] values = { -12.76, 9.07, 3.11, 0.99, -36.40, -34.18, 2.07, 50.85, 5.34, 2.08, 1.49, -19.01, 45.68, -11.80, -1.19, -34.63, -28.10,
+                35.33, 28.38, 24.60, 10.36, -12.01, 47.92, 3.34, 9.63, 44.09, 4.65, 2.04, 27.39, -14.52, 9.91, 36.45, -24.62, 2.99, -9.49, 2.14, -18.48, 38.69, 43.87, -20.56 };
+        
+        return new ArrayList<>(Arrays.asList(values));
+    }
+    
+    /**
+     * Test of the numeric statistics, of class StreamingDescriptives.
+     */
+    @Test
+    public void testNumericStatistics() {
+        logger.info("testNumericStatistics");
+        FlatDataCollection flatDataCollection = new FlatDataCollection(generateValues());
+        
+        StreamingDescriptives instance = new StreamingDescriptives();
+        instance.addAll(flatDataCollection);
+        
+        assertEquals(40L, instance.getCount());
+        assertEquals(Descriptives.sum(flatDataCollection), instance.getSum(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.mean(flatDataCollection), instance.getMean(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.meanSE(flatDataCollection), instance.getMeanSE(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.min(flatDataCollection), instance.getMin(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.max(flatDataCollection), instance.getMax(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.minAbsolute(flatDataCollection), instance.getMinAbsolute(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.maxAbsolute(flatDataCollection), instance.getMaxAbsolute(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.variance(flatDataCollection, true), instance.getVariance(true), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.std(flatDataCollection, false), instance.getStd(false), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.moment(flatDataCollection, 3), instance.getMoment(3), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.kurtosis(flatDataCollection), instance.getKurtosis(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.skewness(flatDataCollection), instance.getSkewness(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(Descriptives.median(flatDataCollection), instance.getMedian(), 1.0);
+    }
+    
+    /**
+     * Test of merge method, of class StreamingDescriptives.
+     */
+    @Test
+    public void testMerge() {
+        logger.info("testMerge");
+        List<Object> values = generateValues();
+        
+        StreamingDescriptives expResult = new StreamingDescriptives();
+        expResult.addAll(values);
+        
+        StreamingDescriptives result = new StreamingDescriptives();
+        result.addAll(values.subList(0, 13));
+        StreamingDescriptives other = new StreamingDescriptives();
+        other.addAll(values.subList(13, values.size()));
+        result.merge(other);
+        
+        assertEquals(expResult.getCount(), result.getCount());
+        assertEquals(expResult.getMean(), result.getMean(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(expResult.getVariance(true), result.getVariance(true), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(expResult.getKurtosis(), result.getKurtosis(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(expResult.getSkewness(), result.getSkewness(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(expResult.getMin(), result.getMin(), Constants.DOUBLE_ACCURACY_HIGH);
+        assertEquals(expResult.getMax(), result.getMax(), Constants.DOUBLE_ACCURACY_HIGH);
+        
+        StreamingDescriptives collected = values.parallelStream().collect(StreamingDescriptives.collector());
+        assertEquals(expResult.getCount(), collected.getCount());
+        assertEquals(expResult.getKurtosis(), collected.getKurtosis(), Constants.DOUBLE_ACCURACY_HIGH);
+    }
+    
+    /**
+     * Test of getTopFrequencies method, of class StreamingDescriptives.
+     */
+    @Test
+    public void testGetTopFrequencies() {
+        logger.info("testGetTopFrequencies");
+        StreamingDescriptives instance = new StreamingDescriptives(100.0, 2);
+        instance.addAll(Arrays.asList("a", "b", "a", null, "c", "a", "b"));
+        
+        Map<Object, Long> result = instance.getTopFrequencies();
+        assertEquals(2, result.size());
+        assertEquals(Long.valueOf(3L), result.get("a"));
+        assertEquals(0L, instance.getCount());
+    }
+    
+}
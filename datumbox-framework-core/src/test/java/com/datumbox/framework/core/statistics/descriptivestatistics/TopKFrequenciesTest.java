@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.core.statistics.descriptivestatistics;
+
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for TopKFrequencies.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class TopKFrequenciesTest extends AbstractTest {
+    
+    /**
+     * Test of getTopFrequencies method, of class TopKFrequencies.
+     */
+    @Test
+    public void testGetTopFrequencies() {
+        logger.info("testGetTopFrequencies");
+        Random rnd = new Random(42);
+        TopKFrequencies instance = new TopKFrequencies(10);
+        for(int i=0;i<10000;i++) {
+            if(i%3==0) {
+                instance.add("frequent");
+            }
+            else if(i%5==0) {
+                instance.add("common");
+            }
+            else {
+                instance.add(rnd.nextInt(1000));
+            }
+        }
+        
+        Map<Object, Long> result = instance.getTopFrequencies();
+        Iterator<Object> it = result.keySet().iterator();
+        assertEquals("frequent", it.next());
+        assertEquals("common", it.next());
+        assertEquals(10, result.size());
+        assertEquals(10000L, instance.getTotalCount());
+        
+        long count = instance.getCount("frequent");
+        assertTrue(count>=3334L && count-instance.getError("frequent")<=3334L);
+    }
+    
+    /**
+     * Test of merge method, of class TopKFrequencies.
+     */
+    @Test
+    public void testMerge() {
+        logger.info("testMerge");
+        TopKFrequencies instance = new TopKFrequencies(3);
+        instance.add("a", 10L);
+        instance.add("b", 5L);
+        TopKFrequencies other = new TopKFrequencies(3);
+        other.add("b", 7L);
+        other.add("c", 2L);
+        instance.merge(other);
+        
+        assertEquals(10L, instance.getCount("a"));
+        assertEquals(12L, instance.getCount("b"));
+        assertEquals(2L, instance.getCount("c"));
+        assertEquals(24L, instance.getTotalCount());
+        assertEquals("b", instance.getTopFrequencies().keySet().iterator().next());
+    }
+    
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.inmemory;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Map which serves its entries from a read-only MappedBigMap until it is
+ * modified for the first time. On the first modification the entries are
+ * copied in the provided heap map, which serves all the following operations.
+ * This allows the loaded objects to modify their BigMaps while the ones that
+ * are only read are never loaded in the heap.
+ *
+ * @param <K>
+ * @param <V>
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+class CopyOnWriteMappedMap<K, V> extends AbstractMap<K, V> {
+
+    private final Map<K, V> heapMap;
+
+    private volatile Map<K, V> delegate;
+
+    /**
+     * @param mappedMap
+     * @param heapMap
+     */
+    CopyOnWriteMappedMap(MappedBigMap<K, V> mappedMap, Map<K, V> heapMap) {
+        this.heapMap = heapMap;
+        this.delegate = mappedMap;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V get(Object key) {
+        return delegate.get(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V put(K key, V value) {
+        return writable().put(key, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V remove(Object key) {
+        return writable().remove(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        writable().putAll(m);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        synchronized(this) {
+            delegate = heapMap; //the entries are discarded, so there is no need to copy them
+        }
+        heapMap.clear();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return writable().putIfAbsent(key, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return writable().merge(key, value, remappingFunction);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return writable().compute(key, remappingFunction);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return writable().computeIfAbsent(key, mappingFunction);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return writable().computeIfPresent(key, remappingFunction);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        writable().replaceAll(function);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Map<K, V> m = delegate;
+                if(m == heapMap) {
+                    return m.entrySet().iterator();
+                }
+                return new MappedEntryIterator(m.entrySet().iterator());
+            }
+
+            @Override
+            public int size() {
+                return delegate.size();
+            }
+        };
+    }
+
+    /**
+     * Copies the entries in the heap map on the first call and returns the heap
+     * map.
+     *
+     * @return
+     */
+    private Map<K, V> writable() {
+        Map<K, V> m = delegate;
+        if(m == heapMap) {
+            return m;
+        }
+        synchronized(this) {
+            if(delegate != heapMap) {
+                heapMap.putAll(delegate);
+                delegate = heapMap;
+            }
+        }
+        return heapMap;
+    }
+
+    /**
+     * Iterates through the entries of the memory mapped file. The modifications
+     * which are made through the iterator or the entries are applied on the
+     * heap map, while the iteration continues on the unchanged file.
+     */
+    private class MappedEntryIterator implements Iterator<Entry<K, V>> {
+        private final Iterator<Entry<K, V>> it;
+        private K lastKey;
+        private boolean canRemove = false;
+
+        private MappedEntryIterator(Iterator<Entry<K, V>> it) {
+            this.it = it;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Entry<K, V> next() {
+            Entry<K, V> e = it.next();
+            lastKey = e.getKey();
+            canRemove = true;
+            return new SimpleEntry<K, V>(e) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public V setValue(V value) {
+                    writable().put(getKey(), value);
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            if(!canRemove) {
+                throw new IllegalStateException();
+            }
+            writable().remove(lastKey);
+            canRemove = false;
+        }
+    }
+
+}
@@ -29,6 +29,8 @@ import java.util.Properties;
  */
 public class InMemoryConfiguration extends AbstractFileStorageConfiguration {
 
+    private boolean memoryMapped = false;
+
     /** {@inheritDoc} */
     @Override
     public StorageEngine createStorageEngine(String storageName) {
@@ -39,6 +41,29 @@ public class InMemoryConfiguration extends AbstractFileStorageConfiguration {
     @Override
     public void load(Properties properties) {
         outputDirectory = properties.getProperty("inMemoryConfiguration.outputDirectory");
+        serializer = createSerializer(properties.getProperty("inMemoryConfiguration.serializer"));
+        memoryMapped = "true".equalsIgnoreCase(properties.getProperty("inMemoryConfiguration.memoryMapped"));
+    }
+
+    /**
+     * Getter for the memoryMapped option.
+     *
+     * @return
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Setter for the memoryMapped option. If turned on, the BigMaps are saved
+     * in separate indexed files and the loaded objects serve their BigMap
+     * lookups directly from memory mapped buffers instead of loading them in
+     * the heap. A BigMap is copied in the heap the first time it is modified.
+     *
+     * @param memoryMapped
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
     }
 
 }
@@ -34,7 +34,9 @@ import java.util.concurrent.ConcurrentSkipListMap;
 /**
  * The InMemoryEngine is responsible for saving and loading data in memory,
  * creating BigMaps and storing data. The InMemoryEngine loads all the
- * data in memory and stores all data in serialized files.
+ * data in memory and stores all data in serialized files. Optionally the BigMaps
+ * are stored in separate indexed files and served from memory mapped buffers
+ * when they are loaded, until they are modified for the first time.
  *
  * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
  */
@@ -45,6 +47,12 @@ public class InMemoryEngine extends AbstractFileStorageEngine<InMemoryConfigurat
      */
     private Map<String, WeakReference<?>> catalog = new HashMap<>();
 
+    /**
+     * Flag which is set while an object is loaded, so that the BigMaps which are
+     * requested by the postDeserializer are read from their files.
+     */
+    private boolean loadingObject = false;
+
     /** 
      * @param storageName
      * @param storageConfiguration
@@ -94,8 +102,17 @@ public class InMemoryEngine extends AbstractFileStorageEngine<InMemoryConfigurat
             Path rootPath = getRootPath(storageName);
             createDirectoryIfNotExists(rootPath);
 
+            Map<String, Object> objRefs = preSerializer(serializableObject);
+
             Path objectPath = new File(rootPath.toFile(), name).toPath();
-            Files.write(objectPath, DeepCopy.serialize(serializableObject));
+            Files.write(objectPath, storageConfiguration.getSerializer().serialize(serializableObject));
+
+            //the extracted BigMaps are written in separate indexed files
+            for(Map.Entry<String, Object> e : objRefs.entrySet()) {
+                MappedBigMap.write(getBigMapPath(e.getKey()), (Map<?, ?>)e.getValue(), storageConfiguration.getSerializer());
+            }
+
+            postSerializer(serializableObject, objRefs);
         } 
         catch (IOException ex) {
             throw new UncheckedIOException(ex);
@@ -114,14 +131,20 @@ public class InMemoryEngine extends AbstractFileStorageEngine<InMemoryConfigurat
         }
 
         T obj;
+        loadingObject = true;
         try {
             Path objectPath = new File(getRootPath(storageName).toFile(), name).toPath();
-            Object serializableObject = DeepCopy.deserialize(Files.readAllBytes(objectPath));
+            Object serializableObject = storageConfiguration.getSerializer().deserialize(Files.readAllBytes(objectPath));
             obj = klass.cast(serializableObject);
+
+            postDeserializer(obj);
         }
         catch (IOException ex) {
             throw new UncheckedIOException(ex);
         }
+        finally {
+            loadingObject = false;
+        }
         catalog.put(name, new WeakReference<>(obj));
         return obj;
     }
@@ -166,6 +189,19 @@ public class InMemoryEngine extends AbstractFileStorageEngine<InMemoryConfigurat
             throw new IllegalArgumentException("Unsupported MapType.");
         }
 
+        if(loadingObject && !isTemporary) {
+            Path bigMapPath = getBigMapPath(name);
+            if(Files.exists(bigMapPath)) {
+                MappedBigMap<K,V> mappedMap = new MappedBigMap<>(bigMapPath, storageConfiguration.getSerializer());
+                if(storageConfiguration.isMemoryMapped()) {
+                    m = new CopyOnWriteMappedMap<>(mappedMap, m);
+                }
+                else {
+                    m.putAll(mappedMap);
+                }
+            }
+        }
+
         catalog.put(name, new WeakReference<>(m));
         return m;
     }  
@@ -176,12 +212,34 @@ public class InMemoryEngine extends AbstractFileStorageEngine<InMemoryConfigurat
         assertConnectionOpen();
         map.clear();
         catalog.remove(name);
+        try {
+            Files.deleteIfExists(getBigMapPath(name));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
     /** {@inheritDoc} */
     @Override
     protected Set<Class> nonSerializableBigMaps() {
+        if(storageConfiguration.isMemoryMapped()) {
+            //all the BigMaps are extracted and stored in indexed files
+            return new HashSet<>(Arrays.asList(HashMap.class, TreeMap.class, ConcurrentHashMap.class, ConcurrentSkipListMap.class));
+        }
         return Collections.emptySet();
     }
 
+    //private methods of storage engine class
+
+    /**
+     * Returns the path of the indexed file of a BigMap.
+     *
+     * @param name
+     * @return
+     */
+    private Path getBigMapPath(String name) {
+        return new File(getRootPath(storageName).toFile(), name + ".bigmap").toPath();
+    }
+
 }
@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.inmemory;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only Map which serves its entries directly from a memory mapped file.
+ * The entries are decoded on every access and they are never kept in the heap,
+ * so several JVMs can share the same page cache for the same file. The file
+ * contains the entries in the iteration order of the original map, followed by
+ * an index of the hashes of the keys. The keys are hashed and compared using
+ * their binary encoding instead of their hashCode() and equals() methods, so
+ * the files can be read by any JVM. This requires equal keys to have identical
+ * encodings, which holds for all the common key types such as numbers, strings
+ * and lists of them.
+ *
+ * @param <K>
+ * @param <V>
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+class MappedBigMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int MAGIC = 0x44424D32;
+    private static final int TRAILER_SIZE = 12;
+
+    private final MappedByteBuffer buffer;
+    private final ObjectSerializer serializer;
+    private final int size;
+    private final int indexOffset;
+
+    /**
+     * Memory maps the provided file which was written with write().
+     *
+     * @param path
+     * @param serializer
+     */
+    MappedBigMap(Path path, ObjectSerializer serializer) {
+        this.serializer = serializer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if(length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The file " + path + " is too large to be memory mapped.");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        int trailer = buffer.limit() - TRAILER_SIZE;
+        if(trailer < 0 || buffer.getInt(trailer + 8) != MAGIC) {
+            throw new IllegalArgumentException("The file " + path + " does not contain a valid BigMap.");
+        }
+        size = buffer.getInt(trailer);
+        indexOffset = buffer.getInt(trailer + 4);
+    }
+
+    /**
+     * Writes the entries of the map in a file which can be memory mapped. The
+     * data are written in a temporary file which replaces the target at the
+     * end, so any existing mapping of the target remains valid.
+     *
+     * @param path
+     * @param map
+     * @param serializer
+     */
+    static void write(Path path, Map<?, ?> map, ObjectSerializer serializer) {
+        Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            long[] index = new long[map.size()];
+            int n = 0;
+            int indexOffset;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+                for(Map.Entry<?, ?> e : map.entrySet()) {
+                    int offset = out.size();
+                    if(offset == Integer.MAX_VALUE) { //the counter of DataOutputStream saturates at this value
+                        throw new IllegalArgumentException("The map is too large to be memory mapped.");
+                    }
+                    byte[] keyBytes = encode(e.getKey(), serializer);
+                    index[n++] = ((long)hash(keyBytes) << 32) | offset;
+                    out.write(keyBytes);
+                    serializer.writeValue(out, e.getValue());
+                }
+                if(n != index.length) {
+                    throw new ConcurrentModificationException();
+                }
+
+                //sorting the packed values orders the index by hash code
+                Arrays.sort(index);
+                indexOffset = out.size();
+                for(long v : index) {
+                    out.writeInt((int)(v >> 32));
+                }
+                for(long v : index) {
+                    out.writeInt((int)v);
+                }
+                out.writeInt(n);
+                out.writeInt(indexOffset);
+                out.writeInt(MAGIC);
+                if(out.size() == Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("The map is too large to be memory mapped.");
+                }
+            }
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key, false) != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object[] entry = find(key, true);
+        return entry!=null?(V)entry[1]:null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Searches the index for the key. It returns an array with the key and
+     * optionally the value, or null if the key does not exist.
+     *
+     * @param key
+     * @param readValue
+     * @return
+     */
+    private Object[] find(Object key, boolean readValue) {
+        byte[] keyBytes = encode(key, serializer);
+        int hash = hash(keyBytes);
+
+        //find the first position of the hash in the index
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(buffer.getInt(indexOffset + 4*mid) < hash) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        try {
+            for(int i=low;i<size && buffer.getInt(indexOffset + 4*i) == hash;i++) {
+                int offset = buffer.getInt(indexOffset + 4*size + 4*i);
+                if(matches(offset, keyBytes)) {
+                    return new Object[]{key, readValue?serializer.readValue(input(offset + keyBytes.length)):null};
+                }
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the encoded key of the entry at the offset is identical
+     * to the provided bytes.
+     *
+     * @param offset
+     * @param keyBytes
+     * @return
+     */
+    private boolean matches(int offset, byte[] keyBytes) {
+        if(offset + keyBytes.length > indexOffset) {
+            return false;
+        }
+        for(int j=0;j<keyBytes.length;j++) {
+            if(buffer.get(offset + j) != keyBytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the binary encoding of the key.
+     *
+     * @param key
+     * @param serializer
+     * @return
+     */
+    private static byte[] encode(Object key, ObjectSerializer serializer) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            serializer.writeValue(out, key);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Returns the hash of the encoded key, which is the same in all JVMs.
+     *
+     * @param keyBytes
+     * @return
+     */
+    private static int hash(byte[] keyBytes) {
+        int h = Arrays.hashCode(keyBytes);
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns an input which reads the buffer from the provided position. The
+     * shared buffer is duplicated, so the method is thread-safe.
+     *
+     * @param position
+     * @return
+     */
+    private DataInput input(int position) {
+        ByteBuffer b = buffer.duplicate();
+        b.position(position);
+        b.limit(indexOffset);
+        return new DataInputStream(new ByteBufferInputStream(b));
+    }
+
+    /**
+     * Iterates through the entries in the order they were written.
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        private final DataInput in = input(0);
+        private int remaining = size;
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<K, V> next() {
+            if(remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            try {
+                K key = (K)serializer.readValue(in);
+                V value = (V)serializer.readValue(in);
+                return new SimpleImmutableEntry<>(key, value);
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    /**
+     * Exposes the remaining bytes of a ByteBuffer as an InputStream.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer b;
+
+        private ByteBufferInputStream(ByteBuffer b) {
+            this.b = b;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read() {
+            return b.hasRemaining()?(b.get() & 0xFF):-1;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if(len == 0) {
+                return 0;
+            }
+            if(!b.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, b.remaining());
+            b.get(bytes, off, len);
+            return len;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int available() {
+            return b.remaining();
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.inmemory;
+
+import com.datumbox.framework.common.storage.serializers.BinarySerializer;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for CopyOnWriteMappedMap.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class CopyOnWriteMappedMapTest extends AbstractTest {
+
+    /**
+     * Creates a CopyOnWriteMappedMap with 5 entries.
+     *
+     * @param path
+     * @return
+     */
+    private CopyOnWriteMappedMap<Integer, String> createMap(Path path) {
+        Map<Integer, String> map = new TreeMap<>();
+        for(int i=0;i<5;i++) {
+            map.put(i, "v" + i);
+        }
+        BinarySerializer serializer = new BinarySerializer();
+        MappedBigMap.write(path, map, serializer);
+        return new CopyOnWriteMappedMap<>(new MappedBigMap<>(path, serializer), new TreeMap<>());
+    }
+
+    /**
+     * Test of put and remove methods, of class CopyOnWriteMappedMap.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testPutRemove() throws IOException {
+        logger.info("testPutRemove");
+
+        Path path = Files.createTempFile("CopyOnWriteMappedMapTest", ".bigmap");
+        CopyOnWriteMappedMap<Integer, String> map = createMap(path);
+
+        assertEquals("v1", map.get(1));
+        assertEquals("v1", map.put(1, "new"));
+        assertEquals("v0", map.remove(0));
+        assertNull(map.putIfAbsent(5, "v5"));
+        assertEquals("v2v2", map.merge(2, "v2", String::concat));
+
+        assertEquals(5, map.size());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), new ArrayList<>(map.keySet()));
+        assertEquals(Arrays.asList("new", "v2v2", "v3", "v4", "v5"), new ArrayList<>(map.values()));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+
+        Files.delete(path);
+    }
+
+    /**
+     * Test of modifying the entries during the iteration, of class CopyOnWriteMappedMap.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testIteratorModifications() throws IOException {
+        logger.info("testIteratorModifications");
+
+        Path path = Files.createTempFile("CopyOnWriteMappedMapTest", ".bigmap");
+        CopyOnWriteMappedMap<Integer, String> map = createMap(path);
+
+        Iterator<Map.Entry<Integer, String>> it = map.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Integer, String> e = it.next();
+            if(e.getKey()%2==0) {
+                it.remove();
+            }
+            else {
+                e.setValue("odd");
+            }
+        }
+
+        Map<Integer, String> expected = new TreeMap<>();
+        expected.put(1, "odd");
+        expected.put(3, "odd");
+        assertEquals(expected, map);
+
+        Files.delete(path);
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.inmemory;
+
+import com.datumbox.framework.common.storage.serializers.BinarySerializer;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for MappedBigMap.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class MappedBigMapTest extends AbstractTest {
+
+    /**
+     * Test of write method and the lookups, of class MappedBigMap.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteAndGet() throws IOException {
+        logger.info("testWriteAndGet");
+
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put("a", 1.0);
+        map.put(2, "b");
+        map.put(2L, "c");
+        map.put(TimeUnit.SECONDS, Arrays.asList(1, 2)); //enums use the identity hash code
+        map.put(Arrays.asList("x", 1), null);
+        for(int i=0;i<1000;i++) {
+            map.put("key" + i, i);
+        }
+
+        Path path = Files.createTempFile("MappedBigMapTest", ".bigmap");
+        BinarySerializer serializer = new BinarySerializer();
+        MappedBigMap.write(path, map, serializer);
+        MappedBigMap<Object, Object> mappedMap = new MappedBigMap<>(path, serializer);
+
+        assertEquals(map.size(), mappedMap.size());
+        for(Map.Entry<Object, Object> e : map.entrySet()) {
+            assertTrue(mappedMap.containsKey(e.getKey()));
+            assertEquals(e.getValue(), mappedMap.get(e.getKey()));
+        }
+        assertFalse(mappedMap.containsKey("missing"));
+        assertFalse(mappedMap.containsKey(2.0));
+        assertNull(mappedMap.get(3));
+        assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(mappedMap.keySet()));
+        assertEquals(map, mappedMap);
+
+        Files.delete(path);
+    }
+
+}
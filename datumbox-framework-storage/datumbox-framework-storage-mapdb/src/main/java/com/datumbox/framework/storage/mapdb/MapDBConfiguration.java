@@ -48,6 +48,7 @@ public class MapDBConfiguration extends AbstractFileStorageConfiguration {
     @Override
     public void load(Properties properties) {
         outputDirectory = properties.getProperty("mapDBConfiguration.outputDirectory");
+        serializer = createSerializer(properties.getProperty("mapDBConfiguration.serializer"));
         cacheSize = Integer.parseInt(properties.getProperty("mapDBConfiguration.cacheSize"));
         compressed = "true".equalsIgnoreCase(properties.getProperty("mapDBConfiguration.compressed"));
         hybridized = "true".equalsIgnoreCase(properties.getProperty("mapDBConfiguration.hybridized"));
@@ -87,6 +87,23 @@ public class MapDBEngine extends AbstractFileStorageEngine<MapDBConfiguration> {
      */
     protected MapDBEngine(String storageName, MapDBConfiguration storageConfiguration) {
         super(storageName, storageConfiguration);
+        assertMapDBVersion();
+    }
+    
+    /**
+     * MapDB 3 is published under the same artifact and packages as MapDB 1, so
+     * the MapDB and MapDB3 storage modules are mutually exclusive and only one
+     * version of the library ends up in the classpath. This method fails fast
+     * if MapDB 3 was resolved instead of MapDB 1.
+     */
+    private static void assertMapDBVersion() {
+        try {
+            Class.forName("org.mapdb.DBMaker$Maker", false, DB.class.getClassLoader());
+        }
+        catch (ClassNotFoundException ex) {
+            return; //the builder class exists only in MapDB 3
+        }
+        throw new IllegalStateException("The MapDBEngine requires MapDB 1 but MapDB 3 was found in the classpath. The MapDB and MapDB3 storage modules can not be used together.");
     }
 
     /** {@inheritDoc} */
@@ -126,11 +143,11 @@ public class MapDBEngine extends AbstractFileStorageEngine<MapDBConfiguration> {
     public <T extends Serializable> void saveObject(String name, T serializableObject) {
         assertConnectionOpen();
         DB storage = openStorage(StorageType.PRIMARY_STORAGE);
-        Atomic.Var<T> atomicVar = storage.getAtomicVar(name);
+        Atomic.Var<Object> atomicVar = storage.getAtomicVar(name);
 
         Map<String, Object> objRefs = preSerializer(serializableObject);
 
-        atomicVar.set(serializableObject);
+        atomicVar.set(storageConfiguration.getSerializer().serialize(serializableObject));
         storage.commit();
 
         postSerializer(serializableObject, objRefs);
@@ -147,8 +164,12 @@ public class MapDBEngine extends AbstractFileStorageEngine<MapDBConfiguration> {
         }
 
         DB storage = openStorage(StorageType.PRIMARY_STORAGE);
-        Atomic.Var<T> atomicVar = storage.getAtomicVar(name);
-        T serializableObject = klass.cast(atomicVar.get());
+        Atomic.Var<Object> atomicVar = storage.getAtomicVar(name);
+        Object value = atomicVar.get();
+        if(value instanceof byte[]) {
+            value = storageConfiguration.getSerializer().deserialize((byte[])value);
+        } //else the object was stored directly by an older version
+        T serializableObject = klass.cast(value);
 
         postDeserializer(serializableObject);
 
@@ -296,7 +317,11 @@ public class MapDBEngine extends AbstractFileStorageEngine<MapDBConfiguration> {
     //private methods of storage engine class
 
     /**
-     * Returns the appropriate Serializer (if one exists) else null.
+     * Returns the appropriate Serializer (if one exists) else null. Non-numeric
+     * classes which have a compact encoding in the configured ObjectSerializer
+     * use it instead of the default POJO serializer. The serializers are used
+     * only for new maps; MapDB stores them in its catalog, so the maps written
+     * by previous versions are read with their original serializers.
      *
      * @param klass
      * @return
@@ -314,6 +339,10 @@ public class MapDBEngine extends AbstractFileStorageEngine<MapDBConfiguration> {
         else if(klass == String.class) {
             return Serializer.STRING;
         }
+        else if(klass != Object.class && !Number.class.isAssignableFrom(klass) && storageConfiguration.getSerializer().isCompact(klass)) {
+            //numbers are already stored compactly by the default serializer
+            return new ObjectSerializerAdapter<>(storageConfiguration.getSerializer());
+        }
         return null; //Default POJO serializer
     }
 
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.mapdb;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+import org.mapdb.Serializer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Adapter which allows using an ObjectSerializer as the key or value serializer
+ * of the MapDB collections. The adapter is persisted in the catalog of MapDB
+ * and thus it must be Serializable.
+ *
+ * @param <A>
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class ObjectSerializerAdapter<A> implements Serializer<A>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ObjectSerializer serializer;
+
+    /**
+     * Public constructor.
+     *
+     * @param serializer
+     */
+    public ObjectSerializerAdapter(ObjectSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void serialize(DataOutput out, A value) throws IOException {
+        serializer.writeValue(out, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public A deserialize(DataInput in, int available) throws IOException {
+        return (A) serializer.readValue(in);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int fixedSize() {
+        return -1;
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.mapdb;
+
+import com.datumbox.framework.common.ConfigurableFactory;
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+import com.datumbox.framework.common.storage.interfaces.StorageEngine;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for MapDBEngine.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class MapDBEngineTest extends AbstractTest {
+
+    /**
+     * Test of loadObject and getBigMap methods with a storage written in the
+     * format of the previous versions, of class MapDBEngine. The objects were
+     * stored directly in the atomic vars and the values of the maps with the
+     * default POJO serializer.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLoadPreviousFormat() throws Exception {
+        logger.info("testLoadPreviousFormat");
+
+        String storageName = getClass().getSimpleName();
+        Path outputDirectory = Files.createTempDirectory(storageName);
+        Path rootPath = outputDirectory.resolve(storageName);
+        Files.createDirectories(rootPath);
+
+        AssociativeArray expResult = new AssociativeArray();
+        expResult.put("key", 1.0);
+
+        MapDBConfiguration configuration = ConfigurableFactory.getConfiguration(MapDBConfiguration.class);
+        configuration.setOutputDirectory(outputDirectory.toString());
+        configuration.setCompressed(false);
+
+        DB db = DBMaker.newFileDB(new File(rootPath.toFile(), "PRIMARY_STORAGE")).transactionDisable().make();
+        db.getAtomicVar("object").set(expResult);
+        Map<String, AssociativeArray> legacyMap = db.createHashMap("map").counterEnable().makeOrGet();
+        legacyMap.put("key", expResult);
+        db.commit();
+        db.close();
+
+        StorageEngine engine = configuration.createStorageEngine(storageName);
+
+        assertEquals(expResult, engine.loadObject("object", AssociativeArray.class));
+        Map<String, AssociativeArray> map = engine.getBigMap("map", String.class, AssociativeArray.class, StorageEngine.MapType.HASHMAP, StorageEngine.StorageHint.IN_CACHE, false, false);
+        assertEquals(expResult, map.get("key"));
+
+        engine.clear();
+        engine.close();
+        Files.deleteIfExists(outputDirectory);
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.mapdb;
+
+import com.datumbox.framework.common.dataobjects.AssociativeArray;
+import com.datumbox.framework.common.dataobjects.DataTable2D;
+import com.datumbox.framework.common.storage.serializers.BinarySerializer;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for ObjectSerializerAdapter.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class ObjectSerializerAdapterTest extends AbstractTest {
+
+    /**
+     * Builds values of all the types which are encoded by the BinarySerializer.
+     *
+     * @return
+     */
+    private Map<String, Object> getValues() {
+        AssociativeArray nested = new AssociativeArray();
+        nested.put("a", 1);
+        nested.put(2, Arrays.asList(1.0, "b"));
+        AssociativeArray aa = new AssociativeArray();
+        aa.put("nested", nested);
+        aa.put("value", -3L);
+
+        DataTable2D table = new DataTable2D();
+        table.put2d("row", "col1", 1.0);
+        table.put2d("row", "col2", "text");
+
+        Map<Object, Object> map = new HashMap<>();
+        map.put("list", new ArrayList<>(Arrays.asList(nested, 1)));
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("boolean", true);
+        values.put("short", (short)-2);
+        values.put("integer", Integer.MIN_VALUE);
+        values.put("long", Long.MAX_VALUE);
+        values.put("float", 1.5f);
+        values.put("double", Math.E);
+        values.put("string", "é中");
+        values.put("list", new ArrayList<>(Arrays.asList(null, 1, Arrays.asList("x"))));
+        values.put("associativeArray", aa);
+        values.put("dataTable2D", table);
+        values.put("map", map);
+        return values;
+    }
+
+    /**
+     * Test of serialize and deserialize methods, of class ObjectSerializerAdapter.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testSerializeDeserialize() throws IOException {
+        logger.info("testSerializeDeserialize");
+
+        ObjectSerializerAdapter<Object> adapter = new ObjectSerializerAdapter<>(new BinarySerializer());
+
+        List<Object> values = new ArrayList<>(getValues().values());
+        values.add(null);
+        for(Object value : values) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try(DataOutputStream out = new DataOutputStream(bos)) {
+                adapter.serialize(out, value);
+            }
+            byte[] bytes = bos.toByteArray();
+            try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+                assertEquals(value, adapter.deserialize(in, bytes.length));
+            }
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bos)) {
+            adapter.serialize(out, new double[]{1.0, 2.0});
+        }
+        byte[] bytes = bos.toByteArray();
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            assertArrayEquals(new double[]{1.0, 2.0}, (double[])adapter.deserialize(in, bytes.length), 0.0);
+        }
+    }
+
+    /**
+     * Test of using the ObjectSerializerAdapter as key and value serializer of
+     * a MapDB map, of class ObjectSerializerAdapter.
+     */
+    @Test
+    public void testMapDBMap() {
+        logger.info("testMapDBMap");
+
+        Map<String, Object> values = getValues();
+
+        DB db = DBMaker.newMemoryDB().transactionDisable().make();
+        Map<String, Object> map = db.createHashMap("test")
+                .keySerializer(new ObjectSerializerAdapter<String>(new BinarySerializer()))
+                .valueSerializer(new ObjectSerializerAdapter<>(new BinarySerializer()))
+                .make();
+        map.putAll(values);
+
+        assertEquals(values.size(), map.size());
+        for(Map.Entry<String, Object> e : values.entrySet()) {
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+        db.close();
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.mapdb3;
+
+import com.datumbox.framework.common.storage.abstracts.AbstractFileStorageConfiguration;
+import com.datumbox.framework.common.storage.interfaces.StorageEngine;
+
+import java.util.Properties;
+
+/**
+ * The MapDB3Configuration class is used to configure the MapDB 3 storage
+ * and generate new storage engines. MapDB 3 storage uses segmented collections
+ * which are backed by memory mapped files or direct memory and thus it does not
+ * load all the data in the heap. The data are stored in MapDB files.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class MapDB3Configuration extends AbstractFileStorageConfiguration {
+
+    private int concurrency = 8;
+
+    private boolean compressed = true;
+
+    private boolean hybridized = true;
+
+    private boolean memoryMapped = true;
+
+    /** {@inheritDoc} */
+    @Override
+    public StorageEngine createStorageEngine(String storageName) {
+        return new MapDB3Engine(storageName, this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void load(Properties properties) {
+        outputDirectory = properties.getProperty("mapDB3Configuration.outputDirectory");
+        serializer = createSerializer(properties.getProperty("mapDB3Configuration.serializer"));
+        concurrency = Integer.parseInt(properties.getProperty("mapDB3Configuration.concurrency"));
+        compressed = "true".equalsIgnoreCase(properties.getProperty("mapDB3Configuration.compressed"));
+        hybridized = "true".equalsIgnoreCase(properties.getProperty("mapDB3Configuration.hybridized"));
+        memoryMapped = "true".equalsIgnoreCase(properties.getProperty("mapDB3Configuration.memoryMapped"));
+    }
+
+    /**
+     * Getter for the number of segments of the concurrent BigMaps.
+     *
+     * @return
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Setter for the number of segments of the concurrent BigMaps. Every
+     * segment of a hash map has its own lock, so threads which write in
+     * different segments do not block each other. It is rounded up to a power
+     * of 2 by MapDB.
+     *
+     * @param concurrency
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Getter for the compression option.
+     *
+     * @return
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Setter for the compression option. If turned on the values of the BigMaps
+     * which are stored on disk will be compressed. It is turned on by default.
+     *
+     * @param compressed
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * Getter for the Hybridized option.
+     *
+     * @return
+     */
+    public boolean isHybridized() {
+        return hybridized;
+    }
+
+    /**
+     * Setter for the Hybridized option. If turned on, it will take into
+     * account the storage hints provided during Map initialization and it will
+     * move more objects out of MapDB and into main Memory. This will lead to
+     * significantly improved speed but also higher memory utilization.
+     *
+     * @param hybridized
+     */
+    public void setHybridized(boolean hybridized) {
+        this.hybridized = hybridized;
+    }
+
+    /**
+     * Getter for the memory mapped option.
+     *
+     * @return
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Setter for the memory mapped option. If turned on and it is supported by
+     * the platform, the files of the storage are accessed using memory mapped
+     * buffers instead of random access files.
+     *
+     * @param memoryMapped
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+}
@@ -0,0 +1,394 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.mapdb3;
+
+import com.datumbox.framework.common.storage.abstracts.AbstractFileStorageEngine;
+import com.datumbox.framework.common.storage.abstracts.AbstractStorageEngine;
+import com.datumbox.framework.common.storage.interfaces.StorageConfiguration;
+import com.datumbox.framework.common.storage.interfaces.StorageEngine;
+import org.mapdb.*;
+import org.mapdb.serializer.GroupSerializer;
+import org.mapdb.serializer.SerializerCompressionWrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+
+/**
+ * The MapDB3Engine is responsible for saving and loading data from MapDB 3 files,
+ * creating BigMaps which are backed by files or direct memory and storing data.
+ * The concurrent hash maps are split in segments which are locked separately
+ * and the tree maps are thread-safe without any external synchronization. The
+ * MapDB3Engine does not load all the contents of BigMaps in the heap and stores
+ * all data in MapDB files.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class MapDB3Engine extends AbstractFileStorageEngine<MapDB3Configuration> {
+
+    /**
+     * Enum class which stores the Storage Type used for every collection.
+     */
+    private enum StorageType {
+        /**
+         * Primary storage stores all the BigMaps and atomic variables which will
+         * be stored after the connection closes.
+         */
+        PRIMARY_STORAGE,
+
+        /**
+         * Temp memory storage is kept in direct memory and it is used to store
+         * the temporary BigMaps with IN_MEMORY and IN_CACHE storage hints which
+         * will not be stored after the connection closes.
+         */
+        TEMP_MEMORY_STORAGE,
+
+        /**
+         * Temp disk storage is backed by a temporary file and it is used to store
+         * the large temporary BigMaps which will not be stored after the
+         * connection closes.
+         */
+        TEMP_DISK_STORAGE;
+    }
+
+    /**
+     * This list stores all the storage objects which are used to store the data.
+     */
+    private final Map<StorageType, DB> storageRegistry = new HashMap<>();
+
+    /**
+     * @param storageName
+     * @param storageConfiguration
+     * @see AbstractStorageEngine#AbstractStorageEngine(String, StorageConfiguration)
+     */
+    protected MapDB3Engine(String storageName, MapDB3Configuration storageConfiguration) {
+        super(storageName, storageConfiguration);
+        assertMapDBVersion();
+    }
+
+    /**
+     * MapDB 3 is published under the same artifact and packages as MapDB 1, so
+     * the MapDB and MapDB3 storage modules are mutually exclusive and only one
+     * version of the library ends up in the classpath. This method fails fast
+     * if MapDB 1 was resolved instead of MapDB 3.
+     */
+    private static void assertMapDBVersion() {
+        try {
+            Class.forName("org.mapdb.DBMaker$Maker", false, DB.class.getClassLoader());
+        }
+        catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("The MapDB3Engine requires MapDB 3 but an older version of org.mapdb:mapdb was found in the classpath. The MapDB and MapDB3 storage modules can not be used together.", ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean rename(String newStorageName) {
+        assertConnectionOpen();
+        if(storageName.equals(newStorageName)) {
+            return false;
+        }
+
+        DB storage = storageRegistry.remove(StorageType.PRIMARY_STORAGE);
+        if(isOpenStorage(storage)) {
+            storage.close(); //MapDB 3 closes the files synchronously
+        }
+
+        try {
+            moveDirectory(getRootPath(storageName), getRootPath(newStorageName));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        logger.trace("Renamed storage {} to {}", storageName, newStorageName);
+        storageName = newStorageName;
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean existsObject(String name) {
+        assertConnectionOpen();
+        DB storage = openStorage(StorageType.PRIMARY_STORAGE);
+
+        return storage.exists(name);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T extends Serializable> void saveObject(String name, T serializableObject) {
+        assertConnectionOpen();
+        DB storage = openStorage(StorageType.PRIMARY_STORAGE);
+        Atomic.Var<byte[]> atomicVar = storage.atomicVar(name, Serializer.BYTE_ARRAY).createOrOpen();
+
+        Map<String, Object> objRefs = preSerializer(serializableObject);
+
+        atomicVar.set(storageConfiguration.getSerializer().serialize(serializableObject));
+        storage.commit();
+
+        postSerializer(serializableObject, objRefs);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T extends Serializable> T loadObject(String name, Class<T> klass) throws NoSuchElementException {
+        assertConnectionOpen();
+
+        if(!existsObject(name)) {
+            throw new NoSuchElementException("Can't find any object with name '"+name+"'");
+        }
+
+        DB storage = openStorage(StorageType.PRIMARY_STORAGE);
+        Atomic.Var<byte[]> atomicVar = storage.atomicVar(name, Serializer.BYTE_ARRAY).open();
+        T serializableObject = klass.cast(storageConfiguration.getSerializer().deserialize(atomicVar.get()));
+
+        postDeserializer(serializableObject);
+
+        return serializableObject;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        if(isClosed()){
+            return;
+        }
+        super.close();
+
+        closeStorageRegistry();
+        logger.trace("Closed storage {}", storageName);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        assertConnectionOpen();
+
+        closeStorageRegistry();
+
+        try {
+            deleteDirectory(getRootPath(storageName), true);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K,V> Map<K,V> getBigMap(String name, Class<K> keyClass, Class<V> valueClass, StorageEngine.MapType type, StorageEngine.StorageHint storageHint, boolean isConcurrent, boolean isTemporary) {
+        assertConnectionOpen();
+
+        if(storageHint == StorageEngine.StorageHint.IN_MEMORY && storageConfiguration.isHybridized()) {
+            //store in memory
+            if(StorageEngine.MapType.HASHMAP.equals(type)) {
+                return isConcurrent?new ConcurrentHashMap<>():new HashMap<>();
+            }
+            else if(StorageEngine.MapType.TREEMAP.equals(type)) {
+                return isConcurrent?new ConcurrentSkipListMap<>():new TreeMap<>();
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported MapType.");
+            }
+        }
+        else {
+            //store in MapDB
+
+            //first find if the particular collection exists and retrieve its storageType
+            StorageType storageType = getStorageTypeFromName(name);
+
+            if(storageType == null) {
+                //the map does not exist. Find where it should be created.
+                if(isTemporary == false) {
+                    storageType = StorageType.PRIMARY_STORAGE;
+                }
+                else if(storageHint == StorageEngine.StorageHint.IN_MEMORY || storageHint == StorageEngine.StorageHint.IN_CACHE) {
+                    storageType = StorageType.TEMP_MEMORY_STORAGE;
+                }
+                else if(storageHint == StorageEngine.StorageHint.IN_DISK) {
+                    storageType = StorageType.TEMP_DISK_STORAGE;
+                }
+                else {
+                    throw new IllegalArgumentException("Unsupported StorageHint.");
+                }
+            }
+
+            //ensure the storage is open
+            DB storage = openStorage(storageType);
+
+            //the values which are stored on disk are compressed
+            GroupSerializer<V> valueSerializer = (GroupSerializer<V>) getSerializerFromClass(storage, valueClass);
+            if(storageConfiguration.isCompressed() && storageType != StorageType.TEMP_MEMORY_STORAGE) {
+                valueSerializer = new SerializerCompressionWrapper<>(valueSerializer);
+            }
+
+            //return the appropriate type
+            if(StorageEngine.MapType.HASHMAP.equals(type)) {
+                return storage.hashMap(name, (GroupSerializer<K>) getSerializerFromClass(storage, keyClass), valueSerializer)
+                .layout(isConcurrent?storageConfiguration.getConcurrency():1, 16, 4)
+                .counterEnable()
+                .createOrOpen();
+            }
+            else if(StorageEngine.MapType.TREEMAP.equals(type)) {
+                return storage.treeMap(name, (GroupSerializer<K>) getSerializerFromClass(storage, keyClass), valueSerializer)
+                .valuesOutsideNodesEnable()
+                .counterEnable()
+                .createOrOpen();
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported MapType.");
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T extends Map> void dropBigMap(String name, T map) {
+        assertConnectionOpen();
+
+        //MapDB 3 can't delete a collection from its catalog, so the map is always cleared
+        map.clear();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Set<Class> nonSerializableBigMaps() {
+        return new HashSet<>(Arrays.asList(HTreeMap.class, BTreeMap.class));
+    }
+
+    //private methods of storage engine class
+
+    /**
+     * Returns the appropriate Serializer for the class. Non-numeric classes which
+     * have a compact encoding in the configured ObjectSerializer use it instead
+     * of the default serializer of the storage.
+     *
+     * @param storage
+     * @param klass
+     * @return
+     */
+    private GroupSerializer<?> getSerializerFromClass(DB storage, Class<?> klass) {
+        if(klass == Integer.class) {
+            return Serializer.INTEGER;
+        }
+        else if(klass == Long.class) {
+            return Serializer.LONG;
+        }
+        else if(klass == Boolean.class) {
+            return Serializer.BOOLEAN;
+        }
+        else if(klass == String.class) {
+            return Serializer.STRING;
+        }
+        else if(klass != Object.class && !Number.class.isAssignableFrom(klass) && storageConfiguration.getSerializer().isCompact(klass)) {
+            //numbers are already stored compactly by the default serializer
+            return new ObjectSerializerAdapter<>(storageConfiguration.getSerializer());
+        }
+        return storage.getDefaultSerializer();
+    }
+
+    private boolean isOpenStorage(DB storage) {
+        return !(storage == null || storage.isClosed());
+    }
+
+    /**
+     * Opens the storage (if not already open) and returns the storage object.
+     *
+     * @param storageType
+     * @return
+     */
+    private DB openStorage(StorageType storageType) {
+        DB storage = storageRegistry.get(storageType);
+        if(!isOpenStorage(storage)) {
+            DBMaker.Maker m;
+            if(storageType == StorageType.PRIMARY_STORAGE) {
+                //main storage
+                Path rootPath = getRootPath(storageName);
+                try {
+                    createDirectoryIfNotExists(rootPath);
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+
+                m = DBMaker.fileDB(new File(rootPath.toFile(), storageType.toString()));
+            }
+            else if(storageType == StorageType.TEMP_MEMORY_STORAGE) {
+                //temporary storage outside of the heap
+                m = DBMaker.memoryDirectDB();
+            }
+            else if(storageType == StorageType.TEMP_DISK_STORAGE) {
+                //temporary storage on disk
+                m = DBMaker.tempFileDB().fileDeleteAfterClose();
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported StorageType.");
+            }
+
+            if(storageType != StorageType.TEMP_MEMORY_STORAGE && storageConfiguration.isMemoryMapped()) {
+                //the cleaner hack unmaps the files on close so that they can be moved or deleted
+                m = m.fileMmapEnableIfSupported().cleanerHackEnable();
+            }
+
+            m = m.concurrencyScale(storageConfiguration.getConcurrency());
+
+            m = m.closeOnJvmShutdown();
+
+            storage = m.make();
+            storageRegistry.put(storageType, storage);
+        }
+        return storage;
+    }
+
+    /**
+     * Returns the StorageType using the name of the map. It assumes that names
+     * are unique across all StorageType. If not found null is returned.
+     *
+     * @param name
+     * @return
+     */
+    private StorageType getStorageTypeFromName(String name) {
+        for(Map.Entry<StorageType, DB> entry : storageRegistry.entrySet()) {
+            DB storage = entry.getValue();
+            if(isOpenStorage(storage) && storage.exists(name)) {
+                return entry.getKey();
+            }
+        }
+
+        return null; //either the Map has not created yet OR it is in memory
+    }
+
+    /**
+     * It closes all the storageengines in the registry.
+     */
+    private void closeStorageRegistry() {
+        for(DB storage : storageRegistry.values()) {
+            if(isOpenStorage(storage)) {
+                storage.close();
+            }
+        }
+        storageRegistry.clear();
+    }
+
+}
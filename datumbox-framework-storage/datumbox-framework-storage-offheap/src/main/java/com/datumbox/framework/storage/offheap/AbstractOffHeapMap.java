@@ -0,0 +1,556 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.offheap;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Base class of the Maps which keep their entries outside of the Java heap. The
+ * keys and values are encoded with the ObjectSerializer and they are stored in
+ * an Arena, while the subclasses maintain an off-heap index of the addresses of
+ * the entries. Optionally the most recently used values are kept in an LRU cache
+ * in the heap. The replaced and removed entries leave garbage in the Arena
+ * which is reclaimed by compacting the live entries in a new Arena. The read
+ * operations are thread-safe even if the map is not concurrent, since the
+ * shared cache is guarded by its own lock. The modifications must be
+ * synchronized externally.
+ *
+ * @param <K>
+ * @param <V>
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+abstract class AbstractOffHeapMap<K, V> extends AbstractMap<K, V> {
+
+    /**
+     * Address which denotes a missing entry.
+     */
+    protected static final long NONE = -1L;
+
+    /**
+     * The entries start with the hash code of the key, the length of the key
+     * and the length of the value.
+     */
+    private static final int HEADER_SIZE = 12;
+
+    private final ObjectSerializer serializer;
+
+    private final Map<Object, V> cache;
+
+    private Arena arena;
+
+    private int size = 0;
+
+    private long liveBytes = 0L;
+
+    private long garbageBytes = 0L;
+
+    /**
+     * Iterates through the addresses of the index.
+     */
+    protected interface AddressIterator {
+
+        /**
+         * Returns whether there are more addresses.
+         *
+         * @return
+         */
+        public boolean hasNext();
+
+        /**
+         * Returns the next address.
+         *
+         * @return
+         */
+        public long next();
+
+        /**
+         * Called after the entry of the last address is removed.
+         */
+        public void afterRemove();
+    }
+
+    /**
+     * @param arena
+     * @param serializer
+     * @param cacheSize
+     */
+    protected AbstractOffHeapMap(Arena arena, ObjectSerializer serializer, int cacheSize) {
+        this.arena = arena;
+        this.serializer = serializer;
+        if(cacheSize > 0) {
+            cache = new LinkedHashMap<Object, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, V> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        }
+        else {
+            cache = null;
+        }
+    }
+
+    /**
+     * Returns the address of the entry of the key or NONE if it does not exist.
+     *
+     * @param key
+     * @return
+     */
+    protected abstract long findEntry(Object key);
+
+    /**
+     * Stores the address of the entry of the key in the index and returns the
+     * address of the entry which was replaced or NONE.
+     *
+     * @param key
+     * @param hash
+     * @param address
+     * @return
+     */
+    protected abstract long replaceEntry(Object key, int hash, long address);
+
+    /**
+     * Removes the key from the index and returns the address of its entry or
+     * NONE if it does not exist.
+     *
+     * @param key
+     * @return
+     */
+    protected abstract long deleteEntry(Object key);
+
+    /**
+     * Removes all the addresses from the index.
+     */
+    protected abstract void clearEntries();
+
+    /**
+     * Replaces in place every address of the index with the result of the
+     * operator.
+     *
+     * @param relocation
+     */
+    protected abstract void relocateEntries(LongUnaryOperator relocation);
+
+    /**
+     * Returns an iterator over the addresses of the index.
+     *
+     * @return
+     */
+    protected abstract AddressIterator addresses();
+
+    /**
+     * Frees the memory of the index.
+     */
+    protected abstract void releaseIndex();
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsKey(Object key) {
+        if(cache != null) {
+            synchronized(cache) {
+                if(cache.containsKey(key)) {
+                    return true;
+                }
+            }
+        }
+        return findEntry(key) != NONE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V get(Object key) {
+        if(cache != null) {
+            synchronized(cache) { //the lookups reorder the access-ordered cache
+                V value = cache.get(key);
+                if(value != null || cache.containsKey(key)) {
+                    return value;
+                }
+            }
+        }
+
+        long address = findEntry(key);
+        if(address == NONE) {
+            return null;
+        }
+        V value = readValue(address);
+        cacheValue(key, value);
+        return value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V put(K key, V value) {
+        int hash = Objects.hashCode(key);
+        long oldAddress = replaceEntry(key, hash, writeEntry(hash, key, value));
+
+        V oldValue = null;
+        if(oldAddress != NONE) {
+            oldValue = readValue(oldAddress);
+            freeEntry(oldAddress);
+        }
+        else {
+            size++;
+        }
+        cacheValue(key, value);
+
+        compactIfNeeded();
+        return oldValue;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V remove(Object key) {
+        if(cache != null) {
+            synchronized(cache) {
+                cache.remove(key);
+            }
+        }
+
+        long oldAddress = deleteEntry(key);
+        if(oldAddress == NONE) {
+            return null;
+        }
+        V oldValue = readValue(oldAddress);
+        freeEntry(oldAddress);
+        size--;
+
+        compactIfNeeded();
+        return oldValue;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        clearEntries();
+        Arena emptyArena = arena.emptyCopy();
+        arena.discard();
+        arena = emptyArena;
+        size = 0;
+        liveBytes = 0L;
+        garbageBytes = 0L;
+        if(cache != null) {
+            synchronized(cache) {
+                cache.clear();
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new OffHeapIterator<K>() {
+                    @Override
+                    protected K decode(long address) {
+                        return readKey(address);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if(!containsKey(o)) {
+                    return false;
+                }
+                AbstractOffHeapMap.this.remove(o);
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                AbstractOffHeapMap.this.clear();
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new OffHeapIterator<V>() {
+                    @Override
+                    protected V decode(long address) {
+                        return readValue(address);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                AbstractOffHeapMap.this.clear();
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new OffHeapIterator<Entry<K, V>>() {
+                    @Override
+                    protected Entry<K, V> decode(long address) {
+                        return new OffHeapEntry(readKey(address), readValue(address));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                AbstractOffHeapMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Frees immediately all the memory which is used by the map. The map must
+     * not be used after calling this method.
+     */
+    void release() {
+        releaseIndex();
+        arena.release();
+        arena = null;
+        if(cache != null) {
+            synchronized(cache) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the hash code of the key of the entry.
+     *
+     * @param address
+     * @return
+     */
+    protected int readHash(long address) {
+        return arena.getInt(address);
+    }
+
+    /**
+     * Decodes the key of the entry.
+     *
+     * @param address
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected K readKey(long address) {
+        try {
+            return (K)serializer.readValue(input(address + HEADER_SIZE));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Decodes the value of the entry.
+     *
+     * @param address
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected V readValue(long address) {
+        try {
+            return (V)serializer.readValue(input(address + HEADER_SIZE + arena.getInt(address + 4)));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Checks whether the entry belongs to the provided key.
+     *
+     * @param address
+     * @param key
+     * @param hash
+     * @return
+     */
+    protected boolean matches(long address, Object key, int hash) {
+        return readHash(address) == hash && Objects.equals(key, readKey(address));
+    }
+
+    /**
+     * Stores the value of the key in the cache, if the cache is enabled.
+     *
+     * @param key
+     * @param value
+     */
+    private void cacheValue(Object key, V value) {
+        if(cache != null) {
+            synchronized(cache) {
+                cache.put(key, value);
+            }
+        }
+    }
+
+    private DataInput input(long address) {
+        return new DataInputStream(new ByteBufferInputStream(arena.buffer(address)));
+    }
+
+    private int entryLength(long address) {
+        return HEADER_SIZE + arena.getInt(address + 4) + arena.getInt(address + 8);
+    }
+
+    private long writeEntry(int hash, Object key, Object value) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            serializer.writeValue(out, key);
+            int keyLength = out.size();
+            serializer.writeValue(out, value);
+            int valueLength = out.size() - keyLength;
+            out.flush();
+
+            long address = arena.allocate(HEADER_SIZE + keyLength + valueLength);
+            ByteBuffer b = arena.buffer(address);
+            b.putInt(hash).putInt(keyLength).putInt(valueLength);
+            b.put(bos.toByteArray());
+            liveBytes += HEADER_SIZE + keyLength + valueLength;
+            return address;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void freeEntry(long address) {
+        int length = entryLength(address);
+        liveBytes -= length;
+        garbageBytes += length;
+    }
+
+    /**
+     * Moves the live entries to a new Arena when the garbage exceeds the live
+     * data. The old Arena is not freed explicitly, so any buffer which is
+     * still being read remains valid until it is garbage collected.
+     */
+    private void compactIfNeeded() {
+        if(garbageBytes <= liveBytes || garbageBytes <= arena.getSegmentSize()) {
+            return;
+        }
+        Arena target = arena.emptyCopy();
+        relocateEntries(address -> {
+            int length = entryLength(address);
+            long newAddress = target.allocate(length);
+            ByteBuffer src = arena.buffer(address);
+            src.limit(src.position() + length);
+            target.buffer(newAddress).put(src);
+            return newAddress;
+        });
+        arena.discard();
+        arena = target;
+        garbageBytes = 0L;
+    }
+
+    /**
+     * Entry which writes back to the map the new values.
+     */
+    private class OffHeapEntry extends SimpleEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private OffHeapEntry(K key, V value) {
+            super(key, value);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Iterates in the order of the index and decodes only the necessary parts
+     * of the entries.
+     *
+     * @param <T>
+     */
+    private abstract class OffHeapIterator<T> implements Iterator<T> {
+        private final AddressIterator it = addresses();
+        private long lastAddress = NONE;
+
+        /**
+         * Decodes the element from the entry.
+         *
+         * @param address
+         * @return
+         */
+        protected abstract T decode(long address);
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T next() {
+            lastAddress = it.next();
+            return decode(lastAddress);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            if(lastAddress == NONE) {
+                throw new IllegalStateException();
+            }
+            AbstractOffHeapMap.this.remove(readKey(lastAddress));
+            it.afterRemove();
+            lastAddress = NONE;
+        }
+    }
+
+}
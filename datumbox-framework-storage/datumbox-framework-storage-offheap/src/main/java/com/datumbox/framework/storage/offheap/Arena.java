@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.offheap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Arena allocates space outside of the Java heap in segments. The segments
+ * are either direct ByteBuffers or regions of a temporary file which are memory
+ * mapped. The allocated space is addressed with a long which contains the
+ * index of the segment and the offset within it.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+class Arena {
+
+    private final int segmentSize;
+
+    private final boolean fileBacked;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    private int position = 0;
+
+    private Path file = null;
+
+    private FileChannel channel = null;
+
+    private long fileLength = 0L;
+
+    /**
+     * @param segmentSize
+     * @param fileBacked
+     */
+    Arena(int segmentSize, boolean fileBacked) {
+        this.segmentSize = segmentSize;
+        this.fileBacked = fileBacked;
+    }
+
+    /**
+     * Returns a new empty Arena with the same configuration.
+     *
+     * @return
+     */
+    Arena emptyCopy() {
+        return new Arena(segmentSize, fileBacked);
+    }
+
+    /**
+     * Getter for the segment size.
+     *
+     * @return
+     */
+    int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Allocates the requested number of bytes and returns their address. An
+     * allocation never spans across segments.
+     *
+     * @param length
+     * @return
+     */
+    long allocate(int length) {
+        int lastSegment = segments.size()-1;
+        if(lastSegment < 0 || segments.get(lastSegment).capacity() - position < length) {
+            segments.add(newSegment(Math.max(segmentSize, length)));
+            lastSegment++;
+            position = 0;
+        }
+        long address = address(lastSegment, position);
+        position += length;
+        return address;
+    }
+
+    /**
+     * Returns a duplicate of the segment which is positioned at the provided
+     * address. Since the segment is duplicated, the method is thread-safe.
+     *
+     * @param address
+     * @return
+     */
+    ByteBuffer buffer(long address) {
+        ByteBuffer b = segments.get((int)(address >>> 32)).duplicate();
+        b.position((int)address);
+        return b;
+    }
+
+    /**
+     * Reads an int from the provided address.
+     *
+     * @param address
+     * @return
+     */
+    int getInt(long address) {
+        return segments.get((int)(address >>> 32)).getInt((int)address);
+    }
+
+    /**
+     * Releases immediately all the memory and the files that are used by the
+     * Arena. The Arena must not be used after calling this method.
+     */
+    void release() {
+        for(ByteBuffer segment : segments) {
+            free(segment);
+        }
+        discard();
+    }
+
+    /**
+     * Discards the Arena without freeing its memory explicitly. The memory is
+     * released when the segments are garbage collected, so readers which still
+     * hold a reference to the segments remain safe. The Arena must not be used
+     * after calling this method.
+     */
+    void discard() {
+        segments.clear();
+        if(channel != null) {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            }
+            catch (IOException ex) {
+                //some platforms do not permit deleting files which are still mapped
+                file.toFile().deleteOnExit();
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Frees the memory of a direct or mapped buffer without waiting for the
+     * garbage collector. If the buffer can't be freed, the memory is released
+     * when the buffer is garbage collected.
+     *
+     * @param buffer
+     */
+    static void free(ByteBuffer buffer) {
+        if(!buffer.isDirect()) {
+            return;
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if(cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        }
+        catch (Exception ex) {
+            //the cleaner is not accessible; leave it to the garbage collector
+        }
+    }
+
+    private static long address(int segment, int offset) {
+        return ((long)segment << 32) | offset;
+    }
+
+    private ByteBuffer newSegment(int size) {
+        if(!fileBacked) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        try {
+            if(channel == null) {
+                file = Files.createTempFile("datumbox-offheap", ".tmp");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            ByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, fileLength, size);
+            fileLength += size;
+            return segment;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
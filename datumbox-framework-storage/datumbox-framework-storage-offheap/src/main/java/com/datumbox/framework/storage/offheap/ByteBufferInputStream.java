@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.offheap;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Exposes the remaining bytes of a ByteBuffer as an InputStream.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * @param buffer
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int read() {
+        return buffer.hasRemaining()?(buffer.get() & 0xFF):-1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+        if(len == 0) {
+            return 0;
+        }
+        if(!buffer.hasRemaining()) {
+            return -1;
+        }
+        len = Math.min(len, buffer.remaining());
+        buffer.get(bytes, off, len);
+        return len;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.offheap;
+
+import com.datumbox.framework.common.storage.abstracts.AbstractFileStorageConfiguration;
+import com.datumbox.framework.common.storage.interfaces.StorageEngine;
+
+import java.util.Properties;
+
+/**
+ * The OffHeapConfiguration class is used to configure the OffHeap storage
+ * and generate new storage engines. OffHeap storage keeps the BigMaps outside
+ * of the Java heap and stores all data in serialized files.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class OffHeapConfiguration extends AbstractFileStorageConfiguration {
+
+    private int cacheSize = 10000;
+
+    private int segmentSize = 4194304;
+
+    private boolean hybridized = false;
+
+    /** {@inheritDoc} */
+    @Override
+    public StorageEngine createStorageEngine(String storageName) {
+        return new OffHeapEngine(storageName, this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void load(Properties properties) {
+        outputDirectory = properties.getProperty("offHeapConfiguration.outputDirectory");
+        serializer = createSerializer(properties.getProperty("offHeapConfiguration.serializer"));
+        cacheSize = Integer.parseInt(properties.getProperty("offHeapConfiguration.cacheSize"));
+        segmentSize = Integer.parseInt(properties.getProperty("offHeapConfiguration.segmentSize"));
+        hybridized = "true".equalsIgnoreCase(properties.getProperty("offHeapConfiguration.hybridized"));
+    }
+
+    /**
+     * Getter for the size of items stored in the LRU cache of each BigMap.
+     *
+     * @return
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Setter for the size of items stored in the LRU cache of each BigMap. The
+     * cache keeps the decoded values in the heap and it is used only by the
+     * BigMaps with IN_MEMORY and IN_CACHE storage hints. Set it to 0 to turn
+     * off caching.
+     *
+     * @param cacheSize
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Getter for the size in bytes of the off-heap segments.
+     *
+     * @return
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Setter for the size in bytes of the off-heap segments. The BigMaps
+     * allocate their memory in segments of this size.
+     *
+     * @param segmentSize
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Getter for the Hybridized option.
+     *
+     * @return
+     */
+    public boolean isHybridized() {
+        return hybridized;
+    }
+
+    /**
+     * Setter for the Hybridized option. If turned on, the BigMaps with the
+     * IN_MEMORY storage hint are stored in the heap instead of off-heap. This
+     * leads to improved speed but also to higher heap utilization.
+     *
+     * @param hybridized
+     */
+    public void setHybridized(boolean hybridized) {
+        this.hybridized = hybridized;
+    }
+
+}
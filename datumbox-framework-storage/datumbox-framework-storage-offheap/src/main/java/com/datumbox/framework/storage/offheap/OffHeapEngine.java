@@ -0,0 +1,311 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.offheap;
+
+import com.datumbox.framework.common.storage.abstracts.AbstractFileStorageEngine;
+import com.datumbox.framework.common.storage.abstracts.AbstractStorageEngine;
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+import com.datumbox.framework.common.storage.interfaces.StorageConfiguration;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+
+/**
+ * The OffHeapEngine is responsible for saving and loading data from files,
+ * creating BigMaps which keep their entries outside of the Java heap and storing
+ * data. The BigMaps with the IN_DISK storage hint are backed by memory mapped
+ * temporary files while the rest are backed by direct memory and maintain an
+ * LRU cache to speed up data retrieval. The objects and the BigMaps are stored
+ * in serialized files.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class OffHeapEngine extends AbstractFileStorageEngine<OffHeapConfiguration> {
+
+    /**
+     * Keeps the off-heap map of every BigMap which is returned by the engine, so
+     * that its memory can be released.
+     */
+    private Map<Map<?, ?>, AbstractOffHeapMap<?, ?>> offHeapMaps = new IdentityHashMap<>();
+
+    /**
+     * Flag which is set while an object is loaded, so that the BigMaps which are
+     * requested by the postDeserializer are read from their files.
+     */
+    private boolean loadingObject = false;
+
+    /**
+     * @param storageName
+     * @param storageConfiguration
+     * @see AbstractStorageEngine#AbstractStorageEngine(String, StorageConfiguration)
+     */
+    protected OffHeapEngine(String storageName, OffHeapConfiguration storageConfiguration) {
+        super(storageName, storageConfiguration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean rename(String newStorageName) {
+        assertConnectionOpen();
+        if(storageName.equals(newStorageName)) {
+            return false;
+        }
+
+        try {
+            moveDirectory(getRootPath(storageName), getRootPath(newStorageName));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        logger.trace("Renamed storage {} to {}", storageName, newStorageName);
+        storageName = newStorageName;
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean existsObject(String name) {
+        assertConnectionOpen();
+        return new File(getRootPath(storageName).toFile(), name).exists();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T extends Serializable> void saveObject(String name, T serializableObject) {
+        assertConnectionOpen();
+        try {
+            Path rootPath = getRootPath(storageName);
+            createDirectoryIfNotExists(rootPath);
+
+            Map<String, Object> objRefs = preSerializer(serializableObject);
+
+            Path objectPath = new File(rootPath.toFile(), name).toPath();
+            Files.write(objectPath, storageConfiguration.getSerializer().serialize(serializableObject));
+
+            //the off-heap BigMaps are written in separate files
+            for(Map.Entry<String, Object> e : objRefs.entrySet()) {
+                writeBigMap(getBigMapPath(e.getKey()), (Map<?, ?>)e.getValue());
+            }
+
+            postSerializer(serializableObject, objRefs);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T extends Serializable> T loadObject(String name, Class<T> klass) throws NoSuchElementException {
+        assertConnectionOpen();
+
+        if(!existsObject(name)) {
+            throw new NoSuchElementException("Can't find any object with name '"+name+"'");
+        }
+
+        T obj;
+        loadingObject = true;
+        try {
+            Path objectPath = new File(getRootPath(storageName).toFile(), name).toPath();
+            Object serializableObject = storageConfiguration.getSerializer().deserialize(Files.readAllBytes(objectPath));
+            obj = klass.cast(serializableObject);
+
+            postDeserializer(obj);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        finally {
+            loadingObject = false;
+        }
+        return obj;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        if(isClosed()){
+            return;
+        }
+        super.close();
+        releaseOffHeapMaps();
+        offHeapMaps = null;
+        logger.trace("Closed storage {}", storageName);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        assertConnectionOpen();
+        releaseOffHeapMaps();
+        try {
+            deleteDirectory(getRootPath(storageName), true);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <K,V> Map<K,V> getBigMap(String name, Class<K> keyClass, Class<V> valueClass, MapType type, StorageHint storageHint, boolean isConcurrent, boolean isTemporary) {
+        assertConnectionOpen();
+
+        Map<K,V> m;
+        if(storageHint == StorageHint.IN_MEMORY && storageConfiguration.isHybridized()) {
+            //store in heap
+            if(MapType.HASHMAP.equals(type)) {
+                m = isConcurrent?new ConcurrentHashMap<>():new HashMap<>();
+            }
+            else if(MapType.TREEMAP.equals(type)) {
+                m = isConcurrent?new ConcurrentSkipListMap<>():new TreeMap<>();
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported MapType.");
+            }
+        }
+        else {
+            //store off-heap with optional LRU cache
+            Arena arena;
+            int cacheSize;
+            if(storageHint == StorageHint.IN_MEMORY || storageHint == StorageHint.IN_CACHE) {
+                arena = new Arena(storageConfiguration.getSegmentSize(), false);
+                cacheSize = storageConfiguration.getCacheSize();
+            }
+            else if(storageHint == StorageHint.IN_DISK) {
+                arena = new Arena(storageConfiguration.getSegmentSize(), true);
+                cacheSize = 0;
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported StorageHint.");
+            }
+
+            AbstractOffHeapMap<K,V> offHeapMap;
+            if(MapType.HASHMAP.equals(type)) {
+                offHeapMap = new OffHeapHashMap<>(arena, storageConfiguration.getSerializer(), cacheSize);
+            }
+            else if(MapType.TREEMAP.equals(type)) {
+                offHeapMap = new OffHeapTreeMap<>(arena, storageConfiguration.getSerializer(), cacheSize);
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported MapType.");
+            }
+
+            m = isConcurrent?Collections.synchronizedMap(offHeapMap):offHeapMap;
+            offHeapMaps.put(m, offHeapMap);
+        }
+
+        if(loadingObject && !isTemporary) {
+            Path bigMapPath = getBigMapPath(name);
+            if(Files.exists(bigMapPath)) {
+                readBigMap(bigMapPath, m);
+            }
+        }
+
+        return m;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T extends Map> void dropBigMap(String name, T map) {
+        assertConnectionOpen();
+
+        AbstractOffHeapMap<?, ?> offHeapMap = offHeapMaps.remove(map);
+        if(offHeapMap != null) {
+            offHeapMap.release();
+        }
+        else {
+            //the map is stored in heap
+            map.clear();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Set<Class> nonSerializableBigMaps() {
+        return new HashSet<>(Arrays.asList(OffHeapHashMap.class, OffHeapTreeMap.class));
+    }
+
+    //private methods of storage engine class
+
+    /**
+     * Returns the path of the file of a BigMap.
+     *
+     * @param name
+     * @return
+     */
+    private Path getBigMapPath(String name) {
+        return new File(getRootPath(storageName).toFile(), name + ".bigmap").toPath();
+    }
+
+    /**
+     * Writes the size and the entries of the map in the file.
+     *
+     * @param path
+     * @param map
+     * @throws IOException
+     */
+    private void writeBigMap(Path path, Map<?, ?> map) throws IOException {
+        ObjectSerializer serializer = storageConfiguration.getSerializer();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(map.size());
+            for(Map.Entry<?, ?> e : map.entrySet()) {
+                serializer.writeValue(out, e.getKey());
+                serializer.writeValue(out, e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads the entries of the file in the map.
+     *
+     * @param path
+     * @param map
+     * @param <K>
+     * @param <V>
+     */
+    @SuppressWarnings("unchecked")
+    private <K,V> void readBigMap(Path path, Map<K,V> map) {
+        ObjectSerializer serializer = storageConfiguration.getSerializer();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int n = in.readInt();
+            for(int i=0;i<n;i++) {
+                K key = (K)serializer.readValue(in);
+                map.put(key, (V)serializer.readValue(in));
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Frees the memory of all the off-heap BigMaps.
+     */
+    private void releaseOffHeapMaps() {
+        for(AbstractOffHeapMap<?, ?> offHeapMap : offHeapMaps.values()) {
+            offHeapMap.release();
+        }
+        offHeapMaps.clear();
+    }
+
+}
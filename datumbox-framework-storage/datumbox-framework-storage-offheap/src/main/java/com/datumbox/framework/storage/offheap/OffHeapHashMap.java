@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.offheap;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Off-heap hash map. The index is an open addressing table with linear probing
+ * which is stored in a direct ByteBuffer.
+ *
+ * @param <K>
+ * @param <V>
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+class OffHeapHashMap<K, V> extends AbstractOffHeapMap<K, V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final long EMPTY = -1L;
+
+    private static final long DELETED = -2L;
+
+    private ByteBuffer table;
+
+    private int capacity;
+
+    /**
+     * The number of occupied slots, including the deleted ones.
+     */
+    private int usedSlots;
+
+    /**
+     * @param arena
+     * @param serializer
+     * @param cacheSize
+     */
+    OffHeapHashMap(Arena arena, ObjectSerializer serializer, int cacheSize) {
+        super(arena, serializer, cacheSize);
+        allocateTable(INITIAL_CAPACITY);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long findEntry(Object key) {
+        int slot = findSlot(key, Objects.hashCode(key));
+        return slot>=0?getSlot(slot):NONE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long replaceEntry(Object key, int hash, long address) {
+        int mask = capacity - 1;
+        int firstDeleted = -1;
+        int slot = spread(hash) & mask;
+        long current;
+        while((current = getSlot(slot)) != EMPTY) {
+            if(current == DELETED) {
+                if(firstDeleted < 0) {
+                    firstDeleted = slot;
+                }
+            }
+            else if(matches(current, key, hash)) {
+                setSlot(slot, address);
+                return current;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if(firstDeleted >= 0) {
+            setSlot(firstDeleted, address);
+        }
+        else {
+            setSlot(slot, address);
+            if(++usedSlots > capacity*3/4) {
+                rehash();
+            }
+        }
+        return NONE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long deleteEntry(Object key) {
+        int slot = findSlot(key, Objects.hashCode(key));
+        if(slot < 0) {
+            return NONE;
+        }
+        long address = getSlot(slot);
+        setSlot(slot, DELETED);
+        return address;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void clearEntries() {
+        allocateTable(INITIAL_CAPACITY);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void relocateEntries(LongUnaryOperator relocation) {
+        for(int slot=0;slot<capacity;slot++) {
+            long address = getSlot(slot);
+            if(address >= 0) {
+                setSlot(slot, relocation.applyAsLong(address));
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected AddressIterator addresses() {
+        return new AddressIterator() {
+            private int slot = nextSlot(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < capacity;
+            }
+
+            @Override
+            public long next() {
+                if(slot >= capacity) {
+                    throw new NoSuchElementException();
+                }
+                long address = getSlot(slot);
+                slot = nextSlot(slot + 1);
+                return address;
+            }
+
+            @Override
+            public void afterRemove() {
+                //the removed slot is marked as deleted, so the positions do not change
+            }
+
+            private int nextSlot(int slot) {
+                while(slot < capacity && getSlot(slot) < 0) {
+                    slot++;
+                }
+                return slot;
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void releaseIndex() {
+        Arena.free(table);
+        table = null;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private long getSlot(int slot) {
+        return table.getLong(slot << 3);
+    }
+
+    private void setSlot(int slot, long address) {
+        table.putLong(slot << 3, address);
+    }
+
+    private int findSlot(Object key, int hash) {
+        int mask = capacity - 1;
+        int slot = spread(hash) & mask;
+        long current;
+        while((current = getSlot(slot)) != EMPTY) {
+            if(current != DELETED && matches(current, key, hash)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void allocateTable(int newCapacity) {
+        table = ByteBuffer.allocateDirect(newCapacity << 3);
+        for(int slot=0;slot<newCapacity;slot++) {
+            table.putLong(slot << 3, EMPTY);
+        }
+        capacity = newCapacity;
+        usedSlots = 0;
+    }
+
+    /**
+     * Rebuilds the table, dropping the deleted slots and doubling the capacity
+     * if the live entries occupy more than half of it. The old table is left
+     * to the garbage collector.
+     */
+    private void rehash() {
+        ByteBuffer oldTable = table;
+        int oldCapacity = capacity;
+
+        int liveSlots = 0;
+        for(int slot=0;slot<oldCapacity;slot++) {
+            if(oldTable.getLong(slot << 3) >= 0) {
+                liveSlots++;
+            }
+        }
+        int newCapacity = oldCapacity;
+        while(liveSlots > newCapacity/2) {
+            newCapacity <<= 1;
+        }
+
+        allocateTable(newCapacity);
+        int mask = newCapacity - 1;
+        for(int oldSlot=0;oldSlot<oldCapacity;oldSlot++) {
+            long address = oldTable.getLong(oldSlot << 3);
+            if(address >= 0) {
+                int slot = spread(readHash(address)) & mask;
+                while(getSlot(slot) != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                setSlot(slot, address);
+                usedSlots++;
+            }
+        }
+    }
+
+}
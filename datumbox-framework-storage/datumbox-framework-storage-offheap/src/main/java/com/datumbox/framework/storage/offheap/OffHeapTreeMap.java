@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.offheap;
+
+import com.datumbox.framework.common.storage.interfaces.ObjectSerializer;
+
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Off-heap sorted map which iterates its keys in their natural order. The index
+ * is an array of addresses sorted by key which is stored in a direct ByteBuffer.
+ * Appending keys in increasing order, which is the typical access pattern of
+ * the framework, does not require any search or shifting.
+ *
+ * @param <K>
+ * @param <V>
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+class OffHeapTreeMap<K, V> extends AbstractOffHeapMap<K, V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private ByteBuffer index;
+
+    private int count = 0;
+
+    /**
+     * @param arena
+     * @param serializer
+     * @param cacheSize
+     */
+    OffHeapTreeMap(Arena arena, ObjectSerializer serializer, int cacheSize) {
+        super(arena, serializer, cacheSize);
+        index = ByteBuffer.allocateDirect(INITIAL_CAPACITY << 3);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long findEntry(Object key) {
+        int pos = search(key);
+        return pos>=0?get(pos):NONE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long replaceEntry(Object key, int hash, long address) {
+        int pos = search(key);
+        if(pos >= 0) {
+            long oldAddress = get(pos);
+            set(pos, address);
+            return oldAddress;
+        }
+
+        pos = -(pos + 1);
+        if(((count + 1) << 3) > index.capacity()) {
+            ByteBuffer newIndex = ByteBuffer.allocateDirect(index.capacity() << 1);
+            ByteBuffer src = index.duplicate();
+            src.position(0).limit(count << 3);
+            newIndex.put(src);
+            index = newIndex; //the old index is left to the garbage collector
+        }
+        for(int i=count;i>pos;i--) {
+            set(i, get(i-1));
+        }
+        set(pos, address);
+        count++;
+        return NONE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long deleteEntry(Object key) {
+        int pos = search(key);
+        if(pos < 0) {
+            return NONE;
+        }
+        long address = get(pos);
+        for(int i=pos+1;i<count;i++) {
+            set(i-1, get(i));
+        }
+        count--;
+        return address;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void clearEntries() {
+        index = ByteBuffer.allocateDirect(INITIAL_CAPACITY << 3);
+        count = 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void relocateEntries(LongUnaryOperator relocation) {
+        for(int i=0;i<count;i++) {
+            set(i, relocation.applyAsLong(get(i)));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected AddressIterator addresses() {
+        return new AddressIterator() {
+            private int pos = 0;
+
+            @Override
+            public boolean hasNext() {
+                return pos < count;
+            }
+
+            @Override
+            public long next() {
+                if(pos >= count) {
+                    throw new NoSuchElementException();
+                }
+                return get(pos++);
+            }
+
+            @Override
+            public void afterRemove() {
+                pos--; //the following entries were shifted by one position
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void releaseIndex() {
+        Arena.free(index);
+        index = null;
+    }
+
+    private long get(int pos) {
+        return index.getLong(pos << 3);
+    }
+
+    private void set(int pos, long address) {
+        index.putLong(pos << 3, address);
+    }
+
+    /**
+     * Returns the position of the key or (-(insertion point) - 1) if it does
+     * not exist.
+     *
+     * @param key
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private int search(Object key) {
+        Comparable<Object> k = (Comparable<Object>)key;
+        if(count > 0 && k.compareTo(readKey(get(count-1))) > 0) {
+            return -(count + 1); //fast path for appending keys
+        }
+
+        int low = 0;
+        int high = count - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = k.compareTo(readKey(get(mid)));
+            if(cmp > 0) {
+                low = mid + 1;
+            }
+            else if(cmp < 0) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+}
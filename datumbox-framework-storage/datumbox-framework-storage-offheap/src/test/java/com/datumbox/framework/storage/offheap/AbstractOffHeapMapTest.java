@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2013-2017 Vasilis Vryniotis <bbriniotis@datumbox.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datumbox.framework.storage.offheap;
+
+import com.datumbox.framework.common.storage.serializers.BinarySerializer;
+import com.datumbox.framework.tests.abstracts.AbstractTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for AbstractOffHeapMap.
+ *
+ * @author Vasilis Vryniotis <bbriniotis@datumbox.com>
+ */
+public class AbstractOffHeapMapTest extends AbstractTest {
+
+    /**
+     * Test of reading concurrently a map which is not concurrent and has a
+     * small cache, of class AbstractOffHeapMap.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentReads() throws Exception {
+        logger.info("testConcurrentReads");
+
+        int n = 200;
+        List<AbstractOffHeapMap<Integer, String>> maps = new ArrayList<>();
+        maps.add(new OffHeapHashMap<>(new Arena(1 << 16, false), new BinarySerializer(), 8));
+        maps.add(new OffHeapTreeMap<>(new Arena(1 << 16, false), new BinarySerializer(), 8));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for(AbstractOffHeapMap<Integer, String> map : maps) {
+                for(int i=0;i<n;i++) {
+                    map.put(i, "v" + i);
+                }
+
+                List<Future<?>> futures = new ArrayList<>();
+                for(int t=0;t<8;t++) {
+                    long seed = t;
+                    futures.add(executor.submit(() -> {
+                        Random rnd = new Random(seed);
+                        for(int j=0;j<200000;j++) {
+                            int key = rnd.nextInt(n + 10);
+                            if(key < n) {
+                                assertEquals("v" + key, map.get(key));
+                                assertTrue(map.containsKey(key));
+                            }
+                            else {
+                                assertFalse(map.containsKey(key));
+                            }
+                        }
+                    }));
+                }
+                for(Future<?> f : futures) {
+                    f.get(); //propagates the failures of the readers
+                }
+
+                assertEquals(n, map.size());
+                map.release();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+}
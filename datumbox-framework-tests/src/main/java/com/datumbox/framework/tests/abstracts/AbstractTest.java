@@ -72,6 +72,12 @@ public abstract class AbstractTest {
             else if("MapDB".equals(storageEngine)) {
                 p.setProperty("configuration.storageConfiguration", "com.datumbox.framework.storage.mapdb.MapDBConfiguration");
             }
+            else if("MapDB3".equals(storageEngine)) {
+                p.setProperty("configuration.storageConfiguration", "com.datumbox.framework.storage.mapdb3.MapDB3Configuration");
+            }
+            else if("OffHeap".equals(storageEngine)) {
+                p.setProperty("configuration.storageConfiguration", "com.datumbox.framework.storage.offheap.OffHeapConfiguration");
+            }
             else {
                 throw new IllegalArgumentException("Unsupported option.");
             }